@@ -18,7 +18,9 @@
 package eu.amidst.dynamic.datastream;
 
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.datastream.filereaders.arffFileReader.ARFFDataReader;
 import eu.amidst.core.utils.FixedBatchParallelSpliteratorWrapper;
+import eu.amidst.dynamic.datastream.filereaders.IndexedDataSequenceSpliterator;
 
 import java.util.stream.Stream;
 
@@ -45,4 +47,29 @@ public final class DataSequenceStream {
         return FixedBatchParallelSpliteratorWrapper.toFixedBatchStream(DataSequenceStream.streamOfDataSequences(dataStream), 1);
     }
 
+    /**
+     * Returns a {@link Stream} of {@link DataSequence} read from an ARFF data file. The sequence boundaries are
+     * taken from a {@link eu.amidst.dynamic.datastream.filereaders.SequenceIndex} stored beside the data file,
+     * which is built the first time the file is read.
+     * @param path the path of the ARFF data file.
+     * @return a Stream<DataSequence> object.
+     */
+    public static Stream<DataSequence> streamOfDataSequences(String path){
+        ARFFDataReader reader = new ARFFDataReader();
+        reader.loadFromFile(path);
+        return IndexedDataSequenceSpliterator.toDataSequenceStream(path, reader.getAttributes(), false);
+    }
+
+    /**
+     * Returns a parallel {@link Stream} of {@link DataSequence} read from an ARFF data file. Each split of the
+     * stream reads its own range of sequences from the file.
+     * @param path the path of the ARFF data file.
+     * @return a Stream<DataSequence> object.
+     */
+    public static Stream<DataSequence> parallelStreamOfDataSequences(String path){
+        ARFFDataReader reader = new ARFFDataReader();
+        reader.loadFromFile(path);
+        return IndexedDataSequenceSpliterator.toDataSequenceStream(path, reader.getAttributes(), true);
+    }
+
 }
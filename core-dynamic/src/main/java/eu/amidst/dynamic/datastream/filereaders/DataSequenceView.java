@@ -0,0 +1,240 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.dynamic.datastream.filereaders;
+
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.Attributes;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.dynamic.datastream.DataSequence;
+import eu.amidst.dynamic.datastream.DynamicDataInstance;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * This class implements the {@link DataSequence} interface over a block of contiguous rows stored in a single
+ * {@code double} array, one row after the other. The {@link DynamicDataInstance} objects of the sequence are
+ * lightweight views over this array: the past values of a row are the values of the previous row of the block.
+ */
+public class DataSequenceView implements DataSequence, DataOnMemory<DynamicDataInstance>, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 4107783324901370839L;
+
+    /** Represents the {@link Attributes} of the rows. */
+    private final Attributes attributes;
+
+    /** Represents the block of values, one row after the other. */
+    private final double[] data;
+
+    /** Represents the number of rows of this sequence. */
+    private final int nRows;
+
+    /** Represents the number of attributes of each row. */
+    private final int nAttributes;
+
+    /** Represents the sequence ID. */
+    private final long sequenceID;
+
+    /**
+     * Creates a new DataSequenceView.
+     * @param attributes the {@link Attributes} of the rows.
+     * @param sequenceID the sequence ID.
+     * @param data the block of values, one row after the other.
+     * @param nRows the number of rows of the block.
+     */
+    public DataSequenceView(Attributes attributes, long sequenceID, double[] data, int nRows) {
+        this.attributes = attributes;
+        this.sequenceID = sequenceID;
+        this.data = data;
+        this.nRows = nRows;
+        this.nAttributes = attributes.getNumberOfAttributes();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getSequenceID() {
+        return sequenceID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfDataInstances() {
+        return nRows;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DynamicDataInstance getDataInstance(int i) {
+        if (i < 0 || i >= nRows)
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + nRows);
+        return new RowView(i);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DynamicDataInstance> getList() {
+        return new AbstractList<DynamicDataInstance>() {
+            @Override
+            public DynamicDataInstance get(int index) {
+                return getDataInstance(index);
+            }
+
+            @Override
+            public int size() {
+                return nRows;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<DynamicDataInstance> stream() {
+        return IntStream.range(0, nRows).mapToObj(RowView::new);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restart() {
+
+    }
+
+    /**
+     * This class implements the {@link DynamicDataInstance} interface as a view over a row of the block.
+     */
+    final class RowView implements DynamicDataInstance, Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 4107783324901370839L;
+
+        /** Represents the position of the row in the block. */
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getSequenceID() {
+            return sequenceID;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getTimeID() {
+            Attribute attTimeID = attributes.getTime_id();
+            return (attTimeID == null) ? row : (long) data[row * nAttributes + attTimeID.getIndex()];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getValue(Attribute att, boolean present) {
+            if (present)
+                return data[row * nAttributes + att.getIndex()];
+            else if (row > 0)
+                return data[(row - 1) * nAttributes + att.getIndex()];
+            else
+                return Utils.missingValue();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setValue(Attribute att, double val, boolean present) {
+            if (present)
+                data[row * nAttributes + att.getIndex()] = val;
+            else if (row > 0)
+                data[(row - 1) * nAttributes + att.getIndex()] = val;
+            else
+                throw new UnsupportedOperationException("The first row of a sequence has no past values.");
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Attributes getAttributes() {
+            return attributes;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double[] toArray() {
+            return Arrays.copyOfRange(data, row * nAttributes, (row + 1) * nAttributes);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return this.outputString();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.dynamic.datastream.filereaders;
+
+import eu.amidst.core.datastream.Attributes;
+import eu.amidst.core.datastream.filereaders.arffFileReader.DataRowWeka;
+import eu.amidst.dynamic.datastream.DataSequence;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.stream.StreamSupport.stream;
+
+/**
+ * This class defines a {@link Spliterator} over the {@link DataSequence} elements of an ARFF data file, using a
+ * {@link SequenceIndex} to locate the sequences. Each split covers a range of sequences and reads its own region of
+ * the file, so the sequences can be processed in parallel without first grouping the rows in a single thread.
+ * Each sequence is handed out as a {@link DataSequenceView} over a block holding its rows.
+ */
+public class IndexedDataSequenceSpliterator implements Spliterator<DataSequence> {
+
+    /** Represents the path of the data file. */
+    private final String path;
+
+    /** Represents the {@link Attributes} of the data file. */
+    private final Attributes attributes;
+
+    /** Represents the {@link SequenceIndex} of the data file. */
+    private final SequenceIndex index;
+
+    /** Represents the position of the next sequence to be read. */
+    private int current;
+
+    /** Represents the position of the last sequence of this split, exclusive. */
+    private final int end;
+
+    /** Represents the reader of the region of the file covered by this split. */
+    private SequenceIndex.LineReader reader;
+
+    /**
+     * Creates a new IndexedDataSequenceSpliterator over a range of sequences.
+     * @param path the path of the data file.
+     * @param attributes the {@link Attributes} of the data file.
+     * @param index the {@link SequenceIndex} of the data file.
+     * @param from the position of the first sequence, inclusive.
+     * @param to the position of the last sequence, exclusive.
+     */
+    public IndexedDataSequenceSpliterator(String path, Attributes attributes, SequenceIndex index, int from, int to) {
+        this.path = path;
+        this.attributes = attributes;
+        this.index = index;
+        this.current = from;
+        this.end = to;
+    }
+
+    /**
+     * Returns a {@link Stream} of {@link DataSequence} over all the sequences of a data file.
+     * @param path the path of the data file.
+     * @param attributes the {@link Attributes} of the data file.
+     * @param parallel {@code true} if a parallel stream is returned, {@code false} otherwise.
+     * @return a Stream<DataSequence> object.
+     */
+    public static Stream<DataSequence> toDataSequenceStream(String path, Attributes attributes, boolean parallel) {
+        SequenceIndex index = SequenceIndex.loadOrBuild(path, attributes);
+        IndexedDataSequenceSpliterator spliterator = new IndexedDataSequenceSpliterator(path, attributes, index, 0, index.getNumberOfSequences());
+        return stream(spliterator, parallel).onClose(spliterator::close);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super DataSequence> action) {
+        if (current >= end) {
+            close();
+            return false;
+        }
+
+        try {
+            if (reader == null) {
+                FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+                channel.position(index.getOffset(current));
+                reader = new SequenceIndex.LineReader(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            }
+
+            int nRows = index.getLength(current);
+            int nAttributes = attributes.getNumberOfAttributes();
+            double[] data = new double[nRows * nAttributes];
+
+            int row = 0;
+            String line;
+            while (row < nRows && (line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("%"))
+                    continue;
+                DataRowWeka.parseLine(attributes, line, data, row * nAttributes);
+                row++;
+            }
+
+            if (row < nRows)
+                throw new IllegalStateException("The data file has been modified after building its sequence index.");
+
+            action.accept(new DataSequenceView(attributes, index.getSequenceID(current), data, nRows));
+            current++;
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Spliterator<DataSequence> trySplit() {
+        if (reader != null || end - current < 2)
+            return null;
+
+        int middle = (current + end) >>> 1;
+        Spliterator<DataSequence> prefix = new IndexedDataSequenceSpliterator(path, attributes, index, current, middle);
+        current = middle;
+        return prefix;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long estimateSize() {
+        return end - current;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Closes the file reader of this split.
+     */
+    private void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            reader = null;
+        }
+    }
+}
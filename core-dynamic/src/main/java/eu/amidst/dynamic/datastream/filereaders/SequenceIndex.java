@@ -0,0 +1,326 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.dynamic.datastream.filereaders;
+
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.Attributes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class defines an index over the sequences of a dynamic ARFF data file. For each sequence, it stores its
+ * sequence ID, the byte offset of its first data row in the file and its number of data rows. Rows of the same
+ * sequence are expected to be contiguous in the file, as written by the data stream writers of the toolbox.
+ *
+ * <p> The index is built with a single pass over the data file and it is stored beside it, in a file with the
+ * {@link #INDEX_FILE_EXTENSION} extension, so later readings of the same file can skip this pass. </p>
+ */
+public final class SequenceIndex implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 4107783324901370839L;
+
+    /** Represents the extension appended to the data file name to store the index. */
+    public static final String INDEX_FILE_EXTENSION = ".seqidx";
+
+    /** Represents the header of the index files. */
+    private static final int MAGIC = 0x53514958;
+
+    /** Represents the sequence ID of each sequence. */
+    private final long[] sequenceIDs;
+
+    /** Represents the byte offset of the first data row of each sequence. */
+    private final long[] offsets;
+
+    /** Represents the number of data rows of each sequence. */
+    private final int[] lengths;
+
+    /**
+     * Creates a new SequenceIndex.
+     * @param sequenceIDs the sequence ID of each sequence.
+     * @param offsets the byte offset of the first data row of each sequence.
+     * @param lengths the number of data rows of each sequence.
+     */
+    private SequenceIndex(long[] sequenceIDs, long[] offsets, int[] lengths) {
+        this.sequenceIDs = sequenceIDs;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Returns the number of sequences of this index.
+     * @return the number of sequences.
+     */
+    public int getNumberOfSequences() {
+        return sequenceIDs.length;
+    }
+
+    /**
+     * Returns the sequence ID of the i-th sequence.
+     * @param i the position of the sequence.
+     * @return the sequence ID.
+     */
+    public long getSequenceID(int i) {
+        return sequenceIDs[i];
+    }
+
+    /**
+     * Returns the byte offset of the first data row of the i-th sequence.
+     * @param i the position of the sequence.
+     * @return a byte offset.
+     */
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Returns the number of data rows of the i-th sequence.
+     * @param i the position of the sequence.
+     * @return the number of data rows.
+     */
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * Returns the total number of data rows between two given sequences.
+     * @param from the position of the first sequence, inclusive.
+     * @param to the position of the last sequence, exclusive.
+     * @return the number of data rows.
+     */
+    public long getNumberOfRows(int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            count += lengths[i];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of a given data file. The index stored beside the data file is used if it is more recent
+     * than the data file, otherwise the index is built and stored.
+     * @param path the path of the ARFF data file.
+     * @param attributes the {@link Attributes} of the data file.
+     * @return a {@link SequenceIndex} object.
+     */
+    public static SequenceIndex loadOrBuild(String path, Attributes attributes) {
+        File dataFile = new File(path);
+        File indexFile = new File(path + INDEX_FILE_EXTENSION);
+        try {
+            if (indexFile.exists() && indexFile.lastModified() >= dataFile.lastModified()) {
+                SequenceIndex index = read(indexFile, dataFile.length());
+                if (index != null)
+                    return index;
+            }
+
+            SequenceIndex index = build(dataFile, attributes);
+            try {
+                index.write(indexFile, dataFile.length());
+            } catch (IOException ex) {
+                //The index can still be used even if it can not be stored.
+                indexFile.delete();
+            }
+            return index;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Builds the index of a data file with a single pass over its rows.
+     * @param dataFile the ARFF data file.
+     * @param attributes the {@link Attributes} of the data file.
+     * @return a {@link SequenceIndex} object.
+     * @throws IOException in case of an error while reading the file.
+     */
+    static SequenceIndex build(File dataFile, Attributes attributes) throws IOException {
+        Attribute attSequenceID = attributes.getSeq_id();
+        if (attSequenceID == null)
+            throw new IllegalArgumentException("The data file does not contain a " + Attributes.SEQUENCE_ID_ATT_NAME + " attribute.");
+
+        int column = attSequenceID.getIndex();
+
+        long[] sequenceIDs = new long[16];
+        long[] offsets = new long[16];
+        int[] lengths = new int[16];
+        int nSequences = 0;
+
+        try (LineReader reader = new LineReader(new BufferedInputStream(new FileInputStream(dataFile), 1 << 16))) {
+            boolean data = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("%"))
+                    continue;
+
+                if (!data) {
+                    data = trimmed.regionMatches(true, 0, "@data", 0, 5);
+                    continue;
+                }
+
+                long sequenceID = (long) Double.parseDouble(field(line, column));
+                if (nSequences > 0 && sequenceIDs[nSequences - 1] == sequenceID) {
+                    lengths[nSequences - 1]++;
+                } else {
+                    if (nSequences == sequenceIDs.length) {
+                        sequenceIDs = Arrays.copyOf(sequenceIDs, 2 * nSequences);
+                        offsets = Arrays.copyOf(offsets, 2 * nSequences);
+                        lengths = Arrays.copyOf(lengths, 2 * nSequences);
+                    }
+                    sequenceIDs[nSequences] = sequenceID;
+                    offsets[nSequences] = reader.getLineOffset();
+                    lengths[nSequences] = 1;
+                    nSequences++;
+                }
+            }
+        }
+
+        return new SequenceIndex(Arrays.copyOf(sequenceIDs, nSequences), Arrays.copyOf(offsets, nSequences), Arrays.copyOf(lengths, nSequences));
+    }
+
+    /**
+     * Reads an index file.
+     * @param indexFile the index file.
+     * @param dataFileLength the length of the indexed data file.
+     * @return a {@link SequenceIndex} object, or {@code null} if the index file does not match the data file.
+     * @throws IOException in case of an error while reading the file.
+     */
+    private static SequenceIndex read(File indexFile, long dataFileLength) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readLong() != dataFileLength)
+                return null;
+
+            int nSequences = in.readInt();
+            long[] sequenceIDs = new long[nSequences];
+            long[] offsets = new long[nSequences];
+            int[] lengths = new int[nSequences];
+            for (int i = 0; i < nSequences; i++) {
+                sequenceIDs[i] = in.readLong();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+            }
+            return new SequenceIndex(sequenceIDs, offsets, lengths);
+        }
+    }
+
+    /**
+     * Writes this index to a file.
+     * @param indexFile the index file.
+     * @param dataFileLength the length of the indexed data file.
+     * @throws IOException in case of an error while writing the file.
+     */
+    private void write(File indexFile, long dataFileLength) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeLong(dataFileLength);
+            out.writeInt(sequenceIDs.length);
+            for (int i = 0; i < sequenceIDs.length; i++) {
+                out.writeLong(sequenceIDs[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the i-th comma separated field of a data row.
+     * @param line the data row.
+     * @param column the position of the field.
+     * @return the field.
+     */
+    private static String field(String line, int column) {
+        int start = 0;
+        for (int i = 0; i < column; i++) {
+            start = line.indexOf(',', start) + 1;
+            if (start == 0)
+                throw new IllegalStateException("The number of columns does not match the number of attributes.");
+        }
+        int end = line.indexOf(',', start);
+        return line.substring(start, end < 0 ? line.length() : end).trim();
+    }
+
+    /**
+     * This class reads the lines of a file keeping track of the byte offset where each line starts.
+     */
+    static final class LineReader implements AutoCloseable {
+
+        private final InputStream in;
+
+        private byte[] line = new byte[256];
+
+        private long position = 0;
+
+        private long lineOffset = 0;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Returns the byte offset of the last line returned by {@link #readLine()}.
+         * @return a byte offset.
+         */
+        long getLineOffset() {
+            return lineOffset;
+        }
+
+        /**
+         * Reads the next line, without the line terminator.
+         * @return the next line, or {@code null} at the end of the stream.
+         * @throws IOException in case of an error while reading.
+         */
+        String readLine() throws IOException {
+            lineOffset = position;
+            int length = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n')
+                    break;
+                if (length == line.length)
+                    line = Arrays.copyOf(line, 2 * length);
+                line[length++] = (byte) b;
+            }
+            if (b == -1 && length == 0)
+                return null;
+            if (length > 0 && line[length - 1] == '\r')
+                length--;
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -279,7 +279,7 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
      */
     public void setModel(DynamicBayesianNetwork model) {
         this.model = model;
-        this.unfoldedStaticModel = DynamicToStaticBNConverter.convertDBNtoBN(model,nTimeSteps);
+        this.unfoldedStaticModel = DynamicToStaticBNConverter.convertDBNtoBNCached(model,nTimeSteps);
     }
 
     /**
@@ -395,11 +395,12 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
 
     /**
      * Returns a single {@link BayesianNetwork} object, corresponding to the unfolded dynamic network
-     * over the specified number of time steps.
+     * over the specified number of time steps. The unfolded network used by this object may be shared through the
+     * cache of {@link DynamicToStaticBNConverter}, so a copy of it is returned.
      * @return a {@link BayesianNetwork} object.
      */
     public BayesianNetwork getUnfoldedStaticModel() {
-        return unfoldedStaticModel;
+        return unfoldedStaticModel == null ? null : Serialization.deepCopy(unfoldedStaticModel);
     }
 
     public Assignment getUnfoldedEvidence() {
@@ -516,7 +517,7 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
         }
 
         if (this.unfoldedStaticModel == null) {
-            unfoldedStaticModel = DynamicToStaticBNConverter.convertDBNtoBN(model,nTimeSteps);
+            unfoldedStaticModel = DynamicToStaticBNConverter.convertDBNtoBNCached(model,nTimeSteps);
         }
 
 //
@@ -710,7 +711,7 @@ public class DynamicMAPInference implements InferenceAlgorithmForDBN {
 
 
         if (this.unfoldedStaticModel == null) {
-            unfoldedStaticModel = DynamicToStaticBNConverter.convertDBNtoBN(model,nTimeSteps);
+            unfoldedStaticModel = DynamicToStaticBNConverter.convertDBNtoBNCached(model,nTimeSteps);
         }
 
         if (evidence!=null && staticEvidence==null) {
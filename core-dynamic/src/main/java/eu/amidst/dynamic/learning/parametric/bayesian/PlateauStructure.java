@@ -14,8 +14,11 @@ import eu.amidst.core.exponentialfamily.EF_ConditionalDistribution;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.core.exponentialfamily.EF_LearningBayesianNetwork;
 import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
+import eu.amidst.core.exponentialfamily.NaturalParameters;
 import eu.amidst.core.inference.messagepassing.VMP;
 import eu.amidst.core.inference.messagepassing.Node;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Vector;
 import eu.amidst.dynamic.models.DynamicDAG;
 import eu.amidst.core.variables.Variable;
 
@@ -412,4 +415,91 @@ public class PlateauStructure {
         return (E)this.parametersToNodeTime0.get(var).getQDist();
     }
 
+
+    /**
+     * Returns the natural parameters of the prior distributions of the parameter variables at time 0.
+     * @return a {@link CompoundVector} object with one component per parameter variable.
+     */
+    public CompoundVector getPlateauNaturalParameterPriorTime0() {
+        return getNaturalParameterPrior(this.ef_learningmodelTime0);
+    }
+
+    /**
+     * Returns the natural parameters of the prior distributions of the parameter variables at time T.
+     * @return a {@link CompoundVector} object with one component per parameter variable.
+     */
+    public CompoundVector getPlateauNaturalParameterPriorTimeT() {
+        return getNaturalParameterPrior(this.ef_learningmodelTimeT);
+    }
+
+    /**
+     * Returns the natural parameters of the posterior distributions of the parameter variables at time 0.
+     * @return a {@link CompoundVector} object with one component per parameter variable.
+     */
+    public CompoundVector getPlateauNaturalParameterPosteriorTime0() {
+        return getNaturalParameterPosterior(this.ef_learningmodelTime0, this.parametersToNodeTime0);
+    }
+
+    /**
+     * Returns the natural parameters of the posterior distributions of the parameter variables at time T.
+     * @return a {@link CompoundVector} object with one component per parameter variable.
+     */
+    public CompoundVector getPlateauNaturalParameterPosteriorTimeT() {
+        return getNaturalParameterPosterior(this.ef_learningmodelTimeT, this.parametersToNodeTimeT);
+    }
+
+    /**
+     * Updates the prior distributions of the parameter variables at time 0 from a given parameter vector.
+     * @param parameterVector a {@link CompoundVector} object.
+     */
+    public void updateNaturalParameterPriorTime0(CompoundVector parameterVector) {
+        updateNaturalParameterPrior(this.ef_learningmodelTime0, this.parametersToNodeTime0, parameterVector);
+    }
+
+    /**
+     * Updates the prior distributions of the parameter variables at time T from a given parameter vector.
+     * @param parameterVector a {@link CompoundVector} object.
+     */
+    public void updateNaturalParameterPriorTimeT(CompoundVector parameterVector) {
+        updateNaturalParameterPrior(this.ef_learningmodelTimeT, this.parametersToNodeTimeT, parameterVector);
+    }
+
+    private static CompoundVector getNaturalParameterPrior(EF_LearningBayesianNetwork ef_learningmodel) {
+        List<Vector> priors = ef_learningmodel.getListOfParametersVariables().stream()
+                .map(var -> {
+                    NaturalParameters parameter = ef_learningmodel.getDistribution(var).getNaturalParameters();
+                    NaturalParameters copy = ef_learningmodel.getDistribution(var).createZeroNaturalParameters();
+                    copy.copy(parameter);
+                    return copy;
+                }).collect(Collectors.toList());
+
+        return new CompoundVector(priors);
+    }
+
+    private static CompoundVector getNaturalParameterPosterior(EF_LearningBayesianNetwork ef_learningmodel, Map<Variable, Node> parametersToNode) {
+        List<Vector> posteriors = ef_learningmodel.getListOfParametersVariables().stream()
+                .map(var -> {
+                    EF_UnivariateDistribution qDist = parametersToNode.get(var).getQDist();
+                    NaturalParameters copy = qDist.createZeroNaturalParameters();
+                    copy.copy(qDist.getNaturalParameters());
+                    return copy;
+                }).collect(Collectors.toList());
+
+        return new CompoundVector(posteriors);
+    }
+
+    private static void updateNaturalParameterPrior(EF_LearningBayesianNetwork ef_learningmodel, Map<Variable, Node> parametersToNode, CompoundVector parameterVector) {
+        int count = 0;
+        for (Variable var : ef_learningmodel.getListOfParametersVariables()) {
+            Node node = parametersToNode.get(var);
+            EF_UnivariateDistribution uni = node.getQDist().deepCopy();
+            uni.getNaturalParameters().copy(parameterVector.getVectorByPosition(count));
+            uni.fixNumericalInstability();
+            uni.updateMomentFromNaturalParameters();
+            ef_learningmodel.setDistribution(var, uni);
+            node.setPDist(uni);
+            count++;
+        }
+    }
+
 }
\ No newline at end of file
@@ -14,17 +14,29 @@ import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.exponentialfamily.EF_LearningBayesianNetwork;
 import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
+import eu.amidst.core.utils.CompoundVector;
 import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.datastream.DataSequence;
+import eu.amidst.dynamic.datastream.DataSequenceStream;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.dynamic.models.DynamicDAG;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * This class implements the {@link BayesianLearningAlgorithm } interface.
  * It defines the Dynamic Streaming Variational Bayes (SVB) algorithm.
  *
+ * <p> In parallel mode, the data stream is split into sequences which are processed concurrently by a set of
+ * SVB engines (one per CPU core). Each engine runs the sequential algorithm over its sequence starting from the
+ * current prior, and the resulting natural parameter updates at time 0 and time T are summed into the prior
+ * shared by all the engines, in the same way as {@link eu.amidst.core.learning.parametric.bayesian.ParallelSVB}
+ * does for static models. </p>
+ *
  * TODO: By iterating several times over the data we can get better approximations.
  * TODO: Trick. Initialize the Q's of the parameters variables with the final posterios in the previous iterations.
  */
@@ -57,6 +69,12 @@ public class SVB implements BayesianLearningAlgorithm {
     /** Represents the seed, initialized to 0. */
     int seed = 0;
 
+    /** Represents the number of used CPU cores in parallel mode. */
+    int nCores = -1;
+
+    /** Represents the set of SVB engines used in parallel mode. */
+    SVB[] svbEngines;
+
     /**
      * Returns the dynamic plateu structure of this DynamicSVB.
      * @return a {@link PlateauStructure} object.
@@ -73,6 +91,14 @@ public class SVB implements BayesianLearningAlgorithm {
         plateauStructure.setNRepetitions(windowsSize);
     }
 
+    /**
+     * Sets the number of CPU cores used in parallel mode.
+     * @param nCores the number of CPU cores.
+     */
+    public void setNCores(int nCores) {
+        this.nCores = nCores;
+    }
+
     /**
      * Returns the seed value.
      */
@@ -154,9 +180,108 @@ public class SVB implements BayesianLearningAlgorithm {
             //this.elbo = this.dataStream.stream().sequential().mapToDouble(this::updateModel).sumNonStateless();
             this.elbo = this.dataStream.streamOfBatches(this.windowsSize).sequential().mapToDouble(this::updateModel).sum();
         }else {
-            //Create EF_ExtendedBN which returns ParameterVariable object
-            //Paremter variable car
-            //BatchOutput finalout = this.dataStream.streamOfBatches(100).map(this::updateModelOnBatchParallel).reduce(BatchOutput::sumNonStateless).get();
+            this.elbo = this.updateModelParallel(this.dataStream);
+        }
+    }
+
+    /**
+     * Updates the model in parallel using the provided data stream. Sequences are dispatched in groups of
+     * {@code nCores} elements, each of them is processed by a different SVB engine, and the natural parameter
+     * updates of all the engines are summed into the common prior before the next group is processed.
+     * @param data a {@link DataStream} object.
+     * @return the log-probability of the data instances of the stream.
+     */
+    public double updateModelParallel(DataStream<DynamicDataInstance> data) {
+        if (this.svbEngines==null)
+            this.initParallelEngines();
+
+        Iterator<DataSequence> iterator = DataSequenceStream.streamOfDataSequences(data).sequential().iterator();
+
+        double logLikelihood = 0;
+        while (iterator.hasNext()) {
+            CompoundVector priorTime0 = this.plateauStructure.getPlateauNaturalParameterPriorTime0();
+            CompoundVector priorTimeT = this.plateauStructure.getPlateauNaturalParameterPriorTimeT();
+
+            //Load Data
+            List<DataSequence> sequences = new ArrayList<>();
+            while (iterator.hasNext() && sequences.size()<this.svbEngines.length){
+                sequences.add(iterator.next());
+            }
+
+            //Run Inference
+            BatchOutput out = IntStream.range(0, sequences.size())
+                    .parallel()
+                    .mapToObj(i -> this.svbEngines[i].updateModelOnSequenceParallel(sequences.get(i)))
+                    .reduce(BatchOutput::sumNonStateless)
+                    .get();
+
+            logLikelihood += out.getElbo();
+
+            //Combine the output
+            priorTime0.sum(out.getVectorTime0());
+            priorTimeT.sum(out.getVectorTimeT());
+            this.updateNaturalParameterPrior(priorTime0, priorTimeT);
+            for (SVB svbEngine : this.svbEngines) {
+                svbEngine.updateNaturalParameterPrior(priorTime0, priorTimeT);
+            }
+        }
+
+        return logLikelihood;
+    }
+
+    /**
+     * Runs the sequential algorithm over a given {@link DataSequence} starting from the current prior, and returns
+     * the resulting change in the natural parameters at time 0 and time T. The prior of this engine is updated
+     * in the process, so it should be reset through {@link #updateNaturalParameterPrior(CompoundVector, CompoundVector)}
+     * before processing another sequence from the same starting point.
+     * @param sequence a {@link DataSequence} object.
+     * @return a {@link BatchOutput} object.
+     */
+    public BatchOutput updateModelOnSequenceParallel(DataSequence sequence) {
+        CompoundVector priorTime0 = this.plateauStructure.getPlateauNaturalParameterPriorTime0();
+        CompoundVector priorTimeT = this.plateauStructure.getPlateauNaturalParameterPriorTimeT();
+
+        double logprob = sequence.streamOfBatches(this.windowsSize).sequential().mapToDouble(this::updateModel).sum();
+
+        CompoundVector deltaTime0 = this.plateauStructure.getPlateauNaturalParameterPriorTime0();
+        deltaTime0.substract(priorTime0);
+        CompoundVector deltaTimeT = this.plateauStructure.getPlateauNaturalParameterPriorTimeT();
+        deltaTimeT.substract(priorTimeT);
+
+        return new BatchOutput(deltaTime0, deltaTimeT, logprob);
+    }
+
+    /**
+     * Updates the prior distributions of the parameter variables at time 0 and time T.
+     * @param priorTime0 a {@link CompoundVector} object with the natural parameters at time 0.
+     * @param priorTimeT a {@link CompoundVector} object with the natural parameters at time T.
+     */
+    public void updateNaturalParameterPrior(CompoundVector priorTime0, CompoundVector priorTimeT) {
+        this.plateauStructure.updateNaturalParameterPriorTime0(priorTime0);
+        this.plateauStructure.updateNaturalParameterPriorTimeT(priorTimeT);
+    }
+
+    /**
+     * Creates the SVB engines used in parallel mode, all of them sharing the configuration of this SVB.
+     */
+    private void initParallelEngines() {
+        if (this.nCores==-1)
+            this.nCores = Runtime.getRuntime().availableProcessors();
+
+        CompoundVector priorTime0 = this.plateauStructure.getPlateauNaturalParameterPriorTime0();
+        CompoundVector priorTimeT = this.plateauStructure.getPlateauNaturalParameterPriorTimeT();
+
+        this.svbEngines = new SVB[this.nCores];
+        for (int i = 0; i < this.nCores; i++) {
+            SVB svb = new SVB();
+            svb.setWindowsSize(this.windowsSize);
+            svb.setSeed(this.seed);
+            svb.setMaxIter(this.plateauStructure.getVMPTimeT().getMaxIter());
+            svb.setThreshold(this.plateauStructure.getVMPTimeT().getThreshold());
+            svb.setDynamicDAG(this.dag);
+            svb.initLearning();
+            svb.updateNaturalParameterPrior(priorTime0, priorTimeT);
+            this.svbEngines[i] = svb;
         }
     }
 
@@ -178,7 +303,7 @@ public class SVB implements BayesianLearningAlgorithm {
         double logprob = 0;
         if (batch.getDataInstance(0).getTimeID()==0){
             logprob+=this.updateModelTime0(batch.getDataInstance(0));
-            data.remove(0);
+            data = data.subList(1, data.size());
             if (data.size()==0)
                 return logprob;
 
@@ -235,6 +360,7 @@ public class SVB implements BayesianLearningAlgorithm {
         this.plateauStructure.resetQs();
         this.ef_extendedBNTime0 = this.plateauStructure.getEFLearningBNTime0();
         this.ef_extendedBNTimeT = this.plateauStructure.getEFLearningBNTimeT();
+        this.svbEngines = null;
     }
 
     /**
@@ -253,4 +379,39 @@ public class SVB implements BayesianLearningAlgorithm {
         return new DynamicBayesianNetwork(this.dag, this.ef_extendedBNTime0.toConditionalDistribution(), this.ef_extendedBNTimeT.toConditionalDistribution());
     }
 
+    /**
+     * Defines the output of processing a sequence in parallel mode.
+     */
+    public static class BatchOutput {
+
+        CompoundVector vectorTime0;
+        CompoundVector vectorTimeT;
+        double elbo;
+
+        public BatchOutput(CompoundVector vectorTime0_, CompoundVector vectorTimeT_, double elbo_) {
+            this.vectorTime0 = vectorTime0_;
+            this.vectorTimeT = vectorTimeT_;
+            this.elbo = elbo_;
+        }
+
+        public CompoundVector getVectorTime0() {
+            return vectorTime0;
+        }
+
+        public CompoundVector getVectorTimeT() {
+            return vectorTimeT;
+        }
+
+        public double getElbo() {
+            return elbo;
+        }
+
+        public static BatchOutput sumNonStateless(BatchOutput batchOutput1, BatchOutput batchOutput2){
+            batchOutput2.vectorTime0.sum(batchOutput1.vectorTime0);
+            batchOutput2.vectorTimeT.sum(batchOutput1.vectorTimeT);
+            batchOutput2.elbo += batchOutput1.elbo;
+            return batchOutput2;
+        }
+    }
+
 }
@@ -58,6 +58,9 @@ public final class DynamicBayesianNetwork implements Serializable {
     /** Represents the Dynamic Directed Acyclic Graph ({@link DynamicDAG}) defining the Dynamic Bayesian network graphical structure. */
     private DynamicDAG dynamicDAG;
 
+    /** Represents the number of times the distributions have been set or initialized through this object. */
+    private transient long version;
+
     /**
      * Creates a new DynamicBayesianNetwork from a DynamicDAG object.
      * @param dynamicDAG1 a Dynamic directed acyclic graph.
@@ -149,6 +152,7 @@ public final class DynamicBayesianNetwork implements Serializable {
      */
     public void setConditionalDistributionTime0(Variable var, ConditionalDistribution dist){
         this.distributionsTime0.set(var.getVarID(),dist);
+        this.version++;
     }
 
     /**
@@ -158,6 +162,17 @@ public final class DynamicBayesianNetwork implements Serializable {
      */
     public void setConditionalDistributionTimeT(Variable var, ConditionalDistribution dist){
         this.distributionsTimeT.set(var.getVarID(),dist);
+        this.version++;
+    }
+
+    /**
+     * Returns the version of the distributions of this DynamicBayesianNetwork, which is increased each time a
+     * distribution is set or the distributions are randomly initialized. Changes made directly on a distribution
+     * object are not tracked, setting the distribution again marks them.
+     * @return a {@code long} value.
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -336,6 +351,7 @@ public final class DynamicBayesianNetwork implements Serializable {
     public void randomInitialization(Random random){
         this.distributionsTimeT.stream().forEach(w -> w.randomInitialization(random));
         this.distributionsTime0.stream().forEach(w -> w.randomInitialization(random));
+        this.version++;
     }
 
     /**
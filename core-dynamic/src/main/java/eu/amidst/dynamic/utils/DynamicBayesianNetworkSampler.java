@@ -20,18 +20,30 @@ package eu.amidst.dynamic.utils;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Sets;
 import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.filereaders.arffFileReader.ARFFDataWriter;
+import eu.amidst.core.distribution.ConditionalDistribution;
 import eu.amidst.core.io.DataStreamWriter;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.core.utils.LocalRandomGenerator;
 import eu.amidst.core.utils.Utils;
 import eu.amidst.dynamic.variables.DynamicAssignment;
+import eu.amidst.dynamic.variables.DynamicVariables;
 import eu.amidst.core.variables.stateSpaceTypes.RealStateSpace;
 import eu.amidst.core.datastream.Attributes;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.core.variables.Assignment;
 import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.StateSpaceTypeEnum;
 import eu.amidst.core.variables.Variable;
-
+import eu.amidst.core.variables.stateSpaceTypes.FiniteStateSpace;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -64,6 +76,15 @@ public class DynamicBayesianNetworkSampler {
     /** Represents a {@code Map} containing the noisy variables. */
     private Map<Variable, Double> marNoise = new HashMap();
 
+    /** Indicates if the sequences are sampled in parallel by the writing methods, initialized to {@code true}. */
+    private boolean parallelMode = true;
+
+    /** Represents the maximum number of values buffered in memory while sampling to a writer. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Represents the header of the binary data files written by {@link #sampleToBinaryFile(int, int, String)}. */
+    public static final int BINARY_FILE_MAGIC = 0x414D4453;
+
     /**
      * Creates a new DynamicBayesianNetworkSampler given an input {@link DynamicBayesianNetwork} object.
      * @param network1 an input {@link DynamicBayesianNetwork} object.
@@ -142,6 +163,160 @@ public class DynamicBayesianNetworkSampler {
         return new TemporalDataStream(this,nSequences,sequenceLength);
     }
 
+    /**
+     * Sets the parallel mode used by the writing methods of this sampler.
+     * @param parallelMode {@code true} if the sequences are sampled in parallel, {@code false} otherwise.
+     */
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * Samples a set of sequences and passes each sampled row to a given {@link RowWriter}, without creating any
+     * {@link DynamicDataInstance} object. Each sequence is sampled with its own random number generator, whose seed
+     * only depends on the seed of this sampler and the sequence ID, so the output is the same whatever the parallel
+     * mode or the number of available cores. The rows are passed to the writer ordered by sequence ID and time ID.
+     * @param nSequences an {@code int} that represents the number of sequences.
+     * @param sequenceLength an {@code int} that represents the length of each sequence.
+     * @param writer a {@link RowWriter} object.
+     * @throws IOException in case of an error while writing the rows.
+     */
+    public void sampleToRowWriter(int nSequences, int sequenceLength, RowWriter writer) throws IOException {
+        int nVars = network.getNumberOfDynamicVars();
+        int rowSize = Math.max(1, sequenceLength * nVars);
+        int nSequencesPerBlock = Math.max(1, BUFFER_SIZE / rowSize);
+
+        double[][] buffers = new double[Math.min(nSequencesPerBlock, nSequences)][rowSize];
+
+        for (int first = 0; first < nSequences; first += nSequencesPerBlock) {
+            final int firstSequence = first;
+            final int nBlock = Math.min(nSequencesPerBlock, nSequences - first);
+
+            IntStream block = IntStream.range(0, nBlock);
+            if (parallelMode)
+                block = block.parallel();
+            block.forEach(i -> sampleSequence(firstSequence + i, sequenceLength, buffers[i]));
+
+            double[] row = new double[nVars];
+            for (int i = 0; i < nBlock; i++) {
+                for (int t = 0; t < sequenceLength; t++) {
+                    System.arraycopy(buffers[i], t * nVars, row, 0, nVars);
+                    writer.write(firstSequence + i, t, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Samples a set of sequences and writes them directly to an ARFF file.
+     * @param nSequences an {@code int} that represents the number of sequences.
+     * @param sequenceLength an {@code int} that represents the length of each sequence.
+     * @param path the path of the ARFF file.
+     * @throws IOException in case of an error while writing to file.
+     */
+    public void sampleToARFFFile(int nSequences, int sequenceLength, String path) throws IOException {
+        Attributes atts = new TemporalDataStream(this, nSequences, sequenceLength).getAttributes();
+        List<Variable> variables = network.getDynamicVariables().getListOfDynamicVariables();
+
+        try (BufferedWriter fw = new BufferedWriter(new FileWriter(path))) {
+            fw.write("@relation dataset\n\n");
+            for (Attribute att : atts) {
+                fw.write(ARFFDataWriter.attributeToARFFString(att) + "\n");
+            }
+            fw.write("\n\n@data\n\n");
+
+            StringBuilder builder = new StringBuilder();
+            this.sampleToRowWriter(nSequences, sequenceLength, (sequenceID, timeID, values) -> {
+                builder.setLength(0);
+                builder.append(sequenceID).append(',').append(timeID);
+                for (Variable var : variables) {
+                    builder.append(',');
+                    double value = values[var.getVarID()];
+                    if (Utils.isMissingValue(value))
+                        builder.append('?');
+                    else if (var.getStateSpaceTypeEnum() == StateSpaceTypeEnum.FINITE_SET)
+                        builder.append(var.<FiniteStateSpace>getStateSpaceType().getStatesName((int) value));
+                    else
+                        builder.append(value);
+                }
+                builder.append('\n');
+                fw.append(builder);
+            });
+        }
+    }
+
+    /**
+     * Samples a set of sequences and writes them directly to a binary file. The file starts with the
+     * {@link #BINARY_FILE_MAGIC} integer followed by the number of dynamic variables, and then contains one record
+     * per row made of the sequence ID and the time ID as {@code long} values and the value of each dynamic variable,
+     * ordered by variable ID, as a {@code double} value (missing values are written as {@code Double.NaN}).
+     * @param nSequences an {@code int} that represents the number of sequences.
+     * @param sequenceLength an {@code int} that represents the length of each sequence.
+     * @param path the path of the binary file.
+     * @throws IOException in case of an error while writing to file.
+     */
+    public void sampleToBinaryFile(int nSequences, int sequenceLength, String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+            out.writeInt(BINARY_FILE_MAGIC);
+            out.writeInt(network.getNumberOfDynamicVars());
+            this.sampleToRowWriter(nSequences, sequenceLength, (sequenceID, timeID, values) -> {
+                out.writeLong(sequenceID);
+                out.writeLong(timeID);
+                for (int i = 0; i < values.length; i++) {
+                    out.writeDouble(values[i]);
+                }
+            });
+        }
+    }
+
+    /**
+     * Samples a sequence using two swapped arrays to store the past and present values, and stores the filtered
+     * values of each time step in a given buffer, one row of {@code nVars} values after the other.
+     * @param sequenceID an {@code int} that represents the sequence ID.
+     * @param sequenceLength an {@code int} that represents the length of the sequence.
+     * @param buffer a {@code double} array where the sampled values are stored.
+     */
+    private void sampleSequence(int sequenceID, int sequenceLength, double[] buffer) {
+        Random random = new Random(sequenceSeed(this.seed, sequenceID));
+        int nVars = network.getNumberOfDynamicVars();
+        SwappingAssignment assignment = new SwappingAssignment(network.getDynamicVariables());
+
+        for (int t = 0; t < sequenceLength; t++) {
+            List<Variable> causalOrder = (t == 0) ? causalOrderTime0 : causalOrderTimeT;
+            List<ConditionalDistribution> dists = (t == 0) ? network.getConditionalDistributionsTime0() : network.getConditionalDistributionsTimeT();
+            double[] present = assignment.present;
+
+            for (Variable var : causalOrder) {
+                present[var.getVarID()] = dists.get(var.getVarID()).getUnivariateDistribution(assignment).sample(random);
+            }
+
+            int offset = t * nVars;
+            System.arraycopy(present, 0, buffer, offset, nVars);
+            for (Variable var : hiddenVars.keySet()) {
+                buffer[offset + var.getVarID()] = Utils.missingValue();
+            }
+            for (Map.Entry<Variable, Double> e : marNoise.entrySet()) {
+                if (random.nextDouble() < e.getValue())
+                    buffer[offset + e.getKey().getVarID()] = Utils.missingValue();
+            }
+
+            assignment.swap();
+        }
+    }
+
+    /**
+     * Returns the seed of the random number generator of a given sequence.
+     * @param seed the seed of the sampler.
+     * @param sequenceID the sequence ID.
+     * @return a {@code long} value.
+     */
+    private static long sequenceSeed(long seed, long sequenceID) {
+        long z = seed * 0x9E3779B97F4A7C15L + (sequenceID + 1) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Returns a {@code Stream} of randomly sampled {@link DynamicDataInstance} for a given sequence sequenceID of length sequenceLength.
      * @param network a {@link DynamicBayesianNetwork} object.
@@ -203,6 +378,87 @@ public class DynamicBayesianNetworkSampler {
         return dataPast;
     }
 
+    /**
+     * This interface defines a consumer of the rows sampled by {@link #sampleToRowWriter(int, int, RowWriter)}.
+     */
+    @FunctionalInterface
+    public interface RowWriter {
+
+        /**
+         * Writes a sampled row. The array of values is reused between calls, so it should not be kept.
+         * @param sequenceID a {@code long} that represents the sequence ID.
+         * @param timeID a {@code long} that represents the time ID.
+         * @param values a {@code double} array with the value of each dynamic variable, indexed by variable ID.
+         * @throws IOException in case of an error while writing the row.
+         */
+        void write(long sequenceID, long timeID, double[] values) throws IOException;
+    }
+
+    /**
+     * This class implements the {@link Assignment} interface over two arrays holding the past and present values
+     * of the dynamic variables, which are swapped when moving to the next time step. Interface variables are
+     * numbered after the dynamic variables, so their values are found at {@code varID - nVars} in the past array.
+     */
+    static final class SwappingAssignment implements Assignment {
+
+        final DynamicVariables variables;
+        double[] past;
+        double[] present;
+
+        /** Represents the dynamic and interface variables, only built if they are requested. */
+        Set<Variable> variableSet;
+
+        SwappingAssignment(DynamicVariables variables) {
+            int nVars = variables.getNumberOfVars();
+            this.variables = variables;
+            this.past = new double[nVars];
+            this.present = new double[nVars];
+            Arrays.fill(this.past, Utils.missingValue());
+            Arrays.fill(this.present, Utils.missingValue());
+        }
+
+        /**
+         * Moves the present values to the past, the old past array is reused for the new present values.
+         */
+        void swap() {
+            double[] tmp = this.past;
+            this.past = this.present;
+            this.present = tmp;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public double getValue(Variable var) {
+            return var.isInterfaceVariable() ? past[var.getVarID() - past.length] : present[var.getVarID()];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setValue(Variable var, double value) {
+            if (var.isInterfaceVariable())
+                past[var.getVarID() - past.length] = value;
+            else
+                present[var.getVarID()] = value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Set<Variable> getVariables() {
+            if (this.variableSet == null) {
+                Set<Variable> set = new LinkedHashSet<>(this.variables.getListOfDynamicVariables());
+                set.addAll(this.variables.getListOfInterfaceVariables());
+                this.variableSet = Collections.unmodifiableSet(set);
+            }
+            return this.variableSet;
+        }
+    }
+
     /**
      * This class defines Temporal Data Stream and implements the {@link DataStream} interface.
      */
@@ -27,16 +27,69 @@ import eu.amidst.core.variables.Variables;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.dynamic.models.DynamicDAG;
 import eu.amidst.dynamic.variables.DynamicVariables;
+
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.IntStream;
 
 /**
  * This class converts a {@link DynamicBayesianNetwork} to a static {@link BayesianNetwork}.
+ *
+ * <p> The unrolling is done from a template compiled once per model: the parents of each replicated variable
+ * are resolved by index arithmetic, and each time 0 and time T distribution is serialized once and then
+ * instantiated for every time slice. Unrolled networks can also be requested through
+ * {@link #convertDBNtoBNCached(DynamicBayesianNetwork, int)}, which keeps a small LRU cache of the last
+ * unrolled networks keyed by model identity, number of time steps and version of the model distributions,
+ * see {@link DynamicBayesianNetwork#getVersion()}. </p>
  */
 public class DynamicToStaticBNConverter {
 
+    /** Represents the default maximum number of unrolled networks kept in the cache. */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    /** Represents the maximum number of unrolled networks kept in the cache. */
+    private static int cacheSize = DEFAULT_CACHE_SIZE;
+
+    /** Represents the cache of unrolled networks, in access order. */
+    private static final LinkedHashMap<CacheKey, CacheEntry> cache = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+            return this.size() > cacheSize;
+        }
+    };
+
+    /**
+     * Sets the maximum number of unrolled networks kept in the cache.
+     * @param size an {@code int} value, 0 disables the cache.
+     */
+    public static void setCacheSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("The cache size should be non-negative");
+        synchronized (cache) {
+            cacheSize = size;
+            Iterator<CacheKey> iterator = cache.keySet().iterator();
+            while (cache.size() > cacheSize) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the unrolled networks from the cache.
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
     /**
      * Converts a given {@link DynamicBayesianNetwork} to a static {@link BayesianNetwork}
      * @param dbn a {@link DynamicBayesianNetwork} object.
@@ -48,79 +101,246 @@ public class DynamicToStaticBNConverter {
         if (dbn==null)
             return null;
 
-        DynamicVariables dynamicVariables = dbn.getDynamicVariables();
-        Variables variables = new Variables();
-        DynamicDAG dynamicDAG = dbn.getDynamicDAG();
+        return new UnrollingTemplate(dbn).unroll(nTimeSteps);
+    }
 
-        /*
-         * 1st STEP: ADD REPLICATED VARIABLES.
-         * REPLICATIONS OF THE REST OF VARIABLES (EACH ONE REPEATED 'nTimeSteps' TIMES).
-         */
-        dynamicVariables.getListOfDynamicVariables().stream()
-                .forEach(dynVar ->
-                                IntStream.range(0, nTimeSteps).forEach(i -> {
-                                    VariableBuilder aux = dynVar.getVariableBuilder();
-                                    aux.setName(dynVar.getName() + "_t" + Integer.toString(i));
-                                    variables.newVariable(aux);
-                                })
-                );
-        DAG dag = new DAG(variables);
-
-        /*
-         * 2nd STEP: ADD ARCS BETWEEN VARIABLES, I.E. DEFINE THE STATIC DAG.
+    /**
+     * Converts a given {@link DynamicBayesianNetwork} to a static {@link BayesianNetwork}, reusing a previously
+     * unrolled network for the same model and number of time steps if the version of its distributions has not
+     * changed since, see {@link DynamicBayesianNetwork#getVersion()}. A cache hit takes constant time.
+     * The returned network may be shared with other callers, so it should be treated as read-only.
+     * @param dbn a {@link DynamicBayesianNetwork} object.
+     * @param nTimeSteps an {@code int} that represents the number of time steps.
+     * @return  a {@link BayesianNetwork} object.
+     */
+    public static BayesianNetwork convertDBNtoBNCached(DynamicBayesianNetwork dbn, int nTimeSteps) {
+
+        if (dbn==null)
+            return null;
+
+        CacheKey key = new CacheKey(dbn, nTimeSteps);
+        long version = dbn.getVersion();
+
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && entry.version == version)
+                return entry.bn;
+        }
+
+        BayesianNetwork bn = new UnrollingTemplate(dbn).unroll(nTimeSteps);
+
+        synchronized (cache) {
+            if (cacheSize > 0)
+                cache.put(key, new CacheEntry(version, bn));
+        }
+
+        return bn;
+    }
+
+    /**
+     * This class compiles a {@link DynamicBayesianNetwork} into the information needed to unroll it.
+     * Parents are encoded as the ID of the dynamic variable, or as {@code -(ID+1)} for interface variables.
+     */
+    private static final class UnrollingTemplate {
+
+        /** Represents the dynamic variables of the model. */
+        private final DynamicVariables dynamicVariables;
+
+        /** Represents the parents of each variable in the time 0 DAG. */
+        private final int[][] dagParentsTime0;
+
+        /** Represents the parents of each variable in the time T DAG. */
+        private final int[][] dagParentsTimeT;
+
+        /** Represents the conditioning variables of each time 0 distribution. */
+        private final int[][] condVarsTime0;
+
+        /** Represents the conditioning variables of each time T distribution. */
+        private final int[][] condVarsTimeT;
+
+        /** Represents the serialized time 0 distributions. */
+        private final byte[][] distributionsTime0;
+
+        /** Represents the serialized time T distributions. */
+        private final byte[][] distributionsTimeT;
+
+        /**
+         * Creates a new UnrollingTemplate for a given model.
+         * @param dbn a {@link DynamicBayesianNetwork} object.
          */
-        for (int i = 0; i < nTimeSteps; i++) {
-            for (int j = 0; j < dynamicVariables.getNumberOfVars(); j++) {
+        UnrollingTemplate(DynamicBayesianNetwork dbn) {
+            this.dynamicVariables = dbn.getDynamicVariables();
+            DynamicDAG dynamicDAG = dbn.getDynamicDAG();
+            int nVars = dynamicVariables.getNumberOfVars();
+
+            this.dagParentsTime0 = new int[nVars][];
+            this.dagParentsTimeT = new int[nVars][];
+            this.condVarsTime0 = new int[nVars][];
+            this.condVarsTimeT = new int[nVars][];
+            this.distributionsTime0 = new byte[nVars][];
+            this.distributionsTimeT = new byte[nVars][];
 
+            for (int j = 0; j < nVars; j++) {
                 Variable dynVar = dynamicVariables.getVariableById(j);
-                Variable staticVar = variables.getVariableByName(dynVar.getName() + "_t" + Integer.toString(i));
-
-                if (i==0) { // t=0
-                    dynamicDAG.getParentSetTime0(dynVar).getParents().stream().forEach(parentaux2 -> dag.getParentSet(staticVar).addParent(variables.getVariableByName(parentaux2.getName() + "_t0")));
-                } else {
-                    final int final_i=i;
-                    dynamicDAG.getParentSetTimeT(dynVar).getParents().stream().filter(parentVar -> parentVar.isInterfaceVariable()).forEach(parentVar -> dag.getParentSet(staticVar).addParent(variables.getVariableByName(parentVar.getName().replace("_Interface", "_t" + Integer.toString(final_i - 1)))));
-                    dynamicDAG.getParentSetTimeT(dynVar).getParents().stream().filter(parentVar -> !parentVar.isInterfaceVariable()).forEach(parentVar -> dag.getParentSet(staticVar).addParent(variables.getVariableByName(parentVar.getName() + "_t" + Integer.toString(final_i))));
-                }
+                ConditionalDistribution dist0 = dbn.getConditionalDistributionsTime0().get(j);
+                ConditionalDistribution distT = dbn.getConditionalDistributionsTimeT().get(j);
+
+                this.dagParentsTime0[j] = encode(dynamicDAG.getParentSetTime0(dynVar).getParents());
+                // Interface parents go first, as in the original unrolling order.
+                List<Variable> parentsT = new ArrayList<>();
+                dynamicDAG.getParentSetTimeT(dynVar).getParents().stream().filter(Variable::isInterfaceVariable).forEachOrdered(parentsT::add);
+                dynamicDAG.getParentSetTimeT(dynVar).getParents().stream().filter(var -> !var.isInterfaceVariable()).forEachOrdered(parentsT::add);
+                this.dagParentsTimeT[j] = encode(parentsT);
+
+                this.condVarsTime0[j] = encode(dist0.getConditioningVariables());
+                this.condVarsTimeT[j] = encode(distT.getConditioningVariables());
+                this.distributionsTime0[j] = Serialization.serializeObject(dist0);
+                this.distributionsTimeT[j] = Serialization.serializeObject(distT);
             }
         }
 
-        BayesianNetwork bn = new BayesianNetwork(dag);
+        /**
+         * Encodes a list of dynamic variables as an array of IDs.
+         * @param vars a list of {@link Variable} objects.
+         * @return an {@code array} of {@code int}.
+         */
+        private int[] encode(List<Variable> vars) {
+            int[] ids = new int[vars.size()];
+            for (int k = 0; k < ids.length; k++) {
+                Variable var = vars.get(k);
+                ids[k] = var.isInterfaceVariable() ? -(dynamicVariables.getVariableFromInterface(var).getVarID() + 1) : var.getVarID();
+            }
+            return ids;
+        }
 
-        /*
-         * 3rd STEP: ADD CONDITIONAL DISTRIBUTIONS, I.E. DEFINE THE STATIC BN.
+        /**
+         * Unrolls the model for a given number of time steps.
+         * The static variable for dynamic variable {@code j} at time {@code i} has ID {@code j*nTimeSteps + i}.
+         * @param nTimeSteps an {@code int} that represents the number of time steps.
+         * @return  a {@link BayesianNetwork} object.
          */
-        for (int i = 0; i < nTimeSteps; i++) {
-            for (int j = 0; j < dynamicVariables.getNumberOfVars(); j++) {
+        BayesianNetwork unroll(int nTimeSteps) {
 
-                List<Variable> parentList = new ArrayList<>();
-                ConditionalDistribution cdist;
-                Variable staticVar;
+            int nVars = dynamicVariables.getNumberOfVars();
+            Variables variables = new Variables();
 
-                if(i==0) {
-                    staticVar = variables.getVariableByName(dynamicVariables.getVariableById(j).getName() + "_t0");
+            /*
+             * 1st STEP: ADD REPLICATED VARIABLES.
+             * REPLICATIONS OF THE REST OF VARIABLES (EACH ONE REPEATED 'nTimeSteps' TIMES).
+             */
+            for (Variable dynVar : dynamicVariables.getListOfDynamicVariables()) {
+                for (int i = 0; i < nTimeSteps; i++) {
+                    VariableBuilder aux = dynVar.getVariableBuilder();
+                    aux.setName(dynVar.getName() + "_t" + Integer.toString(i));
+                    variables.newVariable(aux);
+                }
+            }
+            DAG dag = new DAG(variables);
 
-                    cdist = Serialization.deepCopy(dbn.getConditionalDistributionsTime0().get(j));
-                    cdist.getConditioningVariables().stream().forEachOrdered(cdvar -> parentList.add(variables.getVariableByName(cdvar.getName() + "_t0")));
+            /*
+             * 2nd STEP: ADD ARCS BETWEEN VARIABLES, I.E. DEFINE THE STATIC DAG.
+             */
+            for (int i = 0; i < nTimeSteps; i++) {
+                for (int j = 0; j < nVars; j++) {
+                    Variable staticVar = variables.getVariableById(j * nTimeSteps + i);
+                    for (Variable parent : resolve(variables, i == 0 ? dagParentsTime0[j] : dagParentsTimeT[j], i, nTimeSteps)) {
+                        dag.getParentSet(staticVar).addParent(parent);
+                    }
                 }
-                else {
+            }
 
-                    final int final_i = i;
-                    staticVar = variables.getVariableByName(dynamicVariables.getVariableById(j).getName() + "_t" + Integer.toString(final_i));
+            /*
+             * 3rd STEP: ADD CONDITIONAL DISTRIBUTIONS, I.E. DEFINE THE STATIC BN.
+             */
+            ConditionalDistribution[] dists = new ConditionalDistribution[nVars * nTimeSteps];
+            IntStream.range(0, dists.length).parallel().forEach(varID -> {
+                int j = varID / nTimeSteps;
+                int i = varID % nTimeSteps;
+                ConditionalDistribution cdist = Serialization.deserializeObject(i == 0 ? distributionsTime0[j] : distributionsTimeT[j]);
+                cdist.setConditioningVariables(resolve(variables, i == 0 ? condVarsTime0[j] : condVarsTimeT[j], i, nTimeSteps));
+                cdist.setVar(variables.getVariableById(varID));
+                dists[varID] = cdist;
+            });
 
-                    cdist = Serialization.deepCopy(dbn.getConditionalDistributionsTimeT().get(j));
-                    cdist.getConditioningVariables().stream().forEachOrdered(cdvar -> {
-                        parentList.add(((cdvar.isInterfaceVariable() || (cdvar.getName().contains("_t"))) ?
-                                variables.getVariableByName(cdvar.getName().replace("_Interface", "_t" + Integer.toString(final_i - 1))) :
-                                variables.getVariableByName(cdvar.getName() + "_t" + Integer.toString(final_i))));
-                    });
-                }
-                cdist.setConditioningVariables(parentList);
-                cdist.setVar(staticVar);
-                bn.setConditionalDistribution(staticVar, cdist);
+            for (Variable var : variables) {
+                dag.getParentSet(var).blockParents();
+            }
+
+            return new BayesianNetwork(dag, new ArrayList<>(Arrays.asList(dists)));
+        }
+
+        /**
+         * Maps a list of encoded dynamic parents to the static variables of a given time step.
+         * @param variables the static {@link Variables}.
+         * @param parents an {@code array} of encoded parents.
+         * @param time an {@code int} that represents the time step.
+         * @param nTimeSteps an {@code int} that represents the number of time steps.
+         * @return a list of {@link Variable} objects.
+         */
+        private static List<Variable> resolve(Variables variables, int[] parents, int time, int nTimeSteps) {
+            List<Variable> list = new ArrayList<>(parents.length);
+            for (int parent : parents) {
+                list.add(parent >= 0 ?
+                        variables.getVariableById(parent * nTimeSteps + time) :
+                        variables.getVariableById((-parent - 1) * nTimeSteps + time - 1));
             }
+            return list;
+        }
+    }
+
+    /**
+     * This class defines the key of the cache, i.e., a model identity and a number of time steps.
+     * The model is weakly referenced so that the cache does not prevent it from being garbage collected.
+     */
+    private static final class CacheKey {
+
+        /** Represents the model. */
+        private final WeakReference<DynamicBayesianNetwork> dbn;
+
+        /** Represents the identity hash code of the model. */
+        private final int dbnHash;
+
+        /** Represents the number of time steps. */
+        private final int nTimeSteps;
+
+        CacheKey(DynamicBayesianNetwork dbn, int nTimeSteps) {
+            this.dbn = new WeakReference<>(dbn);
+            this.dbnHash = System.identityHashCode(dbn);
+            this.nTimeSteps = nTimeSteps;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof CacheKey))
+                return false;
+            CacheKey other = (CacheKey) o;
+            DynamicBayesianNetwork model = this.dbn.get();
+            return model != null && model == other.dbn.get() && this.nTimeSteps == other.nTimeSteps;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * dbnHash + nTimeSteps;
+        }
+    }
+
+    /**
+     * This class defines an entry of the cache.
+     */
+    private static final class CacheEntry {
+
+        /** Represents the version of the model distributions the network was unrolled from. */
+        private final long version;
+
+        /** Represents the unrolled network. */
+        private final BayesianNetwork bn;
+
+        CacheEntry(long version, BayesianNetwork bn) {
+            this.version = version;
+            this.bn = bn;
         }
-        return bn;
     }
 
     public static void main(String[] args) {
@@ -17,18 +17,31 @@
 
 package eu.amidst.dynamic.datastream;
 
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.datastream.filereaders.arffFileReader.ARFFDataReader;
+import eu.amidst.core.io.DataStreamWriter;
 import eu.amidst.dynamic.exponentialfamily.EF_DynamicBayesianNetwork;
 import eu.amidst.core.exponentialfamily.SufficientStatistics;
+import eu.amidst.dynamic.datastream.filereaders.SequenceIndex;
 import eu.amidst.dynamic.io.DynamicDataStreamLoader;
+import eu.amidst.dynamic.learning.parametric.bayesian.SVB;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.dynamic.utils.DynamicBayesianNetworkGenerator;
 import eu.amidst.dynamic.utils.DynamicBayesianNetworkSampler;
 import junit.framework.TestCase;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Random;
+import java.util.stream.Collectors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class DataSequenceStreamTest extends TestCase {
@@ -233,4 +246,118 @@ public class DataSequenceStreamTest extends TestCase {
         DataSequenceStream.parallelStreamOfDataSequences(data).forEach(batch -> assertTrue(batch.stream().count() == sizesequences));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testIndexedSequences() throws IOException {
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(2);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(3);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetwork dynamicNB = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dynamicNB);
+        sampler.setSeed(0);
+
+        File file = File.createTempFile("sequences", ".arff");
+        file.deleteOnExit();
+        new File(file.getPath() + ".seqidx").deleteOnExit();
+        DataStreamWriter.writeDataToFile(sampler.sampleToDataBase(30, 25), file.getPath());
+
+        for (int k = 0; k < 2; k++) {
+            //The second iteration reads the index stored beside the data file
+            List<DataSequence> sequences = DataSequenceStream.parallelStreamOfDataSequences(file.getPath()).collect(Collectors.toList());
+            assertEquals(30, sequences.size());
+
+            DataStream<DynamicDataInstance> data = DynamicDataStreamLoader.open(file.getPath());
+            Iterator<DynamicDataInstance> it = data.iterator();
+            for (int i = 0; i < sequences.size(); i++) {
+                DataSequence sequence = sequences.get(i);
+                assertEquals(i, sequence.getSequenceID());
+                assertEquals(25, sequence.stream().count());
+                for (DynamicDataInstance instance : sequence) {
+                    DynamicDataInstance expected = it.next();
+                    assertEquals(expected.getSequenceID(), instance.getSequenceID());
+                    assertEquals(expected.getTimeID(), instance.getTimeID());
+                    for (Attribute att : data.getAttributes()) {
+                        assertEquals(expected.getValue(att, true), instance.getValue(att, true), 0.0);
+                        assertEquals(expected.getValue(att, false), instance.getValue(att, false), 0.0);
+                    }
+                }
+            }
+            assertFalse(it.hasNext());
+        }
+
+        assertTrue(new File(file.getPath() + ".seqidx").exists());
+    }
+
+    @Test
+    public void testIndexUpperCaseDataSection() throws IOException {
+
+        DynamicBayesianNetwork dynamicNB = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dynamicNB);
+        sampler.setSeed(0);
+
+        File file = File.createTempFile("sequences", ".arff");
+        file.deleteOnExit();
+        new File(file.getPath() + SequenceIndex.INDEX_FILE_EXTENSION).deleteOnExit();
+        DataStreamWriter.writeDataToFile(sampler.sampleToDataBase(10, 5), file.getPath());
+
+        //ARFF keywords are case insensitive, so an upper case @DATA line starts the data section as well.
+        File upperCase = File.createTempFile("sequencesUpperCase", ".arff");
+        upperCase.deleteOnExit();
+        new File(upperCase.getPath() + SequenceIndex.INDEX_FILE_EXTENSION).deleteOnExit();
+        List<String> lines = Files.readAllLines(file.toPath());
+        Files.write(upperCase.toPath(), lines.stream()
+                .map(line -> line.trim().equals("@data") ? line.toUpperCase(Locale.ENGLISH) : line)
+                .collect(Collectors.toList()));
+
+        ARFFDataReader reader = new ARFFDataReader();
+        reader.loadFromFile(file.getPath());
+
+        SequenceIndex expected = SequenceIndex.loadOrBuild(file.getPath(), reader.getAttributes());
+        SequenceIndex index = SequenceIndex.loadOrBuild(upperCase.getPath(), reader.getAttributes());
+
+        assertEquals(10, index.getNumberOfSequences());
+        for (int i = 0; i < index.getNumberOfSequences(); i++) {
+            assertEquals(expected.getSequenceID(i), index.getSequenceID(i));
+            assertEquals(expected.getLength(i), index.getLength(i));
+        }
+    }
+
+    @Test
+    public void testUpdateModelOnIndexedSequences() throws IOException {
+
+        DynamicBayesianNetwork dynamicNB = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dynamicNB);
+        sampler.setSeed(0);
+
+        File file = File.createTempFile("sequences", ".arff");
+        file.deleteOnExit();
+        new File(file.getPath() + SequenceIndex.INDEX_FILE_EXTENSION).deleteOnExit();
+        DataStreamWriter.writeDataToFile(sampler.sampleToDataBase(5, 20), file.getPath());
+
+        //Sequence views are read-only, so learning from them gives the same model as learning from copies of them.
+        SVB svbViews = new SVB();
+        svbViews.setSeed(0);
+        svbViews.setDynamicDAG(dynamicNB.getDynamicDAG());
+        svbViews.initLearning();
+
+        SVB svbCopies = new SVB();
+        svbCopies.setSeed(0);
+        svbCopies.setDynamicDAG(dynamicNB.getDynamicDAG());
+        svbCopies.initLearning();
+
+        List<DataSequence> sequences = DataSequenceStream.streamOfDataSequences(file.getPath()).collect(Collectors.toList());
+        for (DataSequence sequence : sequences) {
+            DataOnMemoryListContainer<DynamicDataInstance> copy = new DataOnMemoryListContainer<>(sequence.getAttributes());
+            sequence.stream().forEach(copy::add);
+
+            svbViews.updateModel((DataOnMemory<DynamicDataInstance>) sequence);
+            svbCopies.updateModel(copy);
+
+            assertEquals(20, sequence.stream().count());
+        }
+
+        assertTrue(svbViews.getLearntDBN().equalDBNs(svbCopies.getLearntDBN(), 1e-10));
+    }
+
+}
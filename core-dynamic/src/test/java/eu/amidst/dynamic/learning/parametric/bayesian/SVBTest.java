@@ -166,6 +166,46 @@ public class SVBTest extends TestCase {
 
     }
 
+    public static void testParallelMode(){
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(0);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(5);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+
+        DynamicBayesianNetwork dbn = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+
+        DynamicBayesianNetworkSampler sampler = new DynamicBayesianNetworkSampler(dbn);
+        sampler.setSeed(0);
+        DataStream<DynamicDataInstance> dataStream = sampler.sampleToDataBase(200,50);
+
+        SVB svb = new SVB();
+        svb.setWindowsSize(10);
+        svb.setSeed(5);
+        svb.setMaxIter(1000);
+        svb.setThreshold(0.0001);
+        svb.setParallelMode(true);
+        svb.setNCores(4);
+
+        svb.setDynamicDAG(dbn.getDynamicDAG());
+        svb.setDataStream(dataStream);
+        svb.runLearning();
+
+        DynamicBayesianNetwork learnDBN = svb.getLearntDBN();
+
+        for (ConditionalDistribution dist : learnDBN.getConditionalDistributionsTimeT()) {
+            System.out.println("Real one:");
+            System.out.println(dbn.getConditionalDistributionTimeT(dist.getVariable()).toString());
+            System.out.println("Learnt one:");
+            System.out.println(dist.toString());
+            assertTrue(dist.equalDist(dbn.getConditionalDistributionTimeT(dist.getVariable()), 0.05));
+        }
+
+        for (ConditionalDistribution dist : learnDBN.getConditionalDistributionsTime0()) {
+            assertTrue(dist.equalDist(dbn.getConditionalDistributionTime0(dist.getVariable()), 0.2));
+        }
+
+    }
+
     public static void test3(){
 
         DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(2);
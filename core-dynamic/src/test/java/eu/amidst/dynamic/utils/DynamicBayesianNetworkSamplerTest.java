@@ -20,10 +20,18 @@ package eu.amidst.dynamic.utils;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.io.DynamicDataStreamLoader;
 import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import eu.amidst.dynamic.variables.DynamicVariables;
 import junit.framework.TestCase;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 /**
  * Created by andresmasegosa on 25/11/15.
@@ -53,4 +61,68 @@ public class DynamicBayesianNetworkSamplerTest extends TestCase {
         assertEquals(6,dataPredict.streamOfBatches(50).count());
     }
 
-}
\ No newline at end of file
+    public static void testRowWriter() throws IOException {
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(2);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(2);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetwork extendedDBN = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0),2,true);
+        Variable classVar = extendedDBN.getDynamicVariables().getVariableByName("ClassVar");
+
+        DynamicBayesianNetworkSampler dynamicSampler = new DynamicBayesianNetworkSampler(extendedDBN);
+        dynamicSampler.setSeed(1);
+        dynamicSampler.setMARVar(classVar,0.2);
+
+        List<double[]> sequential = new ArrayList<>();
+        dynamicSampler.setParallelMode(false);
+        dynamicSampler.sampleToRowWriter(50, 20, (seq, time, values) -> sequential.add(values.clone()));
+
+        List<double[]> parallel = new ArrayList<>();
+        dynamicSampler.setParallelMode(true);
+        dynamicSampler.sampleToRowWriter(50, 20, (seq, time, values) -> parallel.add(values.clone()));
+
+        assertEquals(1000, sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            for (int j = 0; j < sequential.get(i).length; j++) {
+                assertEquals(sequential.get(i)[j], parallel.get(i)[j], 0.0);
+            }
+        }
+
+        File file = File.createTempFile("dbnSamples", ".arff");
+        file.deleteOnExit();
+        dynamicSampler.sampleToARFFFile(50, 20, file.getPath());
+
+        DataStream<DynamicDataInstance> data = DynamicDataStreamLoader.loadFromFile(file.getPath());
+        assertEquals(1000, data.stream().count());
+        assertEquals(20, data.stream().filter(d -> d.getSequenceID()==3).count());
+    }
+
+    public static void testSwappingAssignment() {
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(1);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(1);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetwork dbn = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0),2,true);
+        DynamicVariables variables = dbn.getDynamicVariables();
+
+        DynamicBayesianNetworkSampler.SwappingAssignment assignment = new DynamicBayesianNetworkSampler.SwappingAssignment(variables);
+        for (Variable var : variables) {
+            assignment.setValue(var, var.getVarID());
+        }
+        assignment.swap();
+        for (Variable var : variables) {
+            assignment.setValue(var, 10 + var.getVarID());
+        }
+
+        //The assignment covers the dynamic variables and their interface variables.
+        Set<Variable> covered = new HashSet<>(variables.getListOfDynamicVariables());
+        covered.addAll(variables.getListOfInterfaceVariables());
+        assertEquals(covered, assignment.getVariables());
+        for (Variable var : variables) {
+            assertEquals(10.0 + var.getVarID(), assignment.getValue(var));
+            assertEquals((double) var.getVarID(), assignment.getValue(var.getInterfaceVariable()));
+        }
+        assertTrue(assignment.outputString().contains(variables.getVariableById(0).getInterfaceVariable().getName()));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.dynamic.utils;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the unrolling of dynamic Bayesian networks and the cache of unrolled networks.
+ */
+public class DynamicToStaticBNConverterTest extends TestCase {
+
+    public static void testUnrolling() {
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(2);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(3);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetwork dbn = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(0), 2, true);
+
+        int nTimeSteps = 4;
+        BayesianNetwork bn = DynamicToStaticBNConverter.convertDBNtoBN(dbn, nTimeSteps);
+
+        assertEquals(dbn.getNumberOfDynamicVars() * nTimeSteps, bn.getNumberOfVars());
+
+        for (Variable dynVar : dbn.getDynamicVariables()) {
+            for (int i = 0; i < nTimeSteps; i++) {
+                Variable staticVar = bn.getVariables().getVariableByName(dynVar.getName() + "_t" + i);
+                ConditionalDistribution dist = bn.getConditionalDistribution(staticVar);
+                ConditionalDistribution dynDist = (i == 0) ? dbn.getConditionalDistributionTime0(dynVar) : dbn.getConditionalDistributionTimeT(dynVar);
+
+                assertSame(staticVar, dist.getVariable());
+
+                final int time = i;
+                List<String> expectedParents = dynDist.getConditioningVariables().stream()
+                        .map(var -> var.isInterfaceVariable() ?
+                                var.getName().replace("_Interface", "_t" + (time - 1)) :
+                                var.getName() + "_t" + time)
+                        .collect(Collectors.toList());
+                List<String> parents = dist.getConditioningVariables().stream().map(Variable::getName).collect(Collectors.toList());
+                assertEquals(expectedParents, parents);
+                assertEquals(expectedParents.size(), bn.getDAG().getParentSet(staticVar).getNumberOfParents());
+
+                double[] expectedParameters = dynDist.getParameters();
+                double[] parameters = dist.getParameters();
+                assertEquals(expectedParameters.length, parameters.length);
+                for (int k = 0; k < parameters.length; k++) {
+                    assertEquals(expectedParameters[k], parameters[k], 0.0);
+                }
+            }
+        }
+    }
+
+    public static void testCache() {
+
+        DynamicBayesianNetworkGenerator.setNumberOfContinuousVars(1);
+        DynamicBayesianNetworkGenerator.setNumberOfDiscreteVars(2);
+        DynamicBayesianNetworkGenerator.setNumberOfStates(2);
+        DynamicBayesianNetwork dbn = DynamicBayesianNetworkGenerator.generateDynamicNaiveBayes(new Random(1), 2, true);
+
+        BayesianNetwork bn1 = DynamicToStaticBNConverter.convertDBNtoBNCached(dbn, 3);
+        assertSame(bn1, DynamicToStaticBNConverter.convertDBNtoBNCached(dbn, 3));
+        assertNotSame(bn1, DynamicToStaticBNConverter.convertDBNtoBNCached(dbn, 5));
+
+        //A change in the parameters of the model must not return the stale network.
+        dbn.randomInitialization(new Random(2));
+        BayesianNetwork bn2 = DynamicToStaticBNConverter.convertDBNtoBNCached(dbn, 3);
+        assertNotSame(bn1, bn2);
+        assertSame(bn2, DynamicToStaticBNConverter.convertDBNtoBNCached(dbn, 3));
+
+        //A distribution changed in place is marked as changed by setting it again.
+        Variable var = dbn.getDynamicVariables().getVariableById(0);
+        ConditionalDistribution dist = dbn.getConditionalDistributionTimeT(var);
+        dist.randomInitialization(new Random(3));
+        dbn.setConditionalDistributionTimeT(var, dist);
+        BayesianNetwork bn3 = DynamicToStaticBNConverter.convertDBNtoBNCached(dbn, 3);
+        assertNotSame(bn2, bn3);
+        assertTrue(Arrays.equals(dist.getParameters(), bn3.getConditionalDistribution(bn3.getVariables().getVariableByName(var.getName() + "_t1")).getParameters()));
+
+        DynamicToStaticBNConverter.clearCache();
+        assertNotSame(bn2, DynamicToStaticBNConverter.convertDBNtoBNCached(dbn, 3));
+    }
+}
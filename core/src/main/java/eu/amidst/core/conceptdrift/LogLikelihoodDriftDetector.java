@@ -0,0 +1,394 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.conceptdrift;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.exponentialfamily.EF_BayesianNetwork;
+import eu.amidst.core.exponentialfamily.SufficientStatistics;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+
+/**
+ * This class implements the {@link FadingLearner} interface, and defines a lightweight concept drift detector for
+ * data streams, which can be used for triggering more expensive updates of a model (e.g., with
+ * {@link NaiveBayesVirtualConceptDriftDetector} or {@link SVBFading}) only when a drift is detected.
+ *
+ * <p> The detector keeps the exponentially faded sufficient statistics of a Bayesian network (with the layout of
+ * {@link EF_BayesianNetwork}) and, for each window of data, computes the average predictive log-likelihood of its
+ * data instances under the model learnt from the previous windows. A drift is signalled when this series decreases,
+ * according to the Page-Hinkley test or to the ADWIN test. In both cases, the memory used does not depend on the
+ * length of the stream. </p>
+ *
+ * <p> Only fully observed data instances are scored and added to the sufficient statistics, data instances with
+ * missing values are skipped. The sufficient statistics are accumulated in place, and the network used for scoring
+ * is only built once after each update, when the next window is scored or the model is requested. </p>
+ *
+ * <p> For instance, </p>
+ * <pre>{@code
+ * LogLikelihoodDriftDetector detector = new LogLikelihoodDriftDetector();
+ * detector.setDAG(dag);
+ * detector.setFadingFactor(0.9);
+ * detector.initLearning();
+ * for (DataOnMemory<DataInstance> batch : data.iterableOverBatches(1000)) {
+ *     detector.updateModel(batch);
+ *     if (detector.isDriftDetected())
+ *         //Update the model.
+ * }
+ * }</pre>
+ */
+public class LogLikelihoodDriftDetector implements FadingLearner {
+
+    /** Represents the available drift tests. */
+    public enum DriftTest {
+        /** Page-Hinkley test for a decrease of the mean. */
+        PAGE_HINKLEY,
+        /** ADaptive WINdowing test over the last windows. */
+        ADWIN
+    }
+
+    /** Represents the DAG of the model. */
+    protected DAG dag;
+
+    /** Represents the fading factor of the sufficient statistics. */
+    protected double fadingFactor = 1.0;
+
+    /** Represents the drift test. */
+    protected DriftTest driftTest = DriftTest.PAGE_HINKLEY;
+
+    /** Represents the magnitude of the changes allowed by the Page-Hinkley test. */
+    protected double pageHinkleyDelta = 0.05;
+
+    /** Represents the detection threshold of the Page-Hinkley test. */
+    protected double pageHinkleyThreshold = 1;
+
+    /** Represents the confidence value of the ADWIN test. */
+    protected double adwinConfidence = 0.002;
+
+    /** Represents the maximum number of windows kept by the ADWIN test. */
+    protected int maximumWindowLength = 100;
+
+    /** Indicates whether the sufficient statistics are discarded when a drift is detected. */
+    protected boolean resetOnDrift = true;
+
+    /** Represents the model in exponential family form. */
+    private EF_BayesianNetwork efBayesianNetwork;
+
+    /** Represents the prior sufficient statistics, which are not faded. */
+    private SufficientStatistics initSS;
+
+    /** Represents the faded sufficient statistics. */
+    private SufficientStatistics sumSS;
+
+    /** Represents the faded number of data instances. */
+    private double dataInstanceCount;
+
+    /** Represents the current model, or null if it has to be built again from the sufficient statistics. */
+    private BayesianNetwork learntBayesianNetwork;
+
+    /** Represents the conditional distributions of the current model, indexed by variable ID. */
+    private ConditionalDistribution[] distributions;
+
+    /** Represents the variables of the current model, indexed by ID. */
+    private Variable[] variables;
+
+    /** Represents the number of processed windows since the last drift. */
+    private int numberOfWindows;
+
+    /** Represents the number of detected drifts. */
+    private int numberOfDrifts;
+
+    /** Indicates whether a drift was detected in the last window. */
+    private boolean driftDetected;
+
+    /** Represents the average log-likelihood of the last window. */
+    private double lastLogLikelihood = Double.NaN;
+
+    /** Represents the number of values of the Page-Hinkley test, their mean, cumulative sum and minimum sum. */
+    private double phCount, phMean, phSum, phMinSum;
+
+    /** Represents the circular buffer of the values of the ADWIN test. */
+    private double[] adwinValues;
+
+    /** Represents the position of the oldest value and the number of values in the ADWIN buffer. */
+    private int adwinStart, adwinLength;
+
+    /**
+     * Sets the DAG of the model.
+     * @param dag a {@link DAG} object.
+     */
+    public void setDAG(DAG dag) {
+        this.dag = dag;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFadingFactor(double fadingFactor) {
+        this.fadingFactor = fadingFactor;
+    }
+
+    /**
+     * Sets the drift test.
+     * @param driftTest a {@link DriftTest} value.
+     */
+    public void setDriftTest(DriftTest driftTest) {
+        this.driftTest = driftTest;
+    }
+
+    /**
+     * Sets the parameters of the Page-Hinkley test, in units of average log-likelihood per data instance.
+     * @param delta the magnitude of the decreases which are not considered a drift.
+     * @param threshold the detection threshold.
+     */
+    public void setPageHinkleyParameters(double delta, double threshold) {
+        this.pageHinkleyDelta = delta;
+        this.pageHinkleyThreshold = threshold;
+    }
+
+    /**
+     * Sets the confidence value of the ADWIN test.
+     * @param adwinConfidence a value in (0,1), the smaller the fewer false alarms.
+     */
+    public void setAdwinConfidence(double adwinConfidence) {
+        this.adwinConfidence = adwinConfidence;
+    }
+
+    /**
+     * Sets the maximum number of windows kept by the ADWIN test.
+     * @param maximumWindowLength a positive {@code int} value.
+     */
+    public void setMaximumWindowLength(int maximumWindowLength) {
+        this.maximumWindowLength = maximumWindowLength;
+    }
+
+    /**
+     * Sets whether the sufficient statistics are discarded when a drift is detected, so that the model is learnt
+     * again from the following windows.
+     * @param resetOnDrift {@code true} if the statistics are discarded, {@code false} otherwise.
+     */
+    public void setResetOnDrift(boolean resetOnDrift) {
+        this.resetOnDrift = resetOnDrift;
+    }
+
+    /**
+     * Initializes the detector.
+     */
+    public void initLearning() {
+        this.efBayesianNetwork = new EF_BayesianNetwork(this.dag);
+        this.initSS = this.efBayesianNetwork.createInitSufficientStatistics();
+        this.variables = this.dag.getVariables().getListOfVariables().toArray(new Variable[0]);
+        this.distributions = new ConditionalDistribution[this.variables.length];
+        this.numberOfDrifts = 0;
+        this.adwinValues = new double[this.maximumWindowLength];
+        this.reset();
+    }
+
+    /**
+     * Discards the sufficient statistics and the values of the drift test.
+     */
+    private void reset() {
+        this.sumSS = this.efBayesianNetwork.createZeroSufficientStatistics();
+        this.dataInstanceCount = 0;
+        this.numberOfWindows = 0;
+        this.phCount = 0;
+        this.phMean = 0;
+        this.phSum = 0;
+        this.phMinSum = 0;
+        this.adwinStart = 0;
+        this.adwinLength = 0;
+        this.learntBayesianNetwork = null;
+    }
+
+    /**
+     * Updates the detector with a new window of data. The log-likelihood of the window is computed before updating
+     * the model with it.
+     * @param batch a {@link DataOnMemory} object.
+     * @return the average log-likelihood of the complete data instances of the window, or NaN if there is none.
+     */
+    public double updateModel(DataOnMemory<DataInstance> batch) {
+        this.updateDistributions();
+
+        double logLikelihood = 0;
+        int count = 0;
+        for (DataInstance instance : batch) {
+            if (!this.isComplete(instance))
+                continue;
+            logLikelihood += this.logProbability(instance);
+            count++;
+        }
+
+        this.driftDetected = false;
+        this.lastLogLikelihood = count > 0 ? logLikelihood / count : Double.NaN;
+        if (count == 0)
+            return this.lastLogLikelihood;
+
+        //The first window after a reset is predicted by the prior, so it is not tested.
+        if (this.numberOfWindows > 0)
+            this.driftDetected = this.driftTest == DriftTest.PAGE_HINKLEY ?
+                    this.pageHinkley(this.lastLogLikelihood) : this.adwin(this.lastLogLikelihood);
+
+        if (this.driftDetected) {
+            this.numberOfDrifts++;
+            if (this.resetOnDrift)
+                this.reset();
+        }
+
+        this.sumSS.multiplyBy(this.fadingFactor);
+        for (DataInstance instance : batch) {
+            if (this.isComplete(instance))
+                this.efBayesianNetwork.updateSufficientStatistics(instance, this.sumSS);
+        }
+        this.dataInstanceCount = this.dataInstanceCount * this.fadingFactor + count;
+        this.numberOfWindows++;
+        this.learntBayesianNetwork = null;
+
+        return this.lastLogLikelihood;
+    }
+
+    /**
+     * Returns whether a drift was detected in the last window.
+     * @return {@code true} if a drift was detected, {@code false} otherwise.
+     */
+    public boolean isDriftDetected() {
+        return driftDetected;
+    }
+
+    /**
+     * Returns the number of drifts detected so far.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfDrifts() {
+        return numberOfDrifts;
+    }
+
+    /**
+     * Returns the average log-likelihood of the last window.
+     * @return a {@code double} value.
+     */
+    public double getLastLogLikelihood() {
+        return lastLogLikelihood;
+    }
+
+    /**
+     * Returns the current model, learnt from the faded sufficient statistics. It is the network used to score the
+     * next window, so it should be treated as read-only.
+     * @return a {@link BayesianNetwork} object.
+     */
+    public BayesianNetwork getLearntBayesianNetwork() {
+        this.updateDistributions();
+        return this.learntBayesianNetwork;
+    }
+
+    /**
+     * Builds the current model from the prior and the faded sufficient statistics, if they changed since it was
+     * last built.
+     */
+    private void updateDistributions() {
+        if (this.learntBayesianNetwork != null)
+            return;
+
+        SufficientStatistics normalizedSS = this.efBayesianNetwork.createZeroSufficientStatistics();
+        normalizedSS.copy(this.initSS);
+        normalizedSS.sum(this.sumSS);
+        normalizedSS.divideBy(1.0 + this.dataInstanceCount);
+        this.efBayesianNetwork.setMomentParameters(normalizedSS);
+
+        this.learntBayesianNetwork = this.efBayesianNetwork.toBayesianNetwork(this.dag);
+        for (Variable var : this.variables) {
+            this.distributions[var.getVarID()] = this.learntBayesianNetwork.getConditionalDistribution(var);
+        }
+    }
+
+    /**
+     * Returns whether a data instance has no missing values.
+     */
+    private boolean isComplete(DataInstance instance) {
+        for (Variable var : this.variables) {
+            if (Utils.isMissingValue(instance.getValue(var)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the log-probability of a complete data instance under the current model.
+     */
+    private double logProbability(DataInstance instance) {
+        double logProbability = 0;
+        for (ConditionalDistribution distribution : this.distributions) {
+            logProbability += distribution.getLogConditionalProbability(instance);
+        }
+        return logProbability;
+    }
+
+    /**
+     * Updates the Page-Hinkley test for a decrease of the mean, and returns whether it detects a drift.
+     */
+    private boolean pageHinkley(double value) {
+        this.phCount++;
+        this.phMean += (value - this.phMean) / this.phCount;
+        this.phSum += this.phMean - value - this.pageHinkleyDelta;
+        this.phMinSum = Math.min(this.phMinSum, this.phSum);
+        return this.phSum - this.phMinSum > this.pageHinkleyThreshold;
+    }
+
+    /**
+     * Updates the ADWIN test, and returns whether it detects a drift, i.e., whether the means of some older and
+     * newer parts of the kept windows differ significantly. The older part is then dropped.
+     */
+    private boolean adwin(double value) {
+        if (this.adwinLength == this.adwinValues.length) {
+            this.adwinStart = (this.adwinStart + 1) % this.adwinValues.length;
+            this.adwinLength--;
+        }
+        this.adwinValues[(this.adwinStart + this.adwinLength) % this.adwinValues.length] = value;
+        this.adwinLength++;
+
+        int n = this.adwinLength;
+        double total = 0, totalSquares = 0;
+        for (int i = 0; i < n; i++) {
+            double x = this.adwinValues[(this.adwinStart + i) % this.adwinValues.length];
+            total += x;
+            totalSquares += x * x;
+        }
+        double variance = Math.max(totalSquares / n - (total / n) * (total / n), 0);
+        double logTerm = Math.log(2 * Math.log(n + 1) / this.adwinConfidence);
+
+        boolean drift = false;
+        double sumOld = 0;
+        for (int n0 = 1; n0 < n; n0++) {
+            sumOld += this.adwinValues[(this.adwinStart + n0 - 1) % this.adwinValues.length];
+            int n1 = n - n0;
+            double m = 1.0 / (1.0 / n0 + 1.0 / n1);
+            //The log-likelihoods are not bounded, so only the variance term of the cut threshold is used.
+            double epsilon = Math.sqrt(2 * variance * logTerm / m);
+            if (Math.abs(sumOld / n0 - (total - sumOld) / n1) > epsilon) {
+                drift = true;
+                this.adwinStart = (this.adwinStart + n0) % this.adwinValues.length;
+                this.adwinLength = n1;
+                break;
+            }
+        }
+        return drift;
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.datastream;
+
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.StateSpaceTypeEnum;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * This class indexes the finite-state attributes of a {@link DataOnMemory} object for answering contingency-table
+ * (count) queries over any subset of them, without traversing the data instances again.
+ *
+ * <p> The values of each attribute are stored in a primitive column and, if they fit in the memory limit, also as
+ * one bitmap per state. Small tables are counted by intersecting the bitmaps depth-first (skipping the empty
+ * configurations), and larger ones by scanning the columns. The last tables are kept in a cache with a limited
+ * number of cells. Data instances with missing values in the queried attributes are not counted. </p>
+ *
+ * <p> For instance, </p>
+ * <pre>{@code
+ * ContingencyTableIndex index = new ContingencyTableIndex(data);
+ * //counts[x + nStatesX * y] is the number of data instances with X=x and Y=y.
+ * double[] counts = index.getCounts(Arrays.asList(attX, attY));
+ * double mi = index.getMutualInformation(attX, attY);
+ * }</pre>
+ */
+public class ContingencyTableIndex implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 6323850912346530163L;
+
+    /** Represents the default memory limit, in bytes, of the bitmaps. */
+    public static final long DEFAULT_BITMAP_MEMORY = 256L << 20;
+
+    /** Represents the default maximum number of cells in the cache of tables. */
+    public static final int DEFAULT_CACHE_CELLS = 1 << 20;
+
+    /** Represents the number of data instances. */
+    private final int nInstances;
+
+    /** Represents the position of each attribute (by index) in the columns, or -1 if it is not indexed. */
+    private final int[] positions;
+
+    /** Represents the number of states of each indexed attribute. */
+    private final int[] nStates;
+
+    /** Represents the values of each indexed attribute, with -1 for missing values. */
+    private final short[][] columns;
+
+    /** Represents the bitmaps of the data instances of each state of each indexed attribute, or null. */
+    private final long[][][] bitmaps;
+
+    /** Represents the maximum number of cells in the cache of tables. */
+    private int maxCachedCells = DEFAULT_CACHE_CELLS;
+
+    /** Represents the cache of tables. */
+    private transient Map<List<Integer>, double[]> cache;
+
+    /** Represents the number of cells in the cache. */
+    private transient long cachedCells;
+
+    /** Indicates the parallel processing mode, initialized here as {@code true}. */
+    private boolean parallelMode = true;
+
+    /**
+     * Creates an index over all the finite-state attributes of a given data set.
+     * @param data a {@link DataOnMemory} object.
+     */
+    public ContingencyTableIndex(DataOnMemory<DataInstance> data) {
+        this(data, finiteStateAttributes(data.getAttributes()), DEFAULT_BITMAP_MEMORY);
+    }
+
+    /**
+     * Creates an index over some finite-state attributes of a given data set.
+     * @param data a {@link DataOnMemory} object.
+     * @param attributes the list of (finite-state) attributes to be indexed.
+     * @param maxBitmapMemory the memory limit, in bytes, of the bitmaps. If they need more, only the columns are kept.
+     */
+    public ContingencyTableIndex(DataOnMemory<DataInstance> data, List<Attribute> attributes, long maxBitmapMemory) {
+        this.nInstances = data.getNumberOfDataInstances();
+
+        int maxIndex = data.getAttributes().getFullListOfAttributes().stream().mapToInt(Attribute::getIndex).max().orElse(-1);
+        this.positions = new int[maxIndex + 1];
+        Arrays.fill(this.positions, -1);
+        this.nStates = new int[attributes.size()];
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            if (attribute.getStateSpaceType().getStateSpaceTypeEnum() != StateSpaceTypeEnum.FINITE_SET
+                    || attribute.getNumberOfStates() > Short.MAX_VALUE)
+                throw new IllegalArgumentException("Only finite-state attributes can be indexed: " + attribute.getName());
+            this.positions[attribute.getIndex()] = i;
+            this.nStates[i] = attribute.getNumberOfStates();
+        }
+
+        List<DataInstance> instances = data.getList();
+        this.columns = new short[attributes.size()][];
+        IntStream.range(0, attributes.size()).parallel().forEach(i -> {
+            Attribute attribute = attributes.get(i);
+            short[] column = new short[this.nInstances];
+            for (int n = 0; n < this.nInstances; n++) {
+                double value = instances.get(n).getValue(attribute);
+                column[n] = Utils.isMissingValue(value) ? -1 : (short) value;
+            }
+            this.columns[i] = column;
+        });
+
+        int nWords = (this.nInstances + 63) >>> 6;
+        long bitmapMemory = 8L * nWords * Arrays.stream(this.nStates).asLongStream().sum();
+        if (bitmapMemory <= maxBitmapMemory) {
+            this.bitmaps = new long[attributes.size()][][];
+            IntStream.range(0, attributes.size()).parallel().forEach(i -> {
+                long[][] attributeBitmaps = new long[this.nStates[i]][nWords];
+                short[] column = this.columns[i];
+                for (int n = 0; n < this.nInstances; n++) {
+                    if (column[n] >= 0)
+                        attributeBitmaps[column[n]][n >>> 6] |= 1L << n;
+                }
+                this.bitmaps[i] = attributeBitmaps;
+            });
+        } else {
+            this.bitmaps = null;
+        }
+    }
+
+    /**
+     * Returns the finite-state attributes of a given set of attributes.
+     * @param attributes an {@link Attributes} object.
+     * @return a list of {@link Attribute} objects.
+     */
+    public static List<Attribute> finiteStateAttributes(Attributes attributes) {
+        List<Attribute> list = new ArrayList<>();
+        for (Attribute attribute : attributes.getFullListOfAttributes()) {
+            if (attribute.getStateSpaceType().getStateSpaceTypeEnum() == StateSpaceTypeEnum.FINITE_SET
+                    && attribute.getNumberOfStates() <= Short.MAX_VALUE)
+                list.add(attribute);
+        }
+        return list;
+    }
+
+    /**
+     * Sets the maximum number of cells in the cache of tables.
+     * @param maxCachedCells a non-negative {@code int} value, 0 for disabling the cache.
+     */
+    public void setMaxCachedCells(int maxCachedCells) {
+        this.maxCachedCells = maxCachedCells;
+        synchronized (this) {
+            this.cache = null;
+            this.cachedCells = 0;
+        }
+    }
+
+    /**
+     * Sets the parallel processing mode of the column scans.
+     * @param parallelMode {@code true} if the scans are performed in parallel, {@code false} otherwise.
+     */
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * Returns the number of data instances.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfDataInstances() {
+        return nInstances;
+    }
+
+    /**
+     * Returns whether a given attribute is indexed.
+     * @param attribute an {@link Attribute} object.
+     * @return {@code true} if the attribute is indexed, {@code false} otherwise.
+     */
+    public boolean isIndexed(Attribute attribute) {
+        return attribute.getIndex() < this.positions.length && this.positions[attribute.getIndex()] >= 0;
+    }
+
+    /**
+     * Returns whether the index keeps the bitmaps of the states, i.e., whether they fit in the memory limit.
+     * @return {@code true} if the bitmaps are kept, {@code false} otherwise.
+     */
+    public boolean hasBitmaps() {
+        return bitmaps != null;
+    }
+
+    /**
+     * Returns the contingency table of a list of indexed attributes. The count of the states (s_0,...,s_k) is at
+     * position s_0 + n_0*(s_1 + n_1*(...)), i.e., the first attribute varies fastest.
+     * @param attributes a list of indexed {@link Attribute} objects.
+     * @return an array with the counts.
+     */
+    public double[] getCounts(List<Attribute> attributes) {
+        int[] atts = new int[attributes.size()];
+        int size = 1;
+        for (int i = 0; i < atts.length; i++) {
+            if (!this.isIndexed(attributes.get(i)))
+                throw new IllegalArgumentException("Non indexed attribute: " + attributes.get(i).getName());
+            atts[i] = this.positions[attributes.get(i).getIndex()];
+            size = Math.multiplyExact(size, this.nStates[atts[i]]);
+        }
+
+        List<Integer> key = new ArrayList<>(atts.length);
+        for (int att : atts) {
+            key.add(att);
+        }
+        synchronized (this) {
+            double[] cached = this.cache == null ? null : this.cache.get(key);
+            if (cached != null)
+                return cached.clone();
+        }
+
+        double[] counts;
+        if (atts.length == 0) {
+            counts = new double[]{this.nInstances};
+        } else if (this.bitmaps != null && size <= 32 * atts.length) {
+            counts = this.countBitmaps(atts, size);
+        } else {
+            counts = this.countColumns(atts, size);
+        }
+
+        this.addToCache(key, counts);
+        return counts.clone();
+    }
+
+    /**
+     * Returns the mutual information (in nats) between two indexed attributes, estimated from the data instances
+     * without missing values in both of them.
+     * @param a an indexed {@link Attribute} object.
+     * @param b an indexed {@link Attribute} object.
+     * @return a {@code double} value.
+     */
+    public double getMutualInformation(Attribute a, Attribute b) {
+        double[] counts = this.getCounts(Arrays.asList(a, b));
+        return conditionalMutualInformation(counts, a.getNumberOfStates(), b.getNumberOfStates(), 1);
+    }
+
+    /**
+     * Returns the mutual information (in nats) between two indexed attributes given a third one, estimated from the
+     * data instances without missing values in any of them.
+     * @param a an indexed {@link Attribute} object.
+     * @param b an indexed {@link Attribute} object.
+     * @param c the conditioning indexed {@link Attribute} object.
+     * @return a {@code double} value.
+     */
+    public double getConditionalMutualInformation(Attribute a, Attribute b, Attribute c) {
+        double[] counts = this.getCounts(Arrays.asList(a, b, c));
+        return conditionalMutualInformation(counts, a.getNumberOfStates(), b.getNumberOfStates(), c.getNumberOfStates());
+    }
+
+    /**
+     * Returns the mutual information (in nats) between two multinomial variables A and B given a third one C, from
+     * a contingency table where A varies fastest and C slowest.
+     * @param counts an array with the counts.
+     * @param nA the number of states of A.
+     * @param nB the number of states of B.
+     * @param nC the number of states of C, or 1 for the unconditional mutual information.
+     * @return a {@code double} value.
+     */
+    public static double conditionalMutualInformation(double[] counts, int nA, int nB, int nC) {
+        double total = 0;
+        for (double count : counts) {
+            total += count;
+        }
+        if (total == 0)
+            return 0;
+
+        double mi = 0;
+        double[] countsA = new double[nA];
+        double[] countsB = new double[nB];
+        for (int c = 0; c < nC; c++) {
+            Arrays.fill(countsA, 0);
+            Arrays.fill(countsB, 0);
+            double countC = 0;
+            for (int b = 0; b < nB; b++) {
+                for (int a = 0; a < nA; a++) {
+                    double count = counts[a + nA * (b + nB * c)];
+                    countsA[a] += count;
+                    countsB[b] += count;
+                    countC += count;
+                }
+            }
+            for (int b = 0; b < nB; b++) {
+                for (int a = 0; a < nA; a++) {
+                    double count = counts[a + nA * (b + nB * c)];
+                    if (count > 0)
+                        mi += count / total * Math.log(count * countC / (countsA[a] * countsB[b]));
+                }
+            }
+        }
+        return mi;
+    }
+
+    /**
+     * Counts the configurations by intersecting the bitmaps of the states depth-first.
+     */
+    private double[] countBitmaps(int[] atts, int size) {
+        double[] counts = new double[size];
+        int nWords = (this.nInstances + 63) >>> 6;
+        long[][] buffers = new long[atts.length][nWords];
+        this.countBitmaps(atts, 0, null, 0, 1, buffers, counts);
+        return counts;
+    }
+
+    private void countBitmaps(int[] atts, int level, long[] current, int offset, int stride, long[][] buffers, double[] counts) {
+        long[][] attributeBitmaps = this.bitmaps[atts[level]];
+        long[] buffer = buffers[level];
+        for (int state = 0; state < attributeBitmaps.length; state++) {
+            long[] bitmap = attributeBitmaps[state];
+            long count = 0;
+            for (int w = 0; w < buffer.length; w++) {
+                buffer[w] = current == null ? bitmap[w] : current[w] & bitmap[w];
+                count += Long.bitCount(buffer[w]);
+            }
+            int index = offset + state * stride;
+            if (level == atts.length - 1)
+                counts[index] = count;
+            else if (count > 0)
+                this.countBitmaps(atts, level + 1, buffer, index, stride * attributeBitmaps.length, buffers, counts);
+        }
+    }
+
+    /**
+     * Counts the configurations by scanning the columns, in parallel chunks if the parallel mode is active.
+     */
+    private double[] countColumns(int[] atts, int size) {
+        int chunkSize = 1 << 16;
+        int nChunks = (this.nInstances + chunkSize - 1) / chunkSize;
+        IntStream chunks = IntStream.range(0, nChunks);
+        if (this.parallelMode)
+            chunks = chunks.parallel();
+
+        return chunks.mapToObj(chunk -> {
+            double[] counts = new double[size];
+            int end = Math.min(this.nInstances, (chunk + 1) * chunkSize);
+            rows:
+            for (int n = chunk * chunkSize; n < end; n++) {
+                int index = 0;
+                for (int i = atts.length - 1; i >= 0; i--) {
+                    short value = this.columns[atts[i]][n];
+                    if (value < 0)
+                        continue rows;
+                    index = index * this.nStates[atts[i]] + value;
+                }
+                counts[index]++;
+            }
+            return counts;
+        }).reduce((a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }).orElseGet(() -> new double[size]);
+    }
+
+    private synchronized void addToCache(List<Integer> key, double[] counts) {
+        if (counts.length > this.maxCachedCells)
+            return;
+        if (this.cache == null)
+            this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        double[] previous = this.cache.put(key, counts);
+        if (previous != null)
+            this.cachedCells -= previous.length;
+        this.cachedCells += counts.length;
+        while (this.cachedCells > this.maxCachedCells) {
+            Map.Entry<List<Integer>, double[]> eldest = this.cache.entrySet().iterator().next();
+            this.cachedCells -= eldest.getValue().length;
+            this.cache.remove(eldest.getKey());
+        }
+    }
+}
@@ -45,19 +45,30 @@ public class DataRowWeka implements DataRow{
     public DataRowWeka(Attributes atts_, String line){
         atts = atts_;
         data = new double[atts.getNumberOfAttributes()];
+        parseLine(atts, line, data, 0);
+    }
+
+    /**
+     * Parses a line of an ARFF file and stores the value of each attribute in a given array.
+     * @param atts an input list of the list of {@link Attributes}.
+     * @param line a {@code String} including the values of the corresponding input attributes.
+     * @param data the {@code array} where the values are stored.
+     * @param offset the position of the {@code array} where the value of the first attribute is stored.
+     */
+    public static void parseLine(Attributes atts, String line, double[] data, int offset){
         String[] parts = line.split(",");
         if (parts.length!=atts.getNumberOfAttributes()) {
             throw new IllegalStateException("The number of columns does not match the number of attributes.");
         }
         for (int i = 0; i < parts.length; i++) {
             if(parts[i].equals("?")){
-                data[i] = Double.NaN;
+                data[offset + i] = Double.NaN;
             }
             else {
                 switch (atts.getFullListOfAttributes().get(i).getStateSpaceType().getStateSpaceTypeEnum()) {
                     case REAL:
                         try{
-                            data[i] = Double.parseDouble(parts[i]);
+                            data[offset + i] = Double.parseDouble(parts[i]);
                         }catch(Exception ex){
                             System.out.println("Error Reading ARFF:");
                             System.out.println("Attribute Name: " + atts.getFullListOfAttributes().get(i).getName());
@@ -70,7 +81,7 @@ public class DataRowWeka implements DataRow{
                     case FINITE_SET:
                         try {
                             FiniteStateSpace finiteStateSpace = atts.getFullListOfAttributes().get(i).getStateSpaceType();
-                            data[i] = finiteStateSpace.getIndexOfState(parts[i]);
+                            data[offset + i] = finiteStateSpace.getIndexOfState(parts[i]);
                         }catch(Exception ex){
                             System.out.println("Error Reading ARFF:");
                             System.out.println("Attribute Name: " + atts.getFullListOfAttributes().get(i).getName());
@@ -83,7 +94,7 @@ public class DataRowWeka implements DataRow{
                         }
                         break;
                     case SPARSE_FINITE_SET:
-                        data[i] = Integer.parseInt(parts[i]);
+                        data[offset + i] = Integer.parseInt(parts[i]);
                 }
             }
         }
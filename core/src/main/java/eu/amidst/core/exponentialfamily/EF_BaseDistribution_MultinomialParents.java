@@ -225,6 +225,27 @@ public class EF_BaseDistribution_MultinomialParents<E extends EF_ConditionalDist
 
     }
 
+    /**
+     * {@inheritDoc}
+     * The vector of the base distribution of a parent configuration is only allocated the first time it is observed.
+     */
+    @Override
+    public void updateSufficientStatistics(Assignment instance, SufficientStatistics buffer) {
+        CompoundVector vector = (CompoundVector) buffer;
+
+        int position = MultinomialIndex.getIndexFromVariableAssignment(this.multinomialParents, instance);
+
+        vector.setBaseConf(position, vector.getBaseConf(position) + 1.0);
+
+        Vector base = vector.getBaseVectors().getVectorByPosition(position);
+        if (base == null) {
+            base = this.getBaseEFDistribution(position).createZeroVector();
+            vector.setVectorByPosition(position, base);
+        }
+
+        this.getBaseEFDistribution(position).updateSufficientStatistics(instance, (SufficientStatistics) base);
+    }
+
     /**
      * {@inheritDoc}
      */
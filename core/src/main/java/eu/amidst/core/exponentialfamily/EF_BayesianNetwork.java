@@ -211,6 +211,17 @@ public class EF_BayesianNetwork extends EF_Distribution {
         return vectorSS;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateSufficientStatistics(Assignment data, SufficientStatistics buffer) {
+        CompoundVector vectorSS = (CompoundVector) buffer;
+        for (EF_ConditionalDistribution dist : this.distributionList) {
+            dist.updateSufficientStatistics(data, (SufficientStatistics) vectorSS.getVectorByPosition(dist.getVariable().getVarID()));
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
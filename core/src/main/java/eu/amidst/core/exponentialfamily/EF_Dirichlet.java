@@ -19,9 +19,9 @@ package eu.amidst.core.exponentialfamily;
 
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.utils.ArrayVector;
+import eu.amidst.core.utils.SpecialFunctions;
 import eu.amidst.core.utils.Vector;
 import eu.amidst.core.variables.Variable;
-import org.apache.commons.math3.special.Gamma;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -40,6 +40,12 @@ public class EF_Dirichlet extends EF_UnivariateDistribution {
     /** Represents the number of parameter of this EF_Dirichlet distribution. */
     int nOfStates;
 
+    /** Represents the natural parameters from which the current moment parameters were computed. */
+    transient double[] naturalParametersOfMoments;
+
+    /** Represents the moment parameters computed from {@code naturalParametersOfMoments}. */
+    transient MomentParameters momentsOfNaturalParameters;
+
     /**
      * Creates a new uniform EF_Dirichlet distribution for a given {@link Variable} object.
      * @param var1 a {@link Variable} object.
@@ -137,6 +143,10 @@ public class EF_Dirichlet extends EF_UnivariateDistribution {
         EF_Dirichlet copy = new EF_Dirichlet(var);
         copy.getNaturalParameters().copy(this.getNaturalParameters());
         copy.getMomentParameters().copy(this.getMomentParameters());
+        if (this.naturalParametersOfMoments != null && this.momentsOfNaturalParameters == this.momentParameters) {
+            copy.naturalParametersOfMoments = this.naturalParametersOfMoments.clone();
+            copy.momentsOfNaturalParameters = copy.momentParameters;
+        }
         return copy;
     }
 
@@ -177,14 +187,34 @@ public class EF_Dirichlet extends EF_UnivariateDistribution {
     @Override
     public void updateMomentFromNaturalParameters() {
 
-        double sumOfU_i = 0;
-        for (int i = 0; i < nOfStates; i++) {
-            sumOfU_i += this.naturalParameters.get(i);
+        //The digammas are only evaluated when the natural parameters changed since the last update.
+        if (this.momentsOfNaturalParameters == this.momentParameters && this.naturalParametersOfMoments != null) {
+            boolean changed = false;
+            for (int i = 0; i < nOfStates && !changed; i++) {
+                changed = this.naturalParameters.get(i) != this.naturalParametersOfMoments[i];
+            }
+            if (!changed)
+                return;
         }
 
+        if (this.naturalParametersOfMoments == null)
+            this.naturalParametersOfMoments = new double[nOfStates];
+
         for (int i = 0; i < nOfStates; i++) {
-            this.momentParameters.set(i, Gamma.digamma(this.naturalParameters.get(i)) - Gamma.digamma(sumOfU_i));
+            this.naturalParametersOfMoments[i] = this.naturalParameters.get(i);
         }
+
+        if (this.momentParameters instanceof ArrayVector) {
+            SpecialFunctions.dirichletExpectedLog(this.naturalParametersOfMoments, ((ArrayVector) this.momentParameters).toArray());
+        } else {
+            double[] moments = new double[nOfStates];
+            SpecialFunctions.dirichletExpectedLog(this.naturalParametersOfMoments, moments);
+            for (int i = 0; i < nOfStates; i++) {
+                this.momentParameters.set(i, moments[i]);
+            }
+        }
+
+        this.momentsOfNaturalParameters = this.momentParameters;
     }
 
     /**
@@ -200,15 +230,14 @@ public class EF_Dirichlet extends EF_UnivariateDistribution {
      */
     @Override
     public double computeLogNormalizer() {
+        if (this.naturalParameters instanceof ArrayVector)
+            return SpecialFunctions.dirichletLogNormalizer(((ArrayVector) this.naturalParameters).toArray());
 
-        double sumOfU_i = 0;
-        double sumLogGammaOfU_i = 0;
+        double[] alpha = new double[nOfStates];
         for (int i = 0; i < nOfStates; i++) {
-            sumOfU_i += naturalParameters.get(i);
-            sumLogGammaOfU_i += Gamma.logGamma(naturalParameters.get(i));
+            alpha[i] = naturalParameters.get(i);
         }
-
-        return sumLogGammaOfU_i - Gamma.logGamma(sumOfU_i);
+        return SpecialFunctions.dirichletLogNormalizer(alpha);
     }
 
     /**
@@ -228,7 +257,7 @@ public class EF_Dirichlet extends EF_UnivariateDistribution {
         ArrayVector vector = new ArrayVector(this.sizeOfSufficientStatistics());
 
         for (int i = 0; i < this.sizeOfSufficientStatistics(); i++) {
-            vector.set(i, Gamma.digamma(1.0) - Gamma.digamma(this.sizeOfSufficientStatistics()));
+            vector.set(i, SpecialFunctions.digamma(1.0) - SpecialFunctions.digamma(this.sizeOfSufficientStatistics()));
         }
 
         return vector;
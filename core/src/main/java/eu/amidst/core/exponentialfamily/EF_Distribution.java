@@ -111,6 +111,17 @@ public abstract class EF_Distribution implements Serializable {
      */
     public abstract SufficientStatistics getSufficientStatistics(Assignment assignment);
 
+    /**
+     * Adds the sufficient statistics of a given {@link Assignment} object to a vector of sufficient statistics,
+     * created with {@link #createZeroSufficientStatistics()}. The distributions used for complete data override it
+     * to update the vector in place, without allocating the sufficient statistics of the assignment.
+     * @param assignment an {@link Assignment} object.
+     * @param buffer a {@link SufficientStatistics} object, which is updated.
+     */
+    public void updateSufficientStatistics(Assignment assignment, SufficientStatistics buffer) {
+        buffer.sum(this.getSufficientStatistics(assignment));
+    }
+
     /**
      * Returns the size of the sufficient statistics vector of this EF_Distribution.
      * @return an {@code int} that represents the size of the sufficient statistics vector.
@@ -19,10 +19,10 @@ package eu.amidst.core.exponentialfamily;
 
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.utils.ArrayVector;
+import eu.amidst.core.utils.SpecialFunctions;
 import eu.amidst.core.utils.Vector;
 import eu.amidst.core.variables.Assignment;
 import eu.amidst.core.variables.Variable;
-import org.apache.commons.math3.special.Gamma;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -138,7 +138,7 @@ public class EF_Gamma extends EF_UnivariateDistribution {
     public void updateMomentFromNaturalParameters() {
         double alpha = this.naturalParameters.get(0) + 1;
         double beta = -this.naturalParameters.get(1);
-        this.momentParameters.set(0, Gamma.digamma(alpha) - Math.log(beta));
+        this.momentParameters.set(0, SpecialFunctions.digamma(alpha) - Math.log(beta));
         this.momentParameters.set(1, alpha / beta);
     }
 
@@ -165,7 +165,7 @@ public class EF_Gamma extends EF_UnivariateDistribution {
     public double computeLogNormalizer() {
         double alpha = this.naturalParameters.get(0) + 1;
         double beta = -this.naturalParameters.get(1);
-        return Gamma.logGamma(alpha) - alpha * Math.log(beta);
+        return SpecialFunctions.logGamma(alpha) - alpha * Math.log(beta);
     }
 
     /**
@@ -214,7 +214,7 @@ public class EF_Gamma extends EF_UnivariateDistribution {
 
         double alpha = 1;
         double beta = 1;
-        vector.set(0, Gamma.digamma(alpha) - Math.log(beta));
+        vector.set(0, SpecialFunctions.digamma(alpha) - Math.log(beta));
         vector.set(1, alpha / beta);
 
         return vector;
@@ -19,10 +19,10 @@ package eu.amidst.core.exponentialfamily;
 
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.utils.ArrayVector;
+import eu.amidst.core.utils.SpecialFunctions;
 import eu.amidst.core.utils.Utils;
 import eu.amidst.core.utils.Vector;
 import eu.amidst.core.variables.Variable;
-import org.apache.commons.math3.special.Gamma;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -142,7 +142,7 @@ public class EF_InverseGamma extends EF_UnivariateDistribution {
     public void updateMomentFromNaturalParameters() {
         double alpha = -this.naturalParameters.get(0) - 1;
         double beta = -this.naturalParameters.get(1);
-        this.momentParameters.set(0, Math.log(beta) - Gamma.digamma(alpha));
+        this.momentParameters.set(0, Math.log(beta) - SpecialFunctions.digamma(alpha));
         this.momentParameters.set(1, alpha / beta);
     }
 
@@ -161,7 +161,7 @@ public class EF_InverseGamma extends EF_UnivariateDistribution {
     public double computeLogNormalizer() {
         double alpha = -this.naturalParameters.get(0) - 1;
         double beta = -this.naturalParameters.get(1);
-        return Gamma.logGamma(alpha) - alpha * Math.log(beta);
+        return SpecialFunctions.logGamma(alpha) - alpha * Math.log(beta);
     }
 
     /**
@@ -204,7 +204,7 @@ public class EF_InverseGamma extends EF_UnivariateDistribution {
 
         double alpha = 1.0;
         double beta = 1.0;
-        vector.set(0, Math.log(beta) - Gamma.digamma(alpha));
+        vector.set(0, Math.log(beta) - SpecialFunctions.digamma(alpha));
         vector.set(1, alpha / beta);
 
         return vector;
@@ -102,6 +102,14 @@ public class EF_Multinomial extends EF_UnivariateDistribution {
         return vec;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateSufficientStatistics(double val, SufficientStatistics buffer) {
+        buffer.set((int) val, buffer.get((int) val) + 1);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -162,6 +162,15 @@ public class EF_Normal extends EF_UnivariateDistribution {
         return vec;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateSufficientStatistics(double val, SufficientStatistics buffer) {
+        buffer.set(EXPECTED_MEAN, buffer.get(EXPECTED_MEAN) + val);
+        buffer.set(EXPECTED_SQUARE, buffer.get(EXPECTED_SQUARE) + val * val);
+    }
+
     /**
      * {@inheritDoc}
      */
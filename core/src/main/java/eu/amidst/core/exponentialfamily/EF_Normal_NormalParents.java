@@ -191,6 +191,25 @@ public class EF_Normal_NormalParents extends EF_ConditionalDistribution  {
         return vectorSS;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateSufficientStatistics(Assignment data, SufficientStatistics buffer) {
+        CompoundVector vectorSS = (CompoundVector) buffer;
+        RealVector xy = vectorSS.getXYbaseMatrix();
+        RealMatrix cov = vectorSS.getcovbaseMatrix();
+
+        for (int i = 0; i <= nOfParents; i++) {
+            double valueI = i == 0 ? data.getValue(this.var) : data.getValue(this.parents.get(i - 1));
+            xy.setEntry(i, xy.getEntry(i) + valueI);
+            for (int j = 0; j <= nOfParents; j++) {
+                double valueJ = j == 0 ? data.getValue(this.var) : data.getValue(this.parents.get(j - 1));
+                cov.addToEntry(i, j, valueI * valueJ);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
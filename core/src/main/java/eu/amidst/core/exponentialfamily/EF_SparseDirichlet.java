@@ -13,9 +13,9 @@ package eu.amidst.core.exponentialfamily;
 
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.utils.SparseVectorDefaultValue;
+import eu.amidst.core.utils.SpecialFunctions;
 import eu.amidst.core.utils.Vector;
 import eu.amidst.core.variables.Variable;
-import org.apache.commons.math3.special.Gamma;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -180,10 +180,12 @@ public class EF_SparseDirichlet extends EF_UnivariateDistribution {
 
         this.momentParameters.copy(this.naturalParameters);
 
+        double digammaOfSum = SpecialFunctions.digamma(sumOfU_i);
+
         this.getSparseMomentParameters().apply(new Function<Double, Double>() {
             @Override
             public Double apply(Double aDouble) {
-                return Gamma.digamma(aDouble) - Gamma.digamma(sumOfU_i);
+                return SpecialFunctions.digamma(aDouble) - digammaOfSum;
             }
         });
 
@@ -209,11 +211,11 @@ public class EF_SparseDirichlet extends EF_UnivariateDistribution {
         double sumLogGammaOfU_i = this.getSparseNaturalParameters().sumApply(new Function<Double, Double>() {
             @Override
             public Double apply(Double aDouble) {
-                return Gamma.logGamma(aDouble);
+                return SpecialFunctions.logGamma(aDouble);
             }
         });
 
-        return sumLogGammaOfU_i - Gamma.logGamma(sumOfU_i);
+        return sumLogGammaOfU_i - SpecialFunctions.logGamma(sumOfU_i);
 
     }
 
@@ -230,6 +232,6 @@ public class EF_SparseDirichlet extends EF_UnivariateDistribution {
      */
     @Override
     public SufficientStatistics createInitSufficientStatistics() {
-        return new SparseVectorDefaultValue(nOfStates,Gamma.digamma(1.0) - Gamma.digamma(this.sizeOfSufficientStatistics()));
+        return new SparseVectorDefaultValue(nOfStates,SpecialFunctions.digamma(1.0) - SpecialFunctions.digamma(this.sizeOfSufficientStatistics()));
     }
 }
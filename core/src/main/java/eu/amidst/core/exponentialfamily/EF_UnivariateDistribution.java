@@ -137,6 +137,23 @@ public abstract class EF_UnivariateDistribution extends EF_ConditionalDistributi
         return this.getSufficientStatistics(data.getValue(this.var));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateSufficientStatistics(Assignment data, SufficientStatistics buffer) {
+        this.updateSufficientStatistics(data.getValue(this.var), buffer);
+    }
+
+    /**
+     * Adds the sufficient statistics of a given value to a vector of sufficient statistics.
+     * @param val a {@code double} value.
+     * @param buffer a {@link SufficientStatistics} object, which is updated.
+     */
+    public void updateSufficientStatistics(double val, SufficientStatistics buffer) {
+        buffer.sum(this.getSufficientStatistics(val));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,549 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.exponentialfamily.EF_BayesianNetwork;
+import eu.amidst.core.exponentialfamily.EF_ConditionalDistribution;
+import eu.amidst.core.exponentialfamily.SufficientStatistics;
+import eu.amidst.core.inference.messagepassing.VMP;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.utils.Vector;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * This class implements the {@link ParameterLearningAlgorithm} interface, and defines a parallel
+ * Expectation-Maximization algorithm for data with missing values and models with latent variables.
+ *
+ * <p> In the E-step, the expected sufficient statistics of each data instance are computed by enumerating the
+ * configurations of its unobserved variables, when all of them are multinomial and they have at most
+ * {@code maximumExactStates} joint configurations, and by running {@link VMP} otherwise. Each thread uses its own
+ * inference engine and accumulates the expected sufficient statistics of its instances, which are merged before
+ * the M-step. </p>
+ *
+ * <p> {@link #runLearning()} iterates over the whole {@link DataStream} until the log-likelihood converges, while
+ * {@link #updateModel(DataOnMemory)} performs a step of online (stepwise) EM, so a stream can be learnt batch by batch
+ * with {@link #updateModel(DataStream)}. </p>
+ */
+public class ParallelEM implements ParameterLearningAlgorithm {
+
+    /** Represents the batch size used for learning the parameters. */
+    protected int windowsSize = 1000;
+
+    /** Indicates the parallel processing mode, initialized here as {@code true}. */
+    protected boolean parallelMode = true;
+
+    /** Represents the {@link DataStream} used for learning the parameters. */
+    protected DataStream<DataInstance> dataStream;
+
+    /** Represents the directed acyclic graph {@link DAG}.*/
+    protected DAG dag;
+
+    /** Represents the current {@link BayesianNetwork} model. */
+    protected BayesianNetwork bayesianNetwork;
+
+    /** Represents the current model as a {@link EF_BayesianNetwork} object. */
+    protected EF_BayesianNetwork efBayesianNetwork;
+
+    /** Represents the expected sufficient statistics (normalized) of the online EM. */
+    protected SufficientStatistics onlineSS;
+
+    /** Represents the number of steps of the online EM. */
+    protected int nSteps;
+
+    /** Represents whether Laplace correction (i.e. MAP estimation) is used*/
+    protected boolean laplace = true;
+
+    /** Represents the maximum number of iterations of the EM. */
+    protected int maximumIterations = 100;
+
+    /** Represents the threshold on the relative change of the log-likelihood for the convergence of the EM. */
+    protected double threshold = 0.0001;
+
+    /** Represents the maximum number of joint configurations of the unobserved variables for the exact E-step. */
+    protected int maximumExactStates = 256;
+
+    /** Represents the number of samples used for the expectations of non-multinomial unobserved variables. */
+    protected int numberOfSamples = 100;
+
+    /** Represents the learning rate (forgetting exponent) of the online EM, in (0.5,1]. */
+    protected double learningRate = 0.7;
+
+    /** Represents the log-likelihood of the data in the last E-step. */
+    protected double logLikelihood = Double.NaN;
+
+    /** Represents the seed of the random initialization. */
+    protected int seed = 0;
+
+    /** Represents if the output is activated. */
+    protected boolean output = false;
+
+    /**
+     * Sets whether Laplace correction (i.e. MAP estimation) is used
+     * @param laplace, a boolean value.
+     */
+    public void setLaplace(boolean laplace) {
+        this.laplace = laplace;
+    }
+
+    /**
+     * Sets the maximum number of iterations of the EM.
+     * @param maximumIterations a positive {@code int} value.
+     */
+    public void setMaximumIterations(int maximumIterations) {
+        this.maximumIterations = maximumIterations;
+    }
+
+    /**
+     * Sets the threshold on the relative change of the log-likelihood for the convergence of the EM.
+     * @param threshold a positive {@code double} value.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the maximum number of joint configurations of the unobserved variables of a data instance for using the
+     * exact E-step. Data instances with more configurations (or with non-multinomial unobserved variables) use VMP.
+     * @param maximumExactStates a positive {@code int} value, or 0 for always using VMP.
+     */
+    public void setMaximumExactStates(int maximumExactStates) {
+        this.maximumExactStates = maximumExactStates;
+    }
+
+    /**
+     * Sets the number of samples used for the expectations of non-multinomial unobserved variables in the VMP E-step.
+     * @param numberOfSamples a positive {@code int} value.
+     */
+    public void setNumberOfSamples(int numberOfSamples) {
+        this.numberOfSamples = numberOfSamples;
+    }
+
+    /**
+     * Sets the learning rate of the online EM. The step size of the t-th batch is (t+1)^(-learningRate).
+     * @param learningRate a {@code double} value in (0.5,1].
+     */
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * Returns the log-likelihood of the data in the last E-step. It is a lower bound when VMP is used.
+     * @return a {@code double} value.
+     */
+    public double getLogLikelihood() {
+        return logLikelihood;
+    }
+
+    /**
+     * Sets the windows size.
+     * @param windowsSize the batch size.
+     */
+    public void setWindowsSize(int windowsSize) {
+        this.windowsSize = windowsSize;
+    }
+
+    /**
+     * Sets the windows size.
+     */
+    public int getWindowsSize() {
+        return windowsSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initLearning() {
+        this.bayesianNetwork = new BayesianNetwork(dag);
+        this.bayesianNetwork.randomInitialization(new Random(seed));
+        this.efBayesianNetwork = new EF_BayesianNetwork(this.bayesianNetwork);
+        this.onlineSS = null;
+        this.nSteps = 0;
+        this.logLikelihood = Double.NaN;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataOnMemory<DataInstance> batch) {
+        ExpectedStatistics statistics = this.expectation(parallelMode ? batch.stream().parallel() : batch.stream());
+
+        SufficientStatistics batchSS = this.normalizedStatistics(statistics);
+        double stepSize = Math.pow(this.nSteps + 1, -this.learningRate);
+        if (this.onlineSS == null) {
+            this.onlineSS = batchSS;
+        } else {
+            this.onlineSS.multiplyBy(1 - stepSize);
+            batchSS.multiplyBy(stepSize);
+            this.onlineSS.sum(batchSS);
+        }
+        this.nSteps++;
+
+        SufficientStatistics moments = this.efBayesianNetwork.createZeroSufficientStatistics();
+        moments.copy(this.onlineSS);
+        this.maximization(moments);
+
+        this.logLikelihood = statistics.logLikelihood;
+        return statistics.logLikelihood;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDataStream(DataStream<DataInstance> data) {
+        this.dataStream=data;
+    }
+
+    /**
+     * Returns the log-likelihood of the data in the last E-step.
+     * @return the log-likelihood of the data in the last E-step.
+     */
+    @Override
+    public double getLogMarginalProbability() {
+        return this.logLikelihood;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runLearning() {
+
+        this.initLearning();
+
+        if (!this.dataStream.isRestartable() && this.maximumIterations > 1)
+            throw new IllegalStateException("The EM algorithm needs a restartable data stream.");
+
+        double previousLogLikelihood = Double.NEGATIVE_INFINITY;
+        for (int iter = 0; iter < this.maximumIterations; iter++) {
+            if (iter > 0)
+                this.dataStream.restart();
+
+            Stream<DataOnMemory<DataInstance>> stream = null;
+            if (parallelMode){
+                stream = dataStream.parallelStreamOfBatches(windowsSize);
+            }else{
+                stream = dataStream.streamOfBatches(windowsSize);
+            }
+
+            ExpectedStatistics statistics = stream
+                    .map(batch -> this.expectation(batch.stream()))
+                    .reduce(ExpectedStatistics::merge).get();
+
+            this.maximization(this.normalizedStatistics(statistics));
+            this.logLikelihood = statistics.logLikelihood;
+
+            if (output)
+                System.out.println("EM iteration " + iter + ", log-likelihood: " + this.logLikelihood);
+
+            if (Math.abs(this.logLikelihood - previousLogLikelihood) < this.threshold * Math.abs(this.logLikelihood))
+                break;
+            previousLogLikelihood = this.logLikelihood;
+        }
+    }
+
+    /**
+     * Computes the expected sufficient statistics of a stream of data instances with the current model. Each thread
+     * of a parallel stream accumulates the statistics of its data instances with its own inference engine.
+     * @param instances a {@code Stream} of {@link DataInstance} objects.
+     * @return an {@link ExpectedStatistics} object.
+     */
+    protected ExpectedStatistics expectation(Stream<DataInstance> instances) {
+        ThreadLocal<VMP> engines = ThreadLocal.withInitial(() -> {
+            VMP vmp = new VMP();
+            vmp.setSeed(this.seed);
+            vmp.setModel(this.bayesianNetwork);
+            return vmp;
+        });
+
+        return instances.collect(
+                () -> new ExpectedStatistics(this.efBayesianNetwork.createZeroSufficientStatistics()),
+                (statistics, instance) -> this.expectation(instance, statistics, engines),
+                ExpectedStatistics::merge);
+    }
+
+    /**
+     * Adds the expected sufficient statistics and the log-likelihood of a data instance to a given accumulator.
+     * @param instance a {@link DataInstance} object.
+     * @param statistics an {@link ExpectedStatistics} object.
+     * @param engines the {@link VMP} engine of each thread.
+     */
+    protected void expectation(DataInstance instance, ExpectedStatistics statistics, ThreadLocal<VMP> engines) {
+        List<Variable> unobserved = new ArrayList<>();
+        long nStates = 1;
+        boolean exact = true;
+        for (Variable var : this.dag.getVariables()) {
+            if (Utils.isMissingValue(instance.getValue(var))) {
+                unobserved.add(var);
+                if (var.isMultinomial())
+                    nStates = Math.min(nStates * var.getNumberOfStates(), Integer.MAX_VALUE);
+                else
+                    exact = false;
+            }
+        }
+
+        statistics.count++;
+
+        if (unobserved.isEmpty()) {
+            statistics.sumSS.sum(this.efBayesianNetwork.getSufficientStatistics(instance));
+            statistics.logLikelihood += this.bayesianNetwork.getLogProbabiltyOf(instance);
+        } else if (exact && nStates <= this.maximumExactStates) {
+            this.exactExpectation(instance, unobserved, (int) nStates, statistics);
+        } else {
+            this.variationalExpectation(instance, engines.get(), statistics);
+        }
+    }
+
+    /**
+     * Adds the expected sufficient statistics of a data instance by enumerating its unobserved variables.
+     * @param instance a {@link DataInstance} object.
+     * @param unobserved the list of unobserved (multinomial) variables.
+     * @param nStates the number of joint configurations of the unobserved variables.
+     * @param statistics an {@link ExpectedStatistics} object.
+     */
+    private void exactExpectation(DataInstance instance, List<Variable> unobserved, int nStates, ExpectedStatistics statistics) {
+        HashMapAssignment assignment = this.observedAssignment(instance);
+
+        double[] logJoint = new double[nStates];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < nStates; k++) {
+            setConfiguration(assignment, unobserved, k);
+            logJoint[k] = this.bayesianNetwork.getLogProbabiltyOf(assignment);
+            max = Math.max(max, logJoint[k]);
+        }
+
+        double sum = 0;
+        for (int k = 0; k < nStates; k++) {
+            sum += Math.exp(logJoint[k] - max);
+        }
+        double logEvidence = max + Math.log(sum);
+        statistics.logLikelihood += logEvidence;
+
+        for (int k = 0; k < nStates; k++) {
+            double weight = Math.exp(logJoint[k] - logEvidence);
+            if (weight == 0)
+                continue;
+            setConfiguration(assignment, unobserved, k);
+            SufficientStatistics ss = this.efBayesianNetwork.getSufficientStatistics(assignment);
+            ss.multiplyBy(weight);
+            statistics.sumSS.sum(ss);
+        }
+    }
+
+    /**
+     * Adds the expected sufficient statistics of a data instance under the posterior computed by VMP. The family
+     * of each distribution is enumerated when its unobserved variables are multinomial, and sampled otherwise.
+     * @param instance a {@link DataInstance} object.
+     * @param vmp the {@link VMP} engine of the current thread.
+     * @param statistics an {@link ExpectedStatistics} object.
+     */
+    private void variationalExpectation(DataInstance instance, VMP vmp, ExpectedStatistics statistics) {
+        vmp.setEvidence(instance);
+        vmp.runInference();
+        statistics.logLikelihood += vmp.getLogProbabilityOfEvidence();
+
+        HashMapAssignment assignment = this.observedAssignment(instance);
+        CompoundVector sumSS = (CompoundVector) statistics.sumSS;
+
+        for (EF_ConditionalDistribution dist : this.efBayesianNetwork.getDistributionList()) {
+            List<Variable> family = new ArrayList<>();
+            family.add(dist.getVariable());
+            family.addAll(dist.getConditioningVariables());
+
+            List<Variable> unobserved = new ArrayList<>();
+            int nStates = 1;
+            boolean multinomial = true;
+            for (Variable var : family) {
+                if (Utils.isMissingValue(instance.getValue(var))) {
+                    unobserved.add(var);
+                    multinomial &= var.isMultinomial();
+                    if (multinomial)
+                        nStates *= var.getNumberOfStates();
+                }
+            }
+
+            Vector target = sumSS.getVectorByPosition(dist.getVariable().getVarID());
+
+            if (unobserved.isEmpty()) {
+                target.sum(dist.getSufficientStatistics(assignment));
+            } else if (multinomial) {
+                for (int k = 0; k < nStates; k++) {
+                    setConfiguration(assignment, unobserved, k);
+                    double weight = 1;
+                    for (Variable var : unobserved) {
+                        weight *= vmp.getEFPosterior(var).getMomentParameters().get((int) assignment.getValue(var));
+                    }
+                    if (weight == 0)
+                        continue;
+                    SufficientStatistics ss = dist.getSufficientStatistics(assignment);
+                    ss.multiplyBy(weight);
+                    target.sum(ss);
+                }
+            } else {
+                Random random = vmp.getRandom();
+                for (int n = 0; n < this.numberOfSamples; n++) {
+                    for (Variable var : unobserved) {
+                        assignment.setValue(var, vmp.getPosterior(var).sample(random));
+                    }
+                    SufficientStatistics ss = dist.getSufficientStatistics(assignment);
+                    ss.multiplyBy(1.0 / this.numberOfSamples);
+                    target.sum(ss);
+                }
+            }
+
+            for (Variable var : unobserved) {
+                assignment.setValue(var, Utils.missingValue());
+            }
+        }
+    }
+
+    /**
+     * Returns an assignment with the values of all the variables of the model in a data instance, missing or not.
+     * @param instance a {@link DataInstance} object.
+     * @return a {@link HashMapAssignment} object.
+     */
+    private HashMapAssignment observedAssignment(DataInstance instance) {
+        HashMapAssignment assignment = new HashMapAssignment(this.dag.getVariables().getNumberOfVars());
+        for (Variable var : this.dag.getVariables()) {
+            assignment.setValue(var, instance.getValue(var));
+        }
+        return assignment;
+    }
+
+    /**
+     * Sets the k-th joint configuration of a list of multinomial variables, in mixed radix.
+     * @param assignment the {@link HashMapAssignment} to be modified.
+     * @param vars a list of multinomial variables.
+     * @param k the index of the configuration.
+     */
+    private static void setConfiguration(HashMapAssignment assignment, List<Variable> vars, int k) {
+        for (Variable var : vars) {
+            assignment.setValue(var, k % var.getNumberOfStates());
+            k /= var.getNumberOfStates();
+        }
+    }
+
+    /**
+     * Returns the expected sufficient statistics divided by the number of data instances, including the
+     * Laplace correction if it is used.
+     * @param statistics an {@link ExpectedStatistics} object.
+     * @return a {@link SufficientStatistics} object.
+     */
+    private SufficientStatistics normalizedStatistics(ExpectedStatistics statistics) {
+        SufficientStatistics normalizedSS;
+        double count = statistics.count;
+        if (laplace) {
+            normalizedSS = this.efBayesianNetwork.createInitSufficientStatistics();
+            count += 1;
+        } else {
+            normalizedSS = this.efBayesianNetwork.createZeroSufficientStatistics();
+        }
+        normalizedSS.sum(statistics.sumSS);
+        normalizedSS.divideBy(count);
+        return normalizedSS;
+    }
+
+    /**
+     * Sets the parameters of the model from the given (normalized) expected sufficient statistics.
+     * @param moments a {@link SufficientStatistics} object.
+     */
+    private void maximization(SufficientStatistics moments) {
+        this.efBayesianNetwork.setMomentParameters(moments);
+        this.bayesianNetwork = this.efBayesianNetwork.toBayesianNetwork(dag);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDAG(DAG dag_) {
+        this.dag = dag_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BayesianNetwork getLearntBayesianNetwork() {
+        return this.bayesianNetwork;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setParallelMode(boolean parallelMode_) {
+        parallelMode = parallelMode_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOutput(boolean activateOutput) {
+        this.output = activateOutput;
+    }
+
+    /**
+     * This class accumulates the expected sufficient statistics and the log-likelihood of a set of data instances.
+     */
+    public static class ExpectedStatistics {
+
+        /** Represents the sum of the expected sufficient statistics. */
+        SufficientStatistics sumSS;
+
+        /** Represents the log-likelihood of the data instances. */
+        double logLikelihood;
+
+        /** Represents the number of data instances. */
+        double count;
+
+        public ExpectedStatistics(SufficientStatistics sumSS) {
+            this.sumSS = sumSS;
+        }
+
+        public static ExpectedStatistics merge(ExpectedStatistics a, ExpectedStatistics b) {
+            a.sumSS.sum(b.sumSS);
+            a.logLikelihood += b.logLikelihood;
+            a.count += b.count;
+            return a;
+        }
+    }
+}
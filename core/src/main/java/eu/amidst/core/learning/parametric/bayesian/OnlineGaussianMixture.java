@@ -0,0 +1,937 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.learning.parametric.ParameterLearningAlgorithm;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.SpecialFunctions;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * This class implements the {@link ParameterLearningAlgorithm} interface, and defines a streaming variational Bayes
+ * algorithm specialised in Gaussian mixture models, i.e., a DAG with a hidden multinomial variable which is the parent
+ * of all the (observed) Gaussian variables.
+ *
+ * <p> As with {@link SVB}, the posterior after a batch is the prior of the next one, but the posteriors are kept in
+ * primitive arrays: a Dirichlet over the mixture weights and, for each component, a Normal-Wishart over the mean and
+ * the precision matrix (if the Gaussian variables have Gaussian parents) or a Normal-Gamma over the mean and the
+ * precision of each variable (otherwise). The responsibilities of the data instances are computed in parallel over
+ * chunks of the batch, which only accumulate the sufficient statistics of the components.</p>
+ *
+ * <p> The local iterations on a batch stop when its evidence lower bound converges. Since the posterior is the
+ * conjugate update of the prior, the bound is the entropy of the responsibilities plus the difference between the
+ * log-normalizers of the posterior and of the prior, which include the KL divergence terms of the Dirichlet and of the
+ * Normal-Wishart (or Normal-Gamma) distributions.</p>
+ *
+ * <p> The prior is built from the first batch: the means are centred on data instances chosen as in k-means++, and the
+ * covariances on the sample variances. Optionally, components with a negligible weight are reseeded on the worst
+ * explained data instance of the batch, and components with too close means are merged.</p>
+ *
+ * <p> See Bishop, C. M. (2006). Pattern recognition and machine learning. Springer, Section 10.2. </p>
+ */
+public class OnlineGaussianMixture implements ParameterLearningAlgorithm, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = -2512479093217746115L;
+
+    /** Represents the number of data instances processed by each thread in the E-step. */
+    private static final int CHUNK_SIZE = 256;
+
+    /** Represents the {@link DataStream} used for learning the parameters. */
+    protected DataStream<DataInstance> dataStream;
+
+    /** Represents the directed acyclic graph {@link DAG}. */
+    protected DAG dag;
+
+    /** Represents the window size, initialized to 100. */
+    protected int windowsSize = 100;
+
+    /** Represents the seed, initialized to 0. */
+    protected int seed = 0;
+
+    /** Indicates if the E-step runs in parallel, initialized to {@code true}. */
+    protected boolean parallelMode = true;
+
+    /** Indicates if the Output is activated or not, initialized to {@code false}. */
+    protected boolean activateOutput = false;
+
+    /** Represents the maximum number of local iterations on each batch, initialized to 100. */
+    protected int maxIterations = 100;
+
+    /** Represents the relative threshold of convergence of the local iterations, initialized to 1e-5. */
+    protected double threshold = 1e-5;
+
+    /** Represents the weight below which a component is reseeded, initialized to 0 (i.e., no pruning). */
+    protected double pruneThreshold = 0;
+
+    /** Represents the squared Mahalanobis distance between means below which two components are merged,
+     * initialized to 0 (i.e., no merging). */
+    protected double mergeThreshold = 0;
+
+    /** Represents the hidden multinomial variable. */
+    private Variable hiddenVar;
+
+    /** Represents the Gaussian variables. */
+    private List<Variable> gaussianVars;
+
+    /** Indicates if the covariance matrices are diagonal. */
+    private boolean diagonal;
+
+    /** Represents the number of components, K. */
+    private int nComponents;
+
+    /** Represents the number of Gaussian variables, D. */
+    private int dim;
+
+    /** Represents the random number generator. */
+    private Random random;
+
+    /** Represents the parameters of the Dirichlet posterior, indexed by component. */
+    private double[] alpha;
+
+    /** Represents the precision scaling of the mean of each component. */
+    private double[] beta;
+
+    /** Represents beta times the mean of each component, indexed by component and variable. */
+    private double[][] betaMean;
+
+    /** Represents the inverse scale matrix plus beta times the squared mean of each component, stored by rows
+     * (D*D values), or only its diagonal (D values) if the covariances are diagonal. */
+    private double[][] psi;
+
+    /** Represents the degrees of freedom of each component (twice the shape for the diagonal case). */
+    private double[] nu;
+
+    /** Represents the initial prior of each component, in the same layout as the posterior, i.e., alpha, beta,
+     * betaMean, psi and nu concatenated. */
+    private double[][] basePrior;
+
+    /** Represents the sample variances of the first batch, which define the prior covariances. */
+    private double[] priorVariance;
+
+    /** Represents the total number of local iterations and of batches. */
+    private long nIterTotal;
+    private int nBatches;
+
+    /** Represents the evidence lower bound of the last batch. */
+    private double elbo;
+
+    /**
+     * Sets the maximum number of local iterations on each batch.
+     * @param maxIterations a positive {@code int} value.
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the relative threshold of convergence of the local iterations on each batch.
+     * @param threshold a positive {@code double} value.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the weight below which a component is considered unused and reseeded on the worst explained data
+     * instance of the batch.
+     * @param pruneThreshold a {@code double} value in [0,1), 0 meaning no pruning.
+     */
+    public void setPruneThreshold(double pruneThreshold) {
+        this.pruneThreshold = pruneThreshold;
+    }
+
+    /**
+     * Sets the squared Mahalanobis distance between the means of two components below which they are merged, the
+     * freed component being reseeded on the worst explained data instance of the batch.
+     * @param mergeThreshold a non-negative {@code double} value, 0 meaning no merging.
+     */
+    public void setMergeThreshold(double mergeThreshold) {
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    /**
+     * Returns the average number of local iterations per batch.
+     * @return a {@code double} value.
+     */
+    public double getAverageNumOfIterations() {
+        return nBatches == 0 ? 0 : nIterTotal / (double) nBatches;
+    }
+
+    /**
+     * Returns the posterior mean of the mixture weights.
+     * @return an array of {@code double} values, indexed by the states of the hidden variable.
+     */
+    public double[] getWeights() {
+        double[] weights = new double[nComponents];
+        double sum = 0;
+        for (int k = 0; k < nComponents; k++) {
+            sum += alpha[k];
+        }
+        for (int k = 0; k < nComponents; k++) {
+            weights[k] = alpha[k] / sum;
+        }
+        return weights;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDAG(DAG dag) {
+        this.dag = dag;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWindowsSize() {
+        return windowsSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setWindowsSize(int windowsSize) {
+        this.windowsSize = windowsSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDataStream(DataStream<DataInstance> data) {
+        this.dataStream = data;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOutput(boolean activateOutput) {
+        this.activateOutput = activateOutput;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLogMarginalProbability() {
+        return elbo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initLearning() {
+        hiddenVar = null;
+        gaussianVars = new ArrayList<>();
+        diagonal = true;
+        for (Variable var : dag.getVariables()) {
+            if (var.isMultinomial() && dag.getParentSet(var).getNumberOfParents() == 0 && hiddenVar == null) {
+                hiddenVar = var;
+            } else if (var.isNormal()) {
+                gaussianVars.add(var);
+            } else {
+                throw new IllegalArgumentException("Not a Gaussian mixture: " + var.getName());
+            }
+        }
+        if (hiddenVar == null || gaussianVars.isEmpty())
+            throw new IllegalArgumentException("Not a Gaussian mixture: a root multinomial variable and Gaussian variables are required");
+
+        for (Variable var : gaussianVars) {
+            if (!dag.getParentSet(var).contains(hiddenVar))
+                throw new IllegalArgumentException("Not a Gaussian mixture: " + var.getName() + " is not a child of " + hiddenVar.getName());
+            if (dag.getParentSet(var).getNumberOfParents() > 1)
+                diagonal = false;
+        }
+
+        nComponents = hiddenVar.getNumberOfStates();
+        dim = gaussianVars.size();
+        random = new Random(seed);
+        alpha = null;
+        nIterTotal = 0;
+        nBatches = 0;
+        elbo = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runLearning() {
+        this.initLearning();
+        this.updateModel(this.dataStream);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataOnMemory<DataInstance> batch) {
+        double[][] data = this.toArray(batch);
+        if (data.length == 0)
+            return 0;
+
+        if (alpha == null)
+            this.initPrior(data);
+
+        //The posterior of the previous batches is the prior of this one.
+        double[][] prior = this.getPosterior();
+        double priorLogNormalizer = this.logNormalizer();
+
+        double previous = Double.NEGATIVE_INFINITY;
+        double bound = Double.NEGATIVE_INFINITY;
+        Statistics stats = null;
+        int iter = 0;
+        while (iter < maxIterations) {
+            stats = this.eStep(data);
+            this.setPosterior(prior);
+            this.addStatistics(stats);
+            iter++;
+
+            bound = stats.entropy - 0.5 * data.length * dim * Math.log(2 * Math.PI)
+                    + this.logNormalizer() - priorLogNormalizer;
+            if (Math.abs(bound - previous) <= threshold * Math.abs(bound))
+                break;
+            previous = bound;
+        }
+
+        nIterTotal += iter;
+        nBatches++;
+        elbo = bound;
+
+        if (pruneThreshold > 0 || mergeThreshold > 0)
+            this.manageComponents(data, stats);
+
+        if (activateOutput)
+            System.out.println("OnlineGaussianMixture: batch " + nBatches + ", " + iter + " iterations, ELBO " + elbo);
+
+        return elbo;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BayesianNetwork getLearntBayesianNetwork() {
+        BayesianNetwork bn = new BayesianNetwork(dag);
+
+        Multinomial weights = bn.getConditionalDistribution(hiddenVar);
+        weights.setProbabilities(this.getWeights());
+
+        for (int k = 0; k < nComponents; k++) {
+            double[] mean = new double[dim];
+            for (int d = 0; d < dim; d++) {
+                mean[d] = betaMean[k][d] / beta[k];
+            }
+            double[] covariance = this.expectedCovariance(k, mean);
+
+            for (int i = 0; i < dim; i++) {
+                Variable var = gaussianVars.get(i);
+                if (dag.getParentSet(var).getNumberOfParents() == 1) {
+                    Normal_MultinomialParents dist = bn.getConditionalDistribution(var);
+                    Normal normal = dist.getNormal(k);
+                    normal.setMean(mean[i]);
+                    normal.setVariance(diagonal ? covariance[i] : covariance[i * dim + i]);
+                } else {
+                    Normal_MultinomialNormalParents dist = bn.getConditionalDistribution(var);
+                    ConditionalLinearGaussian clg = dist.getNormal_NormalParentsDistribution(k);
+                    this.setRegression(clg, i, mean, covariance);
+                }
+            }
+        }
+        return bn;
+    }
+
+    /**
+     * Sets a conditional linear Gaussian to the regression of a variable on its Gaussian parents.
+     * @param clg a {@link ConditionalLinearGaussian} object.
+     * @param i the index of the variable.
+     * @param mean the mean vector.
+     * @param covariance the covariance matrix, stored by rows.
+     */
+    private void setRegression(ConditionalLinearGaussian clg, int i, double[] mean, double[] covariance) {
+        List<Variable> parents = clg.getConditioningVariables();
+        int p = parents.size();
+        int[] index = new int[p];
+        for (int j = 0; j < p; j++) {
+            index[j] = gaussianVars.indexOf(parents.get(j));
+        }
+
+        //Coefficients = Sigma_{JJ}^{-1} Sigma_{Ji}.
+        double[] sigmaJJ = new double[p * p];
+        double[] sigmaJi = new double[p];
+        for (int a = 0; a < p; a++) {
+            for (int b = 0; b < p; b++) {
+                sigmaJJ[a * p + b] = covariance[index[a] * dim + index[b]];
+            }
+            sigmaJi[a] = covariance[index[a] * dim + i];
+        }
+        double[] chol = cholesky(sigmaJJ, p);
+        double[] coeffs = forwardSubstitution(chol, p, sigmaJi);
+        double explained = dot(coeffs, coeffs);
+        coeffs = backwardSubstitution(chol, p, coeffs);
+
+        double intercept = mean[i];
+        for (int a = 0; a < p; a++) {
+            intercept -= coeffs[a] * mean[index[a]];
+        }
+        clg.setIntercept(intercept);
+        clg.setCoeffParents(coeffs);
+        clg.setVariance(Math.max(covariance[i * dim + i] - explained, 1e-10));
+    }
+
+    /**
+     * Returns the covariance of a component, i.e., the inverse of the expected precision.
+     * @param k the component.
+     * @param mean the mean of the component.
+     * @return the diagonal or the full matrix, stored by rows.
+     */
+    private double[] expectedCovariance(int k, double[] mean) {
+        double[] scale = this.inverseScale(k, mean);
+        for (int i = 0; i < scale.length; i++) {
+            scale[i] /= nu[k];
+        }
+        return scale;
+    }
+
+    /**
+     * Returns the inverse scale matrix (or the doubled rates of the diagonal case) of a component.
+     * @param k the component.
+     * @param mean the mean of the component.
+     * @return the diagonal or the full matrix, stored by rows.
+     */
+    private double[] inverseScale(int k, double[] mean) {
+        double[] scale = psi[k].clone();
+        if (diagonal) {
+            for (int d = 0; d < dim; d++) {
+                scale[d] -= beta[k] * mean[d] * mean[d];
+            }
+        } else {
+            for (int a = 0; a < dim; a++) {
+                for (int b = 0; b < dim; b++) {
+                    scale[a * dim + b] -= beta[k] * mean[a] * mean[b];
+                }
+            }
+        }
+        return scale;
+    }
+
+    /**
+     * Returns the log-normalizer of the current posterior, i.e., of the Dirichlet and of the Normal-Wishart (or
+     * Normal-Gamma) distributions of all the components, in the natural parameters updated by {@link #addStatistics}.
+     * @return a {@code double} value.
+     */
+    private double logNormalizer() {
+        double value = SpecialFunctions.dirichletLogNormalizer(alpha);
+        double[] mean = new double[dim];
+        for (int k = 0; k < nComponents; k++) {
+            for (int d = 0; d < dim; d++) {
+                mean[d] = betaMean[k][d] / beta[k];
+            }
+            double[] scale = this.inverseScale(k, mean);
+
+            if (diagonal) {
+                //A Normal-Gamma for each variable, with shape nu/2 and rate scale/2.
+                double shape = nu[k] / 2;
+                for (int d = 0; d < dim; d++) {
+                    value += 0.5 * Math.log(2 * Math.PI / beta[k]) - shape * Math.log(scale[d] / 2)
+                            + SpecialFunctions.logGamma(shape);
+                }
+            } else {
+                double[] chol = cholesky(scale, dim);
+                double logDetScale = 0;
+                for (int d = 0; d < dim; d++) {
+                    logDetScale += 2 * Math.log(chol[d * dim + d]);
+                    value += SpecialFunctions.logGamma((nu[k] - d) / 2);
+                }
+                value += 0.5 * dim * Math.log(2 * Math.PI / beta[k]) - 0.5 * nu[k] * logDetScale
+                        + 0.5 * nu[k] * dim * Math.log(2) + 0.25 * dim * (dim - 1) * Math.log(Math.PI);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Copies a batch to an array, skipping the data instances with missing values.
+     * @param batch a {@link DataOnMemory} object.
+     * @return an array of data instances, each one with the values of the Gaussian variables.
+     */
+    private double[][] toArray(DataOnMemory<DataInstance> batch) {
+        List<double[]> rows = new ArrayList<>(batch.getNumberOfDataInstances());
+        instances:
+        for (DataInstance instance : batch) {
+            double[] row = new double[dim];
+            for (int d = 0; d < dim; d++) {
+                row[d] = instance.getValue(gaussianVars.get(d).getAttribute());
+                if (Utils.isMissingValue(row[d]))
+                    continue instances;
+            }
+            rows.add(row);
+        }
+        return rows.toArray(new double[rows.size()][]);
+    }
+
+    /**
+     * Builds the prior from the first batch, centring the components on data instances chosen as in k-means++.
+     * @param data the data instances of the first batch.
+     */
+    private void initPrior(double[][] data) {
+        double[] priorMean = new double[dim];
+        priorVariance = new double[dim];
+        for (double[] row : data) {
+            for (int d = 0; d < dim; d++) {
+                priorMean[d] += row[d];
+                priorVariance[d] += row[d] * row[d];
+            }
+        }
+        for (int d = 0; d < dim; d++) {
+            priorMean[d] /= data.length;
+            priorVariance[d] = Math.max(priorVariance[d] / data.length - priorMean[d] * priorMean[d], 1e-6);
+        }
+
+        alpha = new double[nComponents];
+        beta = new double[nComponents];
+        betaMean = new double[nComponents][dim];
+        psi = new double[nComponents][diagonal ? dim : dim * dim];
+        nu = new double[nComponents];
+        basePrior = new double[nComponents][];
+
+        double[] distances = new double[data.length];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        int seedIndex = random.nextInt(data.length);
+        for (int k = 0; k < nComponents; k++) {
+            this.reseed(k, data[seedIndex]);
+
+            //The next seed is drawn with probability proportional to the standardised squared distance.
+            double total = 0;
+            for (int n = 0; n < data.length; n++) {
+                double distance = 0;
+                for (int d = 0; d < dim; d++) {
+                    double diff = data[n][d] - data[seedIndex][d];
+                    distance += diff * diff / priorVariance[d];
+                }
+                distances[n] = Math.min(distances[n], distance);
+                total += distances[n];
+            }
+            double u = random.nextDouble() * total;
+            int next = random.nextInt(data.length);
+            for (int n = 0; n < data.length && total > 0; n++) {
+                u -= distances[n];
+                if (u <= 0) {
+                    next = n;
+                    break;
+                }
+            }
+            seedIndex = next;
+        }
+    }
+
+    /**
+     * Sets a component to the prior centred on a given point.
+     * @param k the component.
+     * @param point the mean of the prior.
+     */
+    private void reseed(int k, double[] point) {
+        double nu0 = dim + 2;
+        alpha[k] = 1;
+        beta[k] = 1;
+        nu[k] = nu0;
+        for (int a = 0; a < dim; a++) {
+            betaMean[k][a] = beta[k] * point[a];
+            if (diagonal) {
+                psi[k][a] = nu0 * priorVariance[a] + beta[k] * point[a] * point[a];
+            } else {
+                for (int b = 0; b < dim; b++) {
+                    psi[k][a * dim + b] = (a == b ? nu0 * priorVariance[a] : 0) + beta[k] * point[a] * point[b];
+                }
+            }
+        }
+        basePrior[k] = this.getPosterior(k);
+    }
+
+    /**
+     * Returns the parameters of the posterior of a component.
+     * @param k the component.
+     * @return the parameters alpha, beta, betaMean, psi and nu concatenated.
+     */
+    private double[] getPosterior(int k) {
+        double[] params = new double[3 + dim + psi[k].length];
+        params[0] = alpha[k];
+        params[1] = beta[k];
+        System.arraycopy(betaMean[k], 0, params, 2, dim);
+        System.arraycopy(psi[k], 0, params, 2 + dim, psi[k].length);
+        params[params.length - 1] = nu[k];
+        return params;
+    }
+
+    /**
+     * Returns the parameters of the posteriors of all the components.
+     * @return an array indexed by component.
+     */
+    private double[][] getPosterior() {
+        double[][] params = new double[nComponents][];
+        for (int k = 0; k < nComponents; k++) {
+            params[k] = this.getPosterior(k);
+        }
+        return params;
+    }
+
+    /**
+     * Sets the parameters of the posterior of a component.
+     * @param k the component.
+     * @param params the parameters alpha, beta, betaMean, psi and nu concatenated.
+     */
+    private void setPosterior(int k, double[] params) {
+        alpha[k] = params[0];
+        beta[k] = params[1];
+        System.arraycopy(params, 2, betaMean[k], 0, dim);
+        System.arraycopy(params, 2 + dim, psi[k], 0, psi[k].length);
+        nu[k] = params[params.length - 1];
+    }
+
+    /**
+     * Sets the parameters of the posteriors of all the components.
+     * @param params an array indexed by component.
+     */
+    private void setPosterior(double[][] params) {
+        for (int k = 0; k < nComponents; k++) {
+            this.setPosterior(k, params[k]);
+        }
+    }
+
+    /**
+     * Adds the sufficient statistics of a batch to the posterior, i.e., the conjugate update.
+     * @param stats a {@link Statistics} object.
+     */
+    private void addStatistics(Statistics stats) {
+        for (int k = 0; k < nComponents; k++) {
+            alpha[k] += stats.counts[k];
+            beta[k] += stats.counts[k];
+            nu[k] += stats.counts[k];
+            for (int a = 0; a < dim; a++) {
+                betaMean[k][a] += stats.sums[k][a];
+            }
+            for (int i = 0; i < psi[k].length; i++) {
+                psi[k][i] += stats.squares[k][i];
+            }
+        }
+    }
+
+    /**
+     * Computes the responsibilities of the data instances under the current posterior, and accumulates them into
+     * the sufficient statistics of the components.
+     * @param data the data instances.
+     * @return a {@link Statistics} object.
+     */
+    private Statistics eStep(double[][] data) {
+        Expectations expectations = new Expectations();
+        int nChunks = (data.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream chunks = IntStream.range(0, nChunks);
+        if (parallelMode)
+            chunks = chunks.parallel();
+        return chunks.mapToObj(c -> expectations.accumulate(data, c * CHUNK_SIZE, Math.min(data.length, (c + 1) * CHUNK_SIZE)))
+                .reduce(Statistics::sum)
+                .get();
+    }
+
+    /**
+     * Reseeds the components with a negligible weight and merges the components with too close means.
+     * @param data the data instances of the batch.
+     * @param stats the statistics of the batch.
+     */
+    private void manageComponents(double[][] data, Statistics stats) {
+        double[] worst = data[stats.worstInstance];
+        boolean[] reseeded = new boolean[nComponents];
+
+        if (mergeThreshold > 0) {
+            Expectations expectations = new Expectations();
+            for (int a = 0; a < nComponents; a++) {
+                for (int b = a + 1; b < nComponents && !reseeded[a]; b++) {
+                    if (reseeded[b])
+                        continue;
+                    double distance = Math.max(expectations.mahalanobis(a, expectations.means[b]),
+                            expectations.mahalanobis(b, expectations.means[a]));
+                    if (distance < mergeThreshold) {
+                        //The statistics of b are added to a.
+                        double[] merged = this.getPosterior(a);
+                        double[] posteriorB = this.getPosterior(b);
+                        for (int i = 0; i < merged.length; i++) {
+                            merged[i] += posteriorB[i] - basePrior[b][i];
+                        }
+                        this.setPosterior(a, merged);
+                        this.reseed(b, worst);
+                        reseeded[b] = true;
+                    }
+                }
+            }
+        }
+
+        if (pruneThreshold > 0) {
+            double[] weights = this.getWeights();
+            for (int k = 0; k < nComponents; k++) {
+                if (!reseeded[k] && weights[k] < pruneThreshold) {
+                    this.reseed(k, worst);
+                    reseeded[k] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Represents the expectations under the current posterior needed to compute the responsibilities.
+     */
+    private final class Expectations {
+
+        /** Represents the constant term of the log responsibility of each component. */
+        final double[] constants = new double[nComponents];
+
+        /** Represents the mean of each component. */
+        final double[][] means = new double[nComponents][dim];
+
+        /** Represents the Cholesky factor of the inverse scale matrix (full case) or the expected precisions
+         * (diagonal case) of each component. */
+        final double[][] precisions = new double[nComponents][];
+
+        Expectations() {
+            double sumAlpha = 0;
+            for (int k = 0; k < nComponents; k++) {
+                sumAlpha += alpha[k];
+            }
+            double digammaSumAlpha = SpecialFunctions.digamma(sumAlpha);
+
+            for (int k = 0; k < nComponents; k++) {
+                for (int d = 0; d < dim; d++) {
+                    means[k][d] = betaMean[k][d] / beta[k];
+                }
+                double[] scale = inverseScale(k, means[k]);
+
+                //E[log |Lambda|]
+                double logDetPrecision = 0;
+                if (diagonal) {
+                    precisions[k] = new double[dim];
+                    double shape = nu[k] / 2;
+                    for (int d = 0; d < dim; d++) {
+                        double rate = scale[d] / 2;
+                        logDetPrecision += SpecialFunctions.digamma(shape) - Math.log(rate);
+                        precisions[k][d] = shape / rate;
+                    }
+                } else {
+                    precisions[k] = cholesky(scale, dim);
+                    for (int d = 0; d < dim; d++) {
+                        logDetPrecision += SpecialFunctions.digamma((nu[k] - d) / 2) + Math.log(2)
+                                - 2 * Math.log(precisions[k][d * dim + d]);
+                    }
+                }
+
+                constants[k] = SpecialFunctions.digamma(alpha[k]) - digammaSumAlpha + 0.5 * logDetPrecision
+                        - 0.5 * dim * Math.log(2 * Math.PI) - 0.5 * dim / beta[k];
+            }
+        }
+
+        /**
+         * Returns the expected squared Mahalanobis distance of a point to the mean of a component, without the
+         * uncertainty of the mean.
+         */
+        double mahalanobis(int k, double[] point) {
+            double[] diff = new double[dim];
+            for (int d = 0; d < dim; d++) {
+                diff[d] = point[d] - means[k][d];
+            }
+            if (diagonal) {
+                double distance = 0;
+                for (int d = 0; d < dim; d++) {
+                    distance += precisions[k][d] * diff[d] * diff[d];
+                }
+                return distance;
+            }
+            double[] y = forwardSubstitution(precisions[k], dim, diff);
+            return nu[k] * dot(y, y);
+        }
+
+        /**
+         * Accumulates the sufficient statistics of a range of data instances.
+         */
+        Statistics accumulate(double[][] data, int from, int to) {
+            Statistics stats = new Statistics();
+            double[] logResp = new double[nComponents];
+            for (int n = from; n < to; n++) {
+                double[] x = data[n];
+                double max = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < nComponents; k++) {
+                    logResp[k] = constants[k] - 0.5 * this.mahalanobis(k, x);
+                    max = Math.max(max, logResp[k]);
+                }
+                double sum = 0;
+                for (int k = 0; k < nComponents; k++) {
+                    logResp[k] = Math.exp(logResp[k] - max);
+                    sum += logResp[k];
+                }
+                double logNormalizer = max + Math.log(sum);
+                if (logNormalizer < stats.worstLogNormalizer) {
+                    stats.worstLogNormalizer = logNormalizer;
+                    stats.worstInstance = n;
+                }
+
+                for (int k = 0; k < nComponents; k++) {
+                    double r = logResp[k] / sum;
+                    if (r < 1e-12)
+                        continue;
+                    stats.entropy -= r * Math.log(r);
+                    stats.counts[k] += r;
+                    double[] sums = stats.sums[k];
+                    double[] squares = stats.squares[k];
+                    for (int a = 0; a < dim; a++) {
+                        double rx = r * x[a];
+                        sums[a] += rx;
+                        if (diagonal) {
+                            squares[a] += rx * x[a];
+                        } else {
+                            for (int b = 0; b < dim; b++) {
+                                squares[a * dim + b] += rx * x[b];
+                            }
+                        }
+                    }
+                }
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Represents the sufficient statistics of the components on a set of data instances.
+     */
+    private final class Statistics {
+        final double[] counts = new double[nComponents];
+        final double[][] sums = new double[nComponents][dim];
+        final double[][] squares = new double[nComponents][diagonal ? dim : dim * dim];
+        double entropy = 0;
+        double worstLogNormalizer = Double.POSITIVE_INFINITY;
+        int worstInstance = 0;
+
+        Statistics sum(Statistics other) {
+            for (int k = 0; k < nComponents; k++) {
+                counts[k] += other.counts[k];
+                for (int a = 0; a < dim; a++) {
+                    sums[k][a] += other.sums[k][a];
+                }
+                for (int i = 0; i < squares[k].length; i++) {
+                    squares[k][i] += other.squares[k][i];
+                }
+            }
+            entropy += other.entropy;
+            if (other.worstLogNormalizer < worstLogNormalizer) {
+                worstLogNormalizer = other.worstLogNormalizer;
+                worstInstance = other.worstInstance;
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Returns the lower triangular Cholesky factor of a symmetric positive definite matrix.
+     * @param matrix the matrix, stored by rows.
+     * @param size the number of rows.
+     * @return the factor, stored by rows.
+     */
+    private static double[] cholesky(double[] matrix, int size) {
+        double[] factor = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = matrix[i * size + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= factor[i * size + k] * factor[j * size + k];
+                }
+                if (i == j)
+                    factor[i * size + i] = Math.sqrt(Math.max(sum, 1e-10));
+                else
+                    factor[i * size + j] = sum / factor[j * size + j];
+            }
+        }
+        return factor;
+    }
+
+    /**
+     * Solves L y = b for a lower triangular matrix L.
+     */
+    private static double[] forwardSubstitution(double[] factor, int size, double[] b) {
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= factor[i * size + k] * y[k];
+            }
+            y[i] = sum / factor[i * size + i];
+        }
+        return y;
+    }
+
+    /**
+     * Solves L^T x = y for a lower triangular matrix L.
+     */
+    private static double[] backwardSubstitution(double[] factor, int size, double[] y) {
+        double[] x = new double[size];
+        for (int i = size - 1; i >= 0; i--) {
+            double sum = y[i];
+            for (int k = i + 1; k < size; k++) {
+                sum -= factor[k * size + i] * x[k];
+            }
+            x[i] = sum / factor[i * size + i];
+        }
+        return x;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -24,6 +24,8 @@ import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.exponentialfamily.EF_LearningBayesianNetwork;
 import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
+import eu.amidst.core.exponentialfamily.NaturalParameters;
+import eu.amidst.core.inference.messagepassing.Node;
 import eu.amidst.core.learning.parametric.bayesian.utils.*;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
@@ -35,7 +37,9 @@ import eu.amidst.core.variables.Variable;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 // TODO By iterating several times over the data we can get better approximations.
@@ -78,6 +82,21 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
     /** Indicates if this SVB can random restarted, initialized to {@code false}. */
     boolean randomRestart=false;
 
+    /** Indicates if the local Qs are warm-started from the previous posteriors, initialized to {@code false}. */
+    boolean warmStart=false;
+
+    /** Represents the maximum number of sequences whose local posteriors are cached, initialized to 10000. */
+    int maxCachedSequences = 10000;
+
+    /**
+     * Represents the last local posteriors of each sequence, keyed by the value of the SEQUENCE_ID attribute and
+     * indexed by the replicated variables.
+     */
+    transient Map<Double, NaturalParameters[]> sequenceQs;
+
+    /** Represents the average local posteriors of the last batch, indexed by the replicated variables. */
+    transient NaturalParameters[] averageQs;
+
     /** Represents the window size, initialized to 100. */
     int windowsSize=100;
 
@@ -113,6 +132,26 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
         this.randomRestart = randomRestart;
     }
 
+    /**
+     * Sets the warm start of the local Qs. Instead of starting from the posteriors of the previous batch in the same
+     * slice (or from random Qs, with a random restart), the local Qs of each data instance are initialized with the
+     * last posteriors of its sequence (if the data have a SEQUENCE_ID attribute) or, otherwise, with the average
+     * posteriors of the previous batch. The saving can be checked with {@link #getAverageNumOfIterations()}.
+     * @param warmStart {@code true} if the warm start is to be set, {@code false} otherwise.
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * Sets the maximum number of sequences whose last local posteriors are cached for the warm start. The least
+     * recently seen sequences are discarded first.
+     * @param maxCachedSequences a non-negative {@code int} value.
+     */
+    public void setMaxCachedSequences(int maxCachedSequences) {
+        this.maxCachedSequences = maxCachedSequences;
+    }
+
     /**
      * Returns the plateu structure of this SVB.
      * @return a {@link PlateuStructure} object.
@@ -264,11 +303,10 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
     @Override
     public double updateModel(DataOnMemory<DataInstance> batch) {
         double elboBatch = 0;
+        if (this.randomRestart && !this.warmStart) this.getPlateuStructure().resetQs();
         if (!nonSequentialModel){
-            if (this.randomRestart) this.getPlateuStructure().resetQs();
             elboBatch =  this.updateModelSequential(batch);
         }else{
-            if (this.randomRestart) this.getPlateuStructure().resetQs();
             elboBatch =  this.updateModelParallel(batch);
         }
 
@@ -295,8 +333,10 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
         nBatches++;
         //System.out.println("\n Batch:");
         this.plateuStructure.setEvidence(batch.getList());
+        if (this.warmStart) this.initLocalQs(batch);
         this.plateuStructure.runInference();
         nIterTotal+=this.plateuStructure.getVMP().getNumberOfIterations();
+        if (this.warmStart) this.cacheLocalQs(batch);
 
         this.updateNaturalParameterPrior(this.plateuStructure.getPlateauNaturalParameterPosterior());
 
@@ -405,8 +445,10 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
 
         nBatches++;
         this.plateuStructure.setEvidence(batch.getList());
+        if (this.warmStart) this.initLocalQs(batch);
         this.plateuStructure.runInference();
         nIterTotal+=this.plateuStructure.getVMP().getNumberOfIterations();
+        if (this.warmStart) this.cacheLocalQs(batch);
 
         CompoundVector compoundVectorEnd = this.plateuStructure.getPlateauNaturalParameterPosterior();
 
@@ -419,6 +461,80 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
         return out.getElbo();
     }
 
+    /**
+     * Initializes the Qs of the unobserved replicated nodes with the cached posteriors of their sequences or, if
+     * there are none, with the average posteriors of the previous batch.
+     * @param batch a {@link DataOnMemory} object.
+     */
+    private void initLocalQs(DataOnMemory<DataInstance> batch) {
+        if (this.averageQs == null)
+            return;
+
+        Attribute seq_id = batch.getAttributes().getSeq_id();
+        List<Variable> replicatedVariables = this.plateuStructure.getReplicatedVariables();
+        for (int i = 0; i < batch.getNumberOfDataInstances(); i++) {
+            NaturalParameters[] initQs = null;
+            if (seq_id != null && this.sequenceQs != null)
+                initQs = this.sequenceQs.get(batch.getDataInstance(i).getValue(seq_id));
+            if (initQs == null)
+                initQs = this.averageQs;
+
+            for (int j = 0; j < replicatedVariables.size(); j++) {
+                Node node = this.plateuStructure.getNodeOfVar(replicatedVariables.get(j), i);
+                if (node.isObserved() || initQs[j] == null)
+                    continue;
+                EF_UnivariateDistribution qDist = node.getQDist();
+                qDist.getNaturalParameters().copy(initQs[j]);
+                qDist.fixNumericalInstability();
+                qDist.updateMomentFromNaturalParameters();
+            }
+        }
+    }
+
+    /**
+     * Stores the posteriors of the unobserved replicated nodes for the warm start of the next batches.
+     * @param batch a {@link DataOnMemory} object.
+     */
+    private void cacheLocalQs(DataOnMemory<DataInstance> batch) {
+        Attribute seq_id = batch.getAttributes().getSeq_id();
+        if (seq_id != null && this.sequenceQs == null) {
+            this.sequenceQs = new LinkedHashMap<Double, NaturalParameters[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Double, NaturalParameters[]> eldest) {
+                    return size() > maxCachedSequences;
+                }
+            };
+        }
+
+        List<Variable> replicatedVariables = this.plateuStructure.getReplicatedVariables();
+        NaturalParameters[] sumQs = new NaturalParameters[replicatedVariables.size()];
+        int[] counts = new int[replicatedVariables.size()];
+        for (int i = 0; i < batch.getNumberOfDataInstances(); i++) {
+            NaturalParameters[] posteriors = new NaturalParameters[replicatedVariables.size()];
+            for (int j = 0; j < replicatedVariables.size(); j++) {
+                Node node = this.plateuStructure.getNodeOfVar(replicatedVariables.get(j), i);
+                if (node.isObserved())
+                    continue;
+                EF_UnivariateDistribution qDist = node.getQDist();
+                posteriors[j] = qDist.createZeroNaturalParameters();
+                posteriors[j].copy(qDist.getNaturalParameters());
+                if (sumQs[j] == null)
+                    sumQs[j] = qDist.createZeroNaturalParameters();
+                sumQs[j].sum(posteriors[j]);
+                counts[j]++;
+            }
+            if (seq_id != null)
+                this.sequenceQs.put(batch.getDataInstance(i).getValue(seq_id), posteriors);
+        }
+
+        //The average of the natural parameters, i.e., the normalized geometric mean of the posteriors.
+        for (int j = 0; j < sumQs.length; j++) {
+            if (sumQs[j] != null)
+                sumQs[j].divideBy(counts[j]);
+        }
+        this.averageQs = sumQs;
+    }
+
     /**
      * Returns the number of batches.
      * @return the number of batches.
@@ -468,6 +584,8 @@ public class SVB implements BayesianParameterLearningAlgorithm, Serializable {
 
         this.nBatches = 0;
         this.nIterTotal = 0;
+        this.sequenceQs = null;
+        this.averageQs = null;
         this.plateuStructure.setSeed(seed);
         plateuStructure.setDAG(dag);
         plateuStructure.replicateModel();
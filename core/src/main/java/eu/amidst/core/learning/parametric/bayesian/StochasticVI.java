@@ -28,8 +28,14 @@ import eu.amidst.core.utils.Serialization;
 import eu.amidst.core.variables.Variable;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * This class implements the {@link BayesianParameterLearningAlgorithm} interface, and defines the parallel Maximum Likelihood algorithm.
@@ -77,6 +83,18 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
     private boolean firstBatch = true;
 
+    /** Represents whether the progress of {@link #runLearning()} is printed, initialized to false. */
+    private boolean activateOutput = false;
+
+    /** Represents the number of worker plateaus processing disjoint minibatches concurrently, initialized to 1. */
+    private int nCores = 1;
+
+    /** Represents the SVB engines of the workers, the first one being {@link #svb}. */
+    private transient SVB[] svbEngines;
+
+    /** Represents the iterator over the minibatches, only accessed by the prefetching thread. */
+    private transient Iterator<DataOnMemory<DataInstance>> iterator;
+
     public int getBatchSize() {
         return batchSize;
     }
@@ -89,10 +107,28 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         this.learningFactor = learningFactor;
     }
 
+    public double getLearningFactor() {
+        return learningFactor;
+    }
+
+    public long getDataSetSize() {
+        return dataSetSize;
+    }
+
     public void setTimiLimit(long seconds) {
         this.timiLimit = seconds;
     }
 
+    /**
+     * Sets the number of worker plateaus. In each step of {@link #runLearning()}, each worker runs the local VMP
+     * on a different minibatch concurrently, and their natural gradients are applied one after the other, each one
+     * as a stochastic step. The next minibatches are read from the data stream while the workers run.
+     * @param nCores the number of workers, or -1 for the number of available processors.
+     */
+    public void setNCores(int nCores) {
+        this.nCores = nCores;
+    }
+
     public void setDataSetSize(long dataSetSize) {
         this.dataSetSize = dataSetSize;
     }
@@ -131,14 +167,7 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
     public void initLearning() {
 
-        //TODO: Remove the code inside this method once issue #50 is solved.
-        VMPLocalUpdates vmpLocalUpdates = new VMPLocalUpdates(this.svb.getPlateuStructure());
-        this.svb.getPlateuStructure().setVmp(vmpLocalUpdates);
-        this.svb.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
-        this.svb.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
-        this.svb.setDAG(this.dag);
-        this.svb.setWindowsSize(batchSize);
-        this.svb.initLearning(); //Init learning is peformed in each mapper.
+        this.initEngine(this.svb);
 
 
 
@@ -155,6 +184,21 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
     }
 
+    /**
+     * Initializes a SVB engine with local VMP updates.
+     * @param engine a {@link SVB} object.
+     */
+    private void initEngine(SVB engine) {
+        //TODO: Remove the code inside this method once issue #50 is solved.
+        VMPLocalUpdates vmpLocalUpdates = new VMPLocalUpdates(engine.getPlateuStructure());
+        engine.getPlateuStructure().setVmp(vmpLocalUpdates);
+        engine.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
+        engine.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
+        engine.setDAG(this.dag);
+        engine.setWindowsSize(batchSize);
+        engine.initLearning(); //Init learning is peformed in each mapper.
+    }
+
     private void updateFirstBatch(DataOnMemory<DataInstance> firstBatch){
 
         //We perform full VMP on the first batch
@@ -193,6 +237,27 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         iteration=0;
     }
 
+    /**
+     * Returns the number of stochastic steps performed so far, which determines the next step size.
+     * @return a non-negative {@code int} value.
+     */
+    public int getNumberOfSteps() {
+        return iteration;
+    }
+
+    /**
+     * Sets the natural parameters of the posterior, e.g. after running the stochastic updates elsewhere, and
+     * continues with the next learning step from them.
+     * @param posterior a {@link CompoundVector} with the natural parameters of the posterior.
+     * @param numberOfSteps the number of stochastic steps already performed, which determines the next step size.
+     */
+    public void setNaturalParameterPosterior(CompoundVector posterior, int numberOfSteps) {
+        this.currentParam = posterior;
+        this.svb.updateNaturalParameterPosteriors(currentParam);
+        this.iteration = numberOfSteps;
+        this.firstBatch = false;
+    }
+
     @Override
     public double updateModel(DataOnMemory<DataInstance> batch) {
 
@@ -202,22 +267,10 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         }
 
 
-        NaturalParameters newParam = svb.updateModelOnBatchParallel(batch).getVector();
-
-        newParam.multiplyBy(this.dataSetSize/(double)this.batchSize);
-        newParam.sum(prior);
-
-        double stepSize = Math.pow(1+ iteration,-learningFactor);
-
-        newParam.multiplyBy(stepSize);
-
-        currentParam.multiplyBy((1-stepSize));
-        currentParam.sum(newParam);
+        this.stochasticStep(svb.updateModelOnBatchParallel(batch).getVector());
 
         this.svb.updateNaturalParameterPosteriors(currentParam);
 
-        iteration++;
-
         return Double.NaN;
     }
 
@@ -249,69 +302,120 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
     }
 
     /**
-     * {@inheritDoc}
+     * Reads the minibatches of the next step, one for each worker, starting over when the data stream is exhausted.
+     * @return a list of {@link DataOnMemory} objects.
      */
-    @Override
-    public void runLearning() {
-        this.initLearning();
+    private List<DataOnMemory<DataInstance>> nextBatches() {
+        List<DataOnMemory<DataInstance>> batches = new ArrayList<>(this.svbEngines.length);
+        for (int i = 0; i < this.svbEngines.length; i++) {
+            batches.add(this.iterator.next());
+            if (!this.iterator.hasNext())
+                this.iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
+        }
+        return batches;
+    }
 
-        boolean convergence=false;
+    /**
+     * Performs a stochastic step with the natural gradient given by the local VMP on a minibatch.
+     * @param batchParam the natural parameters computed on the minibatch, minus the prior.
+     * @return the step size.
+     */
+    private double stochasticStep(NaturalParameters batchParam) {
+        batchParam.multiplyBy(this.dataSetSize/(double)this.batchSize);
+        batchParam.sum(prior);
 
+        double stepSize = Math.pow(1+ iteration,-learningFactor);
 
-        double totalTimeElbo=0;
+        batchParam.multiplyBy(stepSize);
 
-        double totalTime=0;
+        currentParam.multiplyBy((1-stepSize));
+        currentParam.sum(batchParam);
 
-        Iterator<DataOnMemory<DataInstance>> iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
+        iteration++;
 
+        return stepSize;
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runLearning() {
+        this.initLearning();
 
-        while(!convergence){
+        int cores = this.nCores==-1 ? Runtime.getRuntime().availableProcessors() : this.nCores;
 
-            long startBatch= System.nanoTime();
+        this.svbEngines = new SVB[Math.max(1, cores)];
+        this.svbEngines[0] = this.svb;
+        for (int i = 1; i < this.svbEngines.length; i++) {
+            this.svbEngines[i] = Serialization.deepCopy(this.svb);
+            this.initEngine(this.svbEngines[i]);
+            this.svbEngines[i].updateNaturalParameterPosteriors(currentParam);
+        }
 
-            DataOnMemory<DataInstance> batch = iterator.next();
+        ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StochasticVI-prefetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-            if (!iterator.hasNext())
-                iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
+        try {
+            boolean convergence = false;
 
-            NaturalParameters newParam = svb.updateModelOnBatchParallel(batch).getVector();
+            double totalTimeElbo = 0;
 
-            newParam.multiplyBy(this.dataSetSize/(double)this.batchSize);
-            newParam.sum(prior);
+            double totalTime = 0;
 
-            double stepSize = Math.pow(1+ iteration,-learningFactor);
+            this.iterator = this.dataStream.iterableOverBatches(this.batchSize).iterator();
 
-            newParam.multiplyBy(stepSize);
+            CompletableFuture<List<DataOnMemory<DataInstance>>> prefetched =
+                    CompletableFuture.supplyAsync(this::nextBatches, prefetcher);
 
-            currentParam.multiplyBy((1-stepSize));
-            currentParam.sum(newParam);
+            while (!convergence) {
 
-            this.svb.updateNaturalParameterPosteriors(currentParam);
+                long startBatch = System.nanoTime();
 
+                List<DataOnMemory<DataInstance>> batches = prefetched.join();
+                prefetched = CompletableFuture.supplyAsync(this::nextBatches, prefetcher);
 
+                //All the workers start from the current posterior.
+                List<CompoundVector> batchParams = IntStream.range(0, batches.size())
+                        .parallel()
+                        .mapToObj(i -> this.svbEngines[i].updateModelOnBatchParallel(batches.get(i)).getVector())
+                        .collect(Collectors.toList());
 
+                double stepSize = 0;
+                for (CompoundVector batchParam : batchParams) {
+                    stepSize = this.stochasticStep(batchParam);
+                }
 
-            long startBatchELBO= System.nanoTime();
+                for (SVB svbEngine : this.svbEngines) {
+                    svbEngine.updateNaturalParameterPosteriors(currentParam);
+                }
 
-            long endBatch= System.nanoTime();
+                long startBatchELBO = System.nanoTime();
 
-            totalTimeElbo += endBatch - startBatchELBO;
+                long endBatch = System.nanoTime();
 
-            System.out.println("TIME ELBO:" + totalTimeElbo/1e9);
+                totalTimeElbo += endBatch - startBatchELBO;
 
-            totalTime+=endBatch-startBatch;
+                if (activateOutput)
+                    System.out.println("TIME ELBO:" + totalTimeElbo / 1e9);
 
+                totalTime += endBatch - startBatch;
 
-            System.out.println("SVI ELBO: "+ iteration +", "+stepSize+", "+totalTime/1e9+" seconds "+ totalTimeElbo/1e9 + " seconds" + (totalTime - totalTimeElbo)/1e9 + " seconds");
 
+                if (activateOutput)
+                    System.out.println("SVI ELBO: " + iteration + ", " + stepSize + ", " + totalTime / 1e9 + " seconds " + totalTimeElbo / 1e9 + " seconds" + (totalTime - totalTimeElbo) / 1e9 + " seconds");
 
-            if ((totalTime-totalTimeElbo)/1e9>timiLimit || iteration>this.maximumLocalIterations){
-                convergence=true;
-            }
 
-            iteration++;
+                if ((totalTime - totalTimeElbo) / 1e9 > timiLimit || iteration > this.maximumLocalIterations) {
+                    convergence = true;
+                }
 
+            }
+        } finally {
+            prefetcher.shutdownNow();
         }
     }
 
@@ -340,9 +444,13 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         return this.svb.getLearntBayesianNetwork();
     }
 
+    /**
+     * {@inheritDoc}
+     * In parallel mode, there is a worker plateau for each available processor, see {@link #setNCores(int)}.
+     */
     @Override
     public void setParallelMode(boolean parallelMode) {
-
+        this.nCores = parallelMode ? -1 : 1;
     }
 
     /**
@@ -350,6 +458,7 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
      */
     @Override
     public void setOutput(boolean activateOutput) {
+        this.activateOutput = activateOutput;
         this.svb.setOutput(activateOutput);
     }
 
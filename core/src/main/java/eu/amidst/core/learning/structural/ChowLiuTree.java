@@ -0,0 +1,519 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.structural;
+
+import eu.amidst.core.datastream.ContingencyTableIndex;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * This class implements the {@link StructuralLearningAlgorithm} interface, and defines the Chow-Liu algorithm for
+ * learning a tree structure or, if a class variable is given, a Tree Augmented Naive Bayes (TAN) structure. For more
+ * details:
+ *
+ * <p> C. Chow and C. Liu. Approximating discrete probability distributions with dependence trees. IEEE Transactions
+ * on Information Theory, 14(3):462–467, 1968. </p>
+ *
+ * <p> N. Friedman, D. Geiger, and M. Goldszmidt. Bayesian network classifiers. Machine Learning, 29(2-3):131–163,
+ * 1997. </p>
+ *
+ * <p> The mutual information of every pair of variables (conditioned on the class variable, if any) is computed in a
+ * single (parallel) pass over the data, and stored in a flat symmetric matrix. Multinomial and normal variables are
+ * supported, the latter with the mutual information of Gaussian distributions. The tree is the maximum weight
+ * spanning tree of the mutual informations directed from the root variable (Chu-Liu/Edmonds algorithm), without
+ * arcs from normal to multinomial variables, so that the result is a conditional linear Gaussian network. Data
+ * instances with missing values are skipped for the pairs (and the class variable) they affect. </p>
+ *
+ * <p> For instance, </p>
+ * <pre>{@code
+ * ChowLiuTree tan = new ChowLiuTree();
+ * tan.setNameTarget("ClassVar");
+ * tan.setNameRoot("DiscreteVar1");
+ * DAG dag = tan.learnDAG(data);
+ * }</pre>
+ */
+public class ChowLiuTree implements StructuralLearningAlgorithm {
+
+    /** Represents the name of the class variable, or null for a plain Chow-Liu tree. */
+    protected String nameTarget;
+
+    /** Represents the name of the root variable of the tree, or null for the first multinomial variable. */
+    protected String nameRoot;
+
+    /** Represents the batch size used in the pass over the data. */
+    protected int windowsSize = 1000;
+
+    /** Indicates the parallel processing mode, initialized here as {@code true}. */
+    protected boolean parallelMode = true;
+
+    /** Represents the variables of the last learnt DAG. */
+    private Variables variables;
+
+    /** Represents the mutual informations of the pairs of variables i &lt; j of the last learnt DAG. */
+    private double[] mutualInformation;
+
+    /**
+     * Sets the name of the class variable of the TAN structure.
+     * @param nameTarget the name of a multinomial variable, or null for learning a plain Chow-Liu tree.
+     */
+    public void setNameTarget(String nameTarget) {
+        this.nameTarget = nameTarget;
+    }
+
+    /**
+     * Sets the name of the root variable of the tree.
+     * @param nameRoot the name of a variable, preferably multinomial.
+     */
+    public void setNameRoot(String nameRoot) {
+        this.nameRoot = nameRoot;
+    }
+
+    /**
+     * Sets the batch size used in the pass over the data.
+     * @param windowsSize the batch size.
+     */
+    public void setWindowsSize(int windowsSize) {
+        this.windowsSize = windowsSize;
+    }
+
+    /**
+     * Sets the parallel processing mode.
+     * @param parallelMode {@code true} if the pass over the data is performed in parallel, {@code false} otherwise.
+     */
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * Returns the (conditional) mutual information between two variables, as computed in the last learning.
+     * @param a a {@link Variable} object.
+     * @param b a {@link Variable} object.
+     * @return a {@code double} value.
+     */
+    public double getMutualInformation(Variable a, Variable b) {
+        if (this.mutualInformation == null)
+            throw new IllegalStateException("No DAG has been learnt.");
+        if (a.getVarID() == b.getVarID())
+            throw new IllegalArgumentException("The variables must be different.");
+        return this.mutualInformation[pairIndex(this.variables.getNumberOfVars(),
+                Math.min(a.getVarID(), b.getVarID()), Math.max(a.getVarID(), b.getVarID()))];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DAG learnDAG(DataStream<DataInstance> dataStream) {
+        this.variables = new Variables(dataStream.getAttributes());
+        int nVars = this.variables.getNumberOfVars();
+
+        Variable target = null;
+        if (this.nameTarget != null) {
+            target = this.variables.getVariableByName(this.nameTarget);
+            if (!target.isMultinomial())
+                throw new IllegalArgumentException("The class variable must be multinomial: " + this.nameTarget);
+        }
+        for (Variable var : this.variables) {
+            if (!var.isMultinomial() && !var.isNormal())
+                throw new IllegalArgumentException("Only multinomial and normal variables are supported: " + var.getName());
+        }
+
+        PairStatistics statistics = this.computeStatistics(dataStream, target);
+        this.mutualInformation = statistics.mutualInformation();
+
+        DAG dag = new DAG(this.variables);
+        if (target != null) {
+            for (Variable var : this.variables) {
+                if (var != target)
+                    dag.getParentSet(var).addParent(target);
+            }
+        }
+
+        //Maximum weight tree rooted at the root, over the arcs allowed in a conditional linear Gaussian network.
+        //An extra node, with an arc to the root and heavily penalized arcs to the rest of the variables, keeps
+        //as a forest the variables which can not be reached from the root (e.g. multinomial variables below a
+        //normal root).
+        int[] nodes = new int[target != null ? nVars - 1 : nVars];
+        for (int i = 0, k = 0; i < nVars; i++) {
+            if (target == null || i != target.getVarID())
+                nodes[k++] = i;
+        }
+        int root = this.rootIndex(target);
+        int nNodes = nodes.length;
+        double penalty = -1;
+        for (double mi : this.mutualInformation) {
+            penalty -= Math.abs(mi);
+        }
+        double[][] weights = new double[nNodes + 1][nNodes + 1];
+        for (int u = 0; u <= nNodes; u++) {
+            for (int v = 0; v < nNodes; v++) {
+                if (u == v) {
+                    weights[u][v] = Double.NEGATIVE_INFINITY;
+                } else if (u == nNodes) {
+                    weights[u][v] = nodes[v] == root ? 0 : penalty;
+                } else if (this.variables.getVariableById(nodes[v]).isMultinomial()
+                        && !this.variables.getVariableById(nodes[u]).isMultinomial()) {
+                    weights[u][v] = Double.NEGATIVE_INFINITY;
+                } else {
+                    weights[u][v] = this.mutualInformation[pairIndex(nVars, Math.min(nodes[u], nodes[v]),
+                            Math.max(nodes[u], nodes[v]))];
+                }
+            }
+            weights[u][nNodes] = Double.NEGATIVE_INFINITY;
+        }
+
+        int[] parents = maximumArborescence(weights, nNodes);
+        for (int v = 0; v < nNodes; v++) {
+            if (parents[v] != nNodes)
+                dag.getParentSet(this.variables.getVariableById(nodes[v])).addParent(this.variables.getVariableById(nodes[parents[v]]));
+        }
+
+        return dag;
+    }
+
+    /**
+     * Returns the index of the root variable: the given one or, by default, the first multinomial variable which
+     * is not the class variable.
+     */
+    private int rootIndex(Variable target) {
+        if (this.nameRoot != null)
+            return this.variables.getVariableByName(this.nameRoot).getVarID();
+        int first = -1;
+        for (int i = this.variables.getNumberOfVars() - 1; i >= 0; i--) {
+            if ((target == null || i != target.getVarID())
+                    && (first < 0 || this.variables.getVariableById(i).isMultinomial()))
+                first = i;
+        }
+        return first;
+    }
+
+    /**
+     * Returns the maximum weight spanning arborescence of a complete directed graph with the Chu-Liu/Edmonds
+     * algorithm. Ties are broken in favour of the parent with the lowest index.
+     * @param weights the weights of the arcs u -&gt; v, with {@code Double.NEGATIVE_INFINITY} for the missing ones.
+     * @param root the index of the root node, which must reach every other node.
+     * @return the index of the parent of each node, and -1 for the root.
+     */
+    public static int[] maximumArborescence(double[][] weights, int root) {
+        int n = weights.length;
+        int[] parents = new int[n];
+        for (int v = 0; v < n; v++) {
+            parents[v] = -1;
+            if (v == root)
+                continue;
+            for (int u = 0; u < n; u++) {
+                if (u != v && weights[u][v] > Double.NEGATIVE_INFINITY
+                        && (parents[v] < 0 || weights[u][v] > weights[parents[v]][v]))
+                    parents[v] = u;
+            }
+            if (parents[v] < 0)
+                throw new IllegalStateException("The node " + v + " can not be reached from the root.");
+        }
+
+        //A cycle of the best incoming arcs, if any.
+        int[] cycle = new int[n];
+        Arrays.fill(cycle, -1);
+        int cycleNode = -1;
+        for (int v = 0; v < n && cycleNode < 0; v++) {
+            int u = v;
+            while (u != root && cycle[u] < 0) {
+                cycle[u] = v;
+                u = parents[u];
+            }
+            if (u != root && cycle[u] == v)
+                cycleNode = u;
+        }
+        if (cycleNode < 0)
+            return parents;
+
+        boolean[] inCycle = new boolean[n];
+        for (int u = cycleNode; !inCycle[u]; u = parents[u]) {
+            inCycle[u] = true;
+        }
+
+        //The cycle is contracted into a single node, the last one of the reduced graph.
+        int[] index = new int[n];
+        int m = 0;
+        for (int v = 0; v < n; v++) {
+            if (!inCycle[v])
+                index[v] = m++;
+        }
+        int contracted = m++;
+        for (int v = 0; v < n; v++) {
+            if (inCycle[v])
+                index[v] = contracted;
+        }
+
+        double[][] reduced = new double[m][m];
+        for (double[] row : reduced) {
+            Arrays.fill(row, Double.NEGATIVE_INFINITY);
+        }
+        int[] enteringNode = new int[m];
+        int[] leavingNode = new int[m];
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                if (u == v || weights[u][v] == Double.NEGATIVE_INFINITY || (inCycle[u] && inCycle[v]))
+                    continue;
+                double weight = inCycle[v] ? weights[u][v] - weights[parents[v]][v] : weights[u][v];
+                if (weight > reduced[index[u]][index[v]]) {
+                    reduced[index[u]][index[v]] = weight;
+                    if (inCycle[v])
+                        enteringNode[index[u]] = v;
+                    if (inCycle[u])
+                        leavingNode[index[v]] = u;
+                }
+            }
+        }
+
+        int[] reducedParents = maximumArborescence(reduced, index[root]);
+
+        //The arcs of the reduced tree are expanded, and the cycle is broken where the tree enters it.
+        int[] nodeOf = new int[m];
+        for (int v = 0; v < n; v++) {
+            if (!inCycle[v])
+                nodeOf[index[v]] = v;
+        }
+        int[] result = new int[n];
+        for (int v = 0; v < n; v++) {
+            if (inCycle[v]) {
+                result[v] = parents[v];
+            } else if (v == root) {
+                result[v] = -1;
+            } else {
+                int p = reducedParents[index[v]];
+                result[v] = p == contracted ? leavingNode[index[v]] : nodeOf[p];
+            }
+        }
+        int parentOfCycle = nodeOf[reducedParents[contracted]];
+        result[enteringNode[index[parentOfCycle]]] = parentOfCycle;
+        return result;
+    }
+
+    /**
+     * Accumulates the statistics of all the pairs of variables in one pass over the data.
+     */
+    private PairStatistics computeStatistics(DataStream<DataInstance> dataStream, Variable target) {
+        Stream<DataOnMemory<DataInstance>> stream = this.parallelMode ?
+                dataStream.parallelStreamOfBatches(this.windowsSize) : dataStream.streamOfBatches(this.windowsSize);
+
+        int nVars = this.variables.getNumberOfVars();
+        return stream.map(batch -> {
+            PairStatistics statistics = new PairStatistics(this.variables, target);
+            double[] row = new double[nVars];
+            for (DataInstance instance : batch) {
+                for (int i = 0; i < nVars; i++) {
+                    row[i] = instance.getValue(this.variables.getVariableById(i));
+                }
+                statistics.update(row);
+            }
+            return statistics;
+        }).reduce(PairStatistics::merge).orElseGet(() -> new PairStatistics(this.variables, target));
+    }
+
+    /**
+     * Returns the position of the pair i &lt; j in the flat symmetric matrix.
+     */
+    static int pairIndex(int nVars, int i, int j) {
+        return i * nVars - i * (i + 1) / 2 + (j - i - 1);
+    }
+
+    /**
+     * This class defines the statistics of all the pairs of variables, stored in a single flat array. For each class
+     * value c, a pair of multinomial variables keeps the counts N(x, y, c), a pair of normal variables the moments
+     * (N, Sx, Sy, Sxx, Syy, Sxy), and a multinomial X with a normal Y the moments (N, Sy, Syy) for each state of X.
+     */
+    static final class PairStatistics {
+
+        final int nVars;
+
+        final int[] nStates;
+
+        final int classIndex;
+
+        final int nClasses;
+
+        final int[] offsets;
+
+        final double[] values;
+
+        PairStatistics(Variables variables, Variable target) {
+            this.nVars = variables.getNumberOfVars();
+            this.nStates = new int[nVars];
+            for (int i = 0; i < nVars; i++) {
+                Variable var = variables.getVariableById(i);
+                this.nStates[i] = var.isMultinomial() ? var.getNumberOfStates() : 0;
+            }
+            this.classIndex = target == null ? -1 : target.getVarID();
+            this.nClasses = target == null ? 1 : target.getNumberOfStates();
+
+            this.offsets = new int[nVars * (nVars - 1) / 2 + 1];
+            int offset = 0;
+            for (int i = 0; i < nVars; i++) {
+                for (int j = i + 1; j < nVars; j++) {
+                    this.offsets[pairIndex(nVars, i, j)] = offset;
+                    offset += this.size(i, j);
+                }
+            }
+            this.offsets[this.offsets.length - 1] = offset;
+            this.values = new double[offset];
+        }
+
+        private int size(int i, int j) {
+            if (nStates[i] > 0 && nStates[j] > 0)
+                return nStates[i] * nStates[j] * nClasses;
+            else if (nStates[i] == 0 && nStates[j] == 0)
+                return 6 * nClasses;
+            else
+                return 3 * Math.max(nStates[i], nStates[j]) * nClasses;
+        }
+
+        void update(double[] row) {
+            int c = 0;
+            if (classIndex >= 0) {
+                if (Utils.isMissingValue(row[classIndex]))
+                    return;
+                c = (int) row[classIndex];
+            }
+
+            int pair = 0;
+            for (int i = 0; i < nVars; i++) {
+                double xi = row[i];
+                if (i == classIndex || Utils.isMissingValue(xi)) {
+                    pair += nVars - i - 1;
+                    continue;
+                }
+                for (int j = i + 1; j < nVars; j++, pair++) {
+                    double xj = row[j];
+                    if (j == classIndex || Utils.isMissingValue(xj))
+                        continue;
+                    int offset = offsets[pair];
+                    if (nStates[i] > 0 && nStates[j] > 0) {
+                        values[offset + (int) xi + nStates[i] * ((int) xj + nStates[j] * c)]++;
+                    } else if (nStates[i] == 0 && nStates[j] == 0) {
+                        offset += 6 * c;
+                        values[offset]++;
+                        values[offset + 1] += xi;
+                        values[offset + 2] += xj;
+                        values[offset + 3] += xi * xi;
+                        values[offset + 4] += xj * xj;
+                        values[offset + 5] += xi * xj;
+                    } else {
+                        int state = (int) (nStates[i] > 0 ? xi : xj);
+                        double y = nStates[i] > 0 ? xj : xi;
+                        offset += 3 * (state + Math.max(nStates[i], nStates[j]) * c);
+                        values[offset]++;
+                        values[offset + 1] += y;
+                        values[offset + 2] += y * y;
+                    }
+                }
+            }
+        }
+
+        PairStatistics merge(PairStatistics other) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] += other.values[i];
+            }
+            return this;
+        }
+
+        /**
+         * Returns the flat symmetric matrix of (conditional) mutual informations.
+         */
+        double[] mutualInformation() {
+            double[] mi = new double[nVars * (nVars - 1) / 2];
+            for (int i = 0; i < nVars; i++) {
+                for (int j = i + 1; j < nVars; j++) {
+                    if (i == classIndex || j == classIndex)
+                        continue;
+                    int pair = pairIndex(nVars, i, j);
+                    double[] cell = Arrays.copyOfRange(values, offsets[pair], offsets[pair + 1]);
+                    if (nStates[i] > 0 && nStates[j] > 0)
+                        mi[pair] = ContingencyTableIndex.conditionalMutualInformation(cell, nStates[i], nStates[j], nClasses);
+                    else if (nStates[i] == 0 && nStates[j] == 0)
+                        mi[pair] = gaussianMutualInformation(cell, nClasses);
+                    else
+                        mi[pair] = mixedMutualInformation(cell, Math.max(nStates[i], nStates[j]), nClasses);
+                }
+            }
+            return mi;
+        }
+
+        private static double gaussianMutualInformation(double[] moments, int nClasses) {
+            double total = 0;
+            for (int c = 0; c < nClasses; c++) {
+                total += moments[6 * c];
+            }
+            double mi = 0;
+            for (int c = 0; c < nClasses; c++) {
+                double n = moments[6 * c];
+                if (n < 2)
+                    continue;
+                double meanX = moments[6 * c + 1] / n;
+                double meanY = moments[6 * c + 2] / n;
+                double varX = moments[6 * c + 3] / n - meanX * meanX;
+                double varY = moments[6 * c + 4] / n - meanY * meanY;
+                double cov = moments[6 * c + 5] / n - meanX * meanY;
+                if (varX <= 0 || varY <= 0)
+                    continue;
+                double rho2 = Math.min(cov * cov / (varX * varY), 1 - 1e-12);
+                mi += -0.5 * n / total * Math.log(1 - rho2);
+            }
+            return mi;
+        }
+
+        private static double mixedMutualInformation(double[] moments, int nStates, int nClasses) {
+            double total = 0;
+            for (int k = 0; k < moments.length; k += 3) {
+                total += moments[k];
+            }
+            double mi = 0;
+            for (int c = 0; c < nClasses; c++) {
+                double n = 0, sum = 0, sumSquares = 0;
+                for (int x = 0; x < nStates; x++) {
+                    int k = 3 * (x + nStates * c);
+                    n += moments[k];
+                    sum += moments[k + 1];
+                    sumSquares += moments[k + 2];
+                }
+                if (n < 2)
+                    continue;
+                double variance = Math.max(sumSquares / n - (sum / n) * (sum / n), FamilyStatistics.VARIANCE_FLOOR);
+
+                //I(X;Y|c) = H(Y|c) - H(Y|X,c), with the differential entropies of Gaussian distributions.
+                for (int x = 0; x < nStates; x++) {
+                    int k = 3 * (x + nStates * c);
+                    double nx = moments[k];
+                    if (nx < 2)
+                        continue;
+                    double mean = moments[k + 1] / nx;
+                    double varianceX = Math.max(moments[k + 2] / nx - mean * mean, FamilyStatistics.VARIANCE_FLOOR);
+                    mi += 0.5 * nx / total * Math.log(variance / varianceX);
+                }
+            }
+            return mi;
+        }
+    }
+}
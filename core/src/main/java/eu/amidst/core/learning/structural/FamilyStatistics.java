@@ -0,0 +1,350 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.structural;
+
+import eu.amidst.core.utils.SpecialFunctions;
+import eu.amidst.core.utils.Utils;
+import eu.amidst.core.variables.Variable;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class accumulates the sufficient statistics of a family (a variable and a set of parents) over the data
+ * instances, and computes the score of the family from them. Data instances with missing values in the family
+ * are skipped.
+ *
+ * <p> Multinomial variables are scored from the counts N(pa, x). Normal variables, which can only have multinomial
+ * and normal parents, are scored as conditional linear Gaussians, i.e., by a linear regression on the normal
+ * parents for each configuration of the multinomial parents. </p>
+ */
+abstract class FamilyStatistics {
+
+    /** Represents the variance below which the residual variance of a regression is truncated. */
+    static final double VARIANCE_FLOOR = 1e-6;
+
+    /** Represents the indexes of the variable and its parents in the data rows. */
+    final int[] columns;
+
+    /** Represents the number of data instances without missing values in the family. */
+    double count;
+
+    FamilyStatistics(int[] columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Creates the statistics of a family.
+     * @param child the main variable of the family.
+     * @param parents the parents of the family.
+     * @return a {@link FamilyStatistics} object.
+     */
+    static FamilyStatistics create(Variable child, List<Variable> parents) {
+        List<Variable> discrete = new ArrayList<>();
+        List<Variable> continuous = new ArrayList<>();
+        for (Variable parent : parents) {
+            if (parent.isMultinomial())
+                discrete.add(parent);
+            else
+                continuous.add(parent);
+        }
+
+        if (child.isMultinomial()) {
+            if (!continuous.isEmpty())
+                throw new IllegalArgumentException("Multinomial variables can not have normal parents: " + child.getName());
+            return new Discrete(child, discrete);
+        } else if (child.isNormal()) {
+            return new ConditionalLinearGaussian(child, discrete, continuous);
+        } else {
+            throw new IllegalArgumentException("Only multinomial and normal variables are supported: " + child.getName());
+        }
+    }
+
+    /**
+     * Updates the statistics with a data row, indexed by variable ID.
+     * @param row an array of {@code double} values.
+     */
+    void update(double[] row) {
+        for (int column : columns) {
+            if (Utils.isMissingValue(row[column]))
+                return;
+        }
+        this.count++;
+        this.updateComplete(row);
+    }
+
+    /**
+     * Updates the statistics with a data row without missing values in the family.
+     * @param row an array of {@code double} values.
+     */
+    abstract void updateComplete(double[] row);
+
+    /**
+     * Adds the statistics of the same family computed over other data instances.
+     * @param other a {@link FamilyStatistics} object.
+     */
+    abstract void merge(FamilyStatistics other);
+
+    /**
+     * Returns the score of the family.
+     * @param score the type of score.
+     * @param equivalentSampleSize the equivalent sample size of the BDeu score.
+     * @return the score of the family.
+     */
+    abstract double score(HillClimbing.Score score, double equivalentSampleSize);
+
+    /**
+     * Returns the index of the configuration of some multinomial variables in a data row.
+     */
+    static int configuration(double[] row, int[] columns, int[] nStates, int from) {
+        int index = 0;
+        for (int i = columns.length - 1; i >= from; i--) {
+            index = index * nStates[i] + (int) row[columns[i]];
+        }
+        return index;
+    }
+
+    /**
+     * This class defines the statistics of a multinomial variable with multinomial parents.
+     */
+    static class Discrete extends FamilyStatistics {
+
+        final int[] nStates;
+
+        final int nChildStates;
+
+        final int nParentConfigurations;
+
+        final double[] counts;
+
+        Discrete(Variable child, List<Variable> parents) {
+            super(columns(child, parents, new ArrayList<>()));
+            this.nStates = new int[columns.length];
+            this.nStates[0] = child.getNumberOfStates();
+            int nConfigurations = 1;
+            for (int i = 0; i < parents.size(); i++) {
+                this.nStates[i + 1] = parents.get(i).getNumberOfStates();
+                nConfigurations *= this.nStates[i + 1];
+            }
+            this.nChildStates = child.getNumberOfStates();
+            this.nParentConfigurations = nConfigurations;
+            this.counts = new double[nConfigurations * this.nChildStates];
+        }
+
+        /**
+         * Sets the counts N(pa, x), computed elsewhere with the same layout (the child state varies fastest, followed
+         * by the parents in order).
+         * @param counts an array of {@code double} values.
+         */
+        void setCounts(double[] counts) {
+            System.arraycopy(counts, 0, this.counts, 0, this.counts.length);
+            this.count = 0;
+            for (double value : counts) {
+                this.count += value;
+            }
+        }
+
+        @Override
+        void updateComplete(double[] row) {
+            counts[configuration(row, columns, nStates, 1) * nChildStates + (int) row[columns[0]]]++;
+        }
+
+        @Override
+        void merge(FamilyStatistics other) {
+            Discrete discrete = (Discrete) other;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += discrete.counts[i];
+            }
+            count += discrete.count;
+        }
+
+        @Override
+        double score(HillClimbing.Score score, double equivalentSampleSize) {
+            double value = 0;
+            if (score == HillClimbing.Score.BDEU) {
+                double alphaParents = equivalentSampleSize / nParentConfigurations;
+                double alphaStates = alphaParents / nChildStates;
+                double logGammaParents = SpecialFunctions.logGamma(alphaParents);
+                double logGammaStates = SpecialFunctions.logGamma(alphaStates);
+                for (int j = 0; j < nParentConfigurations; j++) {
+                    double nj = 0;
+                    for (int k = 0; k < nChildStates; k++) {
+                        double njk = counts[j * nChildStates + k];
+                        if (njk > 0)
+                            value += SpecialFunctions.logGamma(alphaStates + njk) - logGammaStates;
+                        nj += njk;
+                    }
+                    if (nj > 0)
+                        value += logGammaParents - SpecialFunctions.logGamma(alphaParents + nj);
+                }
+            } else {
+                for (int j = 0; j < nParentConfigurations; j++) {
+                    double nj = 0;
+                    for (int k = 0; k < nChildStates; k++) {
+                        nj += counts[j * nChildStates + k];
+                    }
+                    for (int k = 0; k < nChildStates; k++) {
+                        double njk = counts[j * nChildStates + k];
+                        if (njk > 0)
+                            value += njk * Math.log(njk / nj);
+                    }
+                }
+                if (count > 0)
+                    value -= 0.5 * Math.log(count) * nParentConfigurations * (nChildStates - 1);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * This class defines the statistics of a normal variable with multinomial and normal parents. For each
+     * configuration of the multinomial parents, it stores the cross products of (1, normal parents, child).
+     */
+    static class ConditionalLinearGaussian extends FamilyStatistics {
+
+        final int[] nStates;
+
+        final int nDiscrete;
+
+        final int nContinuous;
+
+        final int nParentConfigurations;
+
+        /** Represents, for each configuration, the upper triangle of the cross-product matrix. */
+        final double[][] crossProducts;
+
+        ConditionalLinearGaussian(Variable child, List<Variable> discrete, List<Variable> continuous) {
+            super(columns(child, discrete, continuous));
+            this.nDiscrete = discrete.size();
+            this.nContinuous = continuous.size();
+            this.nStates = new int[columns.length];
+            int nConfigurations = 1;
+            for (int i = 0; i < nDiscrete; i++) {
+                this.nStates[i + 1] = discrete.get(i).getNumberOfStates();
+                nConfigurations *= this.nStates[i + 1];
+            }
+            this.nParentConfigurations = nConfigurations;
+            int size = nContinuous + 2;
+            this.crossProducts = new double[nConfigurations][size * (size + 1) / 2];
+        }
+
+        @Override
+        void updateComplete(double[] row) {
+            int configuration = 0;
+            for (int i = nDiscrete; i >= 1; i--) {
+                configuration = configuration * nStates[i] + (int) row[columns[i]];
+            }
+
+            //The terms are (1, continuous parents, child).
+            int size = nContinuous + 2;
+            double[] terms = new double[size];
+            terms[0] = 1;
+            for (int i = 0; i < nContinuous; i++) {
+                terms[i + 1] = row[columns[nDiscrete + 1 + i]];
+            }
+            terms[size - 1] = row[columns[0]];
+
+            double[] products = crossProducts[configuration];
+            int index = 0;
+            for (int i = 0; i < size; i++) {
+                for (int j = i; j < size; j++) {
+                    products[index++] += terms[i] * terms[j];
+                }
+            }
+        }
+
+        @Override
+        void merge(FamilyStatistics other) {
+            ConditionalLinearGaussian clg = (ConditionalLinearGaussian) other;
+            for (int j = 0; j < crossProducts.length; j++) {
+                for (int i = 0; i < crossProducts[j].length; i++) {
+                    crossProducts[j][i] += clg.crossProducts[j][i];
+                }
+            }
+            count += clg.count;
+        }
+
+        /**
+         * Returns the maximum log-likelihood of the family. The BDeu score is not defined for normal variables,
+         * so both scores use BIC for them.
+         */
+        @Override
+        double score(HillClimbing.Score score, double equivalentSampleSize) {
+            int size = nContinuous + 2;
+            int nCoefficients = nContinuous + 1;
+            double value = 0;
+            for (double[] products : crossProducts) {
+                double n = products[0];
+                if (n == 0)
+                    continue;
+
+                double[][] xtx = new double[nCoefficients][nCoefficients];
+                double[] xty = new double[nCoefficients];
+                int index = 0;
+                double yy = 0;
+                for (int i = 0; i < size; i++) {
+                    for (int j = i; j < size; j++) {
+                        double product = products[index++];
+                        if (j == size - 1) {
+                            if (i == size - 1)
+                                yy = product;
+                            else
+                                xty[i] = product;
+                        } else {
+                            xtx[i][j] = product;
+                            xtx[j][i] = product;
+                        }
+                    }
+                }
+
+                double rss = yy;
+                try {
+                    RealVector beta = new LUDecomposition(new Array2DRowRealMatrix(xtx, false)).getSolver()
+                            .solve(new ArrayRealVector(xty, false));
+                    rss -= beta.dotProduct(new ArrayRealVector(xty, false));
+                } catch (SingularMatrixException ex) {
+                    //Collinear (or too few) data points: only the mean is fitted.
+                    rss -= xty[0] * xty[0] / n;
+                }
+
+                double variance = Math.max(rss / n, VARIANCE_FLOOR);
+                value += -0.5 * n * (Math.log(2 * Math.PI * variance) + 1);
+            }
+            if (count > 0)
+                value -= 0.5 * Math.log(count) * nParentConfigurations * (nContinuous + 2);
+            return value;
+        }
+    }
+
+    private static int[] columns(Variable child, List<Variable> discrete, List<Variable> continuous) {
+        int[] columns = new int[1 + discrete.size() + continuous.size()];
+        columns[0] = child.getVarID();
+        for (int i = 0; i < discrete.size(); i++) {
+            columns[i + 1] = discrete.get(i).getVarID();
+        }
+        for (int i = 0; i < continuous.size(); i++) {
+            columns[discrete.size() + 1 + i] = continuous.get(i).getVarID();
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,633 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.structural;
+
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.ContingencyTableIndex;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class implements the {@link StructuralLearningAlgorithm} interface, and defines a score-based structure
+ * learning algorithm: a greedy hill climbing (or, if a tabu list is used, a tabu search) over the operators that add,
+ * remove or reverse an arc, with the BIC or the BDeu score.
+ *
+ * <p> Multinomial and normal variables are supported, as conditional linear Gaussian networks (i.e., normal variables
+ * can not be parents of multinomial ones). The score of each family (variable and parent set) is cached, so only the
+ * families of the variables changed by the last operator are scored again. The missing families of each step are
+ * scored together, from the sufficient statistics accumulated in a single (parallel) pass over the data. If the data
+ * are a {@link DataOnMemory} object, the families of multinomial variables are instead scored from the counts of a
+ * {@link ContingencyTableIndex}, without passes over the data. </p>
+ *
+ * <p> For instance, </p>
+ * <pre>{@code
+ * HillClimbing hillClimbing = new HillClimbing();
+ * hillClimbing.setScore(HillClimbing.Score.BDEU);
+ * hillClimbing.setMaxNumberOfParents(2);
+ * DAG dag = hillClimbing.learnDAG(data);
+ *
+ * ParallelMaximumLikelihood parameterLearning = new ParallelMaximumLikelihood();
+ * parameterLearning.setDAG(dag);
+ * }</pre>
+ */
+public class HillClimbing implements StructuralLearningAlgorithm {
+
+    /**
+     * This enum defines the available scores.
+     */
+    public enum Score {
+        /** Bayesian Information Criterion. */
+        BIC,
+        /** Bayesian Dirichlet equivalent uniform score (BIC is used for the normal variables). */
+        BDEU
+    }
+
+    /** Represents the operators over the arcs. */
+    enum Operator {ADD, REMOVE, REVERSE}
+
+    /** Represents the score. */
+    protected Score score = Score.BIC;
+
+    /** Represents the equivalent sample size of the BDeu score. */
+    protected double equivalentSampleSize = 1;
+
+    /** Represents the maximum number of parents of a variable. */
+    protected int maxNumberOfParents = 3;
+
+    /** Represents the length of the tabu list, or 0 for a plain hill climbing. */
+    protected int tabuSize = 0;
+
+    /** Represents the maximum number of steps of the tabu search without improving the best score. */
+    protected int maxIterationsWithoutImprovement = 10;
+
+    /** Represents the maximum number of steps. */
+    protected int maxIterations = 1000;
+
+    /** Represents the batch size used in the passes over the data. */
+    protected int windowsSize = 1000;
+
+    /** Indicates the parallel processing mode, initialized here as {@code true}. */
+    protected boolean parallelMode = true;
+
+    /** Represents if the output is activated. */
+    protected boolean output = false;
+
+    /** Indicates whether the multinomial families of data on memory are scored from a count index. */
+    protected boolean useCountIndex = true;
+
+    /** Represents the DAG from which the search starts, if any. */
+    protected DAG initialDAG;
+
+    /** Represents the score of the learnt DAG. */
+    protected double learntScore = Double.NaN;
+
+    /** Represents the scores of the families computed so far. */
+    protected Map<Family, Double> familyScores = new ConcurrentHashMap<>();
+
+    /** Represents the number of passes over the data. */
+    protected int numberOfPasses;
+
+    /** Represents the data being learnt. */
+    private DataStream<DataInstance> dataStream;
+
+    /** Represents the variables of the data being learnt. */
+    private Variables variables;
+
+    /** Represents the count index of the data being learnt, if any. */
+    private ContingencyTableIndex countIndex;
+
+    /**
+     * Sets the score.
+     * @param score a {@link Score} value.
+     */
+    public void setScore(Score score) {
+        this.score = score;
+        this.familyScores.clear();
+    }
+
+    /**
+     * Sets the equivalent sample size of the BDeu score.
+     * @param equivalentSampleSize a positive {@code double} value.
+     */
+    public void setEquivalentSampleSize(double equivalentSampleSize) {
+        this.equivalentSampleSize = equivalentSampleSize;
+        this.familyScores.clear();
+    }
+
+    /**
+     * Sets the maximum number of parents of a variable.
+     * @param maxNumberOfParents a positive {@code int} value.
+     */
+    public void setMaxNumberOfParents(int maxNumberOfParents) {
+        this.maxNumberOfParents = maxNumberOfParents;
+    }
+
+    /**
+     * Sets the length of the tabu list. With a positive length, the search goes on through non-improving operators
+     * (which are not tabu) and returns the best DAG found.
+     * @param tabuSize a non-negative {@code int} value, 0 for a plain hill climbing.
+     */
+    public void setTabuSize(int tabuSize) {
+        this.tabuSize = tabuSize;
+    }
+
+    /**
+     * Sets the maximum number of steps of the tabu search without improving the best score.
+     * @param maxIterationsWithoutImprovement a positive {@code int} value.
+     */
+    public void setMaxIterationsWithoutImprovement(int maxIterationsWithoutImprovement) {
+        this.maxIterationsWithoutImprovement = maxIterationsWithoutImprovement;
+    }
+
+    /**
+     * Sets the maximum number of steps.
+     * @param maxIterations a positive {@code int} value.
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the batch size used in the passes over the data.
+     * @param windowsSize the batch size.
+     */
+    public void setWindowsSize(int windowsSize) {
+        this.windowsSize = windowsSize;
+    }
+
+    /**
+     * Sets the parallel processing mode.
+     * @param parallelMode {@code true} if the passes over the data are performed in parallel, {@code false} otherwise.
+     */
+    public void setParallelMode(boolean parallelMode) {
+        this.parallelMode = parallelMode;
+    }
+
+    /**
+     * Sets the Output.
+     * @param activateOutput {@code true} if the output is activated, {@code false} otherwise.
+     */
+    public void setOutput(boolean activateOutput) {
+        this.output = activateOutput;
+    }
+
+    /**
+     * Sets whether the families of multinomial variables are scored from a {@link ContingencyTableIndex} when the
+     * data are a {@link DataOnMemory} object.
+     * @param useCountIndex {@code true} if the count index is used, {@code false} otherwise.
+     */
+    public void setUseCountIndex(boolean useCountIndex) {
+        this.useCountIndex = useCountIndex;
+        this.dataStream = null;
+    }
+
+    /**
+     * Sets the DAG from which the search starts (by default, the empty DAG).
+     * @param initialDAG a {@link DAG} object defined over the attributes of the data.
+     */
+    public void setInitialDAG(DAG initialDAG) {
+        this.initialDAG = initialDAG;
+    }
+
+    /**
+     * Returns the score of the last learnt DAG.
+     * @return a {@code double} value.
+     */
+    public double getScore() {
+        return learntScore;
+    }
+
+    /**
+     * Returns the number of passes over the data performed so far.
+     * @return an {@code int} value.
+     */
+    public int getNumberOfPasses() {
+        return numberOfPasses;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DAG learnDAG(DataStream<DataInstance> dataStream) {
+        this.setData(dataStream);
+
+        int nVars = this.variables.getNumberOfVars();
+        List<Set<Integer>> parents = new ArrayList<>();
+        for (int i = 0; i < nVars; i++) {
+            parents.add(new HashSet<>());
+            if (this.initialDAG != null) {
+                for (Variable parent : this.initialDAG.getParentSet(this.initialDAG.getVariables().getVariableById(i)))
+                    parents.get(i).add(parent.getVarID());
+            }
+        }
+
+        List<Family> families = new ArrayList<>();
+        for (int i = 0; i < nVars; i++) {
+            families.add(new Family(i, parents.get(i)));
+        }
+        this.scoreFamilies(families.stream().filter(family -> !this.familyScores.containsKey(family)).collect(Collectors.toList()));
+
+        double[] scores = new double[nVars];
+        for (int i = 0; i < nVars; i++) {
+            scores[i] = this.familyScores.get(families.get(i));
+        }
+
+        double currentScore = Arrays.stream(scores).sum();
+        double bestScore = currentScore;
+        List<Set<Integer>> bestParents = copy(parents);
+        LinkedList<Move> tabuList = new LinkedList<>();
+        int iterationsWithoutImprovement = 0;
+
+        for (int iter = 0; iter < this.maxIterations; iter++) {
+            List<Move> moves = this.candidateMoves(parents);
+
+            //The families not scored yet are scored together in one pass over the data.
+            this.scoreFamilies(moves.stream()
+                    .flatMap(move -> move.families(parents).stream())
+                    .filter(family -> !this.familyScores.containsKey(family))
+                    .distinct()
+                    .collect(Collectors.toList()));
+
+            Move best = null;
+            for (Move move : moves) {
+                if (this.tabuSize > 0 && tabuList.contains(move))
+                    continue;
+                move.delta = move.families(parents).stream().mapToDouble(this.familyScores::get).sum()
+                        - move.changedVariables().stream().mapToDouble(var -> scores[var]).sum();
+                if (best == null || move.delta > best.delta)
+                    best = move;
+            }
+
+            if (best == null || (this.tabuSize == 0 && best.delta <= 1e-10))
+                break;
+
+            for (Family family : best.families(parents)) {
+                scores[family.child] = this.familyScores.get(family);
+            }
+            best.apply(parents);
+            currentScore += best.delta;
+
+            if (output)
+                System.out.println("Step " + iter + ": " + best + ", score " + currentScore);
+
+            if (this.tabuSize > 0) {
+                tabuList.addFirst(best.inverse());
+                if (tabuList.size() > this.tabuSize)
+                    tabuList.removeLast();
+                if (currentScore > bestScore + 1e-10) {
+                    bestScore = currentScore;
+                    bestParents = copy(parents);
+                    iterationsWithoutImprovement = 0;
+                } else if (++iterationsWithoutImprovement >= this.maxIterationsWithoutImprovement) {
+                    break;
+                }
+            } else {
+                bestScore = currentScore;
+                bestParents = copy(parents);
+            }
+        }
+
+        this.learntScore = bestScore;
+        return this.toDAG(bestParents);
+    }
+
+    /**
+     * Returns the score of a given DAG, defined over the attributes of the data.
+     * @param dag a {@link DAG} object.
+     * @param dataStream a restartable {@link DataStream} object.
+     * @return the score of the DAG.
+     */
+    public double computeScore(DAG dag, DataStream<DataInstance> dataStream) {
+        this.setData(dataStream);
+        List<Family> families = new ArrayList<>();
+        for (Variable var : dag.getVariables()) {
+            Set<Integer> parents = new HashSet<>();
+            for (Variable parent : dag.getParentSet(var))
+                parents.add(parent.getVarID());
+            families.add(new Family(var.getVarID(), parents));
+        }
+        this.scoreFamilies(families.stream().filter(family -> !this.familyScores.containsKey(family)).collect(Collectors.toList()));
+        return families.stream().mapToDouble(this.familyScores::get).sum();
+    }
+
+    private void setData(DataStream<DataInstance> dataStream) {
+        if (this.dataStream != dataStream) {
+            this.familyScores.clear();
+            this.numberOfPasses = 0;
+            this.countIndex = this.useCountIndex && dataStream instanceof DataOnMemory ?
+                    new ContingencyTableIndex((DataOnMemory<DataInstance>) dataStream) : null;
+        }
+        this.dataStream = dataStream;
+        this.variables = new Variables(dataStream.getAttributes());
+    }
+
+    /**
+     * Returns the operators that can be applied to the current DAG.
+     */
+    private List<Move> candidateMoves(List<Set<Integer>> parents) {
+        int nVars = parents.size();
+        List<Move> moves = new ArrayList<>();
+        for (int from = 0; from < nVars; from++) {
+            for (int to = 0; to < nVars; to++) {
+                if (from == to)
+                    continue;
+                if (parents.get(to).contains(from)) {
+                    moves.add(new Move(Operator.REMOVE, from, to));
+                    if (this.isAllowed(to, from) && parents.get(from).size() < this.maxNumberOfParents
+                            && !hasPath(parents, from, to, true))
+                        moves.add(new Move(Operator.REVERSE, from, to));
+                } else if (!parents.get(from).contains(to) && this.isAllowed(from, to)
+                        && parents.get(to).size() < this.maxNumberOfParents && !hasPath(parents, to, from, false)) {
+                    moves.add(new Move(Operator.ADD, from, to));
+                }
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Returns whether an arc is allowed in a conditional linear Gaussian network.
+     */
+    private boolean isAllowed(int from, int to) {
+        Variable parent = this.variables.getVariableById(from);
+        Variable child = this.variables.getVariableById(to);
+        return !(child.isMultinomial() && !parent.isMultinomial());
+    }
+
+    /**
+     * Returns whether there is a directed path between two variables, ignoring the direct arc if requested.
+     */
+    private static boolean hasPath(List<Set<Integer>> parents, int from, int to, boolean ignoreDirectArc) {
+        int nVars = parents.size();
+        boolean[] visited = new boolean[nVars];
+        LinkedList<Integer> open = new LinkedList<>();
+        open.add(from);
+        visited[from] = true;
+        while (!open.isEmpty()) {
+            int current = open.removeFirst();
+            for (int child = 0; child < nVars; child++) {
+                if (visited[child] || !parents.get(child).contains(current))
+                    continue;
+                if (ignoreDirectArc && current == from && child == to)
+                    continue;
+                if (child == to)
+                    return true;
+                visited[child] = true;
+                open.add(child);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the scores of a list of families, from the count index if possible and otherwise from the sufficient
+     * statistics accumulated in one pass over the data.
+     */
+    private void scoreFamilies(List<Family> candidates) {
+        List<Family> families = candidates;
+        if (this.countIndex != null) {
+            Map<Boolean, List<Family>> indexed = candidates.stream().collect(Collectors.partitioningBy(this::isIndexed));
+            Stream<Family> stream = parallelMode ? indexed.get(true).parallelStream() : indexed.get(true).stream();
+            stream.forEach(family -> {
+                List<Attribute> attributes = new ArrayList<>();
+                attributes.add(this.variables.getVariableById(family.child).getAttribute());
+                for (int parent : family.parents) {
+                    attributes.add(this.variables.getVariableById(parent).getAttribute());
+                }
+                FamilyStatistics.Discrete statistics = (FamilyStatistics.Discrete) this.createStatistics(family);
+                statistics.setCounts(this.countIndex.getCounts(attributes));
+                this.familyScores.put(family, statistics.score(this.score, this.equivalentSampleSize));
+            });
+            families = indexed.get(false);
+        }
+        this.scoreFamiliesFromData(families);
+    }
+
+    /**
+     * Computes the scores of a list of families from the sufficient statistics accumulated in one pass over the data.
+     */
+    private void scoreFamiliesFromData(List<Family> families) {
+        if (families.isEmpty())
+            return;
+
+        if (this.numberOfPasses > 0) {
+            if (!this.dataStream.isRestartable())
+                throw new IllegalStateException("Structure learning needs a restartable data stream.");
+            this.dataStream.restart();
+        }
+        this.numberOfPasses++;
+
+        Stream<DataOnMemory<DataInstance>> stream = parallelMode ?
+                this.dataStream.parallelStreamOfBatches(this.windowsSize) : this.dataStream.streamOfBatches(this.windowsSize);
+
+        int nVars = this.variables.getNumberOfVars();
+        List<FamilyStatistics> statistics = stream.map(batch -> {
+            List<FamilyStatistics> batchStatistics = families.stream().map(this::createStatistics).collect(Collectors.toList());
+            double[] row = new double[nVars];
+            for (DataInstance instance : batch) {
+                for (int i = 0; i < nVars; i++) {
+                    row[i] = instance.getValue(this.variables.getVariableById(i));
+                }
+                for (FamilyStatistics familyStatistics : batchStatistics) {
+                    familyStatistics.update(row);
+                }
+            }
+            return batchStatistics;
+        }).reduce((a, b) -> {
+            for (int i = 0; i < a.size(); i++) {
+                a.get(i).merge(b.get(i));
+            }
+            return a;
+        }).orElseGet(() -> families.stream().map(this::createStatistics).collect(Collectors.toList()));
+
+        for (int i = 0; i < families.size(); i++) {
+            this.familyScores.put(families.get(i), statistics.get(i).score(this.score, this.equivalentSampleSize));
+        }
+    }
+
+    /**
+     * Returns whether a family can be scored from the count index, i.e., whether all its variables are indexed.
+     */
+    private boolean isIndexed(Family family) {
+        Variable child = this.variables.getVariableById(family.child);
+        if (!child.isMultinomial() || !this.countIndex.isIndexed(child.getAttribute()))
+            return false;
+        for (int parent : family.parents) {
+            Variable var = this.variables.getVariableById(parent);
+            if (!var.isMultinomial() || !this.countIndex.isIndexed(var.getAttribute()))
+                return false;
+        }
+        return true;
+    }
+
+    private FamilyStatistics createStatistics(Family family) {
+        return FamilyStatistics.create(this.variables.getVariableById(family.child),
+                Arrays.stream(family.parents).mapToObj(this.variables::getVariableById).collect(Collectors.toList()));
+    }
+
+    private DAG toDAG(List<Set<Integer>> parents) {
+        DAG dag = new DAG(this.variables);
+        for (int i = 0; i < parents.size(); i++) {
+            for (int parent : parents.get(i)) {
+                dag.getParentSet(this.variables.getVariableById(i)).addParent(this.variables.getVariableById(parent));
+            }
+        }
+        return dag;
+    }
+
+    private static List<Set<Integer>> copy(List<Set<Integer>> parents) {
+        return parents.stream().map(set -> (Set<Integer>) new HashSet<>(set)).collect(Collectors.toList());
+    }
+
+    /**
+     * This class defines a family, i.e., a variable and a (sorted) set of parents, used as key of the score cache.
+     */
+    static final class Family {
+
+        final int child;
+
+        final int[] parents;
+
+        Family(int child, Set<Integer> parents) {
+            this.child = child;
+            this.parents = parents.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Family)) return false;
+            Family family = (Family) o;
+            return child == family.child && Arrays.equals(parents, family.parents);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * child + Arrays.hashCode(parents);
+        }
+    }
+
+    /**
+     * This class defines an operator applied to an arc.
+     */
+    static final class Move {
+
+        final Operator operator;
+
+        final int from;
+
+        final int to;
+
+        double delta;
+
+        Move(Operator operator, int from, int to) {
+            this.operator = operator;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the variables whose parents are changed by this operator.
+         */
+        List<Integer> changedVariables() {
+            return this.operator == Operator.REVERSE ? Arrays.asList(to, from) : Arrays.asList(to);
+        }
+
+        /**
+         * Returns the families of the changed variables after applying this operator.
+         */
+        List<Family> families(List<Set<Integer>> parents) {
+            Set<Integer> parentsTo = new HashSet<>(parents.get(to));
+            switch (this.operator) {
+                case ADD:
+                    parentsTo.add(from);
+                    return Arrays.asList(new Family(to, parentsTo));
+                case REMOVE:
+                    parentsTo.remove(from);
+                    return Arrays.asList(new Family(to, parentsTo));
+                default:
+                    parentsTo.remove(from);
+                    Set<Integer> parentsFrom = new HashSet<>(parents.get(from));
+                    parentsFrom.add(to);
+                    return Arrays.asList(new Family(to, parentsTo), new Family(from, parentsFrom));
+            }
+        }
+
+        void apply(List<Set<Integer>> parents) {
+            switch (this.operator) {
+                case ADD:
+                    parents.get(to).add(from);
+                    break;
+                case REMOVE:
+                    parents.get(to).remove(from);
+                    break;
+                default:
+                    parents.get(to).remove(from);
+                    parents.get(from).add(to);
+            }
+        }
+
+        /**
+         * Returns the operator undoing this one, which is kept in the tabu list.
+         */
+        Move inverse() {
+            switch (this.operator) {
+                case ADD:
+                    return new Move(Operator.REMOVE, from, to);
+                case REMOVE:
+                    return new Move(Operator.ADD, from, to);
+                default:
+                    return new Move(Operator.REVERSE, to, from);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Move)) return false;
+            Move move = (Move) o;
+            return operator == move.operator && from == move.from && to == move.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * operator.hashCode() + from) + to;
+        }
+
+        @Override
+        public String toString() {
+            return operator + " " + from + "->" + to;
+        }
+    }
+}
@@ -17,11 +17,19 @@
 
 package eu.amidst.core.learning.structural;
 
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.models.DAG;
 
 /**
  * This interface defines the Algorithm for learning the {@link eu.amidst.core.models.BayesianNetwork} graphical structure.
  */
 public interface StructuralLearningAlgorithm {
 
-
+    /**
+     * Learns the structure of a {@link eu.amidst.core.models.BayesianNetwork} from a given {@link DataStream}.
+     * @param dataStream a {@link DataStream} object, which may be traversed several times.
+     * @return a {@link DAG} defined over the attributes of the data.
+     */
+    DAG learnDAG(DataStream<DataInstance> dataStream);
 }
@@ -121,6 +121,16 @@ public class BayesianNetworkSampler implements AmidstOptionsHandler, Serializabl
      * @return a filtered {@link Assignment}.
      */
     private Assignment filter(Assignment assignment){
+        return this.filter(assignment, random);
+    }
+
+    /**
+     * Filters a given {@link Assignment} object using a given {@link Random} object for the noisy variables.
+     * @param assignment a given {@link Assignment} object.
+     * @param random a {@link Random} object.
+     * @return a filtered {@link Assignment}.
+     */
+    private Assignment filter(Assignment assignment, Random random){
         hiddenVars.keySet().stream().forEach(var -> assignment.setValue(var,Utils.missingValue()));
         marNoise.entrySet().forEach(e -> {
             if (random.nextDouble()<e.getValue())
@@ -162,6 +172,54 @@ public class BayesianNetworkSampler implements AmidstOptionsHandler, Serializabl
         random = new Random(seed);
     }
 
+    /**
+     * Returns the {@link Attributes} of the sampled data instances, i.e., one attribute per non-latent variable.
+     * @return an {@link Attributes} object.
+     */
+    public Attributes getAttributes() {
+        List<Attribute> list = this.network.getVariables().getListOfVariables().stream()
+                .filter(var -> !this.latentVars.containsKey(var))
+                .map(var -> new Attribute(var.getVarID(), var.getName(), var.getStateSpaceType())).collect(Collectors.toList());
+        return new Attributes(list);
+    }
+
+    /**
+     * Samples the data instance placed at a given row of the data set. The sampled values only depend on the seed and
+     * on the index of the row, so a data set can be sampled in pieces (e.g. by several workers of a cluster) and
+     * the result does not depend on how the rows are split.
+     *
+     * <p> Note that the rows differ from the ones of {@link #sampleToDataStream(int)}, which draws the random
+     * generator of each row from a single sequence. </p>
+     * @param rowIndex a {@code long} that represents the global index of the row.
+     * @return an {@code array} of {@code double} with the sampled values, in the order of {@link #getAttributes()}.
+     */
+    public double[] sampleRow(long rowIndex) {
+        Random rowRandom = new Random(rowSeed(this.seed, rowIndex));
+        Assignment assignment = this.filter(sample(network, causalOrder, rowRandom), rowRandom);
+
+        double[] values = new double[network.getNumberOfVars() - this.latentVars.size()];
+        int index = 0;
+        for (Variable var : network.getVariables()) {
+            if (!this.latentVars.containsKey(var))
+                values[index++] = assignment.getValue(var);
+        }
+        return values;
+    }
+
+    /**
+     * Computes the seed of the random generator of a given row, by mixing the bits of the seed and the index of the
+     * row (the finalizer of the SplitMix64 generator), so that consecutive rows get unrelated seeds.
+     * @param seed an {@code int} that represents the seed of the sampler.
+     * @param rowIndex a {@code long} that represents the index of the row.
+     * @return a {@code long} with the seed of the row.
+     */
+    private static long rowSeed(int seed, long rowIndex) {
+        long z = seed * 0x9E3779B97F4A7C15L + (rowIndex + 1) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Samples randomly a data stream of size nSamples from this BayesianNetworkSampler.
      * @param nSamples an {@code int} that represents the number of samples in the data stream.
@@ -179,10 +237,7 @@ public class BayesianNetworkSampler implements AmidstOptionsHandler, Serializabl
             TemporalDataStream(BayesianNetworkSampler sampler1, int nSamples1){
                 this.sampler=sampler1;
                 this.nSamples = nSamples1;
-                List<Attribute> list = this.sampler.network.getVariables().getListOfVariables().stream()
-                        .filter(var -> !BayesianNetworkSampler.this.latentVars.containsKey(var))
-                        .map(var -> new Attribute(var.getVarID(), var.getName(), var.getStateSpaceType())).collect(Collectors.toList());
-                this.atts= new Attributes(list);
+                this.atts= this.sampler.getAttributes();
             }
 
             @Override
@@ -0,0 +1,160 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.utils;
+
+import org.apache.commons.math3.special.Gamma;
+
+/**
+ * This class implements the digamma and log-gamma functions used by the Dirichlet and Gamma distributions,
+ * both for single values and for arrays of values.
+ *
+ * <p> Positive arguments are shifted with the recurrences {@code digamma(x) = digamma(x+1) - 1/x} and
+ * {@code logGamma(x) = logGamma(x+1) - log(x)} until they are large enough for the asymptotic expansions, which
+ * are then accurate to the double precision. Non-positive arguments are handled by {@link Gamma}. </p>
+ */
+public final class SpecialFunctions {
+
+    /** Represents the value from which the asymptotic expansions are evaluated. */
+    private static final double ASYMPTOTIC_LIMIT = 10;
+
+    /** Represents the value of 0.5*log(2*pi). */
+    private static final double HALF_LOG_2_PI = 0.5 * Math.log(2 * Math.PI);
+
+    private SpecialFunctions() {
+
+    }
+
+    /**
+     * Returns the digamma function, i.e., the derivative of the log-gamma function.
+     * @param x a {@code double} value.
+     * @return the value of the digamma function at {@code x}.
+     */
+    public static double digamma(double x) {
+        if (!(x > 0))
+            return Gamma.digamma(x);
+
+        double result = 0;
+        while (x < ASYMPTOTIC_LIMIT) {
+            result -= 1 / x;
+            x += 1;
+        }
+
+        double inv2 = 1 / (x * x);
+        //Bernoulli numbers B_2k/(2k) up to k=6.
+        double series = inv2 * (1.0 / 12 - inv2 * (1.0 / 120 - inv2 * (1.0 / 252 - inv2 * (1.0 / 240
+                - inv2 * (1.0 / 132 - inv2 * (691.0 / 32760))))));
+
+        return result + Math.log(x) - 0.5 / x - series;
+    }
+
+    /**
+     * Returns the natural logarithm of the gamma function.
+     * @param x a {@code double} value.
+     * @return the value of the log-gamma function at {@code x}.
+     */
+    public static double logGamma(double x) {
+        if (!(x > 0) || Double.isInfinite(x))
+            return Gamma.logGamma(x);
+
+        double product = 1;
+        while (x < ASYMPTOTIC_LIMIT) {
+            product *= x;
+            x += 1;
+        }
+
+        double inv = 1 / x;
+        double inv2 = inv * inv;
+        //Stirling series, B_2k/(2k(2k-1)) up to k=6.
+        double series = inv * (1.0 / 12 - inv2 * (1.0 / 360 - inv2 * (1.0 / 1260 - inv2 * (1.0 / 1680
+                - inv2 * (1.0 / 1188 - inv2 * (691.0 / 360360))))));
+
+        double result = (x - 0.5) * Math.log(x) - x + HALF_LOG_2_PI + series;
+
+        return product == 1 ? result : result - Math.log(product);
+    }
+
+    /**
+     * Evaluates the digamma function over an array of values.
+     * @param x an array of {@code double} values.
+     * @param result an array, with at least the length of {@code x}, where the values of the function are stored.
+     *               It can be {@code x} itself.
+     */
+    public static void digamma(double[] x, double[] result) {
+        for (int i = 0; i < x.length; i++) {
+            result[i] = digamma(x[i]);
+        }
+    }
+
+    /**
+     * Evaluates the log-gamma function over an array of values.
+     * @param x an array of {@code double} values.
+     * @param result an array, with at least the length of {@code x}, where the values of the function are stored.
+     *               It can be {@code x} itself.
+     */
+    public static void logGamma(double[] x, double[] result) {
+        for (int i = 0; i < x.length; i++) {
+            result[i] = logGamma(x[i]);
+        }
+    }
+
+    /**
+     * Returns the sum of the log-gamma function over an array of values.
+     * @param x an array of {@code double} values.
+     * @return the sum of {@code logGamma(x[i])}.
+     */
+    public static double sumLogGamma(double[] x) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) {
+            sum += logGamma(x[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the expected logarithms of the components of a Dirichlet distribution,
+     * i.e., {@code digamma(alpha[i]) - digamma(sum(alpha))}.
+     * @param alpha an array with the parameters of the Dirichlet distribution.
+     * @param result an array, with at least the length of {@code alpha}, where the expectations are stored.
+     *               It can be {@code alpha} itself.
+     */
+    public static void dirichletExpectedLog(double[] alpha, double[] result) {
+        double sum = 0;
+        for (int i = 0; i < alpha.length; i++) {
+            sum += alpha[i];
+        }
+        double digammaOfSum = digamma(sum);
+        for (int i = 0; i < alpha.length; i++) {
+            result[i] = digamma(alpha[i]) - digammaOfSum;
+        }
+    }
+
+    /**
+     * Returns the log-normalizer of a Dirichlet distribution, i.e., {@code sum(logGamma(alpha[i])) - logGamma(sum(alpha))}.
+     * @param alpha an array with the parameters of the Dirichlet distribution.
+     * @return the log-normalizer.
+     */
+    public static double dirichletLogNormalizer(double[] alpha) {
+        double sum = 0;
+        double sumLogGamma = 0;
+        for (int i = 0; i < alpha.length; i++) {
+            sum += alpha[i];
+            sumLogGamma += logGamma(alpha[i]);
+        }
+        return sumLogGamma - logGamma(sum);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+package eu.amidst.core.utils;
+
+import eu.amidst.core.exponentialfamily.EF_Normal;
+import eu.amidst.core.exponentialfamily.EF_NormalParameter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Utility class for a compact binary serialization of {@link Vector} objects, such as the parameter vectors
+ * exchanged by the distributed learning algorithms.
+ *
+ * <p> {@link CompoundVector}, {@link ArrayVector}, {@link SparseVectorDefaultValue} and the parameter vectors of
+ * {@link EF_Normal} and {@link EF_NormalParameter} are written as raw primitive values, without any class
+ * descriptor. Any other vector is written with the standard Java serialization. </p>
+ */
+public final class VectorSerialization {
+
+    /** Represents the tag of a null vector. */
+    private static final byte NULL = 0;
+
+    /** Represents the tag of a vector written with the standard Java serialization. */
+    private static final byte OBJECT = 1;
+
+    /** Represents the tag of an {@link ArrayVector}. */
+    private static final byte ARRAY = 2;
+
+    /** Represents the tag of a {@link SparseVectorDefaultValue}. */
+    private static final byte SPARSE_DEFAULT_VALUE = 3;
+
+    /** Represents the tag of a {@link CompoundVector}. */
+    private static final byte COMPOUND = 4;
+
+    /** Represents the tag of an {@link EF_Normal.ArrayVectorParameter}. */
+    private static final byte NORMAL_PARAMETERS = 5;
+
+    /** Represents the tag of an {@link EF_NormalParameter.ArrayVectorParameter}. */
+    private static final byte NORMAL_PARAMETER_PARAMETERS = 6;
+
+    private VectorSerialization() {
+    }
+
+    /**
+     * Serializes a given vector.
+     * @param vector a {@link Vector} object.
+     * @return an array of bytes.
+     */
+    public static byte[] serializeVector(Vector vector) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(8 * vector.size() + 64);
+            DataOutputStream out = new DataOutputStream(bos);
+            writeVector(out, vector);
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Deserializes a vector from an array of bytes.
+     * @param bytes an array of bytes.
+     * @param <E> the type of the vector.
+     * @return a {@link Vector} object.
+     */
+    public static <E extends Vector> E deserializeVector(byte[] bytes) {
+        try {
+            return readVector(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes a vector to a given output.
+     * @param out a {@link DataOutput} object.
+     * @param vector a {@link Vector} object, which may be null.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void writeVector(DataOutput out, Vector vector) throws IOException {
+        if (vector == null) {
+            out.writeByte(NULL);
+        } else if (vector.getClass() == ArrayVector.class) {
+            out.writeByte(ARRAY);
+            writeArray(out, ((ArrayVector) vector).toArray());
+        } else if (vector.getClass() == EF_Normal.ArrayVectorParameter.class) {
+            out.writeByte(NORMAL_PARAMETERS);
+            writeArray(out, ((EF_Normal.ArrayVectorParameter) vector).toArray());
+        } else if (vector.getClass() == EF_NormalParameter.ArrayVectorParameter.class) {
+            out.writeByte(NORMAL_PARAMETER_PARAMETERS);
+            writeArray(out, ((EF_NormalParameter.ArrayVectorParameter) vector).toArray());
+        } else if (vector.getClass() == SparseVectorDefaultValue.class) {
+            SparseVectorDefaultValue sparse = (SparseVectorDefaultValue) vector;
+            out.writeByte(SPARSE_DEFAULT_VALUE);
+            out.writeInt(sparse.dimension);
+            out.writeDouble(sparse.defaultValue);
+            out.writeInt(sparse.values.size());
+            for (Map.Entry<Integer, Double> entry : sparse.values.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeDouble(entry.getValue());
+            }
+        } else if (vector.getClass() == CompoundVector.class) {
+            CompoundVector compound = (CompoundVector) vector;
+            out.writeByte(COMPOUND);
+            out.writeInt(compound.size);
+            out.writeInt(compound.baseVectors.size());
+            for (CompoundVector.IndexedVector indexedVector : compound.baseVectors) {
+                writeVector(out, indexedVector.getVector());
+            }
+        } else {
+            out.writeByte(OBJECT);
+            byte[] bytes = Serialization.serializeObject(vector);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a vector from a given input.
+     * @param in a {@link DataInput} object.
+     * @param <E> the type of the vector.
+     * @return a {@link Vector} object, which may be null.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static <E extends Vector> E readVector(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case ARRAY:
+                return (E) new ArrayVector(readArray(in));
+            case NORMAL_PARAMETERS:
+                return (E) new EF_Normal.ArrayVectorParameter(readArray(in));
+            case NORMAL_PARAMETER_PARAMETERS:
+                return (E) new EF_NormalParameter.ArrayVectorParameter(readArray(in));
+            case SPARSE_DEFAULT_VALUE: {
+                int dimension = in.readInt();
+                SparseVectorDefaultValue sparse = new SparseVectorDefaultValue(dimension, in.readDouble());
+                int nValues = in.readInt();
+                for (int i = 0; i < nValues; i++) {
+                    int index = in.readInt();
+                    sparse.values.put(index, in.readDouble());
+                }
+                return (E) sparse;
+            }
+            case COMPOUND: {
+                int size = in.readInt();
+                int nVectors = in.readInt();
+                CompoundVector compound = new CompoundVector(nVectors, size);
+                for (int i = 0; i < nVectors; i++) {
+                    compound.setVectorByPosition(i, readVector(in));
+                }
+                return (E) compound;
+            }
+            case OBJECT: {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return Serialization.deserializeObject(bytes);
+            }
+            default:
+                throw new IOException("Unknown vector tag: " + tag);
+        }
+    }
+
+    private static void writeArray(DataOutput out, double[] array) throws IOException {
+        out.writeInt(array.length);
+        for (int i = 0; i < array.length; i++) {
+            out.writeDouble(array[i]);
+        }
+    }
+
+    private static double[] readArray(DataInput in) throws IOException {
+        double[] array = new double[in.readInt()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = in.readDouble();
+        }
+        return array;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.conceptdrift;
+
+import eu.amidst.core.Main;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class LogLikelihoodDriftDetectorTest {
+
+    /**
+     * Returns 20 windows sampled from a network followed by 20 windows sampled from another one.
+     */
+    private static List<DataOnMemory<DataInstance>> driftingStream(BayesianNetwork asianet, BayesianNetwork drifted) {
+        List<DataOnMemory<DataInstance>> windows = new ArrayList<>();
+        for (BayesianNetwork bn : new BayesianNetwork[]{asianet, drifted}) {
+            BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+            sampler.setSeed(0);
+            for (DataOnMemory<DataInstance> batch : sampler.sampleToDataStream(20000).iterableOverBatches(1000)) {
+                windows.add(batch);
+            }
+        }
+        return windows;
+    }
+
+    private static void testDetector(LogLikelihoodDriftDetector.DriftTest driftTest) throws IOException, ClassNotFoundException {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        BayesianNetwork drifted = new BayesianNetwork(asianet.getDAG());
+        drifted.randomInitialization(new Random(1));
+        List<DataOnMemory<DataInstance>> windows = driftingStream(asianet, drifted);
+
+        LogLikelihoodDriftDetector detector = new LogLikelihoodDriftDetector();
+        detector.setDAG(asianet.getDAG());
+        detector.setFadingFactor(0.9);
+        detector.setDriftTest(driftTest);
+        detector.initLearning();
+
+        int firstDrift = -1;
+        for (int i = 0; i < windows.size(); i++) {
+            double logLikelihood = detector.updateModel(windows.get(i));
+            if (Main.VERBOSE) System.out.println(i + "\t" + logLikelihood + "\t" + detector.isDriftDetected());
+            if (detector.isDriftDetected() && firstDrift < 0)
+                firstDrift = i;
+        }
+
+        //The drift starts at window 20, and it is detected within a few windows.
+        Assert.assertTrue(firstDrift >= 20 && firstDrift <= 23);
+        Assert.assertEquals(1, detector.getNumberOfDrifts());
+        //After the drift, the model is learnt again from the new windows.
+        Assert.assertTrue(detector.getLearntBayesianNetwork().equalBNs(drifted, 0.05));
+    }
+
+    @Test
+    public void testPageHinkley() throws IOException, ClassNotFoundException {
+        testDetector(LogLikelihoodDriftDetector.DriftTest.PAGE_HINKLEY);
+    }
+
+    @Test
+    public void testAdwin() throws IOException, ClassNotFoundException {
+        testDetector(LogLikelihoodDriftDetector.DriftTest.ADWIN);
+    }
+}
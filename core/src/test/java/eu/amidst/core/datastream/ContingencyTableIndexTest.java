@@ -0,0 +1,126 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.datastream;
+
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.structural.HillClimbing;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.utils.Utils;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ContingencyTableIndexTest extends TestCase {
+
+    private static double[] bruteForceCounts(DataOnMemory<DataInstance> data, List<Attribute> attributes) {
+        int size = 1;
+        for (Attribute attribute : attributes) {
+            size *= attribute.getNumberOfStates();
+        }
+        double[] counts = new double[size];
+        instances:
+        for (DataInstance instance : data) {
+            int index = 0;
+            for (int i = attributes.size() - 1; i >= 0; i--) {
+                double value = instance.getValue(attributes.get(i));
+                if (Utils.isMissingValue(value))
+                    continue instances;
+                index = index * attributes.get(i).getNumberOfStates() + (int) value;
+            }
+            counts[index]++;
+        }
+        return counts;
+    }
+
+    private static DataOnMemory<DataInstance> sample(BayesianNetwork bn, int nSamples) {
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(0);
+        sampler.setMARVar(bn.getVariables().getVariableByName("E"), 0.1);
+        return sampler.sampleToDataStream(nSamples).toDataOnMemory();
+    }
+
+    public void testCounts() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        DataOnMemory<DataInstance> data = sample(asianet, 3000);
+        Attributes attributes = data.getAttributes();
+        List<List<Attribute>> queries = Arrays.asList(
+                Arrays.asList(attributes.getAttributeByName("A")),
+                Arrays.asList(attributes.getAttributeByName("E"), attributes.getAttributeByName("T")),
+                Arrays.asList(attributes.getAttributeByName("X"), attributes.getAttributeByName("E"),
+                        attributes.getAttributeByName("L"), attributes.getAttributeByName("S")),
+                data.getAttributes().getFullListOfAttributes());
+
+        //With bitmaps, without bitmaps (memory limit 0) and without cache.
+        ContingencyTableIndex bitmaps = new ContingencyTableIndex(data);
+        ContingencyTableIndex columns = new ContingencyTableIndex(data,
+                ContingencyTableIndex.finiteStateAttributes(attributes), 0);
+        columns.setMaxCachedCells(0);
+        assertTrue(bitmaps.hasBitmaps());
+        assertFalse(columns.hasBitmaps());
+        assertEquals(3000, bitmaps.getNumberOfDataInstances());
+
+        for (List<Attribute> query : queries) {
+            double[] expected = bruteForceCounts(data, query);
+            for (int repetition = 0; repetition < 2; repetition++) {
+                assertTrue(Arrays.equals(expected, bitmaps.getCounts(query)));
+                assertTrue(Arrays.equals(expected, columns.getCounts(query)));
+            }
+        }
+
+        //Missing values of E are not counted.
+        double[] countsE = bitmaps.getCounts(Arrays.asList(attributes.getAttributeByName("E")));
+        assertTrue(countsE[0] + countsE[1] < 3000);
+    }
+
+    public void testMutualInformation() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        DataOnMemory<DataInstance> data = sample(asianet, 5000);
+        Attributes attributes = data.getAttributes();
+        ContingencyTableIndex index = new ContingencyTableIndex(data);
+
+        Attribute e = attributes.getAttributeByName("E");
+        Attribute x = attributes.getAttributeByName("X");
+        Attribute d = attributes.getAttributeByName("D");
+        Attribute l = attributes.getAttributeByName("L");
+
+        assertEquals(index.getMutualInformation(e, x), index.getMutualInformation(x, e), 1e-12);
+        assertTrue(index.getMutualInformation(e, x) > 0.05);
+        //X and D are (nearly) independent given E.
+        assertTrue(index.getConditionalMutualInformation(x, d, e) < 0.01);
+        assertTrue(index.getConditionalMutualInformation(e, l, x) > 0.01);
+    }
+
+    public void testHillClimbing() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        DataOnMemory<DataInstance> data = sample(asianet, 5000);
+
+        //Scoring from the index gives the same DAG as scoring from passes over the data.
+        HillClimbing indexed = new HillClimbing();
+        DAG dag = indexed.learnDAG(data);
+        assertEquals(0, indexed.getNumberOfPasses());
+
+        HillClimbing passes = new HillClimbing();
+        passes.setUseCountIndex(false);
+        assertEquals(dag.toString(), passes.learnDAG(data).toString());
+        assertEquals(passes.getScore(), indexed.getScore(), 1e-6);
+        assertTrue(passes.getNumberOfPasses() > 0);
+    }
+}
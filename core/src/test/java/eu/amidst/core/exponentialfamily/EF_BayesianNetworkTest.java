@@ -0,0 +1,65 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.exponentialfamily;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+public class EF_BayesianNetworkTest extends TestCase {
+
+    public void testUpdateSufficientStatistics() {
+        Variables variables = new Variables();
+        Variable hidden = variables.newMultinomialVariable("H", 3);
+        Variable multinomial = variables.newMultinomialVariable("M", 2);
+        Variable g1 = variables.newGaussianVariable("G1");
+        Variable g2 = variables.newGaussianVariable("G2");
+        DAG dag = new DAG(variables);
+        dag.getParentSet(multinomial).addParent(hidden);
+        dag.getParentSet(g1).addParent(hidden);
+        dag.getParentSet(g1).addParent(g2);
+        dag.getParentSet(g2).addParent(multinomial);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.randomInitialization(new Random(0));
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(100).toDataOnMemory();
+
+        //The statistics updated in place are the sum of the statistics of each data instance.
+        EF_BayesianNetwork efBayesianNetwork = new EF_BayesianNetwork(dag);
+        SufficientStatistics expected = efBayesianNetwork.createZeroSufficientStatistics();
+        SufficientStatistics updated = efBayesianNetwork.createZeroSufficientStatistics();
+        for (DataInstance instance : data) {
+            expected.sum(efBayesianNetwork.getSufficientStatistics(instance));
+            efBayesianNetwork.updateSufficientStatistics(instance, updated);
+        }
+
+        assertEquals(expected.size(), updated.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), updated.get(i), 1e-10);
+        }
+    }
+}
@@ -40,7 +40,7 @@ public class EF_SparseDirichletTest extends TestCase {
         dist.updateMomentFromNaturalParameters();
         if (Main.VERBOSE) System.out.println(dist.getMomentParameters().output());
 
-        assertEquals(Gamma.digamma(2.0) - Gamma.digamma(10 + 10), dist.getMomentParameters().get(0));
+        assertEquals(Gamma.digamma(2.0) - Gamma.digamma(10 + 10), dist.getMomentParameters().get(0), 1e-12);
 
     }
 
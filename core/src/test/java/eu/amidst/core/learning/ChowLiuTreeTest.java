@@ -0,0 +1,140 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning;
+
+import eu.amidst.core.Main;
+import eu.amidst.core.datastream.ContingencyTableIndex;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.structural.ChowLiuTree;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.utils.DataSetGenerator;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import junit.framework.TestCase;
+
+public class ChowLiuTreeTest extends TestCase {
+
+    public void testChowLiu() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(5000).toDataOnMemory();
+
+        ChowLiuTree chowLiu = new ChowLiuTree();
+        DAG dag = chowLiu.learnDAG(data);
+        if (Main.VERBOSE) System.out.println(dag);
+
+        assertFalse(dag.containCycles());
+        assertEquals(dag.getVariables().getNumberOfVars() - 1, dag.getNumberOfLinks());
+        for (Variable var : dag.getVariables()) {
+            assertTrue(dag.getParentSet(var).getNumberOfParents() <= 1);
+        }
+
+        //The mutual informations are those of the contingency tables.
+        ContingencyTableIndex index = new ContingencyTableIndex(data);
+        Variables variables = dag.getVariables();
+        for (Variable a : variables) {
+            for (Variable b : variables) {
+                if (a.getVarID() < b.getVarID())
+                    assertEquals(index.getMutualInformation(a.getAttribute(), b.getAttribute()),
+                            chowLiu.getMutualInformation(a, b), 1e-10);
+            }
+        }
+    }
+
+    public void testTAN() {
+        DataOnMemory<DataInstance> data = DataSetGenerator.generate(6236, 5000, 5, 10).toDataOnMemory();
+
+        ChowLiuTree tan = new ChowLiuTree();
+        tan.setNameTarget("DiscreteVar0");
+        tan.setNameRoot("DiscreteVar1");
+        DAG dag = tan.learnDAG(data);
+        if (Main.VERBOSE) System.out.println(dag);
+
+        Variable classVar = dag.getVariables().getVariableByName("DiscreteVar0");
+        assertFalse(dag.containCycles());
+        assertEquals(0, dag.getParentSet(classVar).getNumberOfParents());
+        for (Variable var : dag.getVariables()) {
+            if (var == classVar)
+                continue;
+            assertTrue(dag.getParentSet(var).contains(classVar));
+            int nParents = var.getName().equals("DiscreteVar1") ? 1 : 2;
+            assertEquals(nParents, dag.getParentSet(var).getNumberOfParents());
+            //Normal variables are not parents of multinomial variables.
+            if (var.isMultinomial())
+                assertTrue(dag.getParentSet(var).getParents().stream().allMatch(Variable::isMultinomial));
+        }
+    }
+
+    public void testGaussianMutualInformation() {
+        Variables variables = new Variables();
+        Variable c = variables.newMultinomialVariable("C", 2);
+        Variable g1 = variables.newGaussianVariable("G1");
+        Variable g2 = variables.newGaussianVariable("G2");
+        Variable g3 = variables.newGaussianVariable("G3");
+        DAG dag = new DAG(variables);
+        dag.getParentSet(g1).addParent(c);
+        dag.getParentSet(g2).addParent(c);
+        dag.getParentSet(g2).addParent(g1);
+        dag.getParentSet(g3).addParent(c);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        Normal_MultinomialNormalParents distG2 = bn.getConditionalDistribution(g2);
+        distG2.getNormal_NormalParentsDistribution(0).setCoeffParents(new double[]{1.0});
+        distG2.getNormal_NormalParentsDistribution(0).setVariance(1);
+        distG2.getNormal_NormalParentsDistribution(1).setCoeffParents(new double[]{1.0});
+        distG2.getNormal_NormalParentsDistribution(1).setVariance(1);
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(20000).toDataOnMemory();
+
+        ChowLiuTree tan = new ChowLiuTree();
+        tan.setNameTarget("C");
+        DAG learnt = tan.learnDAG(data);
+        Variables learntVariables = learnt.getVariables();
+
+        //With unit variances and coefficient 1, the correlation given C is 1/sqrt(2), so I(G1;G2|C) = log(2)/2.
+        assertEquals(0.5 * Math.log(2), tan.getMutualInformation(learntVariables.getVariableByName("G1"),
+                learntVariables.getVariableByName("G2")), 0.02);
+        assertEquals(0, tan.getMutualInformation(learntVariables.getVariableByName("G1"),
+                learntVariables.getVariableByName("G3")), 0.01);
+        assertTrue(learnt.getParentSet(learntVariables.getVariableByName("G2")).contains(learntVariables.getVariableByName("G1"))
+                || learnt.getParentSet(learntVariables.getVariableByName("G1")).contains(learntVariables.getVariableByName("G2")));
+    }
+
+    public void testMaximumArborescence() {
+        double inf = Double.NEGATIVE_INFINITY;
+        //The best incoming arcs of 1 and 2 form a cycle, which is broken where the root enters it.
+        double[][] weights = {
+                {inf, 2, 1, 1},
+                {inf, inf, 10, 4},
+                {inf, 10, inf, 5},
+                {inf, inf, inf, inf}};
+        int[] parents = ChowLiuTree.maximumArborescence(weights, 0);
+        assertEquals(-1, parents[0]);
+        assertEquals(0, parents[1]);
+        assertEquals(1, parents[2]);
+        assertEquals(2, parents[3]);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning;
+
+import eu.amidst.core.Main;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.structural.HillClimbing;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import junit.framework.TestCase;
+
+public class HillClimbingTest extends TestCase {
+
+    /**
+     * Returns the DAG of a network defined over the variables of the data.
+     */
+    private static DAG dataDAG(BayesianNetwork bn, DataOnMemory<DataInstance> data) {
+        DAG dag = new DAG(new Variables(data.getAttributes()));
+        for (Variable var : bn.getVariables()) {
+            for (Variable parent : bn.getDAG().getParentSet(var)) {
+                dag.getParentSet(dag.getVariables().getVariableByName(var.getName()))
+                        .addParent(dag.getVariables().getVariableByName(parent.getName()));
+            }
+        }
+        return dag;
+    }
+
+    private static boolean adjacent(DAG dag, String a, String b) {
+        Variable varA = dag.getVariables().getVariableByName(a);
+        Variable varB = dag.getVariables().getVariableByName(b);
+        return dag.getParentSet(varA).contains(varB) || dag.getParentSet(varB).contains(varA);
+    }
+
+    public void testAsia() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(20000).toDataOnMemory();
+
+        HillClimbing hillClimbing = new HillClimbing();
+        DAG dag = hillClimbing.learnDAG(data);
+        if (Main.VERBOSE) System.out.println(dag);
+
+        assertFalse(dag.containCycles());
+        assertEquals(hillClimbing.getScore(), hillClimbing.computeScore(dag, data), 1e-6);
+        assertTrue(hillClimbing.getScore() >= hillClimbing.computeScore(dataDAG(asianet, data), data) - 1e-6);
+        //Each step scores its new families in a single pass over the data.
+        assertTrue(hillClimbing.getNumberOfPasses() <= 3 * dag.getNumberOfLinks() + 2);
+
+        //The search only moves to better DAGs, so it can not end worse than its initial DAG.
+        HillClimbing bdeu = new HillClimbing();
+        bdeu.setScore(HillClimbing.Score.BDEU);
+        bdeu.setInitialDAG(dataDAG(asianet, data));
+        DAG bdeuDAG = bdeu.learnDAG(data);
+        assertFalse(bdeuDAG.containCycles());
+        assertTrue(bdeu.getScore() >= bdeu.computeScore(dataDAG(asianet, data), data) - 1e-6);
+
+        HillClimbing tabu = new HillClimbing();
+        tabu.setScore(HillClimbing.Score.BDEU);
+        tabu.setTabuSize(20);
+        tabu.setMaxIterationsWithoutImprovement(20);
+        DAG tabuDAG = tabu.learnDAG(data);
+        if (Main.VERBOSE) System.out.println(tabuDAG);
+        assertFalse(tabuDAG.containCycles());
+        assertEquals(tabu.getScore(), bdeu.computeScore(tabuDAG, data), 1e-6);
+    }
+
+    public void testConditionalLinearGaussian() {
+        Variables variables = new Variables();
+        Variable a = variables.newMultinomialVariable("A", 2);
+        Variable g1 = variables.newGaussianVariable("G1");
+        Variable g2 = variables.newGaussianVariable("G2");
+        variables.newGaussianVariable("G3");
+        DAG dag = new DAG(variables);
+        dag.getParentSet(g1).addParent(a);
+        dag.getParentSet(g2).addParent(a);
+        dag.getParentSet(g2).addParent(g1);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        Normal_MultinomialParents distG1 = bn.getConditionalDistribution(g1);
+        distG1.getNormal(0).setMean(-3);
+        distG1.getNormal(1).setMean(3);
+        Normal_MultinomialNormalParents distG2 = bn.getConditionalDistribution(g2);
+        distG2.getNormal_NormalParentsDistribution(0).setCoeffParents(new double[]{2.0});
+        distG2.getNormal_NormalParentsDistribution(1).setCoeffParents(new double[]{-1.0});
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(5000).toDataOnMemory();
+
+        HillClimbing hillClimbing = new HillClimbing();
+        DAG learnt = hillClimbing.learnDAG(data);
+        if (Main.VERBOSE) System.out.println(learnt);
+
+        assertTrue(adjacent(learnt, "A", "G1"));
+        assertTrue(adjacent(learnt, "G1", "G2"));
+        assertFalse(adjacent(learnt, "G3", "G1"));
+        assertFalse(adjacent(learnt, "G3", "G2"));
+        //Normal variables can not be parents of multinomial variables.
+        assertEquals(0, learnt.getParentSet(learnt.getVariables().getVariableByName("A")).getNumberOfParents());
+        assertTrue(hillClimbing.getScore() >= hillClimbing.computeScore(dataDAG(bn, data), data) - 1e-6);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning;
+
+import eu.amidst.core.Main;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.learning.parametric.ParallelEM;
+import eu.amidst.core.learning.parametric.ParallelMaximumLikelihood;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.variables.HashMapAssignment;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import junit.framework.TestCase;
+
+public class ParallelEMTest extends TestCase {
+
+    private static BayesianNetwork mixtureModel() {
+        Variables variables = new Variables();
+        Variable hidden = variables.newMultinomialVariable("H", 2);
+        for (int i = 0; i < 4; i++) {
+            variables.newMultinomialVariable("X" + i, 2);
+        }
+        Variable gaussian = variables.newGaussianVariable("G");
+
+        DAG dag = new DAG(variables);
+        for (Variable child : variables) {
+            if (child != hidden)
+                dag.getParentSet(child).addParent(hidden);
+        }
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.<Multinomial>getConditionalDistribution(hidden).setProbabilities(new double[]{0.3, 0.7});
+        for (int i = 0; i < 4; i++) {
+            Multinomial_MultinomialParents dist = bn.getConditionalDistribution(variables.getVariableByName("X" + i));
+            dist.getMultinomial(0).setProbabilities(new double[]{0.9, 0.1});
+            dist.getMultinomial(1).setProbabilities(new double[]{0.2, 0.8});
+        }
+        Normal_MultinomialParents dist = bn.getConditionalDistribution(gaussian);
+        dist.getNormal(0).setMean(-2);
+        dist.getNormal(0).setVariance(1);
+        dist.getNormal(1).setMean(2);
+        dist.getNormal(1).setVariance(1);
+        return bn;
+    }
+
+    private static double logLikelihood(BayesianNetwork bn, Variable hidden, DataOnMemory<DataInstance> data) {
+        double logLikelihood = 0;
+        for (DataInstance instance : data) {
+            HashMapAssignment assignment = new HashMapAssignment(bn.getNumberOfVars());
+            for (Variable var : bn.getVariables()) {
+                assignment.setValue(var, instance.getValue(var));
+            }
+            double[] logJoint = new double[hidden.getNumberOfStates()];
+            for (int k = 0; k < logJoint.length; k++) {
+                assignment.setValue(hidden, k);
+                logJoint[k] = bn.getLogProbabiltyOf(assignment);
+            }
+            double max = Math.max(logJoint[0], logJoint[1]);
+            logLikelihood += max + Math.log(Math.exp(logJoint[0] - max) + Math.exp(logJoint[1] - max));
+        }
+        return logLikelihood;
+    }
+
+    public void testFullyObserved() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(5000).toDataOnMemory();
+
+        //Without unobserved values, the E-step is the counting of the sufficient statistics.
+        ParallelMaximumLikelihood maximumLikelihood = new ParallelMaximumLikelihood();
+        maximumLikelihood.setDebug(false);
+        maximumLikelihood.setDAG(asianet.getDAG());
+        maximumLikelihood.setDataStream(data);
+        maximumLikelihood.runLearning();
+
+        ParallelEM em = new ParallelEM();
+        em.setDAG(asianet.getDAG());
+        em.setDataStream(data);
+        em.runLearning();
+
+        assertTrue(em.getLearntBayesianNetwork().equalBNs(maximumLikelihood.getLearntBayesianNetwork(), 1e-10));
+    }
+
+    public void testLatentVariable() {
+        BayesianNetwork mixture = mixtureModel();
+        Variable hidden = mixture.getVariables().getVariableByName("H");
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(mixture);
+        sampler.setSeed(0);
+        sampler.setHiddenVar(hidden);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(5000).toDataOnMemory();
+
+        ParallelEM em = new ParallelEM();
+        em.setDAG(mixture.getDAG());
+        em.setDataStream(data);
+        em.setSeed(1);
+        em.setThreshold(1e-8);
+        em.runLearning();
+
+        double trueLogLikelihood = logLikelihood(mixture, hidden, data);
+        double learntLogLikelihood = logLikelihood(em.getLearntBayesianNetwork(), hidden, data);
+        if (Main.VERBOSE) System.out.println(em.getLearntBayesianNetwork());
+        if (Main.VERBOSE) System.out.println(trueLogLikelihood + ", " + learntLogLikelihood);
+
+        assertEquals(learntLogLikelihood, em.getLogLikelihood(), 1e-3 * Math.abs(learntLogLikelihood));
+        assertTrue(learntLogLikelihood > trueLogLikelihood - 1e-3 * Math.abs(trueLogLikelihood));
+    }
+
+    public void testVariationalAndOnline() {
+        BayesianNetwork mixture = mixtureModel();
+        Variable hidden = mixture.getVariables().getVariableByName("H");
+        Variable gaussian = mixture.getVariables().getVariableByName("G");
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(mixture);
+        sampler.setSeed(0);
+        sampler.setHiddenVar(hidden);
+        sampler.setMARVar(gaussian, 0.2);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(5000).toDataOnMemory();
+
+        //Every instance goes through VMP, and the missing Gaussian values are sampled from their posteriors.
+        ParallelEM em = new ParallelEM();
+        em.setDAG(mixture.getDAG());
+        em.setDataStream(data);
+        em.setSeed(1);
+        em.setMaximumExactStates(0);
+        em.runLearning();
+
+        ParallelEM exact = new ParallelEM();
+        exact.setDAG(mixture.getDAG());
+        exact.setDataStream(data);
+        exact.setSeed(1);
+        exact.runLearning();
+
+        assertEquals(exact.getLogLikelihood(), em.getLogLikelihood(), 0.01 * Math.abs(exact.getLogLikelihood()));
+
+        ParallelEM online = new ParallelEM();
+        online.setDAG(mixture.getDAG());
+        online.setSeed(1);
+        online.setWindowsSize(250);
+        online.initLearning();
+        DataStream<DataInstance> stream = data;
+        online.updateModel(stream);
+
+        if (Main.VERBOSE) System.out.println(online.getLearntBayesianNetwork());
+        Normal_MultinomialParents learnt = online.getLearntBayesianNetwork().getConditionalDistribution(gaussian);
+        double[] means = {learnt.getNormal(0).getMean(), learnt.getNormal(1).getMean()};
+        assertEquals(-2, Math.min(means[0], means[1]), 0.3);
+        assertEquals(2, Math.max(means[0], means[1]), 0.3);
+    }
+}
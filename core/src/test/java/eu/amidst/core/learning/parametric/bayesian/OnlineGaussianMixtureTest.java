@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.Main;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.utils.SpecialFunctions;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import junit.framework.TestCase;
+
+public class OnlineGaussianMixtureTest extends TestCase {
+
+    private static final double[][] MEANS = {{-5, 0}, {0, 5}, {5, -5}};
+    private static final double[] WEIGHTS = {0.5, 0.3, 0.2};
+
+    /**
+     * Returns a mixture of three well separated and correlated Gaussians over G1 and G2.
+     */
+    private static BayesianNetwork mixture() {
+        Variables variables = new Variables();
+        Variable hidden = variables.newMultinomialVariable("H", 3);
+        Variable g1 = variables.newGaussianVariable("G1");
+        Variable g2 = variables.newGaussianVariable("G2");
+        DAG dag = new DAG(variables);
+        dag.getParentSet(g1).addParent(hidden);
+        dag.getParentSet(g1).addParent(g2);
+        dag.getParentSet(g2).addParent(hidden);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.<Multinomial>getConditionalDistribution(hidden).setProbabilities(WEIGHTS);
+        Normal_MultinomialNormalParents distG1 = bn.getConditionalDistribution(g1);
+        Normal_MultinomialParents distG2 = bn.getConditionalDistribution(g2);
+        for (int k = 0; k < 3; k++) {
+            distG2.getNormal(k).setMean(MEANS[k][1]);
+            distG2.getNormal(k).setVariance(1);
+            ConditionalLinearGaussian clg = distG1.getNormal_NormalParentsDistribution(k);
+            clg.setCoeffParents(new double[]{0.5});
+            clg.setIntercept(MEANS[k][0] - 0.5 * MEANS[k][1]);
+            clg.setVariance(1);
+        }
+        return bn;
+    }
+
+    private static DataOnMemory<DataInstance> sample(BayesianNetwork bn) {
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(0);
+        DataOnMemory<DataInstance> data = sampler.sampleToDataStream(10000).toDataOnMemory();
+        bn.getVariables().setAttributes(data.getAttributes());
+        return data;
+    }
+
+    private static OnlineGaussianMixture learn(DAG dag, DataOnMemory<DataInstance> data) {
+        OnlineGaussianMixture gmm = new OnlineGaussianMixture();
+        gmm.setDAG(dag);
+        gmm.setSeed(0);
+        gmm.initLearning();
+        for (DataOnMemory<DataInstance> batch : data.iterableOverBatches(1000)) {
+            gmm.updateModel(batch);
+        }
+        return gmm;
+    }
+
+    /**
+     * Checks that each true component is close to a learnt one.
+     */
+    private static void assertComponents(BayesianNetwork learnt, double error) {
+        Variable g2 = learnt.getVariables().getVariableByName("G2");
+        Normal_MultinomialParents distG2 = learnt.getConditionalDistribution(g2);
+        double[] weights = learnt.<Multinomial>getConditionalDistribution(learnt.getVariables().getVariableByName("H")).getProbabilities();
+        for (int k = 0; k < 3; k++) {
+            boolean found = false;
+            for (int j = 0; j < 3; j++) {
+                if (Math.abs(distG2.getNormal(j).getMean() - MEANS[k][1]) < error
+                        && Math.abs(weights[j] - WEIGHTS[k]) < error)
+                    found = true;
+            }
+            assertTrue(found);
+        }
+    }
+
+    public void testFullCovariance() {
+        BayesianNetwork bn = mixture();
+        DataOnMemory<DataInstance> data = sample(bn);
+
+        OnlineGaussianMixture gmm = learn(bn.getDAG(), data);
+        BayesianNetwork learnt = gmm.getLearntBayesianNetwork();
+        if (Main.VERBOSE) System.out.println(learnt);
+        if (Main.VERBOSE) System.out.println(gmm.getAverageNumOfIterations());
+
+        assertComponents(learnt, 0.1);
+
+        //The regressions of G1 on G2 are recovered.
+        Normal_MultinomialNormalParents distG1 = learnt.getConditionalDistribution(learnt.getVariables().getVariableByName("G1"));
+        for (int k = 0; k < 3; k++) {
+            assertEquals(0.5, distG1.getNormal_NormalParentsDistribution(k).getCoeffParents()[0], 0.1);
+            assertEquals(1, distG1.getNormal_NormalParentsDistribution(k).getVariance(), 0.2);
+        }
+    }
+
+    public void testDiagonal() {
+        BayesianNetwork bn = mixture();
+        DataOnMemory<DataInstance> data = sample(bn);
+
+        Variables variables = bn.getVariables();
+        DAG dag = new DAG(variables);
+        dag.getParentSet(variables.getVariableByName("G1")).addParent(variables.getVariableByName("H"));
+        dag.getParentSet(variables.getVariableByName("G2")).addParent(variables.getVariableByName("H"));
+
+        //The same result with and without the parallel E-step.
+        OnlineGaussianMixture parallel = learn(dag, data);
+        assertComponents(parallel.getLearntBayesianNetwork(), 0.1);
+
+        OnlineGaussianMixture sequential = new OnlineGaussianMixture();
+        sequential.setDAG(dag);
+        sequential.setSeed(0);
+        sequential.setParallelMode(false);
+        sequential.initLearning();
+        for (DataOnMemory<DataInstance> batch : data.iterableOverBatches(1000)) {
+            sequential.updateModel(batch);
+        }
+        assertEquals(parallel.getLogMarginalProbability(), sequential.getLogMarginalProbability(), 1e-6);
+    }
+
+    public void testPruning() {
+        BayesianNetwork bn = mixture();
+        DataOnMemory<DataInstance> data = sample(bn);
+
+        //Four components for three clusters: the spare one is reseeded or merged.
+        Variables variables = new Variables();
+        Variable g1 = variables.newGaussianVariable(data.getAttributes().getAttributeByName("G1"));
+        Variable g2 = variables.newGaussianVariable(data.getAttributes().getAttributeByName("G2"));
+        Variable hidden = variables.newMultinomialVariable("HiddenVar", 4);
+        DAG dag = new DAG(variables);
+        dag.getParentSet(g1).addParent(hidden);
+        dag.getParentSet(g2).addParent(hidden);
+
+        OnlineGaussianMixture gmm = new OnlineGaussianMixture();
+        gmm.setDAG(dag);
+        gmm.setSeed(0);
+        gmm.setPruneThreshold(0.01);
+        gmm.setMergeThreshold(1);
+        gmm.initLearning();
+        for (DataOnMemory<DataInstance> batch : data.iterableOverBatches(1000)) {
+            gmm.updateModel(batch);
+        }
+
+        double[] weights = gmm.getWeights();
+        if (Main.VERBOSE) System.out.println(gmm.getLearntBayesianNetwork());
+        int used = 0;
+        for (double weight : weights) {
+            if (weight > 0.1)
+                used++;
+        }
+        assertEquals(3, used);
+    }
+
+    public void testELBO() {
+        BayesianNetwork bn = mixture();
+        DataOnMemory<DataInstance> data = sample(bn);
+        DataOnMemory<DataInstance> batch = data.iterableOverBatches(1000).iterator().next();
+
+        //The bound never decreases with the number of local iterations.
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int iter = 1; iter <= 10; iter++) {
+            OnlineGaussianMixture gmm = new OnlineGaussianMixture();
+            gmm.setDAG(bn.getDAG());
+            gmm.setSeed(0);
+            gmm.setMaxIterations(iter);
+            gmm.initLearning();
+            double bound = gmm.updateModel(batch);
+            assertEquals(bound, gmm.getLogMarginalProbability());
+            assertTrue(bound >= previous - 1e-8 * Math.abs(bound));
+            previous = bound;
+        }
+    }
+
+    public void testELBOSingleComponent() {
+        BayesianNetwork bn = mixture();
+        DataOnMemory<DataInstance> data = sample(bn);
+
+        //With a single component the bound is the exact log marginal likelihood under the Normal-Gamma prior.
+        Variables variables = new Variables();
+        Variable g2 = variables.newGaussianVariable(data.getAttributes().getAttributeByName("G2"));
+        Variable hidden = variables.newMultinomialVariable("HiddenVar", 1);
+        DAG dag = new DAG(variables);
+        dag.getParentSet(g2).addParent(hidden);
+
+        OnlineGaussianMixture gmm = new OnlineGaussianMixture();
+        gmm.setDAG(dag);
+        gmm.setSeed(0);
+        gmm.initLearning();
+        gmm.updateModel(data);
+
+        int n = data.getNumberOfDataInstances();
+        double sum = 0;
+        double sumSquares = 0;
+        for (DataInstance instance : data) {
+            double x = instance.getValue(g2.getAttribute());
+            sum += x;
+            sumSquares += x * x;
+        }
+
+        //The prior has beta0 = 1 and shape 3/2, and its mean and rate are recovered from the posterior.
+        Normal_MultinomialParents dist = gmm.getLearntBayesianNetwork().getConditionalDistribution(g2);
+        double betaN = 1 + n;
+        double shapeN = (3 + n) / 2.0;
+        double rateN = dist.getNormal(0).getVariance() * shapeN;
+        double mean0 = dist.getNormal(0).getMean() * betaN - sum;
+        double rate0 = rateN - 0.5 * (sumSquares - sum * sum / n) - n * Math.pow(sum / n - mean0, 2) / (2 * betaN);
+        double shape0 = 1.5;
+
+        double logMarginal = SpecialFunctions.logGamma(shapeN) - SpecialFunctions.logGamma(shape0)
+                + shape0 * Math.log(rate0) - shapeN * Math.log(rateN) - 0.5 * Math.log(betaN)
+                - 0.5 * n * Math.log(2 * Math.PI);
+
+        assertEquals(logMarginal, gmm.getLogMarginalProbability(), 1e-8 * Math.abs(logMarginal));
+    }
+}
@@ -33,6 +33,10 @@ public class StochasticVITest extends TestCase {
 
 
     public static void baseTest(DataStream<DataInstance> data, BayesianNetwork network, int dataSetSize, int batchSize, double error) throws IOException, ClassNotFoundException {
+        baseTest(data, network, dataSetSize, batchSize, error, 1);
+    }
+
+    public static void baseTest(DataStream<DataInstance> data, BayesianNetwork network, int dataSetSize, int batchSize, double error, int nCores) throws IOException, ClassNotFoundException {
 
 
         network.getDAG().getVariables().setAttributes(data.getAttributes());
@@ -50,6 +54,7 @@ public class StochasticVITest extends TestCase {
         stochasticVI.setLocalThreshold(0.001);
         stochasticVI.setMaximumLocalIterations(100);
         stochasticVI.setTimiLimit(10);
+        stochasticVI.setNCores(nCores);
 
         stochasticVI.setDAG(network.getDAG());
         stochasticVI.setDataStream(data);
@@ -107,4 +112,16 @@ public class StochasticVITest extends TestCase {
         //}
     }
 
-}
\ No newline at end of file
+    public static void testGaussianParallel() throws IOException, ClassNotFoundException {
+
+        BayesianNetwork bn = BayesianNetworkLoader.loadFromFile("../networks/simulated/Normal_MultinomialParents.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(2);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000);
+
+        //Four workers take four stochastic steps on disjoint minibatches in each round.
+        baseTest(data, bn, 10000, 100, 0.2, 4);
+    }
+
+}
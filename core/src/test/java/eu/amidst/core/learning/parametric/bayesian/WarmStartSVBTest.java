@@ -0,0 +1,137 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.core.learning.parametric.bayesian;
+
+import eu.amidst.core.Main;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.io.DataStreamLoader;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+public class WarmStartSVBTest extends TestCase {
+
+    private static final int N_SEQUENCES = 100;
+    private static final int N_BATCHES = 20;
+
+    /**
+     * Writes a data set where each batch contains one data instance of each sequence, and each sequence has a fixed
+     * (hidden) class. The sequence IDs start at a given value.
+     */
+    private static File writeData(double firstSequenceID) throws IOException {
+        File file = File.createTempFile("warmStartSVB", ".arff");
+        file.deleteOnExit();
+        Random random = new Random(0);
+        int[] classes = new int[N_SEQUENCES];
+        for (int i = 0; i < N_SEQUENCES; i++) {
+            classes[i] = random.nextInt(2);
+        }
+
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("@relation warmStartSVB");
+            writer.println("@attribute SEQUENCE_ID real");
+            for (int j = 0; j < 5; j++) {
+                writer.println("@attribute X" + j + " {0.0, 1.0}");
+            }
+            writer.println("@attribute G real");
+            writer.println("@data");
+            for (int batch = 0; batch < N_BATCHES; batch++) {
+                for (int i = 0; i < N_SEQUENCES; i++) {
+                    StringBuilder line = new StringBuilder(String.valueOf(firstSequenceID + i));
+                    for (int j = 0; j < 5; j++) {
+                        boolean one = random.nextDouble() < (classes[i] == 0 ? 0.8 : 0.2);
+                        line.append(one ? ",1.0" : ",0.0");
+                    }
+                    line.append(",").append((classes[i] == 0 ? -2 : 2) + random.nextGaussian());
+                    writer.println(line);
+                }
+            }
+        }
+        return file;
+    }
+
+    private static SVB learn(DataStream<DataInstance> data, boolean warmStart) {
+        Variables variables = new Variables(data.getAttributes());
+        Variable hidden = variables.newMultinomialVariable("H", 2);
+        DAG dag = new DAG(variables);
+        for (Variable var : variables) {
+            if (var != hidden)
+                dag.getParentSet(var).addParent(hidden);
+        }
+
+        SVB svb = new SVB();
+        svb.setWindowsSize(N_SEQUENCES);
+        svb.setSeed(0);
+        svb.setRandomRestart(true);
+        svb.setWarmStart(warmStart);
+        svb.getPlateuStructure().getVMP().setTestELBO(false);
+        svb.getPlateuStructure().getVMP().setThreshold(0.0001);
+        svb.getPlateuStructure().getVMP().setMaxIter(100);
+        svb.setDAG(dag);
+        svb.initLearning();
+
+        for (DataOnMemory<DataInstance> batch : data.iterableOverBatches(N_SEQUENCES)) {
+            svb.updateModel(batch);
+        }
+        return svb;
+    }
+
+    public void testWarmStart() throws IOException {
+        File file = writeData(0);
+
+        SVB random = learn(DataStreamLoader.open(file.getPath()), false);
+        SVB warm = learn(DataStreamLoader.open(file.getPath()), true);
+
+        if (Main.VERBOSE) System.out.println("Random restarts: " + random.getAverageNumOfIterations());
+        if (Main.VERBOSE) System.out.println("Warm start: " + warm.getAverageNumOfIterations());
+        if (Main.VERBOSE) System.out.println(warm.getLearntBayesianNetwork());
+
+        assertEquals(N_BATCHES, warm.getNumberOfBatches());
+        assertTrue(warm.getAverageNumOfIterations() < random.getAverageNumOfIterations());
+
+        //Both runs recover the two well separated clusters of G.
+        for (SVB svb : new SVB[]{random, warm}) {
+            BayesianNetwork bn = svb.getLearntBayesianNetwork();
+            Normal_MultinomialParents distG = bn.getConditionalDistribution(bn.getVariables().getVariableByName("G"));
+            double[] means = {distG.getNormal(0).getMean(), distG.getNormal(1).getMean()};
+            Arrays.sort(means);
+            assertEquals(-2, means[0], 0.3);
+            assertEquals(2, means[1], 0.3);
+        }
+    }
+
+    public void testLargeSequenceIDs() throws IOException {
+        //The sequence IDs do not fit in an int, so they must not be truncated when caching the local posteriors.
+        SVB small = learn(DataStreamLoader.open(writeData(0).getPath()), true);
+        SVB large = learn(DataStreamLoader.open(writeData(1e10).getPath()), true);
+
+        assertEquals(small.getAverageNumOfIterations(), large.getAverageNumOfIterations(), 1e-10);
+        assertTrue(small.getLearntBayesianNetwork().equalBNs(large.getLearntBayesianNetwork(), 1e-10));
+    }
+}
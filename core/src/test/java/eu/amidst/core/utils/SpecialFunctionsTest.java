@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.core.utils;
+
+import eu.amidst.core.exponentialfamily.EF_Dirichlet;
+import eu.amidst.core.exponentialfamily.ParameterVariables;
+import eu.amidst.core.variables.Variable;
+import junit.framework.TestCase;
+import org.apache.commons.math3.special.Gamma;
+
+import java.util.Random;
+
+public class SpecialFunctionsTest extends TestCase {
+
+    private static double[] testValues() {
+        Random random = new Random(0);
+        double[] values = new double[2000];
+        for (int i = 0; i < values.length; i++) {
+            //Values spread over many orders of magnitude, from 1e-7 to 1e7.
+            values[i] = Math.pow(10, 14 * random.nextDouble() - 7);
+        }
+        return values;
+    }
+
+    public void testDigamma() {
+        double[] values = testValues();
+        double[] results = new double[values.length];
+        SpecialFunctions.digamma(values, results);
+        for (int i = 0; i < values.length; i++) {
+            //Gamma.digamma truncates its asymptotic expansion too early, with errors of a few 1e-9.
+            double expected = Gamma.digamma(values[i]);
+            assertEquals(expected, SpecialFunctions.digamma(values[i]), 1e-8 * Math.max(1, Math.abs(expected)));
+            assertEquals(SpecialFunctions.digamma(values[i]), results[i]);
+
+            double recurrence = SpecialFunctions.digamma(values[i] + 1) - 1 / values[i];
+            assertEquals(recurrence, SpecialFunctions.digamma(values[i]), 1e-12 * Math.max(1, Math.abs(recurrence)));
+        }
+        assertEquals(-Gamma.GAMMA, SpecialFunctions.digamma(1.0), 1e-14);
+        assertEquals(-Gamma.GAMMA - 2 * Math.log(2), SpecialFunctions.digamma(0.5), 1e-14);
+        assertEquals(Gamma.digamma(-2.5), SpecialFunctions.digamma(-2.5));
+    }
+
+    public void testLogGamma() {
+        double[] values = testValues();
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            double expected = Gamma.logGamma(values[i]);
+            assertEquals(expected, SpecialFunctions.logGamma(values[i]), 1e-12 * Math.max(1, Math.abs(expected)));
+            sum += SpecialFunctions.logGamma(values[i]);
+        }
+        assertEquals(sum, SpecialFunctions.sumLogGamma(values), 1e-9 * Math.abs(sum));
+        assertEquals(0.0, SpecialFunctions.logGamma(1.0), 1e-14);
+        assertEquals(0.0, SpecialFunctions.logGamma(2.0), 1e-14);
+        assertEquals(0.5 * Math.log(Math.PI), SpecialFunctions.logGamma(0.5), 1e-14);
+    }
+
+    public void testLazyDirichletMoments() {
+        ParameterVariables variables = new ParameterVariables(0);
+        Variable var = variables.newDirichletParameter("theta", 3);
+        EF_Dirichlet dirichlet = new EF_Dirichlet(var);
+
+        dirichlet.getNaturalParameters().set(0, 2.0);
+        dirichlet.getNaturalParameters().set(1, 3.0);
+        dirichlet.getNaturalParameters().set(2, 5.0);
+        dirichlet.updateMomentFromNaturalParameters();
+        assertEquals(Gamma.digamma(3.0) - Gamma.digamma(10.0), dirichlet.getMomentParameters().get(1), 1e-12);
+
+        //Unchanged natural parameters keep the moments, changed ones recompute them.
+        dirichlet.updateMomentFromNaturalParameters();
+        assertEquals(Gamma.digamma(3.0) - Gamma.digamma(10.0), dirichlet.getMomentParameters().get(1), 1e-12);
+        dirichlet.getNaturalParameters().set(1, 4.0);
+        dirichlet.updateMomentFromNaturalParameters();
+        assertEquals(Gamma.digamma(4.0) - Gamma.digamma(11.0), dirichlet.getMomentParameters().get(1), 1e-12);
+
+        EF_Dirichlet copy = (EF_Dirichlet) dirichlet.deepCopy(var);
+        copy.getNaturalParameters().set(0, 1.0);
+        copy.getNaturalParameters().set(1, 1.0);
+        copy.getNaturalParameters().set(2, 1.0);
+        copy.updateMomentFromNaturalParameters();
+        assertEquals(Gamma.digamma(1.0) - Gamma.digamma(3.0), copy.getMomentParameters().get(0), 1e-12);
+        assertEquals(Gamma.digamma(2.0) - Gamma.digamma(11.0), dirichlet.getMomentParameters().get(0), 1e-12);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.core.utils;
+
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.models.BayesianNetwork;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Tests the compact serialization of vectors.
+ */
+public class VectorSerializationTest extends TestCase {
+
+    public static void testBaseVectors() {
+        ArrayVector arrayVector = new ArrayVector(new double[]{1.0, -2.5, 3.0});
+        ArrayVector arrayCopy = VectorSerialization.deserializeVector(VectorSerialization.serializeVector(arrayVector));
+        assertTrue(Arrays.equals(arrayVector.toArray(), arrayCopy.toArray()));
+
+        SparseVectorDefaultValue sparse = new SparseVectorDefaultValue(100, 0.5);
+        sparse.set(3, 10.0);
+        sparse.set(97, -1.0);
+        SparseVectorDefaultValue sparseCopy = VectorSerialization.deserializeVector(VectorSerialization.serializeVector(sparse));
+        assertEquals(100, sparseCopy.size());
+        assertEquals(0.5, sparseCopy.getDefaultValue());
+        assertEquals(98, sparseCopy.getNDefaultValues());
+        assertEquals(10.0, sparseCopy.get(3));
+        assertEquals(-1.0, sparseCopy.get(97));
+        assertEquals(0.5, sparseCopy.get(50));
+    }
+
+    public static void testParameterVector() {
+        BayesianNetworkGenerator.setSeed(0);
+        BayesianNetworkGenerator.setNumberOfGaussianVars(5);
+        BayesianNetworkGenerator.setNumberOfMultinomialVars(5, 3);
+        BayesianNetworkGenerator.setNumberOfLinks(10);
+        BayesianNetwork bn = BayesianNetworkGenerator.generateBayesianNetwork();
+
+        SVB svb = new SVB();
+        svb.setDAG(bn.getDAG());
+        svb.initLearning();
+
+        CompoundVector prior = svb.getNaturalParameterPrior();
+        byte[] bytes = VectorSerialization.serializeVector(prior);
+        CompoundVector copy = VectorSerialization.deserializeVector(bytes);
+
+        assertTrue(bytes.length < Serialization.serializeObject(prior).length);
+        assertEquals(prior.size(), copy.size());
+        assertEquals(prior.getNumberOfBaseVectors(), copy.getNumberOfBaseVectors());
+        for (int i = 0; i < prior.getNumberOfBaseVectors(); i++) {
+            assertEquals(prior.getVectorByPosition(i).getClass(), copy.getVectorByPosition(i).getClass());
+        }
+        for (int i = 0; i < prior.size(); i++) {
+            assertEquals(prior.get(i), copy.get(i));
+        }
+    }
+}
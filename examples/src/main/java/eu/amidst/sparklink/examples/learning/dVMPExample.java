@@ -0,0 +1,50 @@
+package eu.amidst.sparklink.examples.learning;
+
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.DAGGenerator;
+import eu.amidst.sparklink.core.data.DataSpark;
+import eu.amidst.sparklink.core.learning.dVMP;
+import eu.amidst.sparklink.core.util.DataSetGenerator;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+
+/**
+ * This example shows how to learn the parameters of a Bayesian network with latent variables
+ * using the distributed VMP algorithm on Spark.
+ */
+public class dVMPExample {
+    public static void main(String[] args) throws Exception {
+
+        //Setting up spark
+        SparkConf conf = new SparkConf().setAppName("SparkLink!").setMaster("local[4]");
+        JavaSparkContext jsc = new JavaSparkContext(conf);
+
+        //Generate a random dataset
+        DataSpark dataSpark = DataSetGenerator.generate(jsc, 1234, 1000, 5, 0);
+
+        //Creates a DAG with the NaiveBayes structure for the random dataset
+        DAG dag = DAGGenerator.getNaiveBayesStructure(dataSpark.getAttributes(), "DiscreteVar4");
+        System.out.println(dag.toString());
+
+        //Create the learner object
+        dVMP parameterLearningAlgorithm = new dVMP();
+
+        //Learning parameters
+        parameterLearningAlgorithm.setBatchSize(10);
+        parameterLearningAlgorithm.setDAG(dag);
+        parameterLearningAlgorithm.setOutput(true);
+
+        //Initialize the learning process
+        parameterLearningAlgorithm.initLearning();
+
+        //Learn from the spark data
+        parameterLearningAlgorithm.updateModel(dataSpark);
+
+        //Print the learnt BN
+        BayesianNetwork bn = parameterLearningAlgorithm.getLearntBayesianNetwork();
+        System.out.println(bn);
+
+        jsc.stop();
+    }
+}
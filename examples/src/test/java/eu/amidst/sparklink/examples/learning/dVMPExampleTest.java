@@ -0,0 +1,11 @@
+package eu.amidst.sparklink.examples.learning;
+
+import junit.framework.TestCase;
+import org.junit.Test;
+
+public class dVMPExampleTest extends TestCase {
+    @Test
+    public void test() throws Exception {
+        dVMPExample.main(null);
+    }
+}
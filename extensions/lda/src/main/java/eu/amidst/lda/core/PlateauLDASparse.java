@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.lda.core;
+
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.Attributes;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.exponentialfamily.EF_BaseDistribution_MultinomialParents;
+import eu.amidst.core.exponentialfamily.EF_SparseMultinomial_Dirichlet;
+import eu.amidst.core.exponentialfamily.EF_UnivariateDistribution;
+import eu.amidst.core.exponentialfamily.MomentParameters;
+import eu.amidst.core.exponentialfamily.NaturalParameters;
+import eu.amidst.core.inference.messagepassing.Node;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.flinklink.core.learning.parametric.utils.GlobalvsLocalUpdate;
+import org.apache.commons.math3.special.Gamma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * This class defines the same LDA model as {@link PlateauLDA}, but runs the variational updates directly over
+ * primitive arrays instead of building a graph of {@link Node} objects for every batch.
+ *
+ * <p> The words of a batch are stored in compressed rows (one row per document, with the local index and the count
+ * of each word), and also grouped by word. The topic responsibilities of each word and the expected topic counts of
+ * each document are sparse (values below {@link #setSparsityThreshold(double)} are dropped), and the expected
+ * topic-word counts are kept in a flat array restricted to the words of the batch. The documents are updated in
+ * parallel. As in {@link PlateauLDA}, each distinct word of a document has a single topic indicator, and the
+ * probability of the word is raised to its count. </p>
+ *
+ * <p> The topic-word Dirichlet distributions are still the non-replicated nodes of the plateau, so this class can be
+ * used with {@code SVB}, {@code dVMP} and {@code StochasticVI} in the same way as {@link PlateauLDA}. </p>
+ */
+public class PlateauLDASparse extends PlateauLDA implements GlobalvsLocalUpdate {
+
+    /** Represents the minimum topic responsibility (and expected topic count) which is stored. */
+    double sparsityThreshold = 1e-4;
+
+    /** Represents whether the topic-word distributions are updated at each iteration, or only at the end. */
+    boolean globalUpdate = true;
+
+    /** Represents the number of documents of the batch. */
+    transient int nDocs;
+
+    /** Represents the number of distinct words of the batch. */
+    transient int nWords;
+
+    /** Represents the first word token of each document, followed by the total number of word tokens. */
+    transient int[] docStart;
+
+    /** Represents the local index of the word of each word token. */
+    transient int[] tokenWord;
+
+    /** Represents the count of each word token. */
+    transient double[] tokenCount;
+
+    /** Represents the document of each word token. */
+    transient int[] tokenDoc;
+
+    /** Represents the first position of each word in {@link #wordTokens}, followed by the total number of word tokens. */
+    transient int[] wordStart;
+
+    /** Represents the word tokens grouped by word. */
+    transient int[] wordTokens;
+
+    /** Represents the vocabulary index of each local word. */
+    transient int[] batchWords;
+
+    /** Represents the local index of each word of the vocabulary, or -1 if it is not in the batch. */
+    transient int[] localIndex;
+
+    /** Represents the topics with an expected count above the threshold, for each document. */
+    transient int[][] docTopics;
+
+    /** Represents the expected topic counts of {@link #docTopics}. */
+    transient double[][] docTopicCounts;
+
+    /** Represents the topics of the stored responsibilities of each document, in the order of its word tokens. */
+    transient int[][] phiTopics;
+
+    /** Represents the stored responsibilities of each document. */
+    transient double[][] phiValues;
+
+    /** Represents the first stored responsibility of each word token, inside the arrays of its document. */
+    transient int[] phiStart;
+
+    /** Represents the number of stored responsibilities of each word token. */
+    transient int[] phiLength;
+
+    /** Represents the expected logarithm of the topic-word probabilities, topic-major over the local words. */
+    transient double[] expectedLogBeta;
+
+    /** Represents the natural parameters of the topic-word posteriors, topic-major over the local words. */
+    transient double[] lambda;
+
+    public PlateauLDASparse(Attributes attributes, String wordDocumentName, String wordCountName) {
+        super(attributes, wordDocumentName, wordCountName);
+    }
+
+    /**
+     * Sets the minimum topic responsibility of a word (and expected topic count of a document) which is stored.
+     * A zero value keeps the dense responsibilities.
+     * @param sparsityThreshold a non-negative {@code double} value.
+     */
+    public void setSparsityThreshold(double sparsityThreshold) {
+        this.sparsityThreshold = sparsityThreshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isGlobalUpdate() {
+        return globalUpdate;
+    }
+
+    /**
+     * Sets whether the topic-word distributions are updated at each iteration (as in {@link PlateauLDA}), or only
+     * once after the documents have converged.
+     * @param globalUpdate a {@code boolean} value.
+     */
+    @Override
+    public void setGlobalUpdate(boolean globalUpdate) {
+        this.globalUpdate = globalUpdate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setEvidence(List<? extends DataInstance> data) {
+        this.data = data;
+        this.replicatedNodes = new ArrayList<>();
+
+        int nTokens = data.size();
+        int vocabularySize = word.getNumberOfStates();
+        if (localIndex == null || localIndex.length != vocabularySize) {
+            localIndex = new int[vocabularySize];
+            Arrays.fill(localIndex, -1);
+        } else {
+            for (int i = 0; i < nWords; i++) {
+                localIndex[batchWords[i]] = -1;
+            }
+        }
+
+        Attribute seqIDAtt = this.attributes.getSeq_id();
+        int[] starts = new int[nTokens + 1];
+        tokenWord = new int[nTokens];
+        tokenCount = new double[nTokens];
+        tokenDoc = new int[nTokens];
+        int[] words = new int[Math.min(nTokens, vocabularySize)];
+        nDocs = 0;
+        nWords = 0;
+        double currentID = Double.NaN;
+        for (int i = 0; i < nTokens; i++) {
+            DataInstance instance = data.get(i);
+            if (i == 0 || currentID != instance.getValue(seqIDAtt)) {
+                currentID = instance.getValue(seqIDAtt);
+                starts[nDocs++] = i;
+            }
+            int wordIndex = (int) instance.getValue(word);
+            if (localIndex[wordIndex] == -1) {
+                localIndex[wordIndex] = nWords;
+                words[nWords++] = wordIndex;
+            }
+            tokenWord[i] = localIndex[wordIndex];
+            tokenCount[i] = instance.getValue(wordCountAtt);
+            tokenDoc[i] = nDocs - 1;
+        }
+        starts[nDocs] = nTokens;
+        docStart = Arrays.copyOf(starts, nDocs + 1);
+        batchWords = Arrays.copyOf(words, nWords);
+
+        //Word tokens grouped by word (counting sort).
+        wordStart = new int[nWords + 1];
+        for (int i = 0; i < nTokens; i++) {
+            wordStart[tokenWord[i] + 1]++;
+        }
+        for (int j = 0; j < nWords; j++) {
+            wordStart[j + 1] += wordStart[j];
+        }
+        wordTokens = new int[nTokens];
+        int[] next = Arrays.copyOf(wordStart, nWords);
+        for (int i = 0; i < nTokens; i++) {
+            wordTokens[next[tokenWord[i]]++] = i;
+        }
+
+        phiTopics = new int[nDocs][];
+        phiValues = new double[nDocs][];
+        phiStart = new int[nTokens];
+        phiLength = new int[nTokens];
+
+        //Random initialization of the expected topic counts of each document, which has a topic indicator per token.
+        Random random = this.vmp.getRandom();
+        docTopics = new int[nDocs][];
+        docTopicCounts = new double[nDocs][];
+        int[] allTopics = IntStream.range(0, nTopics).toArray();
+        for (int d = 0; d < nDocs; d++) {
+            double length = docStart[d + 1] - docStart[d];
+            double[] counts = new double[nTopics];
+            double sum = 0;
+            for (int k = 0; k < nTopics; k++) {
+                counts[k] = random.nextDouble();
+                sum += counts[k];
+            }
+            for (int k = 0; k < nTopics; k++) {
+                counts[k] *= length / sum;
+            }
+            docTopics[d] = allTopics;
+            docTopicCounts[d] = counts;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runInference() {
+
+        Variable[] topicWordVars = this.getTopicWordVariables();
+        boolean activeGlobal = Arrays.stream(topicWordVars).allMatch(var -> this.getNodeOfNonReplicatedVar(var).isActive());
+
+        double[] prior = new double[nTopics * nWords];
+        double[] priorSum = new double[nTopics];
+        expectedLogBeta = new double[nTopics * nWords];
+        lambda = null;
+        for (int k = 0; k < nTopics; k++) {
+            NaturalParameters priorParameters = this.ef_learningmodel.getDistribution(topicWordVars[k]).getNaturalParameters();
+            MomentParameters posteriorMoments = this.getNodeOfNonReplicatedVar(topicWordVars[k]).getQDist().getMomentParameters();
+            priorSum[k] = priorParameters.sum();
+            for (int j = 0; j < nWords; j++) {
+                prior[k * nWords + j] = priorParameters.get(batchWords[j]);
+                expectedLogBeta[k * nWords + j] = posteriorMoments.get(batchWords[j]);
+            }
+        }
+
+        NaturalParameters alphaParameters = this.ef_learningmodel.getDistribution(dirichletMixingTopics).getNaturalParameters();
+        double[] alpha = new double[nTopics];
+        for (int k = 0; k < nTopics; k++) {
+            alpha[k] = alphaParameters.get(k);
+        }
+
+        boolean convergence = false;
+        local_elbo = Double.NEGATIVE_INFINITY;
+        local_iter = 0;
+        double globalELBO = 0;
+        while (!convergence && (local_iter++) < this.vmp.getMaxIter()) {
+
+            double newELBO = IntStream.range(0, nDocs).parallel().mapToDouble(d -> this.updateDocument(d, alpha)).sum();
+
+            if (activeGlobal && globalUpdate) {
+                globalELBO = this.updateTopicWords(prior, priorSum);
+                newELBO += globalELBO;
+            }
+
+            double percentage = 100 * Math.abs(newELBO - local_elbo) / Math.abs(local_elbo);
+            if (percentage < this.vmp.getThreshold())
+                convergence = true;
+
+            local_elbo = newELBO;
+        }
+
+        if (activeGlobal) {
+            if (!globalUpdate)
+                local_elbo += this.updateTopicWords(prior, priorSum);
+            this.setTopicWordPosteriors(topicWordVars);
+        }
+
+        if (this.vmp.isOutput()) {
+            System.out.println("N Iter: " + local_iter + ", elbo:" + local_elbo);
+        }
+    }
+
+    /**
+     * Returns the topic-word Dirichlet variables, in the order of the topics.
+     * @return an {@code array} of {@link Variable} objects.
+     */
+    private Variable[] getTopicWordVariables() {
+        EF_BaseDistribution_MultinomialParents base = (EF_BaseDistribution_MultinomialParents) this.ef_learningmodel.getDistribution(word);
+        Variable[] vars = new Variable[nTopics];
+        for (int k = 0; k < nTopics; k++) {
+            vars[k] = ((EF_SparseMultinomial_Dirichlet) base.getBaseEFConditionalDistribution(k)).getDirichletVariable();
+        }
+        return vars;
+    }
+
+    /**
+     * Updates the topic responsibilities of the words of a document and its expected topic counts.
+     * @param d the index of the document.
+     * @param alpha the parameters of the Dirichlet prior over the topic proportions.
+     * @return the contribution of the document to the lower bound, computed with the new responsibilities.
+     */
+    private double updateDocument(int d, double[] alpha) {
+        double[] counts = new double[nTopics];
+        int[] topics = docTopics[d];
+        double[] values = docTopicCounts[d];
+        for (int i = 0; i < topics.length; i++) {
+            counts[topics[i]] = values[i];
+        }
+
+        //Expected log topic proportions and the Dirichlet terms of the lower bound.
+        double alphaSum = 0;
+        double countsSum = 0;
+        for (int k = 0; k < nTopics; k++) {
+            alphaSum += alpha[k];
+            countsSum += counts[k];
+        }
+        double[] expectedLogTheta = new double[nTopics];
+        double digammaSum = Gamma.digamma(alphaSum + countsSum);
+        double elbo = Gamma.logGamma(alphaSum) - Gamma.logGamma(alphaSum + countsSum);
+        for (int k = 0; k < nTopics; k++) {
+            double gamma = alpha[k] + counts[k];
+            expectedLogTheta[k] = Gamma.digamma(gamma) - digammaSum;
+            if (counts[k] > 0)
+                elbo += Gamma.logGamma(gamma) - Gamma.logGamma(alpha[k]) - counts[k] * expectedLogTheta[k];
+        }
+
+        int nTokens = docStart[d + 1] - docStart[d];
+        int[] newTopics = new int[nTokens * nTopics];
+        double[] newValues = new double[nTokens * nTopics];
+        double[] newCounts = new double[nTopics];
+        double[] logits = new double[nTopics];
+        int size = 0;
+        for (int t = docStart[d]; t < docStart[d + 1]; t++) {
+            int j = tokenWord[t];
+            double max = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < nTopics; k++) {
+                logits[k] = expectedLogTheta[k] + tokenCount[t] * expectedLogBeta[k * nWords + j];
+                if (logits[k] > max)
+                    max = logits[k];
+            }
+            double sum = 0;
+            for (int k = 0; k < nTopics; k++) {
+                logits[k] = Math.exp(logits[k] - max);
+                sum += logits[k];
+            }
+            elbo += max + Math.log(sum);
+
+            int first = size;
+            double kept = 0;
+            for (int k = 0; k < nTopics; k++) {
+                double phi = logits[k] / sum;
+                if (phi >= sparsityThreshold) {
+                    newTopics[size] = k;
+                    newValues[size++] = phi;
+                    kept += phi;
+                }
+            }
+            for (int p = first; p < size; p++) {
+                newValues[p] /= kept;
+                newCounts[newTopics[p]] += newValues[p];
+            }
+            phiStart[t] = first;
+            phiLength[t] = size - first;
+        }
+        phiTopics[d] = Arrays.copyOf(newTopics, size);
+        phiValues[d] = Arrays.copyOf(newValues, size);
+
+        int nonZero = 0;
+        for (int k = 0; k < nTopics; k++) {
+            if (newCounts[k] >= sparsityThreshold)
+                nonZero++;
+        }
+        int[] storedTopics = new int[nonZero];
+        double[] storedCounts = new double[nonZero];
+        for (int k = 0, i = 0; k < nTopics; k++) {
+            if (newCounts[k] >= sparsityThreshold) {
+                storedTopics[i] = k;
+                storedCounts[i++] = newCounts[k];
+            }
+        }
+        docTopics[d] = storedTopics;
+        docTopicCounts[d] = storedCounts;
+
+        return elbo;
+    }
+
+    /**
+     * Updates the topic-word posteriors from the responsibilities of the batch.
+     * @param prior the prior natural parameters, topic-major over the local words.
+     * @param priorSum the sum of the prior natural parameters of each topic over the whole vocabulary.
+     * @return the contribution of the topic-word distributions to the lower bound.
+     */
+    private double updateTopicWords(double[] prior, double[] priorSum) {
+        double[] newLambda = Arrays.copyOf(prior, prior.length);
+
+        //Each word is updated by a single task, so the expected counts do not need synchronization.
+        IntStream.range(0, nWords).parallel().forEach(j -> {
+            for (int i = wordStart[j]; i < wordStart[j + 1]; i++) {
+                int t = wordTokens[i];
+                int d = tokenDoc[t];
+                for (int p = phiStart[t]; p < phiStart[t] + phiLength[t]; p++) {
+                    newLambda[phiTopics[d][p] * nWords + j] += tokenCount[t] * phiValues[d][p];
+                }
+            }
+        });
+
+        lambda = newLambda;
+
+        return IntStream.range(0, nTopics).parallel().mapToDouble(k -> {
+            double lambdaSum = priorSum[k];
+            for (int j = 0; j < nWords; j++) {
+                lambdaSum += newLambda[k * nWords + j] - prior[k * nWords + j];
+            }
+            double digammaSum = Gamma.digamma(lambdaSum);
+
+            //The words outside the batch keep their prior, so their terms cancel out.
+            double elbo = Gamma.logGamma(priorSum[k]) - Gamma.logGamma(lambdaSum);
+            for (int j = 0; j < nWords; j++) {
+                int index = k * nWords + j;
+                expectedLogBeta[index] = Gamma.digamma(newLambda[index]) - digammaSum;
+                elbo += Gamma.logGamma(newLambda[index]) - Gamma.logGamma(prior[index])
+                        + (prior[index] - newLambda[index]) * expectedLogBeta[index];
+            }
+            return elbo;
+        }).sum();
+    }
+
+    /**
+     * Sets the natural parameters of the topic-word posteriors, i.e. the prior plus the expected counts of the batch.
+     * @param topicWordVars the topic-word Dirichlet variables.
+     */
+    private void setTopicWordPosteriors(Variable[] topicWordVars) {
+        for (int k = 0; k < nTopics; k++) {
+            EF_UnivariateDistribution qDist = this.getNodeOfNonReplicatedVar(topicWordVars[k]).getQDist();
+            qDist.getNaturalParameters().copy(this.ef_learningmodel.getDistribution(topicWordVars[k]).getNaturalParameters());
+            for (int j = 0; j < nWords; j++) {
+                qDist.getNaturalParameters().set(batchWords[j], lambda[k * nWords + j]);
+            }
+            qDist.fixNumericalInstability();
+            qDist.updateMomentFromNaturalParameters();
+        }
+    }
+}
@@ -13,6 +13,8 @@ package eu.amidst.lda.flink;
 
 import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.io.BayesianNetworkWriter;
+import eu.amidst.lda.core.PlateauLDA;
+import eu.amidst.lda.core.PlateauLDASparse;
 import eu.amidst.flinklink.core.data.DataFlink;
 import eu.amidst.flinklink.core.io.DataFlinkLoader;
 import eu.amidst.flinklink.core.learning.parametric.StochasticVI;
@@ -74,8 +76,9 @@ public class SVI_LDA {
 
 
         StochasticVI svb = new StochasticVI();
-        PlateauLDAFlink plateauLDA = new PlateauLDAFlink(dataInstances.getAttributes(),"word","count");
+        PlateauLDASparse plateauLDA = new PlateauLDASparse(dataInstances.getAttributes(),"word","count");
         plateauLDA.setNTopics(ntopics);
+        plateauLDA.setGlobalUpdate(false);
         svb.setPlateuStructure(plateauLDA);
 
         svb.setOutput(true);
@@ -105,7 +108,7 @@ public class SVI_LDA {
         }
         String pathNetwork = "SVI_"+ Arrays.toString(args)+"_.bn";
 
-        svb.getSVI().getSVB().setDAG(((PlateauLDAFlink)svb.getSVI().getSVB().getPlateuStructure()).getDagLDA());
+        svb.getSVI().getSVB().setDAG(((PlateauLDA)svb.getSVI().getSVB().getPlateuStructure()).getDagLDA());
         System.out.println(svb.getLearntBayesianNetwork().toString());
 
         BayesianNetworkWriter.save(svb.getLearntBayesianNetwork(),pathNetwork);
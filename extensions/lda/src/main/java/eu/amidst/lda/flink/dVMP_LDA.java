@@ -13,6 +13,8 @@ package eu.amidst.lda.flink;
 
 import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.io.BayesianNetworkWriter;
+import eu.amidst.lda.core.PlateauLDA;
+import eu.amidst.lda.core.PlateauLDASparse;
 import eu.amidst.flinklink.core.data.DataFlink;
 import eu.amidst.flinklink.core.io.DataFlinkLoader;
 import eu.amidst.flinklink.core.learning.parametric.StochasticVI;
@@ -71,8 +73,9 @@ public class dVMP_LDA {
 
 
         dVMP svb = new dVMP();
-        PlateauLDAFlink plateauLDA = new PlateauLDAFlink(dataInstances.getAttributes(),"word","count");
+        PlateauLDASparse plateauLDA = new PlateauLDASparse(dataInstances.getAttributes(),"word","count");
         plateauLDA.setNTopics(ntopics);
+        plateauLDA.setGlobalUpdate(false);
         svb.setPlateuStructure(plateauLDA);
 
         svb.setOutput(true);
@@ -103,7 +106,7 @@ public class dVMP_LDA {
         }
         String pathNetwork = "dVMP_"+ Arrays.toString(args)+"_.bn";
 
-        svb.getSVB().setDAG(((PlateauLDAFlink)svb.getSVB().getPlateuStructure()).getDagLDA());
+        svb.getSVB().setDAG(((PlateauLDA)svb.getSVB().getPlateuStructure()).getDagLDA());
         System.out.println(svb.getLearntBayesianNetwork().toString());
 
         BayesianNetworkWriter.save(svb.getLearntBayesianNetwork(),pathNetwork);
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.lda.core;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.io.DataStreamLoader;
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.utils.CompoundVector;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class PlateauLDASparseTest extends TestCase {
+
+    private static SVB initEngine(PlateauLDA plateauLDA, int maxIter, double threshold) {
+        plateauLDA.getVMP().setMaxIter(maxIter);
+        plateauLDA.getVMP().setThreshold(threshold);
+        plateauLDA.getVMP().setOutput(false);
+
+        SVB svb = new SVB();
+        svb.setPlateuStructure(plateauLDA);
+        svb.setOutput(false);
+        svb.setSeed(0);
+        svb.initLearning();
+        return svb;
+    }
+
+    private static CompoundVector learnStatistics(PlateauLDA plateauLDA, DataOnMemory<DataInstance> batch) {
+        return initEngine(plateauLDA, 100, 0.0001).updateModelOnBatchParallel(batch).getVector();
+    }
+
+    /**
+     * Writes a corpus of documents drawn from three overlapping topics over a vocabulary of 30 words, each one
+     * favouring its own ten words.
+     */
+    private static File writeCorpus() throws IOException {
+        File file = File.createTempFile("plateauLDASparse", ".arff");
+        file.deleteOnExit();
+        Random random = new Random(0);
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("@relation plateauLDASparse");
+            writer.println("@attribute SEQUENCE_ID real");
+            writer.println("@attribute word SparseMultinomial 30");
+            writer.println("@attribute count real");
+            writer.println("@data");
+            for (int doc = 0; doc < 60; doc++) {
+                int[] counts = new int[30];
+                int first = random.nextInt(3);
+                int second = random.nextInt(3);
+                for (int n = 0; n < 40; n++) {
+                    int topic = random.nextDouble() < 0.7 ? first : second;
+                    counts[random.nextDouble() < 0.8 ? 10 * topic + random.nextInt(10) : random.nextInt(30)]++;
+                }
+                for (int word = 0; word < 30; word++) {
+                    if (counts[word] > 0)
+                        writer.println(doc + "," + word + "," + counts[word]);
+                }
+            }
+        }
+        return file;
+    }
+
+    public void testSingleTopic() {
+        DataStream<DataInstance> dataInstances = DataStreamLoader.open("../../datasets/simulated/simulatedText.arff");
+        List<DataOnMemory<DataInstance>> batches =
+                BatchSpliteratorByID.streamOverDocuments(dataInstances, 2).collect(Collectors.toList());
+
+        //With a single topic, the posterior does not depend on the initialization, so both engines must agree.
+        PlateauLDA plateauLDA = new PlateauLDA(dataInstances.getAttributes(), "word", "count");
+        plateauLDA.setNTopics(1);
+        CompoundVector expected = learnStatistics(plateauLDA, batches.get(0));
+
+        PlateauLDASparse plateauLDASparse = new PlateauLDASparse(dataInstances.getAttributes(), "word", "count");
+        plateauLDASparse.setNTopics(1);
+        CompoundVector statistics = learnStatistics(plateauLDASparse, batches.get(0));
+
+        assertEquals(expected.size(), statistics.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), statistics.get(i), 1e-8);
+        }
+        assertEquals(plateauLDA.getLogProbabilityOfEvidence(), plateauLDASparse.getLogProbabilityOfEvidence(), 1e-6);
+    }
+
+    public void testExpectedCounts() {
+        DataStream<DataInstance> dataInstances = DataStreamLoader.open("../../datasets/simulated/simulatedText.arff");
+        List<DataOnMemory<DataInstance>> batches =
+                BatchSpliteratorByID.streamOverDocuments(dataInstances, 3).collect(Collectors.toList());
+
+        for (boolean globalUpdate : new boolean[]{true, false}) {
+            PlateauLDASparse plateauLDASparse = new PlateauLDASparse(dataInstances.getAttributes(), "word", "count");
+            plateauLDASparse.setNTopics(3);
+            plateauLDASparse.setGlobalUpdate(globalUpdate);
+
+            for (DataOnMemory<DataInstance> batch : batches) {
+                CompoundVector statistics = learnStatistics(plateauLDASparse, batch);
+
+                //The topic responsibilities of each word add up to one, so the expected counts add up to the word counts.
+                double counts = batch.stream().mapToDouble(instance -> instance.getValue(plateauLDASparse.wordCountAtt)).sum();
+                assertEquals(counts, statistics.sum(), 1e-6);
+                assertFalse(Double.isNaN(plateauLDASparse.getLogProbabilityOfEvidence()));
+                assertTrue(plateauLDASparse.getLogProbabilityOfEvidence() < 0);
+            }
+        }
+    }
+
+    public void testMultipleTopics() throws IOException {
+        File file = writeCorpus();
+        DataStream<DataInstance> dataInstances = DataStreamLoader.open(file.getPath());
+        List<DataOnMemory<DataInstance>> batches =
+                BatchSpliteratorByID.streamOverDocuments(dataInstances, 30).collect(Collectors.toList());
+        assertEquals(2, batches.size());
+
+        //The topics learnt on the first batch are the starting point of both engines on the second batch, so that
+        //they converge to the same optimum despite their different initializations of the local variables.
+        PlateauLDA first = new PlateauLDA(dataInstances.getAttributes(), "word", "count");
+        first.setNTopics(3);
+        SVB svb = initEngine(first, 1000, 1e-6);
+        svb.updateModelOnBatchParallel(batches.get(0));
+        CompoundVector topics = svb.getPlateuStructure().getPlateauNaturalParameterPosterior();
+
+        PlateauLDA plateauLDA = new PlateauLDA(dataInstances.getAttributes(), "word", "count");
+        plateauLDA.setNTopics(3);
+        SVB dense = initEngine(plateauLDA, 1000, 1e-6);
+        dense.updateNaturalParameterPosteriors(topics);
+        SVB.BatchOutput expected = dense.updateModelOnBatchParallel(batches.get(1));
+
+        PlateauLDASparse plateauLDASparse = new PlateauLDASparse(dataInstances.getAttributes(), "word", "count");
+        plateauLDASparse.setNTopics(3);
+        plateauLDASparse.setSparsityThreshold(0);
+        SVB sparse = initEngine(plateauLDASparse, 1000, 1e-6);
+        sparse.updateNaturalParameterPosteriors(topics);
+        SVB.BatchOutput output = sparse.updateModelOnBatchParallel(batches.get(1));
+
+        assertEquals(expected.getVector().size(), output.getVector().size());
+        for (int i = 0; i < expected.getVector().size(); i++) {
+            assertEquals(expected.getVector().get(i), output.getVector().get(i), 1e-6);
+        }
+        assertEquals(expected.getElbo(), output.getElbo(), 1e-6 * Math.abs(expected.getElbo()));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.data;
+
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.Attributes;
+import eu.amidst.core.datastream.filereaders.DataRow;
+
+import java.io.Serializable;
+
+/**
+ * This class implements the {@link DataRow} interface over an {@code array} of {@code double} values, which is
+ * used to rebuild data instances from their binary representation.
+ */
+public class DataRowFlink implements DataRow, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = -1824660917413552862L;
+
+    private Attributes attributes;
+    private double[] row;
+
+    public DataRowFlink(double[] instance, Attributes atts) {
+        row = instance;
+        attributes = atts;
+    }
+
+    @Override
+    public double getValue(Attribute att) {
+        return row[att.getIndex()];
+    }
+
+    @Override
+    public void setValue(Attribute att, double value) {
+        row[att.getIndex()] = value;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public double[] toArray() {
+        return row;
+    }
+}
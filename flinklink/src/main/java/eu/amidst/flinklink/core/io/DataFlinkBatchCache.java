@@ -0,0 +1,368 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.io;
+
+import eu.amidst.core.datastream.Attributes;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
+import eu.amidst.core.datastream.filereaders.DataInstanceFromDataRow;
+import eu.amidst.flinklink.core.data.DataFlink;
+import eu.amidst.flinklink.core.data.DataRowFlink;
+import eu.amidst.flinklink.core.utils.ConversionToBatches;
+import org.apache.flink.api.common.functions.FlatMapFunction;
+import org.apache.flink.api.common.io.FileInputFormat;
+import org.apache.flink.api.common.io.FileOutputFormat;
+import org.apache.flink.api.java.DataSet;
+import org.apache.flink.api.java.ExecutionEnvironment;
+import org.apache.flink.api.java.typeutils.GenericTypeInfo;
+import org.apache.flink.core.fs.FileInputSplit;
+import org.apache.flink.core.fs.FileStatus;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.util.Collector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class stores the batches of a {@link DataFlink} in a binary format, and loads them back without parsing
+ * the original data or batching it again. It is intended for running several learning or evaluation jobs over
+ * the same data set.
+ *
+ * <p> A cache is a folder with a header file (name of the data set, size of the batches and {@link Attributes})
+ * and a folder with one binary file per writing task. Each batch is stored as its identifier and its number of
+ * instances, followed by the values of the instances in row-major order. </p>
+ *
+ * <p> For instance, </p>
+ * <pre>{@code
+ * DataFlink<DataInstance> data = DataFlinkLoader.open(env, "data.arff", false);
+ * DataFlinkBatchCache.writeBatches(data, 100, "data.cache");
+ *
+ * DataFlink<DataInstance> cached = DataFlinkBatchCache.loadBatches(env, "data.cache");
+ * parallelVB.updateModel(cached); //cached.getBatchedDataSet(100) reads the stored batches.
+ * }</pre>
+ */
+public final class DataFlinkBatchCache {
+
+    public static String HEADER_FILE = "header.ser";
+
+    public static String BATCHES_FOLDER = "batches";
+
+    private DataFlinkBatchCache() {
+
+    }
+
+    /**
+     * Splits a data set into batches and stores them in a given path, replacing any previous content.
+     * The Flink job is executed by this method.
+     * @param data a {@link DataFlink} object.
+     * @param batchSize the number of instances of each batch.
+     * @param path a {@code String} with the path (or URI) of the cache folder.
+     */
+    public static void writeBatches(DataFlink<DataInstance> data, int batchSize, String path) {
+        writeBatches(data.getBatchedDataSet(batchSize), data.getName(), data.getAttributes(), batchSize, path);
+    }
+
+    /**
+     * Stores a data set of batches, built elsewhere (e.g. sampled in parallel), in a given path, replacing any
+     * previous content. The Flink job is executed by this method.
+     * @param batches a {@code DataSet} of {@link DataOnMemory} objects with at most {@code batchSize} instances.
+     * @param name the name of the data set.
+     * @param attributes the {@link Attributes} of the data set.
+     * @param batchSize the number of instances of each batch.
+     * @param path a {@code String} with the path (or URI) of the cache folder.
+     */
+    public static void writeBatches(DataSet<DataOnMemory<DataInstance>> batches, String name, Attributes attributes,
+                                    int batchSize, String path) {
+        try {
+            Path root = new Path(path);
+            FileSystem fs = root.getFileSystem();
+            if (fs.exists(root))
+                fs.delete(root, true);
+            fs.mkdirs(root);
+
+            try (ObjectOutputStream out = new ObjectOutputStream(fs.create(new Path(root, HEADER_FILE), true))) {
+                out.writeObject(name);
+                out.writeInt(batchSize);
+                out.writeObject(attributes);
+            }
+
+            BatchOutputFormat outputFormat = new BatchOutputFormat(new Path(root, BATCHES_FOLDER));
+            batches.output(outputFormat);
+            batches.getExecutionEnvironment().execute("Write batches of " + name);
+        } catch (Exception ex) {
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    /**
+     * Loads a cache of batches previously written with {@link #writeBatches(DataFlink, int, String)}.
+     * @param env the {@link ExecutionEnvironment} object.
+     * @param path a {@code String} with the path (or URI) of the cache folder.
+     * @return a {@link DataFlink} object, which returns the stored batches when batched with the same size.
+     */
+    public static DataFlink<DataInstance> loadBatches(ExecutionEnvironment env, String path) {
+        try {
+            Path root = new Path(path);
+            try (ObjectInputStream in = new ObjectInputStream(root.getFileSystem().open(new Path(root, HEADER_FILE)))) {
+                String name = (String) in.readObject();
+                int batchSize = in.readInt();
+                Attributes attributes = (Attributes) in.readObject();
+                return new DataFlinkCache(env, root, name, batchSize, attributes);
+            }
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    /**
+     * Returns the identifiers of the batches stored in a cache, without reading their instances.
+     * @param path a {@code String} with the path (or URI) of the cache folder.
+     * @return a {@code List} with the identifier of each stored batch.
+     */
+    public static List<Double> readBatchIDs(String path) {
+        try {
+            Path root = new Path(path);
+            FileSystem fs = root.getFileSystem();
+            int nAttributes;
+            try (ObjectInputStream in = new ObjectInputStream(fs.open(new Path(root, HEADER_FILE)))) {
+                in.readObject();
+                in.readInt();
+                nAttributes = ((Attributes) in.readObject()).getNumberOfAttributes();
+            }
+
+            List<Double> ids = new ArrayList<>();
+            Path folder = new Path(root, BATCHES_FOLDER);
+            if (!fs.exists(folder))
+                return ids;
+            for (FileStatus status : fs.listStatus(folder)) {
+                if (status.isDir())
+                    continue;
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(status.getPath()), 1 << 16))) {
+                    while (true) {
+                        double id;
+                        int nInstances;
+                        try {
+                            id = in.readDouble();
+                            nInstances = in.readInt();
+                        } catch (EOFException ex) {
+                            break;
+                        }
+                        ids.add(id);
+                        long skip = 8L * nInstances * nAttributes;
+                        while (skip > 0) {
+                            long skipped = in.skip(skip);
+                            if (skipped <= 0)
+                                throw new EOFException("Truncated batch in " + status.getPath());
+                            skip -= skipped;
+                        }
+                    }
+                }
+            }
+            return ids;
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    /**
+     * This class defines the output format of the batches.
+     */
+    public static class BatchOutputFormat extends FileOutputFormat<DataOnMemory<DataInstance>> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 5349283742919458710L;
+
+        private transient DataOutputStream out;
+
+        public BatchOutputFormat(Path outputPath) {
+            super(outputPath);
+            this.setWriteMode(FileSystem.WriteMode.OVERWRITE);
+            this.setOutputDirectoryMode(OutputDirectoryMode.ALWAYS);
+        }
+
+        @Override
+        public void open(int taskNumber, int numTasks) throws IOException {
+            super.open(taskNumber, numTasks);
+            this.out = new DataOutputStream(new BufferedOutputStream(this.stream, 1 << 16));
+        }
+
+        @Override
+        public void writeRecord(DataOnMemory<DataInstance> batch) throws IOException {
+            int nInstances = batch.getNumberOfDataInstances();
+            if (nInstances == 0)
+                return;
+            int nAttributes = batch.getAttributes().getNumberOfAttributes();
+            out.writeDouble(batch.getBatchID());
+            out.writeInt(nInstances);
+            for (DataInstance instance : batch) {
+                double[] values = instance.toArray();
+                for (int i = 0; i < nAttributes; i++) {
+                    out.writeDouble(values[i]);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.out != null)
+                this.out.flush();
+            super.close();
+        }
+    }
+
+    /**
+     * This class defines the input format of the batches. Each file is read as a whole, since the batches
+     * have different sizes.
+     */
+    public static class BatchInputFormat extends FileInputFormat<DataOnMemory<DataInstance>> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -2906712348718021946L;
+
+        private final Attributes attributes;
+
+        private transient DataInputStream in;
+
+        private transient double nextID;
+
+        private transient int nextSize;
+
+        public BatchInputFormat(Path filePath, Attributes attributes) {
+            super(filePath);
+            this.attributes = attributes;
+            this.unsplittable = true;
+        }
+
+        @Override
+        public void open(FileInputSplit split) throws IOException {
+            super.open(split);
+            this.in = new DataInputStream(new BufferedInputStream(this.stream, 1 << 16));
+            this.readNextSize();
+        }
+
+        private void readNextSize() throws IOException {
+            try {
+                this.nextID = this.in.readDouble();
+                this.nextSize = this.in.readInt();
+            } catch (EOFException ex) {
+                this.nextSize = -1;
+            }
+        }
+
+        @Override
+        public boolean reachedEnd() throws IOException {
+            return this.in == null || this.nextSize < 0;
+        }
+
+        @Override
+        public DataOnMemory<DataInstance> nextRecord(DataOnMemory<DataInstance> reuse) throws IOException {
+            //Streaming file sources do not check reachedEnd (nor open a task without splits), they stop on null records.
+            if (this.reachedEnd())
+                return null;
+            int nAttributes = this.attributes.getNumberOfAttributes();
+            DataOnMemoryListContainer<DataInstance> batch = new DataOnMemoryListContainer<>(this.attributes);
+            batch.setId(this.nextID);
+            for (int n = 0; n < this.nextSize; n++) {
+                double[] values = new double[nAttributes];
+                for (int i = 0; i < nAttributes; i++) {
+                    values[i] = this.in.readDouble();
+                }
+                batch.add(new DataInstanceFromDataRow(new DataRowFlink(values, this.attributes)));
+            }
+            this.readNextSize();
+            return batch;
+        }
+    }
+
+    /**
+     * This class defines the {@link DataFlink} of a cache of batches.
+     */
+    private static class DataFlinkCache implements DataFlink<DataInstance>, Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 7014312287216004528L;
+
+        final String name;
+
+        final int batchSize;
+
+        final Attributes attributes;
+
+        final String path;
+
+        transient ExecutionEnvironment env;
+
+        DataFlinkCache(ExecutionEnvironment env, Path root, String name, int batchSize, Attributes attributes) {
+            this.env = env;
+            this.path = new Path(root, BATCHES_FOLDER).toString();
+            this.name = name;
+            this.batchSize = batchSize;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return this.attributes;
+        }
+
+        @Override
+        public DataSet<DataInstance> getDataSet() {
+            return this.readBatches().flatMap(new BatchToInstances())
+                    .returns(new GenericTypeInfo<>(DataInstance.class));
+        }
+
+        @Override
+        public DataSet<DataOnMemory<DataInstance>> getBatchedDataSet(int batchSize) {
+            if (batchSize == this.batchSize)
+                return this.readBatches();
+            else
+                return ConversionToBatches.toBatches(this, batchSize);
+        }
+
+        private DataSet<DataOnMemory<DataInstance>> readBatches() {
+            return this.env.createInput(new BatchInputFormat(new Path(this.path), this.attributes),
+                    new GenericTypeInfo<>((Class<DataOnMemory<DataInstance>>) (Class) DataOnMemory.class));
+        }
+    }
+
+    static class BatchToInstances implements FlatMapFunction<DataOnMemory<DataInstance>, DataInstance> {
+        @Override
+        public void flatMap(DataOnMemory<DataInstance> batch, Collector<DataInstance> out) throws Exception {
+            for (DataInstance instance : batch) {
+                out.collect(instance);
+            }
+        }
+    }
+}
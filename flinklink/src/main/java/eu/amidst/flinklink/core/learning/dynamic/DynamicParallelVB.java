@@ -41,13 +41,15 @@ import eu.amidst.flinklink.core.utils.Batch;
 import eu.amidst.flinklink.core.utils.ConversionToBatches;
 import org.apache.flink.api.common.aggregators.DoubleSumAggregator;
 import org.apache.flink.api.common.functions.JoinFunction;
+import org.apache.flink.api.common.functions.MapFunction;
+import org.apache.flink.api.common.functions.Partitioner;
 import org.apache.flink.api.common.functions.RichFlatMapFunction;
 import org.apache.flink.api.common.functions.RichMapFunction;
 import org.apache.flink.api.common.functions.RichMapPartitionFunction;
-import org.apache.flink.api.common.operators.base.JoinOperatorBase;
 import org.apache.flink.api.java.DataSet;
-import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.functions.FunctionAnnotation;
 import org.apache.flink.api.java.operators.IterativeDataSet;
+import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.typeutils.TypeExtractor;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.util.Collector;
@@ -87,6 +89,12 @@ public class DynamicParallelVB implements ParameterLearningAlgorithm, Serializab
 
     transient DataSet<DataPosteriorAssignment> dataPosteriorDataSet;
 
+    /**
+     * Represents the posteriors of the last time slice keyed by sequence ID, which stay partitioned by the
+     * {@link SequencePartitioner} across time slices.
+     */
+    transient DataSet<Tuple2<Long, DataPosteriorAssignment>> keyedDataPosteriorDataSet;
+
     PlateuStructure plateuStructure = new PlateuIIDReplication();
     TransitionMethod transitionMethod;
 
@@ -151,7 +159,12 @@ public class DynamicParallelVB implements ParameterLearningAlgorithm, Serializab
                                         .map(name -> this.dagTime0.getVariables().getVariableByName(name))
                                         .collect(Collectors.toList());
 
-        this.dataPosteriorDataSet = this.parallelVBTime0.computePosteriorAssignment(newdata, vars);
+        //The posteriors are partitioned by sequence ID once, and stay local for the next time slices.
+        this.keyedDataPosteriorDataSet = this.parallelVBTime0.computePosteriorAssignment(newdata, vars)
+                .map(new KeyByPosteriorID())
+                .partitionCustom(new SequencePartitioner(), 0);
+
+        this.dataPosteriorDataSet = this.keyedDataPosteriorDataSet.map(new RemoveKey<>());
 
     }
 
@@ -163,7 +176,8 @@ public class DynamicParallelVB implements ParameterLearningAlgorithm, Serializab
         try{
 
             /********************************  JOIN DATA ************************************/
-            DataSet<DataPosteriorAssignment> dataPosteriorInstanceDataSet = this.joinData2(data.getDataSet());
+            DataSet<Tuple2<Long, DataPosteriorAssignment>> keyedDataPosteriorInstanceDataSet = this.joinDataCoPartitioned(data.getDataSet());
+            DataSet<DataPosteriorAssignment> dataPosteriorInstanceDataSet = keyedDataPosteriorInstanceDataSet.map(new RemoveKey<>());
             /**************************************************************************/
 
             /********************************  ITERATIVE VMP ************************************/
@@ -216,9 +230,11 @@ public class DynamicParallelVB implements ParameterLearningAlgorithm, Serializab
             config.setBytes(LATENT_INTERFACE_VARIABLE_NAMES, Serialization.serializeObject(this.latentInterfaceVariablesNames));
 
 
-            this.dataPosteriorDataSet = ConversionToBatches.toBatches(dataPosteriorInstanceDataSet, this.batchSize)
-                                        .flatMap(new CajaMarLearnMapInferenceAssignment(data.getAttributes(), this.dagTimeT.getVariables().getListOfVariables()))
+            this.keyedDataPosteriorDataSet = keyedDataPosteriorInstanceDataSet
+                                        .mapPartition(new CoPartitionedInferenceAssignment(data.getAttributes(), this.dagTimeT.getVariables().getListOfVariables(), this.batchSize))
                                         .withParameters(config);
+
+            this.dataPosteriorDataSet = this.keyedDataPosteriorDataSet.map(new RemoveKey<>());
             /**************************************************************************/
 
         }catch(Exception ex){
@@ -231,50 +247,25 @@ public class DynamicParallelVB implements ParameterLearningAlgorithm, Serializab
         return data.mapPartition(new ParallelVBTranslate(this.dagTimeT, this.latentVariablesNames, this.latentInterfaceVariablesNames,this.noLatentVariablesNames));
     }
 
-    protected DataSet<DataPosteriorAssignment> joinData(DataSet<DynamicDataInstance> data){
-        //TODO: Define which is the best join strategy!!!!
-        DataSet<DataPosteriorInstance>  dataJoined = data.join(dataPosteriorDataSet, JoinOperatorBase.JoinHint.REPARTITION_HASH_FIRST)
-                .where(new KeySelector<DynamicDataInstance, Long>() {
-                    @Override
-                    public Long getKey(DynamicDataInstance value) throws Exception {
-                        return value.getSequenceID();
-                    }
-                }).equalTo(new KeySelector<DataPosteriorAssignment, Long>() {
-                    @Override
-                    public Long getKey(DataPosteriorAssignment value) throws Exception {
-                        return value.getPosterior().getId();
-                    }
-                }).with(new JoinFunction<DynamicDataInstance, DataPosteriorAssignment, DataPosteriorInstance>() {
-                    @Override
-                    public DataPosteriorInstance join(DynamicDataInstance dynamicDataInstance, DataPosteriorAssignment dataPosterior) throws Exception {
-                        return new DataPosteriorInstance(dataPosterior, dynamicDataInstance);
-                    }
-                });
-
-        return this.translate(dataJoined);
-    }
+    /**
+     * Joins the data of a new time slice with the posteriors of the previous one. Only the new data is
+     * partitioned by sequence ID, since the posteriors are already partitioned in the same way, so the join
+     * is performed locally in each partition.
+     * @param data a {@link DataSet} of {@link DynamicDataInstance} objects.
+     * @return a {@link DataSet} with the translated assignments keyed by sequence ID.
+     */
+    protected DataSet<Tuple2<Long, DataPosteriorAssignment>> joinDataCoPartitioned(DataSet<DynamicDataInstance> data){
+        SequencePartitioner partitioner = new SequencePartitioner();
 
-    protected DataSet<DataPosteriorAssignment> joinData2(DataSet<DynamicDataInstance> data){
-        //TODO: Define which is the best join strategy!!!!
-        DataSet<DataPosteriorInstance>  dataJoined = dataPosteriorDataSet.join(data, JoinOperatorBase.JoinHint.REPARTITION_SORT_MERGE)
-                .where(new KeySelector<DataPosteriorAssignment, Long>() {
-                    @Override
-                    public Long getKey(DataPosteriorAssignment value) throws Exception {
-                        return value.getPosterior().getId();
-                    }
-                }).equalTo(new KeySelector<DynamicDataInstance, Long>() {
-                    @Override
-                    public Long getKey(DynamicDataInstance value) throws Exception {
-                        return value.getSequenceID();
-                    }
-                }).with(new JoinFunction<DataPosteriorAssignment,DynamicDataInstance, DataPosteriorInstance>() {
-                    @Override
-                    public DataPosteriorInstance join(DataPosteriorAssignment dataPosterior, DynamicDataInstance dynamicDataInstance) throws Exception {
-                        return new DataPosteriorInstance(dataPosterior, dynamicDataInstance);
-                    }
-                });
+        DataSet<Tuple2<Long, DynamicDataInstance>> keyedData = data
+                .map(new KeyBySequenceID())
+                .partitionCustom(partitioner, 0);
 
-        return this.translate(dataJoined);
+        return keyedDataPosteriorDataSet.join(keyedData)
+                .where(0).equalTo(0)
+                .with(new JoinCoPartitioned())
+                .withPartitioner(partitioner)
+                .mapPartition(new ParallelVBTranslateKeyed(this.dagTimeT, this.latentVariablesNames, this.latentInterfaceVariablesNames,this.noLatentVariablesNames));
     }
 
     public void setGlobalThreshold(double globalThreshold) {
@@ -582,20 +573,146 @@ public class DynamicParallelVB implements ParameterLearningAlgorithm, Serializab
 
 
             for (DataPosteriorInstance value : values) {
-                HashMapAssignment assignment = new HashMapAssignment();
+                out.collect(this.translate(value));
+            }
+        }
+
+        DataPosteriorAssignment translate(DataPosteriorInstance value) {
+            HashMapAssignment assignment = new HashMapAssignment();
+
+            for (Variable variable : allVariables) {
+                assignment.setValue(variable, value.getDataInstance().getValue(variable));
+            }
+
+            for (int i = 0; i < this.latentVariables.size(); i++) {
+                Variable staticVar = this.latentVariables.get(i);
+                Variable interfaceVar = this.latentInterfaceVariables.get(i);
+                if (value.getDataPosterior().isObserved(staticVar))
+                    assignment.setValue(interfaceVar, value.getDataPosterior().getAssignment().getValue(staticVar));
+            }
+            return new DataPosteriorAssignment(value.getDataPosterior().getPosterior(), assignment);
+        }
+    }
+
+    /**
+     * This class partitions the records by sequence ID. It is used for both the data and the posteriors, so
+     * records with the same sequence ID are always in the same partition.
+     */
+    public static class SequencePartitioner implements Partitioner<Long> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -5283071916032478402L;
+
+        @Override
+        public int partition(Long key, int numPartitions) {
+            return (int) Math.floorMod(key, (long) numPartitions);
+        }
+
+        //Equal partitioners let Flink reuse an existing partitioning.
+        @Override
+        public boolean equals(Object obj) {
+            return obj != null && obj.getClass() == this.getClass();
+        }
 
-                for (Variable variable : allVariables) {
-                    assignment.setValue(variable, value.getDataInstance().getValue(variable));
+        @Override
+        public int hashCode() {
+            return this.getClass().hashCode();
+        }
+    }
+
+    public static class KeyBySequenceID implements MapFunction<DynamicDataInstance, Tuple2<Long, DynamicDataInstance>> {
+        @Override
+        public Tuple2<Long, DynamicDataInstance> map(DynamicDataInstance value) throws Exception {
+            return new Tuple2<>(value.getSequenceID(), value);
+        }
+    }
+
+    public static class KeyByPosteriorID implements MapFunction<DataPosteriorAssignment, Tuple2<Long, DataPosteriorAssignment>> {
+        @Override
+        public Tuple2<Long, DataPosteriorAssignment> map(DataPosteriorAssignment value) throws Exception {
+            return new Tuple2<>(value.getPosterior().getId(), value);
+        }
+    }
+
+    @FunctionAnnotation.ForwardedFields("f1->*")
+    public static class RemoveKey<T> implements MapFunction<Tuple2<Long, T>, T> {
+        @Override
+        public T map(Tuple2<Long, T> value) throws Exception {
+            return value.f1;
+        }
+    }
+
+    @FunctionAnnotation.ForwardedFieldsFirst("f0")
+    public static class JoinCoPartitioned implements JoinFunction<Tuple2<Long, DataPosteriorAssignment>, Tuple2<Long, DynamicDataInstance>, Tuple2<Long, DataPosteriorInstance>> {
+        @Override
+        public Tuple2<Long, DataPosteriorInstance> join(Tuple2<Long, DataPosteriorAssignment> dataPosterior, Tuple2<Long, DynamicDataInstance> dynamicDataInstance) throws Exception {
+            return new Tuple2<>(dataPosterior.f0, new DataPosteriorInstance(dataPosterior.f1, dynamicDataInstance.f1));
+        }
+    }
+
+    @FunctionAnnotation.ForwardedFields("f0")
+    public static class ParallelVBTranslateKeyed extends RichMapPartitionFunction<Tuple2<Long, DataPosteriorInstance>, Tuple2<Long, DataPosteriorAssignment>> {
+
+        final ParallelVBTranslate translate;
+
+        public ParallelVBTranslateKeyed(DAG dag, List<String> latentNames, List<String> latentInterfaceNames, List<String> noLatentVariablesName) {
+            this.translate = new ParallelVBTranslate(dag, latentNames, latentInterfaceNames, noLatentVariablesName);
+        }
+
+        @Override
+        public void mapPartition(Iterable<Tuple2<Long, DataPosteriorInstance>> values, Collector<Tuple2<Long, DataPosteriorAssignment>> out) throws Exception {
+            for (Tuple2<Long, DataPosteriorInstance> value : values) {
+                out.collect(new Tuple2<>(value.f0, this.translate.translate(value.f1)));
+            }
+        }
+    }
+
+    /**
+     * This class computes the posteriors of the latent variables in each partition, so the new posteriors keep
+     * the partitioning by sequence ID of the data.
+     */
+    @FunctionAnnotation.ForwardedFields("f0")
+    public static class CoPartitionedInferenceAssignment extends RichMapPartitionFunction<Tuple2<Long, DataPosteriorAssignment>, Tuple2<Long, DataPosteriorAssignment>> {
+
+        final CajaMarLearnMapInferenceAssignment inference;
+
+        final int batchSize;
+
+        public CoPartitionedInferenceAssignment(Attributes attributes, List<Variable> variables, int batchSize) {
+            this.inference = new CajaMarLearnMapInferenceAssignment(attributes, variables);
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            this.inference.open(parameters);
+        }
+
+        @Override
+        public void mapPartition(Iterable<Tuple2<Long, DataPosteriorAssignment>> values, Collector<Tuple2<Long, DataPosteriorAssignment>> out) throws Exception {
+            Collector<DataPosteriorAssignment> keyedOut = new Collector<DataPosteriorAssignment>() {
+                @Override
+                public void collect(DataPosteriorAssignment record) {
+                    out.collect(new Tuple2<>(record.getPosterior().getId(), record));
                 }
 
-                for (int i = 0; i < this.latentVariables.size(); i++) {
-                    Variable staticVar = this.latentVariables.get(i);
-                    Variable interfaceVar = this.latentInterfaceVariables.get(i);
-                    if (value.getDataPosterior().isObserved(staticVar))
-                        assignment.setValue(interfaceVar, value.getDataPosterior().getAssignment().getValue(staticVar));
+                @Override
+                public void close() {
+
+                }
+            };
+
+            List<DataPosteriorAssignment> batch = new ArrayList<>();
+            for (Tuple2<Long, DataPosteriorAssignment> value : values) {
+                batch.add(value.f1);
+                if (batch.size() == this.batchSize) {
+                    this.inference.flatMap(new Batch<>(0, batch), keyedOut);
+                    batch = new ArrayList<>();
                 }
-                out.collect(new DataPosteriorAssignment(value.getDataPosterior().getPosterior(), assignment));
             }
+            if (batch.size() > 0)
+                this.inference.flatMap(new Batch<>(0, batch), keyedOut);
         }
     }
     private static class AssignmentParallelVBImpl implements Assignment{
@@ -0,0 +1,684 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.learning.parametric;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.learning.parametric.bayesian.utils.PlateuStructure;
+import eu.amidst.core.learning.parametric.bayesian.utils.TransitionMethod;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.utils.VectorSerialization;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.flinklink.core.data.DataFlink;
+import eu.amidst.flinklink.core.io.DataFlinkBatchCache;
+import eu.amidst.flinklink.core.utils.VectorKryoSerializer;
+import org.apache.flink.api.common.JobExecutionResult;
+import org.apache.flink.api.common.accumulators.ListAccumulator;
+import org.apache.flink.api.common.functions.MapFunction;
+import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.api.common.functions.RichFlatMapFunction;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.typeutils.GenericTypeInfo;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.IterativeStream;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.co.RichCoFlatMapFunction;
+import org.apache.flink.types.DoubleValue;
+import org.apache.flink.util.Collector;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class implements the {@link ParameterLearningAlgorithm} interface, and defines an asynchronous distributed
+ * variational inference algorithm, based on a parameter server, over Flink streaming iterations.
+ *
+ * <p> Each worker keeps its share of the data batches and, for each batch, computes the contribution of the batch
+ * to the posterior of the parameters given the latest global posterior it knows. The worker pushes the change in
+ * this contribution (a natural parameter delta) to the server, which applies it to the global posterior and
+ * broadcasts it back to all the workers. Workers do not wait for each other, but a worker can not get more than
+ * {@link #setStaleness(int)} passes over its data ahead of the slowest one (stale-synchronous parallel). </p>
+ *
+ * <p> The global bound is evaluated each time all the workers complete a new pass over their data, and the
+ * learning stops according to {@link dVMP.ConvergenceELBO} or when the maximum number of global iterations
+ * is reached. </p>
+ */
+public class AsynchronousDistributedVI implements ParameterLearningAlgorithm, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 2193372315727290117L;
+
+    public static String SVB="SVB";
+    public static String INITIAL_POSTERIOR="INITIAL_POSTERIOR";
+    public static String POSTERIOR_NAME="POSTERIOR";
+    public static String ELBO_NAME="ELBO";
+    public static String BATCHES_NAME="BATCHES";
+
+    /**
+     * Represents the directed acyclic graph {@link DAG}.
+     */
+    protected DAG dag;
+
+    protected SVB svb;
+
+    protected int batchSize = 100;
+
+    protected int maximumGlobalIterations = 10;
+
+    protected int maximumLocalIterations = 100;
+
+    protected double globalThreshold = 0.01;
+
+    protected double localThreshold = 0.1;
+
+    protected int staleness = 1;
+
+    protected long maximumWaitTime = 10000;
+
+    protected double globalELBO = Double.NaN;
+
+    protected List<Integer> batchesPerIteration = new ArrayList<>();
+
+    protected String temporaryPath = new File(System.getProperty("java.io.tmpdir")).toURI().toString();
+
+    protected transient StreamExecutionEnvironment streamEnvironment;
+
+    boolean randomStart = true;
+
+    public AsynchronousDistributedVI(){
+        this.svb = new SVB();
+    }
+
+    public void setPlateuStructure(PlateuStructure plateuStructure){
+        this.svb.setPlateuStructure(plateuStructure);
+    }
+
+    public void setTransitionMethod(TransitionMethod transitionMethod){
+        this.svb.setTransitionMethod(transitionMethod);
+    }
+
+    public void setGlobalThreshold(double globalThreshold) {
+        this.globalThreshold = globalThreshold;
+    }
+
+    public void setLocalThreshold(double localThreshold) {
+        this.localThreshold = localThreshold;
+    }
+
+    public void setMaximumGlobalIterations(int maximumGlobalIterations) {
+        this.maximumGlobalIterations = maximumGlobalIterations;
+    }
+
+    public void setMaximumLocalIterations(int maximumLocalIterations) {
+        this.maximumLocalIterations = maximumLocalIterations;
+    }
+
+    /**
+     * Sets the maximum number of passes over its data that a worker can be ahead of the slowest worker.
+     * A staleness of 0 gives a synchronous algorithm.
+     * @param staleness a non-negative {@code int} value.
+     */
+    public void setStaleness(int staleness) {
+        if (staleness < 0)
+            throw new IllegalArgumentException("The staleness must be non-negative");
+        this.staleness = staleness;
+    }
+
+    /**
+     * Sets the time (in milliseconds) the streaming iteration waits for new updates before terminating.
+     * It should be larger than the time needed to process a single batch.
+     * @param maximumWaitTime a {@code long} value.
+     */
+    public void setMaximumWaitTime(long maximumWaitTime) {
+        this.maximumWaitTime = maximumWaitTime;
+    }
+
+    /**
+     * Sets the directory where the batches are stored to be read by the streaming job. In a cluster, it must
+     * be accessible from all the task managers.
+     * @param temporaryPath a {@code String} with the URI of the directory.
+     */
+    public void setTemporaryPath(String temporaryPath) {
+        this.temporaryPath = temporaryPath;
+    }
+
+    /**
+     * Sets the streaming environment where the learning is performed. By default,
+     * {@link StreamExecutionEnvironment#getExecutionEnvironment()} is used.
+     * @param streamEnvironment a {@link StreamExecutionEnvironment} object.
+     */
+    public void setStreamExecutionEnvironment(StreamExecutionEnvironment streamEnvironment) {
+        this.streamEnvironment = streamEnvironment;
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public SVB getSVB() {
+        return svb;
+    }
+
+    public void initLearning() {
+        this.svb.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
+        this.svb.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
+        this.svb.setDAG(this.dag);
+        this.svb.setWindowsSize(batchSize);
+        this.svb.initLearning(); //Init learning is peformed in each worker.
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLogMarginalProbability() {
+        return this.globalELBO;
+    }
+
+    /**
+     * Returns, for each global iteration of the last call to {@link #updateModel(DataFlink)}, the number of
+     * batches whose contribution was included in the evaluated global bound.
+     * @return a {@code List} of {@code Integer} values.
+     */
+    public List<Integer> getNumberOfBatchesPerIteration() {
+        return batchesPerIteration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataFlink<DataInstance> dataUpdate) {
+
+        Path batchesPath = new Path(this.temporaryPath, "amidst_" + this.dag.getName() + "_" + System.nanoTime());
+
+        try {
+            // The batches are written once, so the streaming job can read them.
+            DataFlinkBatchCache.writeBatches(dataUpdate, this.batchSize, batchesPath.toString());
+
+            StreamExecutionEnvironment senv = (this.streamEnvironment != null) ?
+                    this.streamEnvironment : StreamExecutionEnvironment.getExecutionEnvironment();
+            VectorKryoSerializer.registerSerializers(senv.getConfig());
+
+            //Each batch is sent to a fixed worker, so each worker knows when it has received its whole share.
+            int nWorkers = senv.getParallelism();
+            int[] batchesPerWorker = new int[nWorkers];
+            for (double batchID : DataFlinkBatchCache.readBatchIDs(batchesPath.toString())) {
+                batchesPerWorker[workerOf(batchID, nWorkers)]++;
+            }
+            int nActiveWorkers = (int) Arrays.stream(batchesPerWorker).filter(n -> n > 0).count();
+            if (nActiveWorkers == 0)
+                throw new IllegalArgumentException("The data set is empty.");
+
+            CompoundVector prior = this.svb.getNaturalParameterPrior();
+
+            CompoundVector initialPosterior;
+            if (randomStart) {
+                this.svb.getPlateuStructure().setSeed(this.svb.getSeed());
+                this.svb.getPlateuStructure().resetQs();
+                initialPosterior = Serialization.deepCopy(this.svb.getPlateuStructure().getPlateauNaturalParameterPosterior());
+                initialPosterior.sum(prior);
+            }else{
+                initialPosterior = Serialization.deepCopy(prior);
+            }
+
+            Configuration config = new Configuration();
+            config.setString(ParameterLearningAlgorithm.BN_NAME, this.dag.getName());
+            config.setBytes(SVB, Serialization.serializeObject(svb));
+            config.setBytes(INITIAL_POSTERIOR, VectorSerialization.serializeVector(initialPosterior));
+
+            DataFlinkBatchCache.BatchInputFormat inputFormat = new DataFlinkBatchCache.BatchInputFormat(
+                    new Path(batchesPath, DataFlinkBatchCache.BATCHES_FOLDER), dataUpdate.getAttributes());
+
+            DataStream<DataOnMemory<DataInstance>> batches = senv.createInput(inputFormat,
+                    new GenericTypeInfo<>((Class<DataOnMemory<DataInstance>>) (Class) DataOnMemory.class))
+                    .partitionCustom(new BatchPartitioner(), new BatchKey());
+
+            IterativeStream.ConnectedIterativeStreams<DataOnMemory<DataInstance>, ServerMessage> iteration =
+                    batches.iterate(this.maximumWaitTime).withFeedbackType(ServerMessage.class);
+
+            DataStream<ParameterUpdate> updates = iteration
+                    .flatMap(new Worker(config, batchesPerWorker));
+
+            DataStream<ServerMessage> messages = updates
+                    .flatMap(new Server(config, nActiveWorkers, this.staleness, this.globalThreshold,
+                            this.maximumGlobalIterations))
+                    .setParallelism(1);
+
+            iteration.closeWith(messages.broadcast().map(new ForwardMessage()));
+
+            JobExecutionResult result = senv.execute("Asynchronous VI of " + this.dag.getName());
+
+            List<byte[]> posteriors = result.getAccumulatorResult(POSTERIOR_NAME + "_" + this.dag.getName());
+            List<Double> elbos = result.getAccumulatorResult(ELBO_NAME + "_" + this.dag.getName());
+            List<Integer> nBatches = result.getAccumulatorResult(BATCHES_NAME + "_" + this.dag.getName());
+            if (posteriors == null || posteriors.isEmpty())
+                throw new IllegalStateException("No global iteration was completed, the maximum wait time may be too short.");
+
+            CompoundVector posterior = VectorSerialization.deserializeVector(posteriors.get(posteriors.size() - 1));
+            this.globalELBO = elbos.get(elbos.size() - 1);
+            this.batchesPerIteration = new ArrayList<>(nBatches);
+
+            this.svb.updateNaturalParameterPosteriors(posterior);
+            this.svb.updateNaturalParameterPrior(posterior);
+            this.svb.applyTransition();
+
+        } catch (Exception ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        } finally {
+            try {
+                batchesPath.getFileSystem().delete(batchesPath, true);
+            } catch (Exception ex) {
+                //The temporary files could not be removed.
+            }
+        }
+
+        this.randomStart = false;
+
+        return this.getLogMarginalProbability();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDAG(DAG dag_) {
+        this.dag = dag_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int seed) {
+        this.svb.setSeed(seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BayesianNetwork getLearntBayesianNetwork() {
+        return this.svb.getLearntBayesianNetwork();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOutput(boolean activateOutput) {
+        this.svb.setOutput(activateOutput);
+    }
+
+    public <E extends UnivariateDistribution> E getParameterPosterior(Variable parameter) {
+        return this.svb.getParameterPosterior(parameter);
+    }
+
+    /**
+     * Returns the worker which processes a given batch.
+     * @param batchID the identifier of the batch.
+     * @param nWorkers the number of workers.
+     * @return the index of the worker.
+     */
+    static int workerOf(double batchID, int nWorkers) {
+        return (int) Math.floorMod((long) batchID, (long) nWorkers);
+    }
+
+    static class BatchKey implements KeySelector<DataOnMemory<DataInstance>, Double> {
+        @Override
+        public Double getKey(DataOnMemory<DataInstance> batch) throws Exception {
+            return batch.getBatchID();
+        }
+    }
+
+    static class BatchPartitioner implements Partitioner<Double> {
+        @Override
+        public int partition(Double batchID, int numPartitions) {
+            return workerOf(batchID, numPartitions);
+        }
+    }
+
+    /**
+     * This class defines the message sent by a worker to the server.
+     */
+    public static class ParameterUpdate {
+
+        /** Represents the index of the worker. */
+        public int worker;
+
+        /** Represents the number of passes over its data completed by the worker. */
+        public int clock;
+
+        /** Represents the key of the batch. */
+        public long batch;
+
+        /** Represents the local bound of the batch, evaluated at the posterior known by the worker. */
+        public double elbo;
+
+        /** Represents the change in the contribution of the batch to the posterior. */
+        public CompoundVector delta;
+
+        public ParameterUpdate() {
+        }
+
+        public ParameterUpdate(int worker, int clock, long batch, double elbo, CompoundVector delta) {
+            this.worker = worker;
+            this.clock = clock;
+            this.batch = batch;
+            this.elbo = elbo;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * This class defines the message broadcast by the server to the workers.
+     */
+    public static class ServerMessage {
+
+        /** Represents the change applied to the global posterior, or null. */
+        public CompoundVector delta;
+
+        /** Represents the index of the worker allowed to process its next batch, or -1. */
+        public int target = -1;
+
+        /** Represents whether the learning has finished. */
+        public boolean stop = false;
+
+        public ServerMessage() {
+        }
+
+        public ServerMessage(CompoundVector delta, int target, boolean stop) {
+            this.delta = delta;
+            this.target = target;
+            this.stop = stop;
+        }
+    }
+
+    static class ForwardMessage implements MapFunction<ServerMessage, ServerMessage> {
+        @Override
+        public ServerMessage map(ServerMessage message) throws Exception {
+            return message;
+        }
+    }
+
+    /**
+     * This class defines a worker, which processes its batches in a round-robin fashion, one batch each time the
+     * server allows it. A pass over the data is completed only when all the batches of the worker have been
+     * received and processed.
+     */
+    static class Worker extends RichCoFlatMapFunction<DataOnMemory<DataInstance>, ServerMessage, ParameterUpdate> {
+
+        final Configuration config;
+
+        final int[] batchesPerWorker;
+
+        int expectedBatches;
+
+        SVB svb;
+
+        CompoundVector prior;
+
+        CompoundVector initialPosterior;
+
+        CompoundVector posterior;
+
+        List<DataOnMemory<DataInstance>> batches = new ArrayList<>();
+
+        List<CompoundVector> contributions = new ArrayList<>();
+
+        int worker;
+
+        int nextBatch = 0;
+
+        int clock = 0;
+
+        boolean waiting = false;
+
+        boolean stopped = false;
+
+        Worker(Configuration config, int[] batchesPerWorker) {
+            this.config = config;
+            this.batchesPerWorker = batchesPerWorker;
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            worker = getRuntimeContext().getIndexOfThisSubtask();
+            if (getRuntimeContext().getNumberOfParallelSubtasks() != batchesPerWorker.length)
+                throw new IllegalStateException("The number of workers does not match the partition of the batches.");
+            expectedBatches = batchesPerWorker[worker];
+            svb = Serialization.deserializeObject(config.getBytes(SVB, null));
+            svb.initLearning();
+            svb.setOutput(false);
+            prior = svb.getNaturalParameterPrior();
+            initialPosterior = VectorSerialization.deserializeVector(config.getBytes(INITIAL_POSTERIOR, null));
+            //The replica of the global posterior starts without any contribution, as in the server.
+            posterior = Serialization.deepCopy(prior);
+        }
+
+        @Override
+        public void flatMap1(DataOnMemory<DataInstance> batch, Collector<ParameterUpdate> out) throws Exception {
+            if (batch.getNumberOfDataInstances() == 0)
+                return;
+            batches.add(batch);
+            contributions.add(null);
+            if (!waiting && !stopped)
+                processNextBatch(out);
+        }
+
+        @Override
+        public void flatMap2(ServerMessage message, Collector<ParameterUpdate> out) throws Exception {
+            if (stopped)
+                return;
+            if (message.stop) {
+                stopped = true;
+                return;
+            }
+            if (message.delta != null)
+                posterior.sum(message.delta);
+            if (message.target == worker) {
+                waiting = false;
+                processNextBatch(out);
+            }
+        }
+
+        private void processNextBatch(Collector<ParameterUpdate> out) {
+            //All the received batches are processed, the worker waits for the rest of its share.
+            if (nextBatch >= batches.size())
+                return;
+
+            int index = nextBatch;
+            DataOnMemory<DataInstance> batch = batches.get(index);
+            CompoundVector oldContribution = contributions.get(index);
+
+            //Local bound of the batch at the current posterior
+            svb.updateNaturalParameterPrior(posterior);
+            svb.updateNaturalParameterPosteriors(posterior);
+            svb.getPlateuStructure().getNonReplictedNodes().forEach(node -> node.setActive(false));
+            SVB.BatchOutput out1 = svb.updateModelOnBatchParallel(batch);
+            svb.getPlateuStructure().getNonReplictedNodes().forEach(node -> node.setActive(true));
+
+            if (Double.isNaN(out1.getElbo()))
+                throw new IllegalStateException("NaN elbo");
+
+            //New contribution of the batch, computed from the posterior without its previous contribution
+            if (oldContribution != null) {
+                CompoundVector cavity = Serialization.deepCopy(posterior);
+                cavity.substract(oldContribution);
+                svb.updateNaturalParameterPrior(cavity);
+                svb.updateNaturalParameterPosteriors(posterior);
+            } else {
+                svb.getPlateuStructure().setSeed(svb.getSeed());
+                svb.getPlateuStructure().resetQs();
+                svb.updateNaturalParameterPrior(prior);
+                svb.updateNaturalParameterPosteriors(initialPosterior);
+            }
+
+            CompoundVector newContribution = svb.updateModelOnBatchParallel(batch).getVector();
+            contributions.set(index, newContribution);
+
+            CompoundVector delta = Serialization.deepCopy(newContribution);
+            if (oldContribution != null)
+                delta.substract(oldContribution);
+
+            nextBatch++;
+            if (nextBatch >= batches.size() && batches.size() >= expectedBatches) {
+                nextBatch = 0;
+                clock++;
+            }
+
+            waiting = true;
+            out.collect(new ParameterUpdate(worker, clock, (((long) worker) << 32) | index, out1.getElbo(), delta));
+        }
+    }
+
+    /**
+     * This class defines the parameter server, which keeps the global posterior, controls the staleness of the
+     * workers and tracks the convergence of the global bound.
+     */
+    static class Server extends RichFlatMapFunction<ParameterUpdate, ServerMessage> {
+
+        final Configuration config;
+
+        final int nWorkers;
+
+        final int staleness;
+
+        final double threshold;
+
+        final int maximumGlobalIterations;
+
+        SVB svb;
+
+        CompoundVector prior;
+
+        CompoundVector posterior;
+
+        Map<Integer, Integer> clocks = new HashMap<>();
+
+        Map<Long, Double> elbos = new HashMap<>();
+
+        Map<Integer, Integer> pendingWorkers = new HashMap<>();
+
+        dVMP.ConvergenceELBO convergenceELBO;
+
+        ListAccumulator<byte[]> posteriorAccumulator = new ListAccumulator<>();
+
+        ListAccumulator<Double> elboAccumulator = new ListAccumulator<>();
+
+        ListAccumulator<Integer> batchesAccumulator = new ListAccumulator<>();
+
+        int globalIteration = 0;
+
+        boolean stopped = false;
+
+        Server(Configuration config, int nWorkers, int staleness, double threshold, int maximumGlobalIterations) {
+            this.config = config;
+            this.nWorkers = nWorkers;
+            this.staleness = staleness;
+            this.threshold = threshold;
+            this.maximumGlobalIterations = maximumGlobalIterations;
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            String bnName = config.getString(BN_NAME, "");
+            svb = Serialization.deserializeObject(config.getBytes(SVB, null));
+            svb.initLearning();
+            prior = svb.getNaturalParameterPrior();
+            posterior = Serialization.deepCopy(prior);
+            convergenceELBO = new dVMP.ConvergenceELBO(threshold, System.nanoTime());
+            getRuntimeContext().addAccumulator(POSTERIOR_NAME + "_" + bnName, posteriorAccumulator);
+            getRuntimeContext().addAccumulator(ELBO_NAME + "_" + bnName, elboAccumulator);
+            getRuntimeContext().addAccumulator(BATCHES_NAME + "_" + bnName, batchesAccumulator);
+        }
+
+        @Override
+        public void flatMap(ParameterUpdate update, Collector<ServerMessage> out) throws Exception {
+            if (stopped)
+                return;
+
+            posterior.sum(update.delta);
+            elbos.put(update.batch, update.elbo);
+            clocks.put(update.worker, update.clock);
+
+            //The workers which have not reported yet have not completed any pass.
+            int minClock = (clocks.size() < nWorkers) ? 0 : Collections.min(clocks.values());
+
+            if (update.clock <= minClock + staleness) {
+                out.collect(new ServerMessage(update.delta, update.worker, false));
+            } else {
+                out.collect(new ServerMessage(update.delta, -1, false));
+                pendingWorkers.put(update.worker, update.clock);
+            }
+
+            if (minClock <= globalIteration)
+                return;
+
+            //All the workers have completed a new pass over their data.
+            globalIteration = minClock;
+
+            double elbo = elbos.values().stream().mapToDouble(Double::doubleValue).sum() + this.computeGlobalELBO();
+
+            posteriorAccumulator.resetLocal();
+            posteriorAccumulator.add(VectorSerialization.serializeVector(posterior));
+            elboAccumulator.resetLocal();
+            elboAccumulator.add(elbo);
+            batchesAccumulator.add(elbos.size());
+
+            if (convergenceELBO.isConverged(globalIteration + 1, new DoubleValue(elbo)) || globalIteration >= maximumGlobalIterations) {
+                stopped = true;
+                out.collect(new ServerMessage(null, -1, true));
+                return;
+            }
+
+            Iterator<Map.Entry<Integer, Integer>> iterator = pendingWorkers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Integer> entry = iterator.next();
+                if (entry.getValue() <= minClock + staleness) {
+                    out.collect(new ServerMessage(null, entry.getKey(), false));
+                    iterator.remove();
+                }
+            }
+        }
+
+        private double computeGlobalELBO() {
+            svb.updateNaturalParameterPrior(prior);
+            svb.updateNaturalParameterPosteriors(posterior);
+            return svb.getPlateuStructure().getNonReplictedNodes()
+                    .mapToDouble(node -> svb.getPlateuStructure().getVMP().computeELBO(node)).sum();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import eu.amidst.core.variables.Variable;
 import eu.amidst.flinklink.core.data.DataFlink;
 import eu.amidst.flinklink.core.learning.parametric.utils.IdenitifableModelling;
 import eu.amidst.flinklink.core.learning.parametric.utils.ParameterIdentifiableModel;
+import eu.amidst.flinklink.core.utils.VectorKryoSerializer;
 import org.apache.flink.api.common.aggregators.ConvergenceCriterion;
 import org.apache.flink.api.common.aggregators.DoubleSumAggregator;
 import org.apache.flink.api.common.functions.RichFlatMapFunction;
@@ -249,6 +250,7 @@ public class DistributedVI implements ParameterLearningAlgorithm, Serializable {
 
         try{
             final ExecutionEnvironment env = dataUpdate.getDataSet().getExecutionEnvironment();
+            VectorKryoSerializer.registerSerializers(env);
 
             // get input data
             CompoundVector parameterPrior = this.svb.getNaturalParameterPrior();
@@ -455,9 +457,14 @@ public class DistributedVI implements ParameterLearningAlgorithm, Serializable {
         public void open(Configuration parameters) throws Exception {
             super.open(parameters);
             bnName = parameters.getString(BN_NAME, "");
-            svb = Serialization.deserializeObject(parameters.getBytes(SVB, null));
-
-            svb.initLearning();
+            if (svb == null) {
+                svb = Serialization.deserializeObject(parameters.getBytes(SVB, null));
+                svb.initLearning();
+            } else {
+                //The model is only deserialized and replicated at the first superstep.
+                svb.getPlateuStructure().setSeed(svb.getSeed());
+                svb.getPlateuStructure().resetQs();
+            }
 
             Collection<CompoundVector> collection = getRuntimeContext().getBroadcastVariable("VB_PARAMS_" + bnName);
             updatedPosterior = collection.iterator().next();
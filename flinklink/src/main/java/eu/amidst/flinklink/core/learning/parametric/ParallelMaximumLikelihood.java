@@ -24,13 +24,15 @@ import eu.amidst.core.exponentialfamily.SufficientStatistics;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
 import eu.amidst.flinklink.core.data.DataFlink;
+import eu.amidst.flinklink.core.utils.VectorKryoSerializer;
 import eu.amidst.core.utils.Serialization;
 import org.apache.flink.api.common.JobExecutionResult;
 import org.apache.flink.api.common.accumulators.DoubleCounter;
-import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.api.common.functions.RichMapPartitionFunction;
 import org.apache.flink.api.common.functions.RichReduceFunction;
 import org.apache.flink.api.java.DataSet;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.util.Collector;
 
 import java.lang.reflect.UndeclaredThrowableException;
 
@@ -97,7 +99,8 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm {
             config.setBytes(EFBN_NAME, Serialization.serializeObject(efBayesianNetwork));
 
             DataSet<DataInstance> dataset = dataUpdate.getDataSet();
-            this.sumSS = dataset.map(new SufficientSatisticsMAP())
+            VectorKryoSerializer.registerSerializers(dataset.getExecutionEnvironment());
+            this.sumSS = dataset.mapPartition(new SufficientSatisticsMAP())
                     .withParameters(config)
                     .reduce(new SufficientSatisticsReduce())
                     .collect().get(0);
@@ -156,16 +159,26 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm {
     }
 
 
-    static class SufficientSatisticsMAP extends RichMapFunction<DataInstance, SufficientStatistics> {
+    /**
+     * Accumulates the sufficient statistics of a whole partition, so only one record per partition is
+     * sent to the reduce phase.
+     */
+    static class SufficientSatisticsMAP extends RichMapPartitionFunction<DataInstance, SufficientStatistics> {
 
 
         private final DoubleCounter counterInstances = new DoubleCounter();
         EF_BayesianNetwork ef_bayesianNetwork;
 
         @Override
-        public SufficientStatistics map(DataInstance dataInstance) throws Exception {
-            this.counterInstances.add(1.0);
-            return this.ef_bayesianNetwork.getSufficientStatistics(dataInstance);
+        public void mapPartition(Iterable<DataInstance> values, Collector<SufficientStatistics> out) throws Exception {
+            SufficientStatistics accumulator = this.ef_bayesianNetwork.createZeroSufficientStatistics();
+            double count = 0;
+            for (DataInstance dataInstance : values) {
+                accumulator.sum(this.ef_bayesianNetwork.getSufficientStatistics(dataInstance));
+                count++;
+            }
+            this.counterInstances.add(count);
+            out.collect(accumulator);
         }
 
         @Override
@@ -25,6 +25,7 @@ import eu.amidst.core.exponentialfamily.SufficientStatistics;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
 import eu.amidst.flinklink.core.data.DataFlink;
+import eu.amidst.flinklink.core.utils.VectorKryoSerializer;
 import eu.amidst.core.utils.Serialization;
 import org.apache.flink.api.common.JobExecutionResult;
 import org.apache.flink.api.common.accumulators.DoubleCounter;
@@ -103,6 +104,7 @@ public class ParallelMaximumLikelihood2 implements ParameterLearningAlgorithm {
             config.setBytes(EFBN_NAME, Serialization.serializeObject(efBayesianNetwork));
 
             DataSet<DataInstance> dataset = dataUpdate.getDataSet();
+            VectorKryoSerializer.registerSerializers(dataset.getExecutionEnvironment());
 
             this.sumSS = dataset.mapPartition(new SufficientSatisticsMAP())
                     .withParameters(config)
@@ -183,14 +185,14 @@ public class ParallelMaximumLikelihood2 implements ParameterLearningAlgorithm {
 
         @Override
         public void mapPartition(Iterable<DataInstance> values, Collector<SufficientStatistics> out) throws Exception {
-            SufficientStatistics accumulator = null;
+            //Empty partitions also emit (zero) statistics, so the reduce never receives a null record.
+            SufficientStatistics accumulator = this.ef_bayesianNetwork.createZeroSufficientStatistics();
+            double count = 0;
             for (DataInstance value : values) {
-                this.counterInstances.add(1.0);
-                if (accumulator==null)
-                    accumulator=this.ef_bayesianNetwork.getSufficientStatistics(value);
-                else
-                    accumulator.sum(this.ef_bayesianNetwork.getSufficientStatistics(value));
+                accumulator.sum(this.ef_bayesianNetwork.getSufficientStatistics(value));
+                count++;
             }
+            this.counterInstances.add(count);
             out.collect(accumulator);
         }
     }
@@ -13,6 +13,7 @@ package eu.amidst.flinklink.core.learning.parametric;
 
 import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
 import eu.amidst.core.distribution.UnivariateDistribution;
 import eu.amidst.core.learning.parametric.bayesian.SVB;
 import eu.amidst.core.learning.parametric.bayesian.utils.PlateuStructure;
@@ -21,21 +22,53 @@ import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.CompoundVector;
 import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.utils.VectorSerialization;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.flinklink.core.data.DataFlink;
 import eu.amidst.flinklink.core.utils.Function2;
+import eu.amidst.flinklink.core.utils.VectorKryoSerializer;
+import org.apache.flink.api.common.JobExecutionResult;
+import org.apache.flink.api.common.accumulators.IntCounter;
+import org.apache.flink.api.common.accumulators.ListAccumulator;
+import org.apache.flink.api.common.aggregators.ConvergenceCriterion;
+import org.apache.flink.api.common.aggregators.DoubleSumAggregator;
+import org.apache.flink.api.common.aggregators.LongSumAggregator;
 import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.api.common.functions.RichMapPartitionFunction;
 import org.apache.flink.api.java.DataSet;
+import org.apache.flink.api.java.ExecutionEnvironment;
+import org.apache.flink.api.java.operators.IterativeDataSet;
+import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.configuration.Configuration;
+import org.apache.flink.types.DoubleValue;
+import org.apache.flink.types.LongValue;
+import org.apache.flink.util.Collector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 /**
- * This class implements the {@link ParameterLearningAlgorithm} interface, and defines the parallel Maximum Likelihood algorithm.
+ * This class implements the {@link ParameterLearningAlgorithm} interface, and defines the stochastic variational
+ * inference algorithm over Flink.
+ *
+ * <p> All the stochastic steps run inside a single bulk iteration, which carries the natural parameters of the
+ * posterior. At each step, every partition draws its share of the minibatch with reservoir sampling over its local
+ * data, the partial statistics are summed and the global parameters are updated with the usual step size
+ * {@code (1+t)^-learningFactor}, where t counts the steps of all the calls to {@link #updateModel(DataFlink)}.
+ * The iteration stops after {@link #setTimiLimit(long)} seconds or {@link #setMaximumIterations(int)} steps. </p>
+ *
+ * <p> The progress is monitored every {@link #setEvaluationInterval(int)} steps with a held-out predictive score: the
+ * average, over a held-out sample of the data of size {@link #setHeldOutSize(int)} which is not used for learning,
+ * of the local lower bound of the log predictive probability of a unit given the current posterior. Unlike the
+ * ELBO, it does not include the divergence of the posterior from the prior, and it does not grow with the size of
+ * the data set. </p>
  *
  * <p> For an example of use follow this link </p>
  * <p> <a href="http://amidst.github.io/toolbox/CodeExamples.html#pmlexample"> http://amidst.github.io/toolbox/CodeExamples.html#pmlexample </a>  </p>
@@ -50,6 +83,12 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
     public static String SVB="SVB";
     public static String PRIOR="PRIOR";
+    public static String SVI_PARAMS="SVI_PARAMS_";
+    public static String SVI_SCORE="SVI_SCORE_";
+    public static String SVI_HELD_OUT="SVI_HELD_OUT_";
+
+    /** Represents the maximum fraction of the data set which is held out. */
+    static final double MAXIMUM_HELD_OUT = 0.1;
 
     /**
      * Represents the directed acyclic graph {@link DAG}.
@@ -58,6 +97,14 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
     private long timiLimit;
 
+    private int maximumIterations = 1000;
+
+    private int heldOutSize = 1000;
+
+    private int evaluationInterval = 10;
+
+    private double heldOutLogLikelihood = Double.NaN;
+
     Function2<DataFlink<DataInstance>,Integer,DataSet<DataOnMemory<DataInstance>>> batchConverter=null;
 
 
@@ -68,10 +115,48 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         this.svi.setLearningFactor(learningFactor);
     }
 
+    /**
+     * Sets the time limit of the learning process, in seconds. A non-positive value means no time limit.
+     * @param seconds a {@code long} value.
+     */
     public void setTimiLimit(long seconds) {
         this.timiLimit = seconds;
     }
 
+    /**
+     * Sets the maximum number of stochastic steps.
+     * @param maximumIterations a positive {@code int} value.
+     */
+    public void setMaximumIterations(int maximumIterations) {
+        this.maximumIterations = maximumIterations;
+    }
+
+    /**
+     * Sets the expected number of (converted) data instances held out for estimating the predictive score, which
+     * is limited to a tenth of the data set. A zero value disables the estimation.
+     * @param heldOutSize a non-negative {@code int} value.
+     */
+    public void setHeldOutSize(int heldOutSize) {
+        this.heldOutSize = heldOutSize;
+    }
+
+    /**
+     * Sets the number of stochastic steps between two consecutive estimations of the held-out predictive score.
+     * @param evaluationInterval a positive {@code int} value.
+     */
+    public void setEvaluationInterval(int evaluationInterval) {
+        this.evaluationInterval = evaluationInterval;
+    }
+
+    /**
+     * Returns the last estimation of the held-out predictive score, i.e. the average of the local lower bounds of
+     * the log predictive probability of the held-out units. It is not an estimation of the ELBO of the data set.
+     * @return a {@code double} value, or NaN if no estimation was made.
+     */
+    public double getHeldOutLogLikelihood() {
+        return heldOutLogLikelihood;
+    }
+
     public void setDataSetSize(long dataSetSize) {
         this.svi.setDataSetSize(dataSetSize);
     }
@@ -123,61 +208,69 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
     @Override
     public double updateModel(DataFlink<DataInstance> dataUpdate) {
 
-        DecimalFormat df = new DecimalFormat("0.0000");
-
-        boolean convergence=false;
-
-        double totalTimeElbo=0;
-
-        double totalTime=0;
-        double t = 0;
-        while(!convergence){
+        try {
+            final ExecutionEnvironment env = dataUpdate.getDataSet().getExecutionEnvironment();
+            VectorKryoSerializer.registerSerializers(env);
 
-            long startBatch= System.nanoTime();
+            SVB svb = this.svi.getSVB();
+            String bnName = svb.getDAG().getName();
+            long dataSetSize = this.svi.getDataSetSize();
+            if (dataSetSize <= 0)
+                throw new IllegalStateException("The data set size must be set before learning");
 
-            DataOnMemory<DataInstance> batch;
+            Configuration config = new Configuration();
+            config.setString(ParameterLearningAlgorithm.BN_NAME, bnName);
+            config.setBytes(SVB, Serialization.serializeObject(svb));
+            config.setBytes(PRIOR, VectorSerialization.serializeVector(svb.getNaturalParameterPrior()));
 
-            if (batchConverter==null)
-                    batch= dataUpdate.subsample(this.svi.getSeed(), this.svi.getBatchSize());
+            //The sampling units are the data instances, or the groups built by the batch converter (e.g. documents).
+            DataSet<DataOnMemory<DataInstance>> units;
+            if (batchConverter == null)
+                units = dataUpdate.getBatchedDataSet(1);
             else
-                    batch= dataUpdate.subsample(this.svi.getSeed(), this.svi.getBatchSize(), this.batchConverter);
+                units = dataUpdate.getBatchedDataSet(1, batchConverter);
 
-            this.svi.updateModel(batch);
+            CompoundVector initialPosterior = Serialization.deepCopy(svb.getPlateuStructure().getPlateauNaturalParameterPosterior());
 
-            long endBatch= System.nanoTime();
+            //The step sizes continue from the steps of the previous calls.
+            int previousSteps = this.svi.getNumberOfSteps();
 
-            totalTime+=endBatch-startBatch;
+            ConvergenceByTime convergence = new ConvergenceByTime(this.timiLimit, this.evaluationInterval, System.currentTimeMillis());
+            IterativeDataSet<CompoundVector> loop = env.fromElements(initialPosterior)
+                    .iterate(this.maximumIterations)
+                    .registerAggregationConvergenceCriterion(SVI_SCORE + bnName, new DoubleSumAggregator(), convergence);
+            loop.registerAggregator(SVI_HELD_OUT + bnName, new LongSumAggregator());
 
-            if (t%10==0) {
-                long startBatchELBO = System.nanoTime();
-                //Compute ELBO
-
-                double elbo = this.computeELBO(dataUpdate, svi.getSVB(), this.batchConverter);
-
-                long endBatchELBO = System.nanoTime();
-
-                totalTimeElbo += endBatchELBO - startBatchELBO;
+            double heldOutProbability = Math.min(MAXIMUM_HELD_OUT, this.heldOutSize / (double) dataSetSize);
+            long trainingSize = Math.max(1, Math.round(dataSetSize * (1 - heldOutProbability)));
 
-                System.out.println("TIME ELBO:" + totalTimeElbo / 1e9);
-
-
-                logger.info("SVI ELBO: {},{},{},{} seconds, {} seconds", t, 0,
-                        df.format(elbo), df.format(totalTime / 1e9), df.format(totalTimeElbo / 1e9));
-
-                System.out.println("SVI ELBO: " + t + ", " + 0.0 + ", " + elbo + ", " + totalTime / 1e9 + " seconds " + totalTimeElbo / 1e9 + " seconds " + (totalTime - totalTimeElbo) / 1e9 + " seconds");
-            }
+            DataSet<CompoundVector> newParamSet = units
+                    .mapPartition(new SVISampleStep(this.svi.getSeed(), this.svi.getBatchSize(), trainingSize,
+                            heldOutProbability, this.evaluationInterval, previousSteps))
+                    .withParameters(config)
+                    .withBroadcastSet(loop, SVI_PARAMS + bnName)
+                    .reduce(new SVIReduce())
+                    .map(new SVIUpdateStep(this.svi.getLearningFactor(), dataSetSize, this.evaluationInterval, previousSteps))
+                    .withParameters(config)
+                    .withBroadcastSet(loop, SVI_PARAMS + bnName)
+                    .setParallelism(1);
 
-            if ((totalTime-totalTimeElbo)/1e9>timiLimit){// || t>this.maximumLocalIterations){
-                convergence=true;
-            }
+            CompoundVector posterior = loop.closeWith(newParamSet).collect().get(0);
 
-            t++;
+            JobExecutionResult result = env.getLastJobExecutionResult();
+            List<Double> scores = result.getAccumulatorResult(SVI_SCORE + bnName);
+            this.heldOutLogLikelihood = (scores == null || scores.isEmpty()) ? Double.NaN : scores.get(scores.size() - 1);
+            this.svi.setNaturalParameterPosterior(posterior,
+                    previousSteps + result.<Integer>getAccumulatorResult(SVI_PARAMS + bnName));
 
+        } catch (Exception ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
         }
 
         return this.getLogMarginalProbability();
 
     }
+
     public static double computeELBO(DataFlink<DataInstance> dataFlink, SVB svb) {
             return computeELBO(dataFlink,svb,null);
     }
@@ -191,7 +284,7 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
             Configuration config = new Configuration();
             config.setBytes(SVB, Serialization.serializeObject(svb));
-            config.setBytes(PRIOR, Serialization.serializeObject(svb.getPlateuStructure().getPlateauNaturalParameterPosterior()));
+            config.setBytes(PRIOR, VectorSerialization.serializeVector(svb.getPlateuStructure().getPlateauNaturalParameterPosterior()));
 
             DataSet<DataOnMemory<DataInstance>> batches;
             if (batchConverter!=null)
@@ -277,7 +370,7 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
         public void open(Configuration parameters) throws Exception {
             super.open(parameters);
             svb = Serialization.deserializeObject(parameters.getBytes(SVB, null));
-            this.prior = Serialization.deserializeObject(parameters.getBytes(PRIOR, null));
+            this.prior = VectorSerialization.deserializeVector(parameters.getBytes(PRIOR, null));
 
             svb.initLearning();
             this.svb.updateNaturalParameterPrior(prior);
@@ -289,4 +382,253 @@ public class StochasticVI implements BayesianParameterLearningAlgorithm, Seriali
 
     }
 
-}
\ No newline at end of file
+    /**
+     * This class draws the local part of the minibatch of each stochastic step and computes its statistics. At
+     * the first step, it also keeps the local held-out units, which are used for estimating the predictive score.
+     */
+    public static class SVISampleStep extends RichMapPartitionFunction<DataOnMemory<DataInstance>, Tuple2<Long, CompoundVector>> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -2467731125812380149L;
+
+        final int seed;
+        final int batchSize;
+        final long trainingSize;
+        final double heldOutProbability;
+        final int evaluationInterval;
+        final int previousSteps;
+
+        String bnName;
+        SVB svb;
+        CompoundVector param;
+        List<DataOnMemory<DataInstance>> heldOut;
+
+        DoubleSumAggregator score;
+        LongSumAggregator heldOutCount;
+
+        public SVISampleStep(int seed, int batchSize, long trainingSize, double heldOutProbability, int evaluationInterval,
+                             int previousSteps) {
+            this.seed = seed;
+            this.batchSize = batchSize;
+            this.trainingSize = trainingSize;
+            this.heldOutProbability = heldOutProbability;
+            this.evaluationInterval = evaluationInterval;
+            this.previousSteps = previousSteps;
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            bnName = parameters.getString(BN_NAME, "");
+            //The model is only deserialized at the first superstep.
+            if (svb == null) {
+                svb = Serialization.deserializeObject(parameters.getBytes(SVB, null));
+                svb.initLearning();
+                svb.setOutput(false);
+            }
+            param = getRuntimeContext().<CompoundVector>getBroadcastVariable(SVI_PARAMS + bnName).iterator().next();
+            score = getIterationRuntimeContext().getIterationAggregator(SVI_SCORE + bnName);
+            heldOutCount = getIterationRuntimeContext().getIterationAggregator(SVI_HELD_OUT + bnName);
+        }
+
+        @Override
+        public void mapPartition(Iterable<DataOnMemory<DataInstance>> units, Collector<Tuple2<Long, CompoundVector>> out) throws Exception {
+            int superstep = getIterationRuntimeContext().getSuperstepNumber();
+            int subtask = getRuntimeContext().getIndexOfThisSubtask();
+
+            //The held-out units are decided by the position of the unit in the partition, which is the same
+            //at every superstep, so they are never used for learning.
+            Random heldOutRandom = new Random(31L * seed + subtask);
+            Random random = new Random((31L * seed + subtask) * 1000003L + previousSteps + superstep);
+            boolean firstStep = heldOut == null;
+            if (firstStep)
+                heldOut = new ArrayList<>();
+
+            List<DataOnMemory<DataInstance>> reservoir = new ArrayList<>(batchSize);
+            long nUnits = 0;
+            for (DataOnMemory<DataInstance> unit : units) {
+                if (heldOutRandom.nextDouble() < heldOutProbability) {
+                    if (firstStep)
+                        heldOut.add(unit);
+                    continue;
+                }
+                nUnits++;
+                if (reservoir.size() < batchSize) {
+                    reservoir.add(unit);
+                } else {
+                    long j = (long) (random.nextDouble() * nUnits);
+                    if (j < batchSize)
+                        reservoir.set((int) j, unit);
+                }
+            }
+
+            heldOutCount.aggregate(heldOut.size());
+            if (superstep > 1 && (superstep - 1) % evaluationInterval == 0 && !heldOut.isEmpty())
+                this.estimateHeldOutLogLikelihood();
+
+            //The local share of the minibatch is proportional to the size of the partition.
+            double expectedSize = batchSize * nUnits / (double) trainingSize;
+            int localSize = (int) Math.floor(expectedSize);
+            if (random.nextDouble() < expectedSize - localSize)
+                localSize++;
+            localSize = Math.min(localSize, reservoir.size());
+
+            if (localSize == 0) {
+                CompoundVector zero = Serialization.deepCopy(param);
+                zero.multiplyBy(0);
+                out.collect(new Tuple2<>(0L, zero));
+                return;
+            }
+
+            Collections.shuffle(reservoir, random);
+            DataOnMemoryListContainer<DataInstance> batch = new DataOnMemoryListContainer<>(reservoir.get(0).getAttributes());
+            for (int i = 0; i < localSize; i++) {
+                batch.addAll(reservoir.get(i).getList());
+            }
+
+            svb.updateNaturalParameterPosteriors(param);
+            out.collect(new Tuple2<>((long) localSize, svb.updateModelOnBatchParallel(batch).getVector()));
+        }
+
+        private void estimateHeldOutLogLikelihood() {
+            //The previous superstep aggregated the total number of held-out units.
+            long totalHeldOut = getIterationRuntimeContext().<LongValue>getPreviousIterationAggregate(SVI_HELD_OUT + bnName).getValue();
+
+            //The held-out units are evaluated in batches of the size of the plateau.
+            double localScore = 0;
+            DataOnMemoryListContainer<DataInstance> batch = new DataOnMemoryListContainer<>(heldOut.get(0).getAttributes());
+            for (int i = 0; i < heldOut.size(); i++) {
+                batch.addAll(heldOut.get(i).getList());
+                if (i == heldOut.size() - 1 || batch.getNumberOfDataInstances() + heldOut.get(i + 1).getNumberOfDataInstances() > batchSize) {
+                    svb.updateNaturalParameterPosteriors(param);
+                    localScore += svb.predictedLogLikelihood(batch);
+                    batch = new DataOnMemoryListContainer<>(batch.getAttributes());
+                }
+            }
+
+            if (Double.isNaN(localScore))
+                throw new IllegalStateException("NaN held-out log-likelihood");
+
+            score.aggregate(localScore / totalHeldOut);
+        }
+    }
+
+    /**
+     * This class sums the statistics and the sizes of the local minibatches.
+     */
+    public static class SVIReduce implements ReduceFunction<Tuple2<Long, CompoundVector>> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 6051436802387221357L;
+
+        @Override
+        public Tuple2<Long, CompoundVector> reduce(Tuple2<Long, CompoundVector> value1, Tuple2<Long, CompoundVector> value2) throws Exception {
+            CompoundVector newValue = Serialization.deepCopy(value1.f1);
+            newValue.sum(value2.f1);
+            return new Tuple2<>(value1.f0 + value2.f0, newValue);
+        }
+    }
+
+    /**
+     * This class performs the stochastic update of the natural parameters of the posterior. It also counts the
+     * number of steps and collects the estimations of the held-out predictive score with accumulators.
+     */
+    public static class SVIUpdateStep extends RichMapFunction<Tuple2<Long, CompoundVector>, CompoundVector> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 2940811753461358016L;
+
+        final double learningFactor;
+        final long dataSetSize;
+        final int evaluationInterval;
+        final int previousSteps;
+
+        String bnName;
+        CompoundVector prior;
+        CompoundVector param;
+
+        IntCounter steps;
+        ListAccumulator<Double> scores;
+
+        public SVIUpdateStep(double learningFactor, long dataSetSize, int evaluationInterval, int previousSteps) {
+            this.learningFactor = learningFactor;
+            this.dataSetSize = dataSetSize;
+            this.evaluationInterval = evaluationInterval;
+            this.previousSteps = previousSteps;
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            bnName = parameters.getString(BN_NAME, "");
+            //The function is kept among supersteps, the accumulators are only registered once.
+            if (prior == null) {
+                prior = VectorSerialization.deserializeVector(parameters.getBytes(PRIOR, null));
+                steps = new IntCounter();
+                scores = new ListAccumulator<>();
+                getRuntimeContext().addAccumulator(SVI_PARAMS + bnName, steps);
+                getRuntimeContext().addAccumulator(SVI_SCORE + bnName, scores);
+            }
+            param = getRuntimeContext().<CompoundVector>getBroadcastVariable(SVI_PARAMS + bnName).iterator().next();
+        }
+
+        @Override
+        public CompoundVector map(Tuple2<Long, CompoundVector> statistics) throws Exception {
+            int iteration = getIterationRuntimeContext().getSuperstepNumber() - 1;
+
+            //The score estimated at the previous superstep.
+            if (iteration > 1 && (iteration - 1) % evaluationInterval == 0)
+                scores.add(getIterationRuntimeContext().<DoubleValue>getPreviousIterationAggregate(SVI_SCORE + bnName).getValue());
+
+            steps.add(1);
+
+            if (statistics.f0 == 0)
+                return param;
+
+            CompoundVector newParam = statistics.f1;
+            newParam.multiplyBy(this.dataSetSize / (double) statistics.f0);
+            newParam.sum(prior);
+
+            double stepSize = Math.pow(1 + previousSteps + iteration, -learningFactor);
+
+            newParam.multiplyBy(stepSize);
+
+            CompoundVector currentParam = Serialization.deepCopy(param);
+            currentParam.multiplyBy(1 - stepSize);
+            currentParam.sum(newParam);
+
+            return currentParam;
+        }
+    }
+
+    /**
+     * This class logs the estimations of the held-out predictive score and stops the iteration after the time limit.
+     */
+    public static class ConvergenceByTime implements ConvergenceCriterion<DoubleValue> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -5330162254811961543L;
+
+        final long timeLimit;
+        final int evaluationInterval;
+        final long start;
+
+        public ConvergenceByTime(long timeLimit, int evaluationInterval, long start) {
+            this.timeLimit = timeLimit;
+            this.evaluationInterval = evaluationInterval;
+            this.start = start;
+        }
+
+        @Override
+        public boolean isConverged(int iteration, DoubleValue value) {
+            double seconds = (System.currentTimeMillis() - start) / 1000.0;
+
+            if (iteration > 1 && (iteration - 1) % evaluationInterval == 0 && value.getValue() != 0) {
+                DecimalFormat df = new DecimalFormat("0.0000");
+                logger.info("SVI held-out log-likelihood: {},{},{} seconds", iteration - 1, df.format(value.getValue()), df.format(seconds));
+            }
+
+            return timeLimit > 0 && seconds > timeLimit;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.learning.parametric;
+
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.learning.parametric.bayesian.utils.PlateuStructure;
+import eu.amidst.core.learning.parametric.bayesian.utils.TransitionMethod;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.utils.VectorSerialization;
+import eu.amidst.flinklink.core.utils.VectorKryoSerializer;
+import org.apache.flink.api.common.functions.RichFlatMapFunction;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.java.typeutils.GenericTypeInfo;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.checkpoint.Checkpointed;
+import org.apache.flink.streaming.api.datastream.AllWindowedStream;
+import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.functions.windowing.AllWindowFunction;
+import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.windows.Window;
+import org.apache.flink.util.Collector;
+
+import java.io.Serializable;
+
+/**
+ * This class defines a streaming version of the {@link SVB} algorithm over Flink data streams, for learning
+ * the parameters of a Bayesian network from unbounded data.
+ *
+ * <p> The incoming data instances are grouped into windows, either of a fixed number of instances
+ * ({@link #setWindowsSize(int)}) or of a fixed processing time ({@link #setWindowsTime(Time)}). Each window is
+ * turned into a batch and used to update the posterior of the parameters, which then becomes the prior for the
+ * next batch after applying the {@link TransitionMethod}, if any (e.g. a {@code Fading} transition to deal with
+ * concept drift). </p>
+ *
+ * <p> A snapshot of the learnt model is emitted every {@link #setSnapshotInterval(int)} batches. The current
+ * posterior is kept as operator state, so the learning is resumed from the last checkpoint after a failure
+ * when checkpointing is enabled in the {@code StreamExecutionEnvironment}. </p>
+ */
+public class StreamingVB implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = -3587520465301286419L;
+
+    public static String SVB="SVB";
+
+    /**
+     * Represents the directed acyclic graph {@link DAG}.
+     */
+    protected DAG dag;
+
+    protected SVB svb;
+
+    protected int windowsSize = 100;
+
+    protected Time windowsTime = null;
+
+    protected int snapshotInterval = 1;
+
+    protected int maximumLocalIterations = 100;
+
+    protected double localThreshold = 0.1;
+
+    public StreamingVB(){
+        this.svb = new SVB();
+    }
+
+    public void setPlateuStructure(PlateuStructure plateuStructure){
+        this.svb.setPlateuStructure(plateuStructure);
+    }
+
+    public void setTransitionMethod(TransitionMethod transitionMethod){
+        this.svb.setTransitionMethod(transitionMethod);
+    }
+
+    public void setLocalThreshold(double localThreshold) {
+        this.localThreshold = localThreshold;
+    }
+
+    public void setMaximumLocalIterations(int maximumLocalIterations) {
+        this.maximumLocalIterations = maximumLocalIterations;
+    }
+
+    public void setDAG(DAG dag) {
+        this.dag = dag;
+    }
+
+    public void setSeed(int seed) {
+        this.svb.setSeed(seed);
+    }
+
+    public SVB getSVB() {
+        return svb;
+    }
+
+    /**
+     * Sets the number of data instances of each batch (count windows). When time windows are used, it is the
+     * maximum number of data instances of a batch, and larger windows are split into several batches.
+     * @param windowsSize a positive {@code int} value.
+     */
+    public void setWindowsSize(int windowsSize) {
+        if (windowsSize <= 0)
+            throw new IllegalArgumentException("The windows size must be positive");
+        this.windowsSize = windowsSize;
+    }
+
+    public int getWindowsSize() {
+        return windowsSize;
+    }
+
+    /**
+     * Sets the processing time covered by each window (tumbling time windows), instead of a fixed number of
+     * data instances. A {@code null} value goes back to count windows.
+     * @param windowsTime a {@link Time} object.
+     */
+    public void setWindowsTime(Time windowsTime) {
+        this.windowsTime = windowsTime;
+    }
+
+    /**
+     * Sets the number of batches processed between two consecutive snapshots of the learnt model.
+     * @param snapshotInterval a positive {@code int} value.
+     */
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval <= 0)
+            throw new IllegalArgumentException("The snapshot interval must be positive");
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public void initLearning() {
+        this.svb.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
+        this.svb.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
+        this.svb.setDAG(this.dag);
+        this.svb.setWindowsSize(this.windowsSize);
+        this.svb.setOutput(false);
+        this.svb.initLearning(); //Init learning is also performed in the update operator.
+    }
+
+    /**
+     * Builds the streaming learning process over a given stream of data instances.
+     * @param data a {@link DataStream} of {@link DataInstance} objects.
+     * @return a {@link DataStream} with the snapshots of the learnt {@link BayesianNetwork}.
+     */
+    public DataStream<BayesianNetwork> updateModel(DataStream<DataInstance> data) {
+
+        this.initLearning();
+
+        VectorKryoSerializer.registerSerializers(data.getExecutionEnvironment().getConfig());
+        //The snapshots are plain serializable objects.
+        data.getExecutionEnvironment().getConfig().registerTypeWithKryoSerializer(BayesianNetwork.class, (Class) JavaSerializer.class);
+
+        Configuration config = new Configuration();
+        config.setBytes(SVB, Serialization.serializeObject(this.svb));
+
+        AllWindowedStream<DataInstance, ? extends Window> windows = (this.windowsTime != null) ?
+                data.timeWindowAll(this.windowsTime) : data.countWindowAll(this.windowsSize);
+
+        TypeInformation<DataOnMemory<DataInstance>> batchType = new GenericTypeInfo(DataOnMemory.class);
+
+        //The updates are sequential, so the batches and the model live in a single task.
+        return windows.apply(new WindowToBatch<>(this.windowsSize), batchType)
+                .flatMap(new UpdateModel(config, this.snapshotInterval))
+                .returns(new GenericTypeInfo<>(BayesianNetwork.class))
+                .setParallelism(1)
+                .name("Streaming VB " + this.dag.getName());
+    }
+
+    /**
+     * This class turns the content of a window into batches of data instances, of at most the windows size.
+     */
+    static class WindowToBatch<W extends Window> implements AllWindowFunction<DataInstance, DataOnMemory<DataInstance>, W> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 4650925476637612307L;
+
+        final int maximumSize;
+
+        WindowToBatch(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        public void apply(W window, Iterable<DataInstance> values, Collector<DataOnMemory<DataInstance>> out) throws Exception {
+            DataOnMemoryListContainer<DataInstance> batch = null;
+            for (DataInstance instance : values) {
+                if (batch == null)
+                    batch = new DataOnMemoryListContainer<>(instance.getAttributes());
+                batch.add(instance);
+                if (batch.getNumberOfDataInstances() == maximumSize) {
+                    out.collect(batch);
+                    batch = null;
+                }
+            }
+            if (batch != null)
+                out.collect(batch);
+        }
+    }
+
+    /**
+     * This class updates the model with each incoming batch and keeps the natural parameters of the current
+     * prior (i.e. the posterior after the transition) as checkpointed state.
+     */
+    static class UpdateModel extends RichFlatMapFunction<DataOnMemory<DataInstance>, BayesianNetwork>
+            implements Checkpointed<StreamingVB.State> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -6922781364104581208L;
+
+        final Configuration config;
+
+        final int snapshotInterval;
+
+        transient SVB svb;
+
+        long numberOfBatches = 0;
+
+        transient State restoredState = null;
+
+        UpdateModel(Configuration config, int snapshotInterval) {
+            this.config = config;
+            this.snapshotInterval = snapshotInterval;
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            svb = Serialization.deserializeObject(config.getBytes(SVB, null));
+            svb.initLearning();
+            svb.setOutput(false);
+            if (restoredState != null) {
+                this.restore(restoredState);
+                restoredState = null;
+            }
+        }
+
+        @Override
+        public void flatMap(DataOnMemory<DataInstance> batch, Collector<BayesianNetwork> out) throws Exception {
+            svb.updateModel(batch);
+            numberOfBatches++;
+            if (numberOfBatches % snapshotInterval == 0)
+                out.collect(svb.getLearntBayesianNetwork());
+        }
+
+        @Override
+        public State snapshotState(long checkpointId, long checkpointTimestamp) throws Exception {
+            return new State(VectorSerialization.serializeVector(svb.getNaturalParameterPrior()), numberOfBatches);
+        }
+
+        @Override
+        public void restoreState(State state) throws Exception {
+            //The state may be restored before the task is opened.
+            if (svb == null)
+                restoredState = state;
+            else
+                this.restore(state);
+        }
+
+        private void restore(State state) {
+            svb.updateNaturalParameterPrior(VectorSerialization.deserializeVector(state.prior));
+            numberOfBatches = state.numberOfBatches;
+        }
+    }
+
+    /**
+     * This class stores the checkpointed state of the learning process.
+     */
+    public static class State implements Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 8830159210342707634L;
+
+        /** Represents the natural parameters of the current prior, written with {@link VectorSerialization}. */
+        final byte[] prior;
+
+        /** Represents the number of processed batches. */
+        final long numberOfBatches;
+
+        State(byte[] prior, long numberOfBatches) {
+            this.prior = prior;
+            this.numberOfBatches = numberOfBatches;
+        }
+    }
+}
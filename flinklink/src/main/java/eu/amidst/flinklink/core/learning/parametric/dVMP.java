@@ -36,6 +36,7 @@ import eu.amidst.flinklink.core.learning.parametric.utils.IdenitifableModelling;
 import eu.amidst.flinklink.core.learning.parametric.utils.ParameterIdentifiableModel;
 import eu.amidst.flinklink.core.utils.ConversionToBatches;
 import eu.amidst.flinklink.core.utils.Function2;
+import eu.amidst.flinklink.core.utils.VectorKryoSerializer;
 import org.apache.flink.api.common.aggregators.ConvergenceCriterion;
 import org.apache.flink.api.common.aggregators.DoubleSumAggregator;
 import org.apache.flink.api.common.functions.RichFlatMapFunction;
@@ -261,6 +262,7 @@ public class dVMP implements BayesianParameterLearningAlgorithm, Serializable {
     public double updateModel(DataFlink<DataInstance> dataUpdate){
         try{
             final ExecutionEnvironment env = dataUpdate.getDataSet().getExecutionEnvironment();
+            VectorKryoSerializer.registerSerializers(env);
 
             // get input data
             CompoundVector parameterPrior = this.svb.getNaturalParameterPrior();
@@ -450,9 +452,12 @@ public class dVMP implements BayesianParameterLearningAlgorithm, Serializable {
         public void open(Configuration parameters) throws Exception {
             super.open(parameters);
             bnName = parameters.getString(BN_NAME, "");
-            svb = Serialization.deserializeObject(parameters.getBytes(SVB, null));
             int superstep = getIterationRuntimeContext().getSuperstepNumber() - 1;
-            if (superstep==0) {
+            boolean firstOpen = (svb == null);
+            if (firstOpen) {
+                svb = Serialization.deserializeObject(parameters.getBytes(SVB, null));
+            }
+            if (firstOpen && superstep==0) {
                 VMP vmp = new VMP();
                 vmp.setMaxIter(this.svb.getPlateuStructure().getVMP().getMaxIter());
                 vmp.setThreshold(this.svb.getPlateuStructure().getVMP().getThreshold());
@@ -469,7 +474,13 @@ public class dVMP implements BayesianParameterLearningAlgorithm, Serializable {
                 ((GlobalvsLocalUpdate)this.svb.getPlateuStructure()).setGlobalUpdate(false);
             }
 
-        svb.initLearning();
+            if (firstOpen) {
+                svb.initLearning();
+            } else {
+                //The model is only deserialized and replicated at the first superstep.
+                svb.getPlateuStructure().setSeed(svb.getSeed());
+                svb.getPlateuStructure().resetQs();
+            }
 
             Collection<CompoundVector> collection = getRuntimeContext().getBroadcastVariable("VB_PARAMS_" + bnName);
 
@@ -19,29 +19,46 @@ package eu.amidst.flinklink.core.utils;
 
 import eu.amidst.core.datastream.Attributes;
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataOnMemoryListContainer;
+import eu.amidst.core.datastream.filereaders.DataInstanceFromDataRow;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.flinklink.core.data.DataFlink;
+import eu.amidst.flinklink.core.data.DataRowFlink;
+import eu.amidst.flinklink.core.io.DataFlinkBatchCache;
+import org.apache.flink.api.common.accumulators.DoubleCounter;
 import org.apache.flink.api.common.functions.RichFlatMapFunction;
 import org.apache.flink.api.java.DataSet;
 import org.apache.flink.api.java.ExecutionEnvironment;
+import org.apache.flink.api.java.typeutils.GenericTypeInfo;
+import org.apache.flink.configuration.Configuration;
 import org.apache.flink.util.Collector;
 
 import java.io.Serializable;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * It defines a sampler of data from a {@link BayesianNetwork}.
+ *
+ * <p> The methods {@link #sampleToBatches(ExecutionEnvironment, long)} and
+ * {@link #sampleToBatchCache(ExecutionEnvironment, long, String)} sample each row with its own random generator,
+ * keyed by the global index of the row, so the sampled data set is the same for any parallelism. </p>
  */
 public class BayesianNetworkSampler {
 
     static String SEED = "SEED";
     static String SAMPLER = "SAMPLER";
 
+    public static String ROWS_PER_SECOND = "ROWS_PER_SECOND_";
+
     BayesianNetwork network;
     eu.amidst.core.utils.BayesianNetworkSampler localSampler;
     private int seed;
     int batchSize = 1000;
+    Map<Integer, Double> rowsPerSecond = new TreeMap<>();
 
     /**
      * Creates a new BayesianNetworkSampler given an input {@link BayesianNetwork} object.
@@ -98,6 +115,110 @@ public class BayesianNetworkSampler {
         }
     }
 
+    /**
+     * Samples a data set of a given size as a {@code DataSet} of batches of the batch size. The batch {@code k}
+     * contains the rows from {@code k*batchSize} to {@code (k+1)*batchSize - 1} (the last one may be smaller) and
+     * its identifier is {@code k}, so the result does not depend on the parallelism of the environment.
+     * @param env the {@link ExecutionEnvironment} object.
+     * @param nSamples a {@code long} that represents the number of samples.
+     * @return a {@code DataSet} of {@link DataOnMemory} objects.
+     */
+    public DataSet<DataOnMemory<DataInstance>> sampleToBatches(ExecutionEnvironment env, long nSamples) {
+        long nBatches = (nSamples + this.batchSize - 1) / this.batchSize;
+
+        this.localSampler.setSeed(this.seed);
+
+        return env.generateSequence(0, nBatches - 1)
+                .flatMap(new SampleBatchMap(this.localSampler, this.localSampler.getAttributes(), batchSize, nSamples))
+                .returns(new GenericTypeInfo<>((Class<DataOnMemory<DataInstance>>) (Class) DataOnMemory.class));
+    }
+
+    /**
+     * Samples a data set of a given size and writes its batches directly to a {@link DataFlinkBatchCache}, without
+     * building data instances for the whole data set. The Flink job is executed by this method, and the sampling
+     * speed of each worker is then available through {@link #getRowsPerSecond()}.
+     * @param env the {@link ExecutionEnvironment} object.
+     * @param nSamples a {@code long} that represents the number of samples.
+     * @param path a {@code String} with the path (or URI) of the cache folder.
+     * @return a {@link DataFlink} object reading the written cache.
+     */
+    public DataFlink<DataInstance> sampleToBatchCache(ExecutionEnvironment env, long nSamples, String path) {
+        DataFlinkBatchCache.writeBatches(this.sampleToBatches(env, nSamples), network.getName(),
+                this.localSampler.getAttributes(), this.batchSize, path);
+
+        this.rowsPerSecond.clear();
+        for (Map.Entry<String, Object> entry : env.getLastJobExecutionResult().getAllAccumulatorResults().entrySet()) {
+            if (entry.getKey().startsWith(ROWS_PER_SECOND))
+                this.rowsPerSecond.put(Integer.parseInt(entry.getKey().substring(ROWS_PER_SECOND.length())), (Double) entry.getValue());
+        }
+
+        return DataFlinkBatchCache.loadBatches(env, path);
+    }
+
+    /**
+     * Returns the number of rows sampled per second by each worker in the last call to
+     * {@link #sampleToBatchCache(ExecutionEnvironment, long, String)}, indexed by the worker (subtask) index.
+     * @return a {@code Map} from the index of the worker to its rows per second.
+     */
+    public Map<Integer, Double> getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    static class SampleBatchMap extends RichFlatMapFunction<Long, DataOnMemory<DataInstance>> {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -1728423416570208364L;
+
+        final eu.amidst.core.utils.BayesianNetworkSampler localSampler;
+        final Attributes attributes;
+        final int batchSize;
+        final long nSamples;
+
+        transient DoubleCounter rowsPerSecond;
+        transient long rows;
+        transient long nanos;
+
+        public SampleBatchMap(eu.amidst.core.utils.BayesianNetworkSampler localSampler, Attributes attributes, int batchSize, long nSamples) {
+            this.localSampler = localSampler;
+            this.attributes = attributes;
+            this.batchSize = batchSize;
+            this.nSamples = nSamples;
+        }
+
+        @Override
+        public void open(Configuration parameters) throws Exception {
+            super.open(parameters);
+            this.rowsPerSecond = new DoubleCounter();
+            getRuntimeContext().addAccumulator(ROWS_PER_SECOND + getRuntimeContext().getIndexOfThisSubtask(), this.rowsPerSecond);
+            this.rows = 0;
+            this.nanos = 0;
+        }
+
+        @Override
+        public void flatMap(Long batchIndex, Collector<DataOnMemory<DataInstance>> out) throws Exception {
+            long start = System.nanoTime();
+            long first = batchIndex * batchSize;
+            long last = Math.min(nSamples, first + batchSize);
+
+            DataOnMemoryListContainer<DataInstance> batch = new DataOnMemoryListContainer<>(attributes);
+            batch.setId(batchIndex);
+            for (long row = first; row < last; row++) {
+                batch.add(new DataInstanceFromDataRow(new DataRowFlink(localSampler.sampleRow(row), attributes)));
+            }
+
+            this.rows += last - first;
+            this.nanos += System.nanoTime() - start;
+            out.collect(batch);
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (this.nanos > 0)
+                this.rowsPerSecond.add(this.rows / (this.nanos / 1e9));
+            super.close();
+        }
+    }
+
     static class SampleMap extends RichFlatMapFunction<Long, DataInstance>{
 
         eu.amidst.core.utils.BayesianNetworkSampler localSampler;
@@ -0,0 +1,96 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.utils;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import eu.amidst.core.utils.ArrayVector;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.SparseVectorDefaultValue;
+import eu.amidst.core.utils.Vector;
+import eu.amidst.core.utils.VectorSerialization;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.java.ExecutionEnvironment;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * This class defines a Kryo serializer for the parameter vectors exchanged by the distributed learning
+ * algorithms, based on the compact binary format of {@link VectorSerialization}.
+ */
+public class VectorKryoSerializer extends Serializer<Vector> implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 6029146377931542856L;
+
+    /**
+     * Registers this serializer for the vector classes in a given execution environment.
+     * @param env an {@link ExecutionEnvironment} object.
+     */
+    public static void registerSerializers(ExecutionEnvironment env) {
+        registerSerializers(env.getConfig());
+    }
+
+    /**
+     * Registers this serializer for the vector classes in a given execution configuration.
+     * @param config an {@link ExecutionConfig} object.
+     */
+    public static void registerSerializers(ExecutionConfig config) {
+        config.registerTypeWithKryoSerializer(CompoundVector.class, VectorKryoSerializer.class);
+        config.registerTypeWithKryoSerializer(ArrayVector.class, VectorKryoSerializer.class);
+        config.registerTypeWithKryoSerializer(SparseVectorDefaultValue.class, VectorKryoSerializer.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(Kryo kryo, Output output, Vector vector) {
+        try {
+            VectorSerialization.writeVector(new DataOutputStream(output), vector);
+        } catch (IOException ex) {
+            throw new KryoException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Vector read(Kryo kryo, Input input, Class<Vector> type) {
+        try {
+            return VectorSerialization.readVector(new DataInputStream(input));
+        } catch (IOException ex) {
+            throw new KryoException(ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Vector copy(Kryo kryo, Vector original) {
+        return VectorSerialization.deserializeVector(VectorSerialization.serializeVector(original));
+    }
+}
@@ -123,7 +123,7 @@ public class IDAConceptDriftDetectorDBNTest extends TestCase {
         dbn.randomInitialization(new Random(0));
         if (Main.VERBOSE) System.out.println(dbn.toString());
 
-        DynamicBayesianNetworkWriter.save(dbn, "../networks/simulated/dbn1.dbn");
+        DynamicBayesianNetworkWriter.save(dbn, "../networks/simulated/tmp_dbn1.dbn");
     }
 
 
@@ -277,7 +277,7 @@ public class IDAConceptDriftDetectorDBNTest extends TestCase {
     }
 
     public static void test1()  throws Exception {
-        String networkName = "dbn1";
+        String networkName = "tmp_dbn1";
         createDBN1(10,true);
         createDataSetsDBN2(networkName,null,null);
         testUpdateN(networkName, 0.1);
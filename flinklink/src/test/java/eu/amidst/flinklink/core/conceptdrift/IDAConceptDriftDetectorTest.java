@@ -114,7 +114,7 @@ public class IDAConceptDriftDetectorTest extends TestCase {
         dbn.randomInitialization(new Random(0));
         if (Main.VERBOSE) System.out.println(dbn.toString());
 
-        BayesianNetworkWriter.save(dbn, "../networks/simulated/dbn1.dbn");
+        BayesianNetworkWriter.save(dbn, "../networks/simulated/tmp_dbn1.dbn");
     }
 
 
@@ -180,7 +180,7 @@ public class IDAConceptDriftDetectorTest extends TestCase {
         dbn.randomInitialization(new Random(0));
         if (Main.VERBOSE) System.out.println(dbn.toString());
 
-        DynamicBayesianNetworkWriter.save(dbn, "../networks/simulated/dbn1.dbn");
+        DynamicBayesianNetworkWriter.save(dbn, "../networks/simulated/tmp_dbn1.dbn");
     }
 
 
@@ -284,14 +284,14 @@ public class IDAConceptDriftDetectorTest extends TestCase {
         }
     }
     public static void test1()  throws Exception {
-        String networkName = "dbn1";
+        String networkName = "tmp_dbn1";
         createBN1(10);
         createDataSets(networkName,null,null);
         testUpdateN(networkName);
     }
 
     public static void test2()  throws Exception {
-        String networkName = "dbn1";
+        String networkName = "tmp_dbn1";
         createDBN1(10,true);
         createDataSetsDBN(networkName,null,null);
         testUpdateN(networkName);
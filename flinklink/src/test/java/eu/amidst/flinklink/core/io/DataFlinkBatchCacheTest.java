@@ -0,0 +1,73 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.io;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.flinklink.Main;
+import eu.amidst.flinklink.core.data.DataFlink;
+import junit.framework.TestCase;
+import org.apache.flink.api.java.ExecutionEnvironment;
+import org.apache.flink.configuration.Configuration;
+
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class DataFlinkBatchCacheTest extends TestCase {
+
+    public static void test1() throws Exception {
+        //Set-up Flink session.
+        Configuration conf = new Configuration();
+        conf.setInteger("taskmanager.network.numberOfBuffers", 12000);
+        final ExecutionEnvironment env = ExecutionEnvironment.createLocalEnvironment(conf);
+        env.getConfig().disableSysoutLogging();
+        env.setParallelism(Main.PARALLELISM);
+
+        DataFlink<DataInstance> dataFlink = DataFlinkLoader.loadDataFromFile(env,
+                "../datasets/simulated/test_not_modify/SmallDataSet.arff", false);
+
+        String path = Files.createTempDirectory("batchCache").toString();
+        DataFlinkBatchCache.writeBatches(dataFlink, 3, path);
+
+        DataFlink<DataInstance> cached = DataFlinkBatchCache.loadBatches(env, path);
+
+        assertEquals(dataFlink.getName(), cached.getName());
+        assertEquals(dataFlink.getAttributes().getNumberOfAttributes(), cached.getAttributes().getNumberOfAttributes());
+
+        //The batches are assigned to the tasks in a different way on each run, so their content is compared.
+        List<DataOnMemory<DataInstance>> expected = dataFlink.getBatchedDataSet(3).collect();
+        List<DataOnMemory<DataInstance>> batches = cached.getBatchedDataSet(3).collect();
+
+        assertEquals(expected.size(), batches.size());
+        assertEquals(rows(expected), rows(batches));
+
+        assertEquals(dataFlink.getDataSet().count(), cached.getDataSet().count());
+        assertEquals(dataFlink.getDataSet().count(), cached.getBatchedDataSet(2).collect().stream()
+                .mapToInt(DataOnMemory::getNumberOfDataInstances).sum());
+    }
+
+    private static List<String> rows(List<DataOnMemory<DataInstance>> batches) {
+        return batches.stream()
+                .flatMap(DataOnMemory::stream)
+                .map(instance -> Arrays.toString(instance.toArray()))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -17,6 +17,7 @@
 
 package eu.amidst.flinklink.core.learning.dynamic;
 
+import eu.amidst.core.learning.parametric.bayesian.utils.DataPosteriorAssignment;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
 import eu.amidst.dynamic.io.DynamicBayesianNetworkLoader;
@@ -36,13 +37,16 @@ import org.apache.flink.api.common.operators.base.JoinOperatorBase;
 import org.apache.flink.api.java.DataSet;
 import org.apache.flink.api.java.ExecutionEnvironment;
 import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.configuration.Configuration;
 import org.apache.flink.util.Collector;
 
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 /**
  * Created by andresmasegosa on 25/9/15.
@@ -77,7 +81,7 @@ public class DynamicParallelVBTest extends TestCase {
         dbn.randomInitialization(new Random(0));
         if (Main.VERBOSE) System.out.println(dbn.toString());
 
-        DynamicBayesianNetworkWriter.save(dbn, "../networks/simulated/dbn1.dbn");
+        DynamicBayesianNetworkWriter.save(dbn, "../networks/simulated/tmp_dbn1.dbn");
     }
 
     public static void createDBN2() throws Exception {
@@ -199,7 +203,7 @@ public class DynamicParallelVBTest extends TestCase {
     public static void testJoin() throws Exception {
 
         createDBN1(true);
-        createDataSets("dbn1",null,null);
+        createDataSets("tmp_dbn1",null,null);
 
         //Set-up Flink session.
         Configuration conf = new Configuration();
@@ -257,7 +261,7 @@ public class DynamicParallelVBTest extends TestCase {
 
     public static void testFlatJoin() throws Exception {
         createDBN1(true);
-        createDataSets("dbn1",null,null);
+        createDataSets("tmp_dbn1",null,null);
 
         //Set-up Flink session.
         Configuration conf = new Configuration();
@@ -397,7 +401,7 @@ public class DynamicParallelVBTest extends TestCase {
 
     //Fails some times on travis-ci
     public static void testDBN1() throws Exception {
-        String networkName = "dbn1";
+        String networkName = "tmp_dbn1";
         createDBN1(true);
         createDataSets(networkName,null,null);
         testUpdateN(networkName, 0.1);
@@ -418,14 +422,14 @@ public class DynamicParallelVBTest extends TestCase {
     }
 
     public static void testDBN1Hidden() throws Exception {
-        String networkName = "dbn1";
+        String networkName = "tmp_dbn1";
         createDBN1(true);
         createDataSets(networkName, Arrays.asList("C"),null);
         testUpdateN(networkName, 0.0);
     }
 
     public static void testDBN1Noise() throws Exception {
-        String networkName = "dbn1";
+        String networkName = "tmp_dbn1";
         createDBN1(true);
         createDataSets(networkName, null, Arrays.asList("C"));
         testUpdateN(networkName, 0.1);
@@ -437,4 +441,102 @@ public class DynamicParallelVBTest extends TestCase {
         createDataSets(networkName, Arrays.asList("A0"),null);
         testUpdateN(networkName, 0.0);
     }
-}
\ No newline at end of file
+
+    /**
+     * Joins the data of each time slice with the posteriors of the previous one by repartitioning both of them by
+     * hash, as it was done before the posteriors were kept co-partitioned by sequence ID.
+     */
+    public static class RepartitionJoinDynamicParallelVB extends DynamicParallelVB {
+
+        @Override
+        protected DataSet<Tuple2<Long, DataPosteriorAssignment>> joinDataCoPartitioned(DataSet<DynamicDataInstance> data) {
+            DataSet<DataPosteriorInstance> dataJoined = data.join(this.getDataPosteriorDataSet(), JoinOperatorBase.JoinHint.REPARTITION_HASH_FIRST)
+                    .where(new KeySelector<DynamicDataInstance, Long>() {
+                        @Override
+                        public Long getKey(DynamicDataInstance value) throws Exception {
+                            return value.getSequenceID();
+                        }
+                    }).equalTo(new KeySelector<DataPosteriorAssignment, Long>() {
+                        @Override
+                        public Long getKey(DataPosteriorAssignment value) throws Exception {
+                            return value.getPosterior().getId();
+                        }
+                    }).with(new JoinFunction<DynamicDataInstance, DataPosteriorAssignment, DataPosteriorInstance>() {
+                        @Override
+                        public DataPosteriorInstance join(DynamicDataInstance dynamicDataInstance, DataPosteriorAssignment dataPosterior) throws Exception {
+                            return new DataPosteriorInstance(dataPosterior, dynamicDataInstance);
+                        }
+                    });
+
+            return this.translate(dataJoined).map(new KeyByPosteriorID());
+        }
+    }
+
+    public static DynamicParallelVB learnAllTimeSlices(DynamicParallelVB learn, String networkName) throws Exception {
+        //Set-up Flink session.
+        Configuration conf = new Configuration();
+        conf.setInteger("taskmanager.network.numberOfBuffers", 12000);
+        final ExecutionEnvironment env = ExecutionEnvironment.createLocalEnvironment(conf);
+        env.getConfig().disableSysoutLogging();
+        env.setParallelism(Main.PARALLELISM);
+
+        DynamicBayesianNetwork dbn = DynamicBayesianNetworkLoader.loadFromFile("../networks/simulated/" + networkName + ".dbn");
+
+        DataFlink<DynamicDataInstance> data0 = DataFlinkLoader.loadDynamicDataFromFolder(env,
+                "../datasets/simulated/cajaMarSynthetic/data0.arff", false);
+        dbn.getDynamicVariables().setAttributes(data0.getAttributes());
+
+        learn.setMaximumGlobalIterations(20);
+        learn.setGlobalThreshold(0.0001);
+        learn.setLocalThreshold(0.0001);
+        learn.setMaximumLocalIterations(200);
+        learn.setBatchSize(BATCHSIZE);
+        learn.setDAG(dbn.getDynamicDAG());
+        learn.setOutput(false);
+        learn.initLearning();
+
+        learn.updateModelWithNewTimeSlice(0, data0);
+        for (int i = 1; i < NSETS; i++) {
+            DataFlink<DynamicDataInstance> dataNew = DataFlinkLoader.loadDynamicDataFromFolder(env,
+                    "../datasets/simulated/cajaMarSynthetic/data" + i + ".arff", false);
+            learn.updateModelWithNewTimeSlice(i, dataNew);
+        }
+        return learn;
+    }
+
+    public static void testCoPartitionedJoin() throws Exception {
+        String networkName = "tmp_dbn1";
+        createDBN1(true);
+        createDataSets(networkName, null, Arrays.asList("C"));
+
+        DynamicParallelVB coPartitioned = learnAllTimeSlices(new DynamicParallelVB(), networkName);
+        DynamicParallelVB repartitioned = learnAllTimeSlices(new RepartitionJoinDynamicParallelVB(), networkName);
+
+        //Both joins give the same model and the same posteriors of the class variable when it is missing.
+        assertTrue(repartitioned.getLearntDynamicBayesianNetwork().equalDBNs(coPartitioned.getLearntDynamicBayesianNetwork(), 0.001));
+
+        Variable classVar = coPartitioned.svbTimeT.getDAG().getVariables().getVariableByName("C");
+        Map<Long, DataPosteriorAssignment> expected = repartitioned.getDataPosteriorDataSet().collect().stream()
+                .collect(Collectors.toMap(d -> d.getPosterior().getId(), d -> d));
+        List<DataPosteriorAssignment> posteriors = coPartitioned.getDataPosteriorDataSet().collect();
+
+        assertEquals(SAMPLESIZE, expected.size());
+        assertEquals(SAMPLESIZE, posteriors.size());
+        int missing = 0;
+        for (DataPosteriorAssignment posterior : posteriors) {
+            DataPosteriorAssignment expectedPosterior = expected.get(posterior.getPosterior().getId());
+            assertEquals(expectedPosterior.isObserved(classVar), posterior.isObserved(classVar));
+            if (posterior.isObserved(classVar)) {
+                assertEquals(expectedPosterior.getAssignment().getValue(classVar), posterior.getAssignment().getValue(classVar), 0.0);
+                continue;
+            }
+            missing++;
+            double[] parameters = posterior.getPosterior().getPosterior(classVar).getParameters();
+            double[] expectedParameters = expectedPosterior.getPosterior().getPosterior(classVar).getParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                assertEquals(expectedParameters[i], parameters[i], 0.01);
+            }
+        }
+        assertTrue(missing > 0);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.learning.parametric;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.io.DataStreamWriter;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import eu.amidst.flinklink.Main;
+import eu.amidst.flinklink.core.data.DataFlink;
+import eu.amidst.flinklink.core.io.DataFlinkLoader;
+import junit.framework.TestCase;
+import org.apache.flink.api.java.ExecutionEnvironment;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.junit.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+public class AsynchronousDistributedVITest extends TestCase {
+
+    public static AsynchronousDistributedVI baseTest(DataStream<DataInstance> data, BayesianNetwork network, int batchSize, int staleness, double error) throws IOException, ClassNotFoundException {
+
+        //Set-up Flink sessions.
+        Configuration conf = new Configuration();
+        conf.setInteger("taskmanager.network.numberOfBuffers", 12000);
+        final ExecutionEnvironment env = ExecutionEnvironment.createLocalEnvironment(conf);
+        env.getConfig().disableSysoutLogging();
+        env.setParallelism(Main.PARALLELISM);
+
+        final StreamExecutionEnvironment senv = StreamExecutionEnvironment.createLocalEnvironment(Main.PARALLELISM, conf);
+        senv.getConfig().disableSysoutLogging();
+
+        File file = File.createTempFile("asynchronousDistributedVI", ".arff");
+        file.deleteOnExit();
+        DataStreamWriter.writeDataToFile(data, file.getPath());
+
+        DataFlink<DataInstance> dataFlink = DataFlinkLoader.loadDataFromFile(env, file.getPath(), false);
+
+        network.getDAG().getVariables().setAttributes(dataFlink.getAttributes());
+
+        AsynchronousDistributedVI vi = new AsynchronousDistributedVI();
+        vi.setStreamExecutionEnvironment(senv);
+        vi.setOutput(false);
+        vi.setSeed(5);
+        vi.setBatchSize(batchSize);
+        vi.setStaleness(staleness);
+        vi.setLocalThreshold(0.001);
+        vi.setGlobalThreshold(0.01);
+        vi.setMaximumLocalIterations(100);
+        vi.setMaximumGlobalIterations(20);
+        vi.setMaximumWaitTime(2000);
+
+        vi.setDAG(network.getDAG());
+        vi.initLearning();
+        vi.updateModel(dataFlink);
+        BayesianNetwork bnet = vi.getLearntBayesianNetwork();
+
+        Assert.assertFalse(Double.isNaN(vi.getLogMarginalProbability()));
+
+        for (Variable var : network.getVariables()) {
+            if (Main.VERBOSE) System.out.println("\n------ Variable " + var.getName() + " ------");
+            if (Main.VERBOSE) System.out.println("\nTrue distribution:\n" + network.getConditionalDistribution(var));
+            if (Main.VERBOSE) System.out.println("\nLearned distribution:\n" + bnet.getConditionalDistribution(var));
+            Assert.assertTrue(bnet.getConditionalDistribution(var).equalDist(network.getConditionalDistribution(var), error));
+        }
+
+        return vi;
+    }
+
+    public void testMultinomials() throws IOException, ClassNotFoundException {
+        Variables variables = new Variables();
+        Variable varA = variables.newMultinomialVariable("A", 2);
+        Variable varB = variables.newMultinomialVariable("B", 2);
+
+        DAG dag = new DAG(variables);
+
+        dag.getParentSet(varB).addParent(varA);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+
+        Multinomial distA = bn.getConditionalDistribution(varA);
+        Multinomial_MultinomialParents distB = bn.getConditionalDistribution(varB);
+
+        distA.setProbabilities(new double[]{0.6, 0.4});
+        distB.getMultinomial(0).setProbabilities(new double[]{0.75, 0.25});
+        distB.getMultinomial(1).setProbabilities(new double[]{0.25, 0.75});
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(2);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(1000);
+
+        baseTest(data, bn, 100, 1, 0.05);
+    }
+
+    public void testAsiaSynchronous() throws IOException, ClassNotFoundException {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000);
+
+        baseTest(data, asianet, 500, 0, 0.05);
+    }
+
+    public void testAllBatchesBeforeFirstELBO() throws IOException, ClassNotFoundException {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(5000);
+
+        //Several batches per worker: with no staleness, the first global bound must include all of them.
+        AsynchronousDistributedVI vi = baseTest(data, asianet, 100, 0, 0.1);
+        List<Integer> batches = vi.getNumberOfBatchesPerIteration();
+
+        if (Main.VERBOSE) System.out.println(batches);
+
+        Assert.assertFalse(batches.isEmpty());
+        Assert.assertTrue(batches.get(0) >= 5000 / 100);
+        Assert.assertEquals(batches.get(batches.size() - 1), batches.get(0));
+    }
+}
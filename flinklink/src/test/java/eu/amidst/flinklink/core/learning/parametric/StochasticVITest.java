@@ -34,6 +34,7 @@ import org.apache.flink.api.java.ExecutionEnvironment;
 import org.apache.flink.configuration.Configuration;
 import org.junit.Assert;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Random;
 
@@ -132,4 +133,106 @@ public class StochasticVITest extends TestCase {
         //}
     }
 
-}
\ No newline at end of file
+    public void testAsiaSingleJob() throws IOException, ClassNotFoundException {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000);
+        File file = File.createTempFile("stochasticVI", ".arff");
+        file.deleteOnExit();
+        DataStreamWriter.writeDataToFile(data, file.getPath());
+
+        //Set-up Flink session.
+        Configuration conf = new Configuration();
+        conf.setInteger("taskmanager.network.numberOfBuffers", 12000);
+        final ExecutionEnvironment env = ExecutionEnvironment.createLocalEnvironment(conf);
+        env.getConfig().disableSysoutLogging();
+        env.setParallelism(Main.PARALLELISM);
+
+        DataFlink<DataInstance> dataFlink = DataFlinkLoader.loadDataFromFile(env, file.getPath(), false);
+        asianet.getDAG().getVariables().setAttributes(dataFlink.getAttributes());
+
+        StochasticVI stochasticVI = new StochasticVI();
+        stochasticVI.setLearningFactor(0.7);
+        stochasticVI.setDataSetSize(10000);
+        stochasticVI.setOutput(false);
+        stochasticVI.setSeed(5);
+        stochasticVI.setBatchSize(500);
+        stochasticVI.setLocalThreshold(0.001);
+        stochasticVI.setMaximumLocalIterations(100);
+        stochasticVI.setMaximumIterations(100);
+        stochasticVI.setHeldOutSize(500);
+        stochasticVI.setEvaluationInterval(10);
+
+        stochasticVI.setDAG(asianet.getDAG());
+        stochasticVI.initLearning();
+        stochasticVI.updateModel(dataFlink);
+        BayesianNetwork bnet = stochasticVI.getLearntBayesianNetwork();
+
+        for (Variable var : asianet.getVariables()) {
+            if (Main.VERBOSE) System.out.println("\nTrue distribution:\n" + asianet.getConditionalDistribution(var));
+            if (Main.VERBOSE) System.out.println("\nLearned distribution:\n" + bnet.getConditionalDistribution(var));
+            Assert.assertTrue(bnet.getConditionalDistribution(var).equalDist(asianet.getConditionalDistribution(var), 0.05));
+        }
+
+        Assert.assertFalse(Double.isNaN(stochasticVI.getHeldOutLogLikelihood()));
+        Assert.assertTrue(stochasticVI.getHeldOutLogLikelihood() < 0);
+    }
+
+    private static StochasticVI asiaSVI(BayesianNetwork asianet) {
+        StochasticVI stochasticVI = new StochasticVI();
+        stochasticVI.setLearningFactor(0.7);
+        stochasticVI.setDataSetSize(10000);
+        stochasticVI.setOutput(false);
+        stochasticVI.setSeed(5);
+        stochasticVI.setBatchSize(500);
+        stochasticVI.setLocalThreshold(0.001);
+        stochasticVI.setMaximumLocalIterations(100);
+        stochasticVI.setHeldOutSize(0);
+        stochasticVI.setDAG(asianet.getDAG());
+        stochasticVI.initLearning();
+        return stochasticVI;
+    }
+
+    public void testContinuedSchedule() throws IOException, ClassNotFoundException {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000);
+        File file = File.createTempFile("stochasticVI", ".arff");
+        file.deleteOnExit();
+        DataStreamWriter.writeDataToFile(data, file.getPath());
+
+        //A single partition, so the units of each partition are the same in all the jobs.
+        Configuration conf = new Configuration();
+        conf.setInteger("taskmanager.network.numberOfBuffers", 12000);
+        final ExecutionEnvironment env = ExecutionEnvironment.createLocalEnvironment(conf);
+        env.getConfig().disableSysoutLogging();
+        env.setParallelism(1);
+
+        DataFlink<DataInstance> dataFlink = DataFlinkLoader.loadDataFromFile(env, file.getPath(), false);
+        asianet.getDAG().getVariables().setAttributes(dataFlink.getAttributes());
+
+        //Two calls of 10 steps continue the schedule of the step sizes, as a single call of 20 steps.
+        StochasticVI single = asiaSVI(asianet);
+        single.setMaximumIterations(20);
+        single.updateModel(dataFlink);
+
+        StochasticVI continued = asiaSVI(asianet);
+        continued.setMaximumIterations(10);
+        continued.updateModel(dataFlink);
+        continued.updateModel(dataFlink);
+
+        Assert.assertEquals(20, continued.getSVI().getNumberOfSteps());
+        BayesianNetwork singleNet = single.getLearntBayesianNetwork();
+        BayesianNetwork continuedNet = continued.getLearntBayesianNetwork();
+        for (Variable var : asianet.getVariables()) {
+            Assert.assertTrue(continuedNet.getConditionalDistribution(var).equalDist(singleNet.getConditionalDistribution(var), 1e-6));
+        }
+    }
+
+}
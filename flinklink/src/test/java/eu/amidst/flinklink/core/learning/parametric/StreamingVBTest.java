@@ -0,0 +1,216 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.flinklink.core.learning.parametric;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
+import eu.amidst.core.io.BayesianNetworkLoader;
+import eu.amidst.core.io.DataStreamLoader;
+import eu.amidst.core.io.DataStreamWriter;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.BayesianNetworkSampler;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import eu.amidst.flinklink.Main;
+import junit.framework.TestCase;
+import org.apache.flink.api.java.typeutils.GenericTypeInfo;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.SinkFunction;
+import org.apache.flink.streaming.api.functions.source.SourceFunction;
+import org.apache.flink.util.Collector;
+import org.junit.Assert;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class StreamingVBTest extends TestCase {
+
+    static final List<BayesianNetwork> SNAPSHOTS = Collections.synchronizedList(new ArrayList<>());
+
+    public static void baseTest(DataStream<DataInstance> data, BayesianNetwork network, int windowsSize, int snapshotInterval, double error) throws Exception {
+
+        File file = File.createTempFile("streamingVB", ".arff");
+        file.deleteOnExit();
+        DataStreamWriter.writeDataToFile(data, file.getPath());
+
+        network.getDAG().getVariables().setAttributes(DataStreamLoader.open(file.getPath()).getAttributes());
+
+        Configuration conf = new Configuration();
+        final StreamExecutionEnvironment senv = StreamExecutionEnvironment.createLocalEnvironment(Main.PARALLELISM, conf);
+        senv.getConfig().disableSysoutLogging();
+
+        org.apache.flink.streaming.api.datastream.DataStream<DataInstance> stream =
+                senv.addSource(new ArffSource(file.getPath()), new GenericTypeInfo<>(DataInstance.class));
+
+        StreamingVB streamingVB = new StreamingVB();
+        streamingVB.setSeed(5);
+        streamingVB.setWindowsSize(windowsSize);
+        streamingVB.setSnapshotInterval(snapshotInterval);
+        streamingVB.setLocalThreshold(0.001);
+        streamingVB.setMaximumLocalIterations(100);
+        streamingVB.setDAG(network.getDAG());
+
+        SNAPSHOTS.clear();
+        streamingVB.updateModel(stream).addSink(new CollectSnapshots());
+        senv.execute();
+
+        long nBatches = DataStreamLoader.open(file.getPath()).stream().count() / windowsSize;
+        Assert.assertEquals(nBatches / snapshotInterval, SNAPSHOTS.size());
+
+        BayesianNetwork bnet = SNAPSHOTS.get(SNAPSHOTS.size() - 1);
+        for (Variable var : network.getVariables()) {
+            if (Main.VERBOSE) System.out.println("\n------ Variable " + var.getName() + " ------");
+            if (Main.VERBOSE) System.out.println("\nTrue distribution:\n" + network.getConditionalDistribution(var));
+            if (Main.VERBOSE) System.out.println("\nLearned distribution:\n" + bnet.getConditionalDistribution(var));
+            Assert.assertTrue(bnet.getConditionalDistribution(var).equalDist(network.getConditionalDistribution(var), error));
+        }
+    }
+
+    public void testMultinomials() throws Exception {
+        Variables variables = new Variables();
+        Variable varA = variables.newMultinomialVariable("A", 2);
+        Variable varB = variables.newMultinomialVariable("B", 2);
+
+        DAG dag = new DAG(variables);
+
+        dag.getParentSet(varB).addParent(varA);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+
+        Multinomial distA = bn.getConditionalDistribution(varA);
+        Multinomial_MultinomialParents distB = bn.getConditionalDistribution(varB);
+
+        distA.setProbabilities(new double[]{0.6, 0.4});
+        distB.getMultinomial(0).setProbabilities(new double[]{0.75, 0.25});
+        distB.getMultinomial(1).setProbabilities(new double[]{0.25, 0.75});
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+        sampler.setSeed(2);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(2000);
+
+        baseTest(data, bn, 100, 5, 0.05);
+    }
+
+    public void testAsia() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(10000);
+
+        baseTest(data, asianet, 1000, 1, 0.05);
+    }
+
+    public void testCheckpointRestore() throws Exception {
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+        asianet.randomInitialization(new Random(0));
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setSeed(0);
+        DataStream<DataInstance> data = sampler.sampleToDataStream(3000);
+
+        StreamingVB streamingVB = new StreamingVB();
+        streamingVB.setWindowsSize(1000);
+        streamingVB.setDAG(asianet.getDAG());
+        streamingVB.initLearning();
+
+        Configuration config = new Configuration();
+        config.setBytes(StreamingVB.SVB, Serialization.serializeObject(streamingVB.getSVB()));
+
+        List<DataOnMemory<DataInstance>> batches = new ArrayList<>();
+        data.streamOfBatches(1000).forEach(batches::add);
+
+        //A task fails after the first checkpoint and its replacement is restored from it.
+        StreamingVB.UpdateModel original = new StreamingVB.UpdateModel(config, 1);
+        original.open(new Configuration());
+        original.flatMap(batches.get(0), new ListCollector());
+        StreamingVB.State state = Serialization.deepCopy(original.snapshotState(1, 0));
+        original.flatMap(batches.get(1), new ListCollector());
+        original.flatMap(batches.get(2), new ListCollector());
+
+        StreamingVB.UpdateModel restored = new StreamingVB.UpdateModel(config, 1);
+        restored.restoreState(state);
+        restored.open(new Configuration());
+        restored.flatMap(batches.get(1), new ListCollector());
+        ListCollector output = new ListCollector();
+        restored.flatMap(batches.get(2), output);
+
+        assertEquals(3, restored.numberOfBatches);
+        BayesianNetwork expected = original.svb.getLearntBayesianNetwork();
+        for (Variable var : asianet.getVariables()) {
+            Assert.assertTrue(output.list.get(0).getConditionalDistribution(var).equalDist(expected.getConditionalDistribution(var), 1e-10));
+        }
+    }
+
+    static class ArffSource implements SourceFunction<DataInstance> {
+
+        final String path;
+
+        volatile boolean running = true;
+
+        ArffSource(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public void run(SourceContext<DataInstance> ctx) throws Exception {
+            for (DataInstance instance : DataStreamLoader.open(path)) {
+                if (!running)
+                    break;
+                ctx.collect(instance);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            running = false;
+        }
+    }
+
+    static class CollectSnapshots implements SinkFunction<BayesianNetwork> {
+        @Override
+        public void invoke(BayesianNetwork value) throws Exception {
+            SNAPSHOTS.add(value);
+        }
+    }
+
+    static class ListCollector implements Collector<BayesianNetwork> {
+
+        final List<BayesianNetwork> list = new ArrayList<>();
+
+        @Override
+        public void collect(BayesianNetwork record) {
+            list.add(record);
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
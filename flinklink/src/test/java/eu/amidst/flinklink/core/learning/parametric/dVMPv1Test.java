@@ -850,7 +850,7 @@ public class dVMPv1Test extends TestCase {
         int SAMPLES = 1000;
 
         IDAConceptDriftDetectorTest.createBN1(10);
-        BayesianNetwork network = BayesianNetworkLoader.loadFromFile("../networks/simulated/dbn1.dbn");
+        BayesianNetwork network = BayesianNetworkLoader.loadFromFile("../networks/simulated/tmp_dbn1.dbn");
         network.randomInitialization(new Random(0));
         if (Main.VERBOSE) System.out.println(network.toString());
 
@@ -18,6 +18,7 @@
 package eu.amidst.flinklink.core.utils;
 
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.io.BayesianNetworkLoader;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.flinklink.Main;
@@ -27,6 +28,11 @@ import org.apache.flink.api.java.ExecutionEnvironment;
 import org.apache.flink.configuration.Configuration;
 import org.junit.Assert;
 
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
 /**
  * Created by andresmasegosa on 23/9/15.
  */
@@ -73,4 +79,60 @@ public class BayesianNetworkSamplerTest extends TestCase {
 
     }
 
-}
\ No newline at end of file
+    public void testReproducibleBatches() throws Exception {
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        List<DataOnMemory<DataInstance>> sequential = sampleBatches(asianet, 1);
+        List<DataOnMemory<DataInstance>> parallel = sampleBatches(asianet, 4);
+
+        Assert.assertEquals(11, sequential.size());
+        Assert.assertEquals(sequential.size(), parallel.size());
+        Assert.assertEquals(5, sequential.get(10).getNumberOfDataInstances());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assert.assertEquals(i, sequential.get(i).getBatchID(), 0);
+            Assert.assertEquals(sequential.get(i).getBatchID(), parallel.get(i).getBatchID(), 0);
+            for (int j = 0; j < sequential.get(i).getNumberOfDataInstances(); j++) {
+                Assert.assertTrue(Arrays.equals(sequential.get(i).getDataInstance(j).toArray(),
+                        parallel.get(i).getDataInstance(j).toArray()));
+            }
+        }
+    }
+
+    private static List<DataOnMemory<DataInstance>> sampleBatches(BayesianNetwork network, int parallelism) throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInteger("taskmanager.network.numberOfBuffers", 12000);
+        final ExecutionEnvironment env = ExecutionEnvironment.createLocalEnvironment(conf);
+        env.getConfig().disableSysoutLogging();
+        env.setParallelism(parallelism);
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(network);
+        sampler.setSeed(3);
+        sampler.setBatchSize(100);
+
+        List<DataOnMemory<DataInstance>> batches = sampler.sampleToBatches(env, 1005).collect();
+        batches.sort(Comparator.comparingDouble(DataOnMemory::getBatchID));
+        return batches;
+    }
+
+    public void testBatchCache() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInteger("taskmanager.network.numberOfBuffers", 12000);
+        final ExecutionEnvironment env = ExecutionEnvironment.createLocalEnvironment(conf);
+        env.getConfig().disableSysoutLogging();
+        env.setParallelism(Main.PARALLELISM);
+
+        BayesianNetwork asianet = BayesianNetworkLoader.loadFromFile("../networks/dataWeka/asia.bn");
+
+        BayesianNetworkSampler sampler = new BayesianNetworkSampler(asianet);
+        sampler.setBatchSize(100);
+
+        DataFlink<DataInstance> data = sampler.sampleToBatchCache(env, 1000, Files.createTempDirectory("samplerCache").toString());
+
+        Assert.assertEquals(8, data.getAttributes().getNumberOfAttributes());
+        Assert.assertEquals(1000, data.getDataSet().count());
+        Assert.assertEquals(10, data.getBatchedDataSet(100).count());
+        Assert.assertFalse(sampler.getRowsPerSecond().isEmpty());
+    }
+
+}
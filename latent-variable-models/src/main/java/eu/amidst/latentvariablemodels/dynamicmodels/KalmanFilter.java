@@ -134,6 +134,16 @@ public class KalmanFilter extends DynamicModel<KalmanFilter> {
 
     }
 
+    /**
+     * Returns a closed-form filtering engine for the current learnt model.
+     * @return a {@link KalmanFilterEngine} object, or {@code null} if the model has not been learnt yet.
+     */
+    public KalmanFilterEngine getFilteringEngine() {
+        if (this.getModel() == null)
+            return null;
+        return new KalmanFilterEngine(this.getModel());
+    }
+
     public static void main(String[] args) {
 
         DataStream<DynamicDataInstance> dataGaussians = DataSetGenerator.generate(1,1000,0,10);
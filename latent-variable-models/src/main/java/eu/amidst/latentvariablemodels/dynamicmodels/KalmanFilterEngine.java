@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.latentvariablemodels.dynamicmodels;
+
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class implements exact filtering and smoothing (Kalman recursions and Rauch-Tung-Striebel smoother)
+ * for linear Gaussian dynamic Bayesian networks, such as the ones learnt by {@link KalmanFilter}.
+ *
+ * <p> The model is compiled once into primitive matrices, and each filtering step works on preallocated
+ * buffers. Variables without an associated attribute are considered hidden; only hidden variables may have
+ * temporal links. An instance of this class is not thread-safe. </p>
+ */
+public class KalmanFilterEngine implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = -5812004871530217748L;
+
+    /** Represents the hidden variables. */
+    private final List<Variable> hiddenVars;
+
+    /** Represents the observed variables. */
+    private final List<Variable> observedVars;
+
+    /** Represents the compiled time 0 slice. */
+    private final LinearGaussianStep time0;
+
+    /** Represents the compiled time T slice. */
+    private final LinearGaussianStep timeT;
+
+    /** Represents the positions of the observed variables in the slice. */
+    private final int[] observedPositions;
+
+    /** Represents the buffer with the values of the slice variables. */
+    private final double[] sliceValues;
+
+    /** Represents the buffers for the filtering operations. */
+    private final LinearGaussianStep.Workspace workspace;
+
+    /** Represents the filtered mean of the hidden variables. */
+    private final double[] mean;
+
+    /** Represents the filtered covariance of the hidden variables. */
+    private final double[] covariance;
+
+    /** Represents the number of processed time steps of the current sequence. */
+    private int timeStep = 0;
+
+    /**
+     * Creates a new KalmanFilterEngine for a given linear Gaussian model.
+     * @param dbn a {@link DynamicBayesianNetwork} object with only Normal variables.
+     */
+    public KalmanFilterEngine(DynamicBayesianNetwork dbn) {
+        List<Variable> sliceVars = dbn.getDynamicVariables().getListOfDynamicVariables();
+        if (!sliceVars.stream().allMatch(Variable::isNormal))
+            throw new UnsupportedOperationException("All the variables must be Normal");
+
+        this.hiddenVars = Collections.unmodifiableList(sliceVars.stream().filter(var -> var.getAttribute() == null).collect(Collectors.toList()));
+        this.observedVars = Collections.unmodifiableList(sliceVars.stream().filter(var -> var.getAttribute() != null).collect(Collectors.toList()));
+        this.time0 = new LinearGaussianStep(dbn, sliceVars, hiddenVars, false, null, 0);
+        this.timeT = new LinearGaussianStep(dbn, sliceVars, hiddenVars, true, null, 0);
+
+        this.observedPositions = observedVars.stream().mapToInt(sliceVars::indexOf).toArray();
+        this.sliceValues = new double[sliceVars.size()];
+        this.workspace = new LinearGaussianStep.Workspace(sliceVars.size());
+        this.mean = new double[hiddenVars.size()];
+        this.covariance = new double[hiddenVars.size() * hiddenVars.size()];
+    }
+
+    /**
+     * Returns the hidden variables, in the order used by the means and covariances.
+     * @return a list of {@link Variable} objects.
+     */
+    public List<Variable> getHiddenVariables() {
+        return hiddenVars;
+    }
+
+    /**
+     * Returns the observed variables, in the order expected by {@link #update(double[])}.
+     * @return a list of {@link Variable} objects.
+     */
+    public List<Variable> getObservedVariables() {
+        return observedVars;
+    }
+
+    /**
+     * Starts a new sequence.
+     */
+    public void reset() {
+        this.timeStep = 0;
+    }
+
+    /**
+     * Returns the number of processed time steps of the current sequence.
+     * @return an {@code int} value.
+     */
+    public int getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * Updates the filtered distribution of the hidden variables with a new observation.
+     * @param observation the values of the observed variables, where {@code Double.NaN} stands for a missing value.
+     * @return the log-likelihood of the observation given the past ones.
+     */
+    public double update(double[] observation) {
+        Arrays.fill(sliceValues, Double.NaN);
+        for (int i = 0; i < observedPositions.length; i++) {
+            sliceValues[observedPositions[i]] = observation[i];
+        }
+        LinearGaussianStep step = (timeStep == 0) ? time0 : timeT;
+        timeStep++;
+        return step.update(mean, covariance, sliceValues, mean, covariance, workspace);
+    }
+
+    /**
+     * Updates the filtered distribution of the hidden variables with a new data instance.
+     * @param instance a {@link DynamicDataInstance} object.
+     * @return the log-likelihood of the observation given the past ones.
+     */
+    public double update(DynamicDataInstance instance) {
+        Arrays.fill(sliceValues, Double.NaN);
+        for (int i = 0; i < observedPositions.length; i++) {
+            sliceValues[observedPositions[i]] = instance.getValue(observedVars.get(i));
+        }
+        LinearGaussianStep step = (timeStep == 0) ? time0 : timeT;
+        timeStep++;
+        return step.update(mean, covariance, sliceValues, mean, covariance, workspace);
+    }
+
+    /**
+     * Returns the filtered mean of the hidden variables. The returned array is overwritten by the next update.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the filtered covariance of the hidden variables as a row-major matrix.
+     * The returned array is overwritten by the next update.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getCovariance() {
+        return covariance;
+    }
+
+    /**
+     * Returns the filtered marginal distribution of a hidden variable.
+     * @param var a hidden {@link Variable}.
+     * @return a {@link Normal} distribution.
+     */
+    public Normal getFilteredPosterior(Variable var) {
+        int h = hiddenVars.indexOf(var);
+        if (h < 0)
+            throw new IllegalArgumentException("Non hidden variable: " + var.getName());
+        Normal normal = new Normal(var);
+        normal.setMean(mean[h]);
+        normal.setVariance(covariance[h * hiddenVars.size() + h]);
+        return normal;
+    }
+
+    /**
+     * Computes the smoothed distributions of the hidden variables for a whole sequence.
+     * The filtered state of this engine is reset.
+     * @param observations the observations of the sequence, as in {@link #update(double[])}.
+     * @param smoothedMeans the buffer where the smoothed mean of each time step is stored.
+     * @param smoothedCovariances the buffer where the smoothed covariance of each time step is stored.
+     * @return the log-likelihood of the sequence.
+     */
+    public double smooth(double[][] observations, double[][] smoothedMeans, double[][] smoothedCovariances) {
+        int length = observations.length;
+        int k = hiddenVars.size();
+
+        // Forward pass, the filtered moments are stored in the output buffers.
+        this.reset();
+        double logLikelihood = 0;
+        for (int t = 0; t < length; t++) {
+            logLikelihood += this.update(observations[t]);
+            System.arraycopy(mean, 0, smoothedMeans[t], 0, k);
+            System.arraycopy(covariance, 0, smoothedCovariances[t], 0, k * k);
+        }
+
+        // Backward pass.
+        double[] A = timeT.getHiddenTransitionMatrix();
+        double[] predMean = new double[k];
+        double[] predCov = new double[k * k];
+        double[] W = new double[k * k];
+        double[] J = new double[k * k];
+        double[] L = new double[k * k];
+        double[] diffMean = new double[k];
+        double[] diffCov = new double[k * k];
+        double[] noObservations = new double[sliceValues.length];
+        Arrays.fill(noObservations, Double.NaN);
+
+        for (int t = length - 2; t >= 0; t--) {
+            double[] filtMean = smoothedMeans[t];
+            double[] filtCov = smoothedCovariances[t];
+
+            timeT.update(filtMean, filtCov, noObservations, predMean, predCov, workspace);
+
+            // J^T = predCov^-1 (A filtCov)
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    double s = 0;
+                    for (int r = 0; r < k; r++) {
+                        s += A[i * k + r] * filtCov[r * k + j];
+                    }
+                    W[i * k + j] = s;
+                }
+            }
+            cholesky(predCov, L, k);
+            for (int j = 0; j < k; j++) {
+                for (int i = 0; i < k; i++) {
+                    double s = W[i * k + j];
+                    for (int c = 0; c < i; c++) {
+                        s -= L[i * k + c] * J[j * k + c];
+                    }
+                    J[j * k + i] = s / L[i * k + i];
+                }
+                for (int i = k - 1; i >= 0; i--) {
+                    double s = J[j * k + i];
+                    for (int c = i + 1; c < k; c++) {
+                        s -= L[c * k + i] * J[j * k + c];
+                    }
+                    J[j * k + i] = s / L[i * k + i];
+                }
+            }
+
+            for (int i = 0; i < k; i++) {
+                diffMean[i] = smoothedMeans[t + 1][i] - predMean[i];
+                for (int j = 0; j < k; j++) {
+                    diffCov[i * k + j] = smoothedCovariances[t + 1][i * k + j] - predCov[i * k + j];
+                }
+            }
+
+            for (int i = 0; i < k; i++) {
+                double s = 0;
+                for (int j = 0; j < k; j++) {
+                    s += J[i * k + j] * diffMean[j];
+                }
+                filtMean[i] += s;
+            }
+
+            // W = J diffCov, filtCov += W J^T
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    double s = 0;
+                    for (int r = 0; r < k; r++) {
+                        s += J[i * k + r] * diffCov[r * k + j];
+                    }
+                    W[i * k + j] = s;
+                }
+            }
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    double s = 0;
+                    for (int r = 0; r < k; r++) {
+                        s += W[i * k + r] * J[j * k + r];
+                    }
+                    filtCov[i * k + j] += s;
+                }
+            }
+        }
+
+        this.reset();
+        return logLikelihood;
+    }
+
+    /**
+     * Computes the lower triangular Cholesky factor of a symmetric positive definite matrix.
+     * @param A a row-major k x k matrix.
+     * @param L the buffer where the factor is stored.
+     * @param k the dimension.
+     */
+    static void cholesky(double[] A, double[] L, int k) {
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j <= i; j++) {
+                double s = A[i * k + j];
+                for (int c = 0; c < j; c++) {
+                    s -= L[i * k + c] * L[j * k + c];
+                }
+                if (i == j) {
+                    if (s <= 0)
+                        throw new IllegalStateException("Non positive definite covariance matrix");
+                    L[i * k + i] = Math.sqrt(s);
+                } else {
+                    L[i * k + j] = s / L[j * k + j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.latentvariablemodels.dynamicmodels;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents one time slice of a linear Gaussian dynamic model in closed form, i.e.,
+ * the joint distribution of the continuous variables of the slice given the hidden variables of the
+ * previous slice, z = F h_prev + f + e, with e ~ N(0,S).
+ *
+ * <p> All the matrices are stored as row-major {@code double} arrays, and the filtering operations work on
+ * preallocated buffers, so that a filtering step does not allocate any object. </p>
+ */
+final class LinearGaussianStep implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 4610239478934856710L;
+
+    /** Represents log(2*pi). */
+    private static final double LOG_2PI = Math.log(2 * Math.PI);
+
+    /** Represents the number of continuous variables of the slice. */
+    final int n;
+
+    /** Represents the number of hidden variables. */
+    final int k;
+
+    /** Represents the number of hidden variables of the previous slice (0 for time 0). */
+    final int nPrev;
+
+    /** Represents the positions of the hidden variables in the slice. */
+    final int[] hiddenPositions;
+
+    /** Represents the n x nPrev matrix F. */
+    final double[] F;
+
+    /** Represents the vector f. */
+    final double[] f;
+
+    /** Represents the n x n covariance matrix S. */
+    final double[] S;
+
+    /**
+     * Compiles a slice of a given model.
+     * @param dbn a {@link DynamicBayesianNetwork} object.
+     * @param sliceVars the continuous variables of the slice.
+     * @param hiddenVars the hidden continuous variables, which must be included in {@code sliceVars}.
+     * @param timeT {@code true} to compile the time T slice, {@code false} to compile the time 0 slice.
+     * @param switchVar the discrete variable the distributions may depend on, or {@code null}.
+     * @param state the state of {@code switchVar} the slice is compiled for.
+     */
+    LinearGaussianStep(DynamicBayesianNetwork dbn, List<Variable> sliceVars, List<Variable> hiddenVars,
+                       boolean timeT, Variable switchVar, int state) {
+        this.n = sliceVars.size();
+        this.k = hiddenVars.size();
+        this.nPrev = timeT ? k : 0;
+        this.hiddenPositions = new int[k];
+        for (int h = 0; h < k; h++) {
+            this.hiddenPositions[h] = sliceVars.indexOf(hiddenVars.get(h));
+        }
+
+        // z = B z + G h_prev + alpha + e, with e ~ N(0, diag(d)).
+        double[] B = new double[n * n];
+        double[] G = new double[n * nPrev];
+        double[] alpha = new double[n];
+        double[] d = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            Variable var = sliceVars.get(i);
+            ConditionalDistribution dist = timeT ? dbn.getConditionalDistributionTimeT(var) : dbn.getConditionalDistributionTime0(var);
+            ConditionalLinearGaussian clg = toConditionalLinearGaussian(dist, switchVar, state);
+            alpha[i] = clg.getIntercept();
+            d[i] = clg.getVariance();
+            List<Variable> parents = clg.getConditioningVariables();
+            double[] coeffs = clg.getCoeffParents();
+            for (int p = 0; p < parents.size(); p++) {
+                Variable parent = parents.get(p);
+                if (parent.isInterfaceVariable()) {
+                    int h = indexOfInterface(hiddenVars, parent);
+                    if (h < 0)
+                        throw new UnsupportedOperationException("Only hidden continuous variables can have temporal links: " + parent.getName());
+                    G[i * nPrev + h] += coeffs[p];
+                } else {
+                    int j = sliceVars.indexOf(parent);
+                    if (j < 0)
+                        throw new UnsupportedOperationException("Non supported parent variable: " + parent.getName());
+                    B[i * n + j] += coeffs[p];
+                }
+            }
+        }
+
+        // M = (I - B)^-1, F = M G, f = M alpha, S = M diag(d) M^T.
+        double[] M = invertIMinus(B, n);
+        this.F = new double[n * nPrev];
+        this.f = new double[n];
+        this.S = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int q = 0; q < nPrev; q++) {
+                double s = 0;
+                for (int j = 0; j < n; j++) {
+                    s += M[i * n + j] * G[j * nPrev + q];
+                }
+                F[i * nPrev + q] = s;
+            }
+            double s = 0;
+            for (int j = 0; j < n; j++) {
+                s += M[i * n + j] * alpha[j];
+            }
+            f[i] = s;
+            for (int l = 0; l <= i; l++) {
+                s = 0;
+                for (int j = 0; j < n; j++) {
+                    s += M[i * n + j] * d[j] * M[l * n + j];
+                }
+                S[i * n + l] = s;
+                S[l * n + i] = s;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the hidden variable associated to a given interface variable.
+     * @param hiddenVars the hidden variables.
+     * @param interfaceVar an interface {@link Variable}.
+     * @return the index, or -1 if it is not a hidden variable.
+     */
+    private static int indexOfInterface(List<Variable> hiddenVars, Variable interfaceVar) {
+        for (int h = 0; h < hiddenVars.size(); h++) {
+            if (hiddenVars.get(h).getInterfaceVariable().equals(interfaceVar))
+                return h;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the linear Gaussian distribution of a continuous variable for a given state of the switching variable.
+     * @param dist a {@link ConditionalDistribution} of a continuous variable.
+     * @param switchVar the discrete variable the distribution may depend on, or {@code null}.
+     * @param state the state of {@code switchVar}.
+     * @return a {@link ConditionalLinearGaussian} object.
+     */
+    static ConditionalLinearGaussian toConditionalLinearGaussian(ConditionalDistribution dist, Variable switchVar, int state) {
+        if (dist instanceof ConditionalLinearGaussian) {
+            return (ConditionalLinearGaussian) dist;
+        } else if (dist instanceof Normal) {
+            Normal normal = (Normal) dist;
+            ConditionalLinearGaussian clg = new ConditionalLinearGaussian(normal.getVariable(), Collections.emptyList());
+            clg.setIntercept(normal.getMean());
+            clg.setVariance(normal.getVariance());
+            return clg;
+        } else if (dist instanceof Normal_MultinomialParents && isSwitchedBy(dist, switchVar)) {
+            return toConditionalLinearGaussian(((Normal_MultinomialParents) dist).getNormal(state), switchVar, state);
+        } else if (dist instanceof Normal_MultinomialNormalParents && isSwitchedBy(dist, switchVar)) {
+            return ((Normal_MultinomialNormalParents) dist).getNormal_NormalParentsDistribution(state);
+        }
+        throw new UnsupportedOperationException("Non supported distribution: " + dist.label());
+    }
+
+    /**
+     * Tests whether the only discrete parent of a distribution is a given variable.
+     * @param dist a {@link ConditionalDistribution} object.
+     * @param switchVar a {@link Variable} object.
+     * @return {@code true} if the test holds, {@code false} otherwise.
+     */
+    private static boolean isSwitchedBy(ConditionalDistribution dist, Variable switchVar) {
+        return switchVar != null && dist.getConditioningVariables().stream()
+                .filter(Variable::isMultinomial)
+                .allMatch(var -> var == switchVar);
+    }
+
+    /**
+     * Computes (I - B)^-1 by Gauss-Jordan elimination with partial pivoting.
+     * @param B a n x n matrix.
+     * @param n the dimension.
+     * @return the inverse matrix.
+     */
+    private static double[] invertIMinus(double[] B, int n) {
+        double[] A = new double[n * n];
+        double[] inv = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                A[i * n + j] = (i == j ? 1 : 0) - B[i * n + j];
+            }
+            inv[i * n + i] = 1;
+        }
+        for (int c = 0; c < n; c++) {
+            int pivot = c;
+            for (int r = c + 1; r < n; r++) {
+                if (Math.abs(A[r * n + c]) > Math.abs(A[pivot * n + c]))
+                    pivot = r;
+            }
+            if (A[pivot * n + c] == 0)
+                throw new IllegalStateException("The model contains a cycle among the continuous variables of a slice");
+            swapRows(A, n, c, pivot);
+            swapRows(inv, n, c, pivot);
+            double diag = A[c * n + c];
+            for (int j = 0; j < n; j++) {
+                A[c * n + j] /= diag;
+                inv[c * n + j] /= diag;
+            }
+            for (int r = 0; r < n; r++) {
+                double factor = A[r * n + c];
+                if (r == c || factor == 0)
+                    continue;
+                for (int j = 0; j < n; j++) {
+                    A[r * n + j] -= factor * A[c * n + j];
+                    inv[r * n + j] -= factor * inv[c * n + j];
+                }
+            }
+        }
+        return inv;
+    }
+
+    private static void swapRows(double[] A, int n, int r1, int r2) {
+        if (r1 == r2)
+            return;
+        for (int j = 0; j < n; j++) {
+            double aux = A[r1 * n + j];
+            A[r1 * n + j] = A[r2 * n + j];
+            A[r2 * n + j] = aux;
+        }
+    }
+
+    /**
+     * Returns the k x nPrev transition matrix of the hidden variables.
+     * @return a row-major {@code double} array.
+     */
+    double[] getHiddenTransitionMatrix() {
+        double[] A = new double[k * nPrev];
+        for (int h = 0; h < k; h++) {
+            System.arraycopy(F, hiddenPositions[h] * nPrev, A, h * nPrev, nPrev);
+        }
+        return A;
+    }
+
+    /**
+     * Performs a filtering step: computes the joint distribution of the slice given the Gaussian distribution
+     * N(prevMean, prevCov) of the previous hidden variables, and conditions it on the observed values.
+     * The output buffers may be the same as the input ones.
+     * @param prevMean the mean of the previous hidden variables (ignored at time 0).
+     * @param prevCov the covariance of the previous hidden variables (ignored at time 0).
+     * @param values the values of the slice variables, where {@code Double.NaN} stands for non observed.
+     * @param outMean the buffer where the posterior mean of the hidden variables is stored.
+     * @param outCov the buffer where the posterior covariance of the hidden variables is stored.
+     * @param ws the {@link Workspace} used for the computations.
+     * @return the log-likelihood of the observed values.
+     */
+    double update(double[] prevMean, double[] prevCov, double[] values, double[] outMean, double[] outCov, Workspace ws) {
+        double[] mu = ws.mu;
+        double[] sigma = ws.sigma;
+        double[] tmp = ws.tmp;
+
+        for (int i = 0; i < n; i++) {
+            double s = f[i];
+            for (int q = 0; q < nPrev; q++) {
+                s += F[i * nPrev + q] * prevMean[q];
+            }
+            mu[i] = s;
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int q = 0; q < nPrev; q++) {
+                double s = 0;
+                for (int r = 0; r < nPrev; r++) {
+                    s += F[i * nPrev + r] * prevCov[r * nPrev + q];
+                }
+                tmp[i * nPrev + q] = s;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double s = S[i * n + j];
+                for (int q = 0; q < nPrev; q++) {
+                    s += tmp[i * nPrev + q] * F[j * nPrev + q];
+                }
+                sigma[i * n + j] = s;
+                sigma[j * n + i] = s;
+            }
+        }
+
+        return condition(values, outMean, outCov, ws);
+    }
+
+    /**
+     * Conditions the joint distribution N(ws.mu, ws.sigma) of the slice on the observed values.
+     */
+    private double condition(double[] values, double[] outMean, double[] outCov, Workspace ws) {
+        double[] mu = ws.mu;
+        double[] sigma = ws.sigma;
+        double[] L = ws.chol;
+        double[] X = ws.tmp;
+        double[] z = ws.residual;
+        int[] obs = ws.observed;
+
+        int o = 0;
+        for (int i = 0; i < n; i++) {
+            if (!Double.isNaN(values[i]))
+                obs[o++] = i;
+        }
+
+        double logDet = 0;
+        for (int a = 0; a < o; a++) {
+            for (int b = 0; b <= a; b++) {
+                double s = sigma[obs[a] * n + obs[b]];
+                for (int c = 0; c < b; c++) {
+                    s -= L[a * n + c] * L[b * n + c];
+                }
+                if (a == b) {
+                    if (s <= 0)
+                        throw new IllegalStateException("Non positive definite covariance matrix");
+                    L[a * n + a] = Math.sqrt(s);
+                    logDet += 2 * Math.log(L[a * n + a]);
+                } else {
+                    L[a * n + b] = s / L[b * n + b];
+                }
+            }
+        }
+
+        double quad = 0;
+        for (int a = 0; a < o; a++) {
+            double s = values[obs[a]] - mu[obs[a]];
+            for (int c = 0; c < a; c++) {
+                s -= L[a * n + c] * z[c];
+            }
+            z[a] = s / L[a * n + a];
+            quad += z[a] * z[a];
+        }
+
+        for (int h = 0; h < k; h++) {
+            int ph = hiddenPositions[h];
+            for (int a = 0; a < o; a++) {
+                double s = sigma[obs[a] * n + ph];
+                for (int c = 0; c < a; c++) {
+                    s -= L[a * n + c] * X[c * k + h];
+                }
+                X[a * k + h] = s / L[a * n + a];
+            }
+        }
+
+        for (int h = 0; h < k; h++) {
+            int ph = hiddenPositions[h];
+            double s = mu[ph];
+            for (int a = 0; a < o; a++) {
+                s += X[a * k + h] * z[a];
+            }
+            outMean[h] = s;
+            for (int g = 0; g <= h; g++) {
+                s = sigma[ph * n + hiddenPositions[g]];
+                for (int a = 0; a < o; a++) {
+                    s -= X[a * k + h] * X[a * k + g];
+                }
+                outCov[h * k + g] = s;
+                outCov[g * k + h] = s;
+            }
+        }
+
+        return -0.5 * (o * LOG_2PI + logDet + quad);
+    }
+
+    /**
+     * This class contains the buffers used by the filtering operations.
+     */
+    static final class Workspace implements Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -2196548613478412950L;
+
+        final double[] mu;
+        final double[] sigma;
+        final double[] tmp;
+        final double[] chol;
+        final double[] residual;
+        final int[] observed;
+
+        Workspace(int n) {
+            this.mu = new double[n];
+            this.sigma = new double[n * n];
+            this.tmp = new double[n * n];
+            this.chol = new double[n * n];
+            this.residual = new double[n];
+            this.observed = new int[n];
+        }
+    }
+}
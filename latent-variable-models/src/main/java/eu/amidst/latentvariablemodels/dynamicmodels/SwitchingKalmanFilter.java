@@ -119,6 +119,16 @@ public class SwitchingKalmanFilter  extends DynamicModel<SwitchingKalmanFilter>
     }
 
 
+    /**
+     * Returns a closed-form filtering engine for the current learnt model.
+     * @return a {@link SwitchingKalmanFilterEngine} object, or {@code null} if the model has not been learnt yet.
+     */
+    public SwitchingKalmanFilterEngine getFilteringEngine() {
+        if (this.getModel() == null)
+            return null;
+        return new SwitchingKalmanFilterEngine(this.getModel());
+    }
+
     public static void main(String[] args) {
 
         DataStream<DynamicDataInstance> dataGaussians = DataSetGenerator.generate(1,1000,0,10);
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.  See the NOTICE file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and limitations under the License.
+ *
+ */
+
+package eu.amidst.latentvariablemodels.dynamicmodels;
+
+import eu.amidst.core.distribution.ConditionalDistribution;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * This class implements approximate filtering for switching linear Gaussian dynamic Bayesian networks, such as
+ * the ones learnt by {@link SwitchingKalmanFilter}, using the Interacting Multiple Model (IMM) algorithm. See e.g.:
+ *
+ * Kevin P. Murphy. 2012. Machine Learning: A Probabilistic Perspective. The MIT Press. Section 18.6
+ *
+ * <p> The model must contain a single hidden Multinomial variable, the switching variable, whose only parent
+ * at time T is itself at the previous time step. The filtered distribution is kept as a mixture with one Gaussian
+ * component per state of the switching variable: before each step, the components are moment-matched per
+ * destination state (assumed density filtering), and then updated with the exact Kalman recursion of the
+ * corresponding state. The model is compiled once into primitive matrices, and each step works on
+ * preallocated buffers. An instance of this class is not thread-safe. </p>
+ */
+public class SwitchingKalmanFilterEngine implements Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 2977391478932166230L;
+
+    /** Represents the switching variable. */
+    private final Variable switchVar;
+
+    /** Represents the number of states of the switching variable. */
+    private final int nStates;
+
+    /** Represents the hidden continuous variables. */
+    private final List<Variable> hiddenVars;
+
+    /** Represents the observed variables. */
+    private final List<Variable> observedVars;
+
+    /** Represents the compiled time 0 slice for each state. */
+    private final LinearGaussianStep[] time0;
+
+    /** Represents the compiled time T slice for each state. */
+    private final LinearGaussianStep[] timeT;
+
+    /** Represents the initial probabilities of the switching variable. */
+    private final double[] initialProbabilities;
+
+    /** Represents the row-major transition matrix of the switching variable. */
+    private final double[] transitionMatrix;
+
+    /** Represents the positions of the observed variables in the slice. */
+    private final int[] observedPositions;
+
+    /** Represents the buffer with the values of the slice variables. */
+    private final double[] sliceValues;
+
+    /** Represents the buffers for the filtering operations. */
+    private final LinearGaussianStep.Workspace workspace;
+
+    /** Represents the filtered probabilities of the switching variable. */
+    private final double[] stateProbabilities;
+
+    /** Represents the filtered mean of the hidden variables for each state. */
+    private final double[][] means;
+
+    /** Represents the filtered covariance of the hidden variables for each state. */
+    private final double[][] covariances;
+
+    /** Represents the mixed means for each state. */
+    private final double[][] mixedMeans;
+
+    /** Represents the mixed covariances for each state. */
+    private final double[][] mixedCovariances;
+
+    /** Represents a buffer with a log-weight for each state. */
+    private final double[] logWeights;
+
+    /** Represents the collapsed mean of the hidden variables. */
+    private final double[] collapsedMean;
+
+    /** Represents the collapsed covariance of the hidden variables. */
+    private final double[] collapsedCovariance;
+
+    /** Represents the number of processed time steps of the current sequence. */
+    private int timeStep = 0;
+
+    /**
+     * Creates a new SwitchingKalmanFilterEngine for a given switching linear Gaussian model.
+     * @param dbn a {@link DynamicBayesianNetwork} object.
+     */
+    public SwitchingKalmanFilterEngine(DynamicBayesianNetwork dbn) {
+        List<Variable> allVars = dbn.getDynamicVariables().getListOfDynamicVariables();
+        List<Variable> discreteVars = allVars.stream().filter(var -> !var.isNormal()).collect(Collectors.toList());
+        if (discreteVars.size() != 1 || !discreteVars.get(0).isMultinomial() || discreteVars.get(0).getAttribute() != null)
+            throw new UnsupportedOperationException("The model must contain a single hidden Multinomial variable");
+
+        this.switchVar = discreteVars.get(0);
+        this.nStates = switchVar.getNumberOfStates();
+
+        List<Variable> sliceVars = allVars.stream().filter(Variable::isNormal).collect(Collectors.toList());
+        this.hiddenVars = Collections.unmodifiableList(sliceVars.stream().filter(var -> var.getAttribute() == null).collect(Collectors.toList()));
+        this.observedVars = Collections.unmodifiableList(sliceVars.stream().filter(var -> var.getAttribute() != null).collect(Collectors.toList()));
+
+        this.time0 = new LinearGaussianStep[nStates];
+        this.timeT = new LinearGaussianStep[nStates];
+        for (int j = 0; j < nStates; j++) {
+            this.time0[j] = new LinearGaussianStep(dbn, sliceVars, hiddenVars, false, switchVar, j);
+            this.timeT[j] = new LinearGaussianStep(dbn, sliceVars, hiddenVars, true, switchVar, j);
+        }
+
+        ConditionalDistribution dist0 = dbn.getConditionalDistributionTime0(switchVar);
+        ConditionalDistribution distT = dbn.getConditionalDistributionTimeT(switchVar);
+        if (!(dist0 instanceof Multinomial))
+            throw new UnsupportedOperationException("The switching variable cannot have parents at time 0");
+        if (!(distT instanceof Multinomial_MultinomialParents) || distT.getConditioningVariables().size() != 1
+                || !distT.getConditioningVariables().get(0).equals(switchVar.getInterfaceVariable()))
+            throw new UnsupportedOperationException("The only parent of the switching variable at time T must be its interface variable");
+
+        this.initialProbabilities = ((Multinomial) dist0).getProbabilities().clone();
+        this.transitionMatrix = new double[nStates * nStates];
+        for (int i = 0; i < nStates; i++) {
+            System.arraycopy(((Multinomial_MultinomialParents) distT).getMultinomial(i).getProbabilities(), 0, transitionMatrix, i * nStates, nStates);
+        }
+
+        int k = hiddenVars.size();
+        this.observedPositions = observedVars.stream().mapToInt(sliceVars::indexOf).toArray();
+        this.sliceValues = new double[sliceVars.size()];
+        this.workspace = new LinearGaussianStep.Workspace(sliceVars.size());
+        this.stateProbabilities = new double[nStates];
+        this.means = new double[nStates][k];
+        this.covariances = new double[nStates][k * k];
+        this.mixedMeans = new double[nStates][k];
+        this.mixedCovariances = new double[nStates][k * k];
+        this.logWeights = new double[nStates];
+        this.collapsedMean = new double[k];
+        this.collapsedCovariance = new double[k * k];
+    }
+
+    /**
+     * Returns the switching variable.
+     * @return a {@link Variable} object.
+     */
+    public Variable getSwitchingVariable() {
+        return switchVar;
+    }
+
+    /**
+     * Returns the hidden continuous variables, in the order used by the means and covariances.
+     * @return a list of {@link Variable} objects.
+     */
+    public List<Variable> getHiddenVariables() {
+        return hiddenVars;
+    }
+
+    /**
+     * Returns the observed variables, in the order expected by {@link #update(double[])}.
+     * @return a list of {@link Variable} objects.
+     */
+    public List<Variable> getObservedVariables() {
+        return observedVars;
+    }
+
+    /**
+     * Starts a new sequence.
+     */
+    public void reset() {
+        this.timeStep = 0;
+    }
+
+    /**
+     * Updates the filtered distribution with a new observation.
+     * @param observation the values of the observed variables, where {@code Double.NaN} stands for a missing value.
+     * @return the (approximate) log-likelihood of the observation given the past ones.
+     */
+    public double update(double[] observation) {
+        Arrays.fill(sliceValues, Double.NaN);
+        for (int i = 0; i < observedPositions.length; i++) {
+            sliceValues[observedPositions[i]] = observation[i];
+        }
+        return this.step();
+    }
+
+    /**
+     * Updates the filtered distribution with a new data instance.
+     * @param instance a {@link DynamicDataInstance} object.
+     * @return the (approximate) log-likelihood of the observation given the past ones.
+     */
+    public double update(DynamicDataInstance instance) {
+        Arrays.fill(sliceValues, Double.NaN);
+        for (int i = 0; i < observedPositions.length; i++) {
+            sliceValues[observedPositions[i]] = instance.getValue(observedVars.get(i));
+        }
+        return this.step();
+    }
+
+    /**
+     * Performs an IMM step with the values stored in {@code sliceValues}.
+     * @return the log-likelihood of the observation given the past ones.
+     */
+    private double step() {
+        int k = hiddenVars.size();
+
+        if (timeStep == 0) {
+            for (int j = 0; j < nStates; j++) {
+                if (initialProbabilities[j] > 0) {
+                    logWeights[j] = Math.log(initialProbabilities[j])
+                            + time0[j].update(means[j], covariances[j], sliceValues, means[j], covariances[j], workspace);
+                } else {
+                    this.resetComponent(j);
+                }
+            }
+        } else {
+            for (int j = 0; j < nStates; j++) {
+                double[] mixedMean = mixedMeans[j];
+                double[] mixedCov = mixedCovariances[j];
+
+                double c = 0;
+                for (int i = 0; i < nStates; i++) {
+                    c += stateProbabilities[i] * transitionMatrix[i * nStates + j];
+                }
+
+                Arrays.fill(mixedMean, 0);
+                Arrays.fill(mixedCov, 0);
+                if (c > 0) {
+                    for (int i = 0; i < nStates; i++) {
+                        double w = stateProbabilities[i] * transitionMatrix[i * nStates + j] / c;
+                        if (w == 0)
+                            continue;
+                        for (int h = 0; h < k; h++) {
+                            mixedMean[h] += w * means[i][h];
+                        }
+                    }
+                    for (int i = 0; i < nStates; i++) {
+                        double w = stateProbabilities[i] * transitionMatrix[i * nStates + j] / c;
+                        if (w == 0)
+                            continue;
+                        for (int h = 0; h < k; h++) {
+                            double dh = means[i][h] - mixedMean[h];
+                            for (int g = 0; g < k; g++) {
+                                mixedCov[h * k + g] += w * (covariances[i][h * k + g] + dh * (means[i][g] - mixedMean[g]));
+                            }
+                        }
+                    }
+                    logWeights[j] = Math.log(c);
+                } else {
+                    // Unreachable state, the log of the normaliser would be -Infinity.
+                    logWeights[j] = Double.NEGATIVE_INFINITY;
+                }
+            }
+
+            for (int j = 0; j < nStates; j++) {
+                if (logWeights[j] > Double.NEGATIVE_INFINITY)
+                    logWeights[j] += timeT[j].update(mixedMeans[j], mixedCovariances[j], sliceValues, means[j], covariances[j], workspace);
+                else
+                    this.resetComponent(j);
+            }
+        }
+        timeStep++;
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < nStates; j++) {
+            max = Math.max(max, logWeights[j]);
+        }
+        if (max == Double.NEGATIVE_INFINITY || Double.isNaN(max))
+            throw new IllegalStateException("The observation has zero probability in all the states of the switching variable");
+        double sum = 0;
+        for (int j = 0; j < nStates; j++) {
+            stateProbabilities[j] = Math.exp(logWeights[j] - max);
+            sum += stateProbabilities[j];
+        }
+        for (int j = 0; j < nStates; j++) {
+            stateProbabilities[j] /= sum;
+        }
+
+        return max + Math.log(sum);
+    }
+
+    /**
+     * Sets a state with zero probability (e.g. unreachable from the current states) to a zero weight and a
+     * standard Gaussian component, which does not contribute to the mixture.
+     * @param state the state of the switching variable.
+     */
+    private void resetComponent(int state) {
+        int k = hiddenVars.size();
+        logWeights[state] = Double.NEGATIVE_INFINITY;
+        Arrays.fill(means[state], 0);
+        Arrays.fill(covariances[state], 0);
+        for (int h = 0; h < k; h++) {
+            covariances[state][h * k + h] = 1;
+        }
+    }
+
+    /**
+     * Returns the filtered probabilities of the switching variable. The returned array is overwritten by the next update.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getStateProbabilities() {
+        return stateProbabilities;
+    }
+
+    /**
+     * Returns the filtered mean of the hidden variables given a state of the switching variable.
+     * The returned array is overwritten by the next update.
+     * @param state the state of the switching variable.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getMean(int state) {
+        return means[state];
+    }
+
+    /**
+     * Returns the filtered covariance of the hidden variables given a state of the switching variable, as a
+     * row-major matrix. The returned array is overwritten by the next update.
+     * @param state the state of the switching variable.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getCovariance(int state) {
+        return covariances[state];
+    }
+
+    /**
+     * Returns the filtered mean of the hidden variables, i.e., the mean of the mixture.
+     * The returned array is overwritten by the next call.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getMean() {
+        int k = hiddenVars.size();
+        Arrays.fill(collapsedMean, 0);
+        for (int j = 0; j < nStates; j++) {
+            for (int h = 0; h < k; h++) {
+                collapsedMean[h] += stateProbabilities[j] * means[j][h];
+            }
+        }
+        return collapsedMean;
+    }
+
+    /**
+     * Returns the filtered covariance of the hidden variables, i.e., the covariance of the mixture, as a
+     * row-major matrix. The returned array is overwritten by the next call.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getCovariance() {
+        int k = hiddenVars.size();
+        double[] mean = this.getMean();
+        Arrays.fill(collapsedCovariance, 0);
+        for (int j = 0; j < nStates; j++) {
+            for (int h = 0; h < k; h++) {
+                double dh = means[j][h] - mean[h];
+                for (int g = 0; g < k; g++) {
+                    collapsedCovariance[h * k + g] += stateProbabilities[j] * (covariances[j][h * k + g] + dh * (means[j][g] - mean[g]));
+                }
+            }
+        }
+        return collapsedCovariance;
+    }
+}
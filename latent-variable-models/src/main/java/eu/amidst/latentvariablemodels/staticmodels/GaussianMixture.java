@@ -16,6 +16,7 @@ import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.learning.parametric.bayesian.OnlineGaussianMixture;
 import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.DataSetGenerator;
 import eu.amidst.core.variables.StateSpaceTypeEnum;
@@ -41,6 +42,9 @@ public class GaussianMixture extends Model<GaussianMixture> {
     /** hidden variable */
     private Variable hiddenVar;
 
+    /* online engine flag*/
+    private boolean onlineEngine;
+
 
     /**
      * Constructor of classifier from a list of attributes (e.g. from a datastream).
@@ -52,6 +56,7 @@ public class GaussianMixture extends Model<GaussianMixture> {
         super(attributes);
         this.numStatesHiddenVar = 2;
         this.diagonal = true;
+        this.onlineEngine = false;
     }
 
 
@@ -86,6 +91,18 @@ public class GaussianMixture extends Model<GaussianMixture> {
 
 
 
+    /**
+     * Initializes the learning algorithm, which is an {@link OnlineGaussianMixture} if the online engine is set
+     * and no other algorithm has been provided.
+     */
+    @Override
+    protected void initLearning() {
+        if (learningAlgorithm==null && isOnlineEngine())
+            learningAlgorithm = new OnlineGaussianMixture();
+        super.initLearning();
+    }
+
+
     /////// Getters and setters
 
     /**
@@ -106,6 +123,25 @@ public class GaussianMixture extends Model<GaussianMixture> {
         return this;
     }
 
+    /**
+     * Method to obtain the value of the online engine flag.
+     * @return boolean value
+     */
+    public boolean isOnlineEngine() {
+        return onlineEngine;
+    }
+
+    /**
+     * Method to set the value of the online engine flag.
+     * @param onlineEngine boolean value, when true the model is learnt with an OnlineGaussianMixture,
+     *                     a streaming variational Bayes engine specialised in Gaussian mixtures, instead of SVB.
+     */
+    public GaussianMixture setOnlineEngine(boolean onlineEngine) {
+        this.onlineEngine = onlineEngine;
+        resetModel();
+        return this;
+    }
+
     /**
      * Method to obtain the number of states of the hidden (latent) variable
      * @return integer value
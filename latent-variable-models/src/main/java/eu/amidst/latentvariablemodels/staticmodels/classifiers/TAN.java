@@ -17,16 +17,15 @@
 
 package eu.amidst.latentvariablemodels.staticmodels.classifiers;
 
-import COM.hugin.HAPI.ExceptionHugin;
 import eu.amidst.core.datastream.Attributes;
 import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.learning.structural.ChowLiuTree;
 import eu.amidst.core.models.DAG;
 import eu.amidst.core.utils.DataSetGenerator;
 import eu.amidst.core.variables.StateSpaceTypeEnum;
 import eu.amidst.core.variables.Variable;
-import eu.amidst.huginlink.learning.ParallelTAN;
 import eu.amidst.latentvariablemodels.staticmodels.exceptions.WrongConfigurationException;
 
 /**
@@ -34,14 +33,19 @@ import eu.amidst.latentvariablemodels.staticmodels.exceptions.WrongConfiguration
  *
  * N. Friedman, D. Geiger, and M. Goldszmidt. Bayesian network classifiers. Machine Learning, 29(2-3):131–163, 1997.
  *
+ * The tree structure is learnt with {@link ChowLiuTree}, so no native library is needed.
+ *
  * Created by andresmasegosa on 4/3/16.
  */
 
 public class TAN extends Classifier<TAN> {
 
 
-    /** This class provides a link to the <a href="https://www.hugin.com">Hugin</a>'s functionality to learn in parallel a TAN model.*/
-    private ParallelTAN parallelTAN;
+    /** Learns in parallel the TAN structure with the Chow-Liu algorithm.*/
+    private ChowLiuTree chowLiuTree;
+
+    /** Data stream from which the structure is learnt, only kept while updating the model */
+    private transient DataStream<DataInstance> dataStream;
 
     /** String with the name of the node used as a root */
     private String rootVarName;
@@ -57,11 +61,26 @@ public class TAN extends Classifier<TAN> {
 
 
     /**
-     * In this class this method does nothing: the DAG is built in the hugin classes
+     * Builds the DAG of the TAN classifier from the data stream given to {@link #updateModel(DataStream)}. Before
+     * that, only the arcs from the class variable are included.
      */
     @Override
     protected void buildDAG() {
 
+        if(dataStream==null) {
+            this.dag = new DAG(this.vars);
+            this.vars.getListOfVariables().stream()
+                    .filter(v -> !v.equals(classVar))
+                    .forEach(v -> this.dag.getParentSet(v).addParent(classVar));
+            return;
+        }
+
+        chowLiuTree = new ChowLiuTree();
+        chowLiuTree.setNameTarget(classVar.getName());
+        chowLiuTree.setNameRoot(rootVarName);
+        chowLiuTree.setWindowsSize(this.windowSize);
+
+        this.dag = chowLiuTree.learnDAG(dataStream);
     }
 
 
@@ -81,20 +100,10 @@ public class TAN extends Classifier<TAN> {
                     .filter(variable -> !variable.equals(classVar)).findAny().get().getName();
         }
 
-        parallelTAN = new ParallelTAN();
-        this.dag = new DAG(this.vars);
-
-        parallelTAN.setNameTarget(classVar.getName());
-        parallelTAN.setNameRoot(rootVarName);
-        parallelTAN.setNumCores(1);
-        parallelTAN.setNumSamplesOnMemory(5000);
-
-        try {
-            this.dag = parallelTAN.learnDAG(dataStream);
-        }
-        catch (ExceptionHugin e) {
-            System.out.println(e.getMessage());
-        }
+        this.dataStream = dataStream;
+        buildDAG();
+        if(dataStream.isRestartable())
+            dataStream.restart();
 
         learningAlgorithm = new SVB();
         learningAlgorithm.setDAG(this.dag);
@@ -102,6 +111,8 @@ public class TAN extends Classifier<TAN> {
         learningAlgorithm.initLearning();
         learningAlgorithm.runLearning();
 
+        this.dataStream = null;
+
         return learningAlgorithm.getLogMarginalProbability();
     }
 
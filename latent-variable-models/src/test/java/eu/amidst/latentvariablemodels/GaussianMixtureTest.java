@@ -20,12 +20,16 @@ package eu.amidst.latentvariablemodels;
 import eu.amidst.core.datastream.DataInstance;
 import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.learning.parametric.bayesian.OnlineGaussianMixture;
 import eu.amidst.core.utils.DataSetGenerator;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.latentvariablemodels.staticmodels.exceptions.WrongConfigurationException;
 import eu.amidst.latentvariablemodels.staticmodels.GaussianMixture;
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+
 /**
  * Created by rcabanas on 10/03/16.
  */
@@ -88,8 +92,22 @@ public class GaussianMixtureTest extends TestCase {
         assertTrue(!gmm.isDiagonal() || numParents);
     }
 
+    public void testOnlineEngine() {
+        DataStream<DataInstance> data = DataSetGenerator.generate(1234,500, 0, 4);
 
+        GaussianMixture online = new GaussianMixture(data.getAttributes());
+        online.setDiagonal(false);
+        online.setNumStatesHiddenVar(3);
+        online.setOnlineEngine(true);
+        online.updateModel(data);
 
+        assertTrue(online.getLearningAlgorithm() instanceof OnlineGaussianMixture);
 
+        // the learnt model has the structure of the DAG
+        Multinomial weights = online.getPosteriorDistribution("HiddenVar");
+        assertEquals(3, weights.getProbabilities().length);
+        assertEquals(1.0, Arrays.stream(weights.getProbabilities()).sum(), 1e-10);
+        assertEquals(gmm.getDAG().toString(), online.getModel().getDAG().toString());
+    }
 
 }
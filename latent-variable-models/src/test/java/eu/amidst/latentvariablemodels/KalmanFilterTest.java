@@ -19,11 +19,19 @@ package eu.amidst.latentvariablemodels;
 
 import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Normal;
+import eu.amidst.core.variables.Variable;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.dynamic.utils.DataSetGenerator;
 import eu.amidst.latentvariablemodels.dynamicmodels.KalmanFilter;
+import eu.amidst.latentvariablemodels.dynamicmodels.KalmanFilterEngine;
 import junit.framework.TestCase;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * Created by ana@cs.aau.dk on 08/03/16.
  */
@@ -66,4 +74,75 @@ public class KalmanFilterTest extends TestCase{
         System.out.println(KF.getModel());
     }
 
-}
\ No newline at end of file
+    public void test4(){
+        DataStream<DynamicDataInstance> data = DataSetGenerator.generate(2,500,0,1);
+        KalmanFilter KF = new KalmanFilter(data.getAttributes());
+        KF.setNumHidden(1);
+        KF.updateModel(data);
+
+        DynamicBayesianNetwork dbn = KF.getModel();
+        KalmanFilterEngine engine = KF.getFilteringEngine();
+        Variable hidden = engine.getHiddenVariables().get(0);
+        Variable observed = engine.getObservedVariables().get(0);
+
+        Normal h0 = dbn.getConditionalDistributionTime0(hidden);
+        ConditionalLinearGaussian y0 = dbn.getConditionalDistributionTime0(observed);
+        ConditionalLinearGaussian hT = dbn.getConditionalDistributionTimeT(hidden);
+        ConditionalLinearGaussian yT = dbn.getConditionalDistributionTimeT(observed);
+
+        List<DynamicDataInstance> sequence = data.stream()
+                .filter(d -> d.getSequenceID()==0)
+                .collect(Collectors.toList());
+        int length = sequence.size();
+
+        //Scalar Kalman filter
+        double[] filtMeans = new double[length];
+        double[] filtVars = new double[length];
+        double[] predMeans = new double[length];
+        double[] predVars = new double[length];
+        double m = h0.getMean(), P = h0.getVariance();
+        for (int t = 0; t < length; t++) {
+            ConditionalLinearGaussian y = (t==0) ? y0 : yT;
+            if (t>0) {
+                m = hT.getIntercept() + hT.getCoeffParents()[0]*m;
+                P = hT.getCoeffParents()[0]*hT.getCoeffParents()[0]*P + hT.getVariance();
+            }
+            predMeans[t]=m;
+            predVars[t]=P;
+            double b = y.getCoeffParents()[0];
+            double S = b*b*P + y.getVariance();
+            double e = sequence.get(t).getValue(observed) - (y.getIntercept() + b*m);
+            double K = P*b/S;
+            m += K*e;
+            P -= K*b*P;
+            filtMeans[t]=m;
+            filtVars[t]=P;
+
+            double logLikelihood = engine.update(sequence.get(t));
+            assertEquals(-0.5*(Math.log(2*Math.PI*S) + e*e/S), logLikelihood, 1e-8);
+            assertEquals(m, engine.getMean()[0], 1e-8);
+            assertEquals(P, engine.getCovariance()[0], 1e-8);
+        }
+
+        //Scalar Rauch-Tung-Striebel smoother
+        double[][] observations = new double[length][1];
+        double[][] smoothedMeans = new double[length][1];
+        double[][] smoothedVars = new double[length][1];
+        for (int t = 0; t < length; t++) {
+            observations[t][0] = sequence.get(t).getValue(observed);
+        }
+        engine.smooth(observations, smoothedMeans, smoothedVars);
+
+        double ms = filtMeans[length-1], Ps = filtVars[length-1];
+        for (int t = length - 1; t >= 0; t--) {
+            if (t < length - 1) {
+                double J = filtVars[t]*hT.getCoeffParents()[0]/predVars[t+1];
+                ms = filtMeans[t] + J*(ms - predMeans[t+1]);
+                Ps = filtVars[t] + J*J*(Ps - predVars[t+1]);
+            }
+            assertEquals(ms, smoothedMeans[t][0], 1e-8);
+            assertEquals(Ps, smoothedVars[t][0], 1e-8);
+        }
+    }
+
+}
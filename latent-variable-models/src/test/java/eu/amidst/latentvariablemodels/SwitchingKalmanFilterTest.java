@@ -19,11 +19,22 @@ package eu.amidst.latentvariablemodels;
 
 import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
+import eu.amidst.core.distribution.ConditionalLinearGaussian;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Multinomial_MultinomialParents;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.distribution.Normal_MultinomialNormalParents;
+import eu.amidst.core.variables.Variable;
 import eu.amidst.dynamic.datastream.DynamicDataInstance;
+import eu.amidst.dynamic.models.DynamicBayesianNetwork;
 import eu.amidst.dynamic.utils.DataSetGenerator;
 import eu.amidst.latentvariablemodels.dynamicmodels.SwitchingKalmanFilter;
+import eu.amidst.latentvariablemodels.dynamicmodels.SwitchingKalmanFilterEngine;
 import junit.framework.TestCase;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * Created by ana@cs.aau.dk on 09/03/16.
  */
@@ -65,4 +76,221 @@ public class SwitchingKalmanFilterTest extends TestCase{
         }
         System.out.println(SKF.getModel());
     }
-}
\ No newline at end of file
+    public void test4(){
+        DataStream<DynamicDataInstance> data = DataSetGenerator.generate(2,500,0,1);
+        SwitchingKalmanFilter SKF = new SwitchingKalmanFilter(data.getAttributes());
+        SKF.updateModel(data);
+
+        //All the regimes share the same Gaussian parameters, so IMM is exact.
+        DynamicBayesianNetwork dbn = SKF.getModel();
+        Variable switchVar = dbn.getDynamicVariables().getVariableByName("discreteHiddenVar");
+        Variable hidden = dbn.getDynamicVariables().getVariableByName("gaussianHiddenVar");
+        Variable observed = dbn.getDynamicVariables().getListOfDynamicVariables().stream()
+                .filter(var -> var.getAttribute()!=null).findFirst().get();
+        Normal_MultinomialParents h0 = dbn.getConditionalDistributionTime0(hidden);
+        Normal_MultinomialNormalParents y0 = dbn.getConditionalDistributionTime0(observed);
+        Normal_MultinomialNormalParents hT = dbn.getConditionalDistributionTimeT(hidden);
+        Normal_MultinomialNormalParents yT = dbn.getConditionalDistributionTimeT(observed);
+        for (int j = 1; j < switchVar.getNumberOfStates(); j++) {
+            h0.setNormal(j, h0.getNormal(0));
+            y0.setNormal_NormalParentsDistribution(j, y0.getNormal_NormalParentsDistribution(0));
+            hT.setNormal_NormalParentsDistribution(j, hT.getNormal_NormalParentsDistribution(0));
+            yT.setNormal_NormalParentsDistribution(j, yT.getNormal_NormalParentsDistribution(0));
+        }
+        ConditionalLinearGaussian y00 = y0.getNormal_NormalParentsDistribution(0);
+        ConditionalLinearGaussian hT0 = hT.getNormal_NormalParentsDistribution(0);
+        ConditionalLinearGaussian yT0 = yT.getNormal_NormalParentsDistribution(0);
+        double[] probs = ((Multinomial)dbn.getConditionalDistributionTime0(switchVar)).getProbabilities().clone();
+        Multinomial_MultinomialParents transition = dbn.getConditionalDistributionTimeT(switchVar);
+
+        SwitchingKalmanFilterEngine engine = new SwitchingKalmanFilterEngine(dbn);
+
+        List<DynamicDataInstance> sequence = data.stream()
+                .filter(d -> d.getSequenceID()==0)
+                .collect(Collectors.toList());
+
+        double m = h0.getNormal(0).getMean(), P = h0.getNormal(0).getVariance();
+        for (int t = 0; t < sequence.size(); t++) {
+            ConditionalLinearGaussian y = (t==0) ? y00 : yT0;
+            if (t>0) {
+                double[] newProbs = new double[probs.length];
+                for (int i = 0; i < probs.length; i++) {
+                    for (int j = 0; j < probs.length; j++) {
+                        newProbs[j] += probs[i]*transition.getMultinomial(i).getProbabilities()[j];
+                    }
+                }
+                probs = newProbs;
+
+                double a = hT0.getCoeffForParent(hidden.getInterfaceVariable());
+                m = hT0.getIntercept() + a*m;
+                P = a*a*P + hT0.getVariance();
+            }
+            double b = y.getCoeffForParent(hidden);
+            double S = b*b*P + y.getVariance();
+            double e = sequence.get(t).getValue(observed) - (y.getIntercept() + b*m);
+            double K = P*b/S;
+            m += K*e;
+            P -= K*b*P;
+            double expectedLogLikelihood = -0.5*(Math.log(2*Math.PI*S) + e*e/S);
+
+            assertEquals(expectedLogLikelihood, engine.update(sequence.get(t)), 1e-8);
+            assertEquals(m, engine.getMean()[0], 1e-8);
+            assertEquals(P, engine.getCovariance()[0], 1e-8);
+            for (int j = 0; j < probs.length; j++) {
+                assertEquals(probs[j], engine.getStateProbabilities()[j], 1e-8);
+            }
+        }
+    }
+
+    /**
+     * Returns a switching Kalman filter over one observed variable, with two regimes with different parameters.
+     */
+    private static DynamicBayesianNetwork twoRegimes(double[] initial, double[][] transition) {
+        DataStream<DynamicDataInstance> data = DataSetGenerator.generate(2,10,0,1);
+        SwitchingKalmanFilter SKF = new SwitchingKalmanFilter(data.getAttributes());
+        SKF.setNumStates(2);
+        SKF.updateModel(data);
+
+        DynamicBayesianNetwork dbn = SKF.getModel();
+        Variable switchVar = dbn.getDynamicVariables().getVariableByName("discreteHiddenVar");
+        Variable hidden = dbn.getDynamicVariables().getVariableByName("gaussianHiddenVar");
+        Variable observed = dbn.getDynamicVariables().getListOfDynamicVariables().stream()
+                .filter(var -> var.getAttribute()!=null).findFirst().get();
+
+        ((Multinomial)dbn.getConditionalDistributionTime0(switchVar)).setProbabilities(initial);
+        Multinomial_MultinomialParents switchT = dbn.getConditionalDistributionTimeT(switchVar);
+        for (int i = 0; i < 2; i++) {
+            switchT.getMultinomial(i).setProbabilities(transition[i]);
+        }
+
+        Normal_MultinomialParents h0 = dbn.getConditionalDistributionTime0(hidden);
+        Normal_MultinomialNormalParents y0 = dbn.getConditionalDistributionTime0(observed);
+        Normal_MultinomialNormalParents hT = dbn.getConditionalDistributionTimeT(hidden);
+        Normal_MultinomialNormalParents yT = dbn.getConditionalDistributionTimeT(observed);
+        for (int j = 0; j < 2; j++) {
+            h0.getNormal(j).setMean(H0[j][0]);
+            h0.getNormal(j).setVariance(H0[j][1]);
+            setCLG(y0.getNormal_NormalParentsDistribution(j), hidden, Y[j]);
+            setCLG(hT.getNormal_NormalParentsDistribution(j), hidden.getInterfaceVariable(), HT[j]);
+            setCLG(yT.getNormal_NormalParentsDistribution(j), hidden, Y[j]);
+        }
+        return dbn;
+    }
+
+    /** Mean and variance of the hidden variable at time 0, for each regime. */
+    private static final double[][] H0 = {{-1, 0.5}, {3, 2}};
+
+    /** Intercept, coefficient and variance of the hidden variable at time T, for each regime. */
+    private static final double[][] HT = {{0, 0.9, 0.5}, {2, -0.5, 2}};
+
+    /** Intercept, coefficient and variance of the observed variable, for each regime. */
+    private static final double[][] Y = {{0, 1, 1}, {1, 2, 0.3}};
+
+    private static void setCLG(ConditionalLinearGaussian dist, Variable parent, double[] parameters) {
+        for (Variable var : dist.getConditioningVariables()) {
+            dist.setCoeffForParent(var, 0);
+        }
+        dist.setIntercept(parameters[0]);
+        dist.setCoeffForParent(parent, parameters[1]);
+        dist.setVariance(parameters[2]);
+    }
+
+    /**
+     * Updates a Gaussian prior (mean, variance) with an observation y = c + b*h + noise.
+     * @return the posterior mean, the posterior variance and the log-likelihood of the observation.
+     */
+    private static double[] kalmanUpdate(double m, double P, double[] y, double value) {
+        double S = y[1]*y[1]*P + y[2];
+        double e = value - (y[0] + y[1]*m);
+        double K = P*y[1]/S;
+        return new double[]{m + K*e, P - K*y[1]*P, -0.5*(Math.log(2*Math.PI*S) + e*e/S)};
+    }
+
+    public void test5(){
+        double[] initial = {0.6, 0.4};
+        double[][] transition = {{0.8, 0.2}, {0.3, 0.7}};
+        DynamicBayesianNetwork dbn = twoRegimes(initial, transition);
+        SwitchingKalmanFilterEngine engine = new SwitchingKalmanFilterEngine(dbn);
+        double[] observations = {0.5, 2.0};
+
+        //Time 0: exact Kalman update of each regime.
+        double[][] filtered = new double[2][];
+        double[] probs = new double[2];
+        for (int j = 0; j < 2; j++) {
+            filtered[j] = kalmanUpdate(H0[j][0], H0[j][1], Y[j], observations[0]);
+            probs[j] = initial[j]*Math.exp(filtered[j][2]);
+        }
+        double likelihood = probs[0] + probs[1];
+        assertEquals(Math.log(likelihood), engine.update(new double[]{observations[0]}), 1e-10);
+        for (int j = 0; j < 2; j++) {
+            probs[j] /= likelihood;
+            assertEquals(probs[j], engine.getStateProbabilities()[j], 1e-10);
+            assertEquals(filtered[j][0], engine.getMean(j)[0], 1e-10);
+            assertEquals(filtered[j][1], engine.getCovariance(j)[0], 1e-10);
+        }
+
+        //Time 1: mixing of the regimes per destination state, prediction and update.
+        double[][] newFiltered = new double[2][];
+        double[] newProbs = new double[2];
+        for (int j = 0; j < 2; j++) {
+            double c = probs[0]*transition[0][j] + probs[1]*transition[1][j];
+            double w0 = probs[0]*transition[0][j]/c;
+            double w1 = probs[1]*transition[1][j]/c;
+            double m = w0*filtered[0][0] + w1*filtered[1][0];
+            double P = w0*(filtered[0][1] + Math.pow(filtered[0][0] - m, 2))
+                    + w1*(filtered[1][1] + Math.pow(filtered[1][0] - m, 2));
+
+            double mPredicted = HT[j][0] + HT[j][1]*m;
+            double PPredicted = HT[j][1]*HT[j][1]*P + HT[j][2];
+            newFiltered[j] = kalmanUpdate(mPredicted, PPredicted, Y[j], observations[1]);
+            newProbs[j] = c*Math.exp(newFiltered[j][2]);
+        }
+        likelihood = newProbs[0] + newProbs[1];
+        assertEquals(Math.log(likelihood), engine.update(new double[]{observations[1]}), 1e-10);
+        double mean = 0;
+        for (int j = 0; j < 2; j++) {
+            newProbs[j] /= likelihood;
+            mean += newProbs[j]*newFiltered[j][0];
+            assertEquals(newProbs[j], engine.getStateProbabilities()[j], 1e-10);
+            assertEquals(newFiltered[j][0], engine.getMean(j)[0], 1e-10);
+            assertEquals(newFiltered[j][1], engine.getCovariance(j)[0], 1e-10);
+        }
+        assertEquals(mean, engine.getMean()[0], 1e-10);
+    }
+
+    public void test6(){
+        //The second regime can never be reached.
+        DynamicBayesianNetwork dbn = twoRegimes(new double[]{1, 0}, new double[][]{{1, 0}, {0.5, 0.5}});
+        SwitchingKalmanFilterEngine engine = new SwitchingKalmanFilterEngine(dbn);
+
+        double[] observations = {0.5, 2.0, -1.0};
+        double m = H0[0][0], P = H0[0][1];
+        for (int t = 0; t < observations.length; t++) {
+            double value = observations[t];
+            if (t > 0) {
+                m = HT[0][0] + HT[0][1]*m;
+                P = HT[0][1]*HT[0][1]*P + HT[0][2];
+            }
+            double[] filtered = kalmanUpdate(m, P, Y[0], value);
+            m = filtered[0];
+            P = filtered[1];
+
+            assertEquals(filtered[2], engine.update(new double[]{value}), 1e-10);
+            assertEquals(1, engine.getStateProbabilities()[0], 1e-10);
+            assertEquals(0, engine.getStateProbabilities()[1], 0);
+            assertEquals(m, engine.getMean()[0], 1e-10);
+            assertEquals(P, engine.getCovariance()[0], 1e-10);
+        }
+    }
+
+    public void test7(){
+        //No regime can explain the observation, instead of a NaN log-likelihood an exception is thrown.
+        DynamicBayesianNetwork dbn = twoRegimes(new double[]{0, 0}, new double[][]{{1, 0}, {0, 1}});
+        SwitchingKalmanFilterEngine engine = new SwitchingKalmanFilterEngine(dbn);
+        try {
+            engine.update(new double[]{0.5});
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.apache.spark.sql.types.DataTypes;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import static eu.amidst.core.variables.StateSpaceTypeEnum.REAL;
 
@@ -26,11 +27,11 @@ class DataFrameOps {
 
     static JavaRDD<DataInstance> toDataInstanceRDD(DataFrame data, Attributes attributes) {
 
-        JavaRDD<double[]> rawRDD = data.rdd()
-                                  .toJavaRDD()
-                                  .map( row -> transformRow2DataInstance(row, attributes) );
+        StateSpaceType[] spaces = SchemaConverter.getStateSpaces(attributes);
 
-        return rawRDD.map(v ->  new DataInstanceFromDataRow( new DataRowSpark(v, attributes) ) );
+        return data.rdd()
+                   .toJavaRDD()
+                   .map( row -> new DataInstanceFromDataRow( new DataRowSpark(transformRow2DataInstance(row, spaces), attributes) ) );
     }
 
 
@@ -41,24 +42,46 @@ class DataFrameOps {
     }
 
 
-    private static double[] transformRow2DataInstance(Row row, Attributes attributes) throws Exception {
+    /**
+     * Builds the batches directly from the rows of a DataFrame: the values of each partition are written into
+     * the primitive arrays of {@link DataOnMemoryBlock} objects, without intermediate data instances.
+     */
+    static JavaRDD<DataOnMemory<DataInstance>> toBatchedRDD(DataFrame data, Attributes attributes, int batchSize) {
 
-        double[] instance = new double[row.length()];
+        return data.rdd()
+                   .toJavaRDD()
+                   .mapPartitions( partition -> rows2Batches(partition, attributes, batchSize) );
+    }
+
+
+    private static double[] transformRow2DataInstance(Row row, StateSpaceType[] spaces) throws Exception {
 
-        for (int i = 0; i < row.length(); i++) {
+        double[] instance = new double[spaces.length];
+        transformRow(row, spaces, instance, 0);
+        return instance;
+    }
 
-            Attribute att = attributes.getFullListOfAttributes().get(i);
-            StateSpaceType space = att.getStateSpaceType();
 
-            switch (space.getStateSpaceTypeEnum()) {
+    /**
+     * Writes the values of a row into a given array, using the state spaces of the attributes. Null values
+     * are considered as missing values.
+     */
+    private static void transformRow(Row row, StateSpaceType[] spaces, double[] values, int offset) throws Exception {
+
+        for (int i = 0; i < spaces.length; i++) {
+
+            if (row.isNullAt(i)) {
+                values[offset + i] = Double.NaN;
+                continue;
+            }
+
+            switch (spaces[i].getStateSpaceTypeEnum()) {
                 case REAL:
-                    instance[i] = row.getDouble(i);
+                    values[offset + i] = ((Number) row.get(i)).doubleValue();
                     break;
 
                 case FINITE_SET:
-                    String state = row.getString(i);
-                    double index = ((FiniteStateSpace) space).getIndexOfState(state);
-                    instance[i] = index;
+                    values[offset + i] = ((FiniteStateSpace) spaces[i]).getIndexOfState(row.getString(i));
                     break;
 
                 default:
@@ -66,8 +89,37 @@ class DataFrameOps {
                     throw new Exception("Unrecognized Error");
             }
         }
+    }
 
-        return instance;
+
+    private static Iterable<DataOnMemory<DataInstance>> rows2Batches(Iterator<Row> partition,
+                                                                    Attributes attributes, int batchSize) throws Exception {
+
+        ArrayList<DataOnMemory<DataInstance>> batches = new ArrayList<>();
+
+        StateSpaceType[] spaces = SchemaConverter.getStateSpaces(attributes);
+        int nAttributes = spaces.length;
+
+        int currentSize = 0;
+        double[] values = new double[batchSize * nAttributes];
+
+        while(partition.hasNext()) {
+
+            transformRow(partition.next(), spaces, values, currentSize * nAttributes);
+            currentSize++;
+
+            if (currentSize >= batchSize) {
+                batches.add(new DataOnMemoryBlock(attributes, values, currentSize));
+                currentSize = 0;
+                values = new double[batchSize * nAttributes];
+            }
+        }
+
+        // Add the last batch if there are any remaining instances:
+        if (currentSize > 0)
+            batches.add(new DataOnMemoryBlock(attributes, values, currentSize));
+
+        return batches;
     }
 
 
@@ -76,25 +128,32 @@ class DataFrameOps {
 
         ArrayList<DataOnMemory<DataInstance>> batches = new ArrayList<>();
 
+        List<Attribute> attributeList = attributes.getFullListOfAttributes();
+        int nAttributes = attributeList.size();
+
         int currentSize = 0;
-        ArrayList<DataInstance> batch = new ArrayList<>();
+        double[] values = new double[batchSize * nAttributes];
 
         while(partition.hasNext()) {
 
-            batch.add(partition.next());
+            DataInstance instance = partition.next();
+            int offset = currentSize * nAttributes;
+            for (int i = 0; i < nAttributes; i++) {
+                values[offset + i] = instance.getValue(attributeList.get(i));
+            }
             currentSize++;
 
             if (currentSize >= batchSize) {
+                batches.add(new DataOnMemoryBlock(attributes, values, currentSize));
                 currentSize = 0;
-                batches.add(new DataOnMemoryListContainerSerializable<DataInstance>(attributes, batch));
-                batch = new ArrayList<>();
+                values = new double[batchSize * nAttributes];
             }
 
         }
 
         // Add the last batch if there are any remaining instances:
         if (currentSize > 0)
-            batches.add(new DataOnMemoryListContainerSerializable<>(attributes, batch));
+            batches.add(new DataOnMemoryBlock(attributes, values, currentSize));
 
         return batches;
     }
@@ -0,0 +1,223 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.sparklink.core.data;
+
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.Attributes;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.datastream.filereaders.DataInstanceFromDataRow;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * This class implements the {@link DataOnMemory} interface and stores a batch of data instances in a single
+ * row-major {@code array} of {@code double}.
+ *
+ * <p> The data instances of the batch are lightweight views over this array, so building and serializing a batch
+ * does not require one object per attribute value or per instance. </p>
+ */
+public class DataOnMemoryBlock implements DataOnMemory<DataInstance>, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = 3146540862185447386L;
+
+    /** Represents the values of the data instances, in row-major order. */
+    private final double[] values;
+
+    /** Represents the number of data instances. */
+    private final int nInstances;
+
+    /** Represents the number of attributes. */
+    private final int nAttributes;
+
+    /** Represents the attributes of the data set. */
+    private final Attributes attributes;
+
+    /** Represents the views over the data instances, which are not serialized. */
+    private transient List<DataInstance> instances;
+
+    /**
+     * Creates a new DataOnMemoryBlock.
+     * @param attributes the {@link Attributes} of the data set.
+     * @param values the values of the data instances, in row-major order.
+     * @param nInstances the number of data instances stored in {@code values}.
+     */
+    public DataOnMemoryBlock(Attributes attributes, double[] values, int nInstances) {
+        this.attributes = attributes;
+        this.nAttributes = attributes.getNumberOfAttributes();
+        this.nInstances = nInstances;
+        this.values = (values.length == nInstances * nAttributes) ? values : Arrays.copyOf(values, nInstances * nAttributes);
+        this.instances = new InstanceList();
+    }
+
+    /**
+     * Returns the values of the data instances, in row-major order.
+     * @return an {@code array} of {@code double}.
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNumberOfDataInstances() {
+        return nInstances;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataInstance getDataInstance(int i) {
+        return this.instances.get(i);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DataInstance> getList() {
+        return this.instances;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<DataInstance> stream() {
+        return this.instances.stream();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restart() {
+
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.instances = new InstanceList();
+    }
+
+    /**
+     * This class defines the list of views over the data instances of the block.
+     */
+    private final class InstanceList extends AbstractList<DataInstance> {
+
+        /** Represents the views, which are created on demand. */
+        private final DataInstance[] views = new DataInstance[nInstances];
+
+        @Override
+        public DataInstance get(int index) {
+            if (index < 0 || index >= nInstances)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + nInstances);
+            if (views[index] == null)
+                views[index] = new BlockDataInstance(index * nAttributes);
+            return views[index];
+        }
+
+        @Override
+        public int size() {
+            return nInstances;
+        }
+    }
+
+    /**
+     * This class defines a data instance of the block.
+     */
+    private final class BlockDataInstance implements DataInstance, Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -4381675093721964382L;
+
+        /** Represents the position of the first value of this instance. */
+        private final int offset;
+
+        BlockDataInstance(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public double getValue(Attribute att) {
+            return values[offset + att.getIndex()];
+        }
+
+        @Override
+        public void setValue(Attribute att, double val) {
+            values[offset + att.getIndex()] = val;
+        }
+
+        @Override
+        public double[] toArray() {
+            return Arrays.copyOfRange(values, offset, offset + nAttributes);
+        }
+
+        @Override
+        public String toString() {
+            return this.outputString();
+        }
+
+        /**
+         * A single instance is serialized on its own, without the rest of the block.
+         * @return a serializable copy of this data instance.
+         */
+        private Object writeReplace() {
+            return new DataInstanceFromDataRow(new DataRowSpark(this.toArray(), attributes));
+        }
+    }
+}
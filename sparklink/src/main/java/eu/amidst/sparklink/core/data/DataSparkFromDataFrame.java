@@ -31,6 +31,11 @@ public class DataSparkFromDataFrame implements DataSpark {
         return DataFrameOps.toDataInstanceRDD(data, attributes);
     }
 
+    @Override
+    public JavaRDD<DataOnMemory<DataInstance>> getBatchedDataSet(int batchSize) {
+        return DataFrameOps.toBatchedRDD(data, attributes, batchSize);
+    }
+
     @Override
     public DataFrame getDataFrame(SQLContext sql) {
         return data;
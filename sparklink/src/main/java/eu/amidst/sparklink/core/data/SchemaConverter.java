@@ -82,6 +82,21 @@ public class SchemaConverter {
     }
 
 
+    /**
+     * Returns the state spaces of a list of attributes, indexed by the position of the corresponding column.
+     */
+    static StateSpaceType[] getStateSpaces(Attributes atts) {
+
+        List<Attribute> attributeList = atts.getFullListOfAttributes();
+        StateSpaceType[] spaces = new StateSpaceType[attributeList.size()];
+
+        for (int i = 0; i < spaces.length; i++)
+            spaces[i] = attributeList.get(i).getStateSpaceType();
+
+        return spaces;
+    }
+
+
     static StructType getSchema(Attributes atts) {
 
         // Generate the schema based on the list of attributes and depending on their type:
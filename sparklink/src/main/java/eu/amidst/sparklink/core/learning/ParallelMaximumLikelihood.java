@@ -27,7 +27,7 @@ import eu.amidst.sparklink.core.data.DataSpark;
 
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 
 /**
@@ -108,18 +108,20 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm, Se
     @Override
     public double updateModel(DataSpark dataUpdate) {
 
-            //this.sumSS = computeSufficientStatistics(dataUpdate, efBayesianNetwork);
+        final EF_BayesianNetwork ef_bayesianNetwork = this.efBayesianNetwork;
 
-            this.sumSS = dataUpdate.getDataSet()
-                .mapPartitions( iter -> sufficientStatisticsMap(iter, this.efBayesianNetwork))
-                .reduce(ParallelMaximumLikelihood::sufficientStatisticsReduce);
+        //The data is scanned once: each partition emits its statistics together with its number of instances.
+        PartialStatistics partialStatistics = dataUpdate.getDataSet()
+                .mapPartitions(iter -> sufficientStatisticsMap(iter, ef_bayesianNetwork))
+                .treeReduce(ParallelMaximumLikelihood::sufficientStatisticsReduce);
+
+        this.sumSS = partialStatistics.sumSS;
 
         //Add the prior
-            sumSS.sum(efBayesianNetwork.createInitSufficientStatistics());
+        sumSS.sum(efBayesianNetwork.createInitSufficientStatistics());
 
-            // FIXME: Maybe a generic method from the class, what about caching?
-            numInstances = dataSpark.getDataSet().count();
-            numInstances++;//Initial counts
+        numInstances = partialStatistics.numInstances;
+        numInstances++;//Initial counts
 
 
         return this.getLogMarginalProbability();
@@ -160,38 +162,44 @@ public class ParallelMaximumLikelihood implements ParameterLearningAlgorithm, Se
 
     }
 
-//    private static SufficientStatistics computeSufficientStatistics(DataSpark data, EF_BayesianNetwork ef_bayesianNetwork) {
-//
-//        return data.getDataSet()
-//                .mapPartitions(new M)
-//                .reduce(ParallelMaximumLikelihood::sufficientStatisticsReduce);
-////        return data.getDataSet()
-////                .mapPartitions( iter -> sufficientStatisticsMap(iter, ef_bayesianNetwork))
-////                .reduce(ParallelMaximumLikelihood::sufficientStatisticsReduce);
-//    }
-
-    private static Iterable<SufficientStatistics> sufficientStatisticsMap(Iterator<DataInstance> iter, EF_BayesianNetwork ef_bayesianNetwork) {
+    private static Iterable<PartialStatistics> sufficientStatisticsMap(Iterator<DataInstance> iter, EF_BayesianNetwork ef_bayesianNetwork) {
 
-        SufficientStatistics accumulator = null;
-        if (iter.hasNext())
-            accumulator = ef_bayesianNetwork.getSufficientStatistics(iter.next());;
+        PartialStatistics accumulator = new PartialStatistics(ef_bayesianNetwork.createZeroSufficientStatistics());
 
         while (iter.hasNext()) {
-                accumulator.sum(ef_bayesianNetwork.getSufficientStatistics(iter.next()));
+            accumulator.sumSS.sum(ef_bayesianNetwork.getSufficientStatistics(iter.next()));
+            accumulator.numInstances++;
         }
 
-        // FIXME: Is this really necessary?
-        ArrayList<SufficientStatistics> result = new ArrayList<SufficientStatistics>();
-        result.add(accumulator);
-
-        return result;
+        return Collections.singletonList(accumulator);
     }
 
-    private static SufficientStatistics sufficientStatisticsReduce(SufficientStatistics sta1, SufficientStatistics sta2) {
+    private static PartialStatistics sufficientStatisticsReduce(PartialStatistics sta1, PartialStatistics sta2) {
 
-        sta1.sum(sta2);
+        sta1.sumSS.sum(sta2.sumSS);
+        sta1.numInstances += sta2.numInstances;
 
         return sta1;
     }
 
+    /**
+     * This class stores the sufficient statistics and the number of instances of a data partition.
+     */
+    static class PartialStatistics implements Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = 2412917826327401633L;
+
+        /** Represents the sum of the sufficient statistics. */
+        SufficientStatistics sumSS;
+
+        /** Represents the number of instances. */
+        double numInstances;
+
+        PartialStatistics(SufficientStatistics sumSS) {
+            this.sumSS = sumSS;
+            this.numInstances = 0;
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,400 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.sparklink.core.learning;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.distribution.UnivariateDistribution;
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.learning.parametric.bayesian.utils.PlateuStructure;
+import eu.amidst.core.learning.parametric.bayesian.utils.TransitionMethod;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.CompoundVector;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.utils.VectorSerialization;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.sparklink.core.data.DataSpark;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.storage.StorageLevel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * This class implements the {@link ParameterLearningAlgorithm} interface, and defines the distributed variational
+ * message passing (d-VMP) algorithm on Spark.
+ *
+ * <p> The data is split into batches, which are cached across the global iterations. At each global iteration, the
+ * current posterior over the parameters is broadcast, each partition runs {@link SVB#updateModelOnBatchParallel}
+ * over its batches, and the resulting natural parameter updates are tree-aggregated into the new posterior. </p>
+ *
+ * <p> Each batch always runs a local step, with the parameters fixed, followed by a global step. Hence, the plateau
+ * structures which switch themselves between global and local updates (i.e., those implementing the
+ * {@code GlobalvsLocalUpdate} interface of flinklink, with a {@code setGlobalUpdate(boolean)} method) are not
+ * supported, and an {@link UnsupportedOperationException} is thrown when they are used. </p>
+ */
+public class dVMP implements ParameterLearningAlgorithm, Serializable {
+
+    /** Represents the serial version ID for serializing the object. */
+    private static final long serialVersionUID = -2981638416412573204L;
+
+    /**
+     * Represents the {@link DataSpark} used for learning the parameters.
+     */
+    protected transient DataSpark dataSpark;
+
+    /**
+     * Represents the directed acyclic graph {@link DAG}.
+     */
+    protected transient DAG dag;
+
+    /**
+     * Represents the {@link SVB} object which is replicated in each partition.
+     */
+    protected transient SVB svb;
+
+    protected int batchSize = 100;
+
+    protected int maximumGlobalIterations = 10;
+
+    protected int maximumLocalIterations = 100;
+
+    protected double globalThreshold = 0.01;
+
+    protected double localThreshold = 0.1;
+
+    protected double globalELBO = Double.NaN;
+
+    protected boolean randomStart = true;
+
+    protected boolean output = false;
+
+    public dVMP(){
+        this.svb = new SVB();
+    }
+
+    public void setPlateuStructure(PlateuStructure plateuStructure){
+        checkPlateuStructure(plateuStructure);
+        this.svb.setPlateuStructure(plateuStructure);
+    }
+
+    public void setTransitionMethod(TransitionMethod transitionMethod){
+        this.svb.setTransitionMethod(transitionMethod);
+    }
+
+    public void setGlobalThreshold(double globalThreshold) {
+        this.globalThreshold = globalThreshold;
+    }
+
+    public void setLocalThreshold(double localThreshold) {
+        this.localThreshold = localThreshold;
+    }
+
+    public void setMaximumGlobalIterations(int maximumGlobalIterations) {
+        this.maximumGlobalIterations = maximumGlobalIterations;
+    }
+
+    public void setMaximumLocalIterations(int maximumLocalIterations) {
+        this.maximumLocalIterations = maximumLocalIterations;
+    }
+
+    public SVB getSVB() {
+        return svb;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDataSpark(DataSpark data) {
+        this.dataSpark = data;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void initLearning() {
+        checkPlateuStructure(this.svb.getPlateuStructure());
+        this.svb.getPlateuStructure().getVMP().setMaxIter(this.maximumLocalIterations);
+        this.svb.getPlateuStructure().getVMP().setThreshold(this.localThreshold);
+        this.svb.setDAG(this.dag);
+        this.svb.setWindowsSize(batchSize);
+        this.svb.initLearning(); //Init learning is also peformed in each partition.
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void runLearning() {
+        this.initLearning();
+        this.updateModel(this.dataSpark);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLogMarginalProbability() {
+        return this.globalELBO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double updateModel(DataSpark dataUpdate) {
+
+        JavaRDD<DataOnMemory<DataInstance>> batches = dataUpdate.getBatchedDataSet(this.batchSize)
+                .persist(StorageLevel.MEMORY_AND_DISK());
+
+        JavaSparkContext jsc = JavaSparkContext.fromSparkContext(batches.context());
+
+        CompoundVector prior = this.svb.getNaturalParameterPrior();
+
+        //The model is shipped once, the posterior is broadcast at each global iteration.
+        Broadcast<byte[]> svbBroadcast = jsc.broadcast(Serialization.serializeObject(this.svb));
+
+        CompoundVector posterior;
+        if (randomStart) {
+            this.svb.getPlateuStructure().setSeed(this.svb.getSeed());
+            this.svb.getPlateuStructure().resetQs();
+            posterior = Serialization.deepCopy(this.svb.getPlateuStructure().getPlateauNaturalParameterPosterior());
+            posterior.sum(prior);
+        }else{
+            posterior = Serialization.deepCopy(prior);
+        }
+
+        double previousELBO = Double.NaN;
+        for (int iter = 0; iter < this.maximumGlobalIterations; iter++) {
+
+            Broadcast<byte[]> posteriorBroadcast = jsc.broadcast(VectorSerialization.serializeVector(posterior));
+
+            final boolean firstIteration = (iter == 0);
+            PartialUpdate update = batches
+                    .mapPartitions(partition -> localUpdates(partition, svbBroadcast.value(), posteriorBroadcast.value(), firstIteration))
+                    .treeReduce(dVMP::sumPartialUpdates);
+
+            posteriorBroadcast.destroy();
+
+            double elbo = update.elbo + this.computeGlobalELBO(prior, posterior);
+            if (Double.isNaN(elbo))
+                throw new IllegalStateException("NaN elbo");
+
+            if (this.output)
+                System.out.println("Global bound at iteration " + iter + ": " + elbo);
+
+            if (update.vector != null) {
+                posterior = Serialization.deepCopy(prior);
+                posterior.sum(update.vector);
+            }
+
+            double percentage = 100 * (elbo - previousELBO) / Math.abs(previousELBO);
+            previousELBO = elbo;
+            if (!firstIteration && Math.abs(percentage) < this.globalThreshold)
+                break;
+        }
+
+        svbBroadcast.destroy();
+        batches.unpersist(false);
+
+        this.globalELBO = previousELBO;
+
+        this.svb.updateNaturalParameterPosteriors(posterior);
+        this.svb.updateNaturalParameterPrior(posterior);
+        this.svb.applyTransition();
+
+        this.randomStart = false;
+
+        return this.getLogMarginalProbability();
+    }
+
+    /**
+     * Computes the term of the ELBO associated to the non replicated nodes (i.e. the parameters).
+     * @param prior the natural parameters of the prior.
+     * @param posterior the natural parameters of the posterior.
+     * @return a {@code double} value.
+     */
+    private double computeGlobalELBO(CompoundVector prior, CompoundVector posterior) {
+        this.svb.updateNaturalParameterPrior(prior);
+        this.svb.updateNaturalParameterPosteriors(posterior);
+        return this.svb.getPlateuStructure().getNonReplictedNodes()
+                .mapToDouble(node -> this.svb.getPlateuStructure().getVMP().computeELBO(node)).sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDAG(DAG dag_) {
+        this.dag = dag_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSeed(int seed) {
+        this.svb.setSeed(seed);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BayesianNetwork getLearntBayesianNetwork() {
+        return this.svb.getLearntBayesianNetwork();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setOutput(boolean activateOutput) {
+        this.output = activateOutput;
+        this.svb.setOutput(activateOutput);
+    }
+
+    public <E extends UnivariateDistribution> E getParameterPosterior(Variable parameter) {
+        return this.svb.getParameterPosterior(parameter);
+    }
+
+    /**
+     * Checks that a plateau structure does not switch between global and local updates.
+     * @param plateuStructure a {@link PlateuStructure} object.
+     * @throws UnsupportedOperationException if the plateau structure has a {@code setGlobalUpdate(boolean)} method.
+     */
+    private static void checkPlateuStructure(PlateuStructure plateuStructure) {
+        try {
+            plateuStructure.getClass().getMethod("setGlobalUpdate", boolean.class);
+        } catch (NoSuchMethodException ex) {
+            return;
+        }
+        throw new UnsupportedOperationException("The plateau structure " + plateuStructure.getClass().getName()
+                + " switches between global and local updates, which is not supported by the Spark d-VMP.");
+    }
+
+    private static Iterable<PartialUpdate> localUpdates(Iterator<DataOnMemory<DataInstance>> partition, byte[] svbBytes,
+                                                        byte[] posteriorBytes, boolean firstIteration) {
+
+        PartialUpdate partialUpdate = new PartialUpdate();
+
+        if (!partition.hasNext())
+            return Collections.singletonList(partialUpdate);
+
+        SVB svb = Serialization.deserializeObject(svbBytes);
+        svb.initLearning();
+        svb.setOutput(false);
+
+        CompoundVector posterior = VectorSerialization.deserializeVector(posteriorBytes);
+
+        while (partition.hasNext()) {
+            DataOnMemory<DataInstance> batch = partition.next();
+            if (batch.getNumberOfDataInstances() == 0)
+                continue;
+
+            //Local step: the variational distributions of the parameters are kept fixed.
+            svb.updateNaturalParameterPosteriors(posterior);
+            svb.getPlateuStructure().getNonReplictedNodes().forEach(node -> node.setActive(false));
+            SVB.BatchOutput out = svb.updateModelOnBatchParallel(batch);
+
+            if (Double.isNaN(out.getElbo()))
+                throw new IllegalStateException("NaN elbo");
+
+            partialUpdate.elbo += out.getElbo();
+
+            //Global step: the update of the natural parameters given this batch.
+            svb.getPlateuStructure().getNonReplictedNodes().forEach(node -> node.setActive(true));
+            if (firstIteration) {
+                svb.getPlateuStructure().setSeed(svb.getSeed());
+                svb.getPlateuStructure().resetQs();
+                svb.updateNaturalParameterPosteriors(posterior);
+            }
+            out = svb.updateModelOnBatchParallel(batch);
+
+            partialUpdate.add(out.getVector());
+        }
+
+        return Collections.singletonList(partialUpdate);
+    }
+
+    private static PartialUpdate sumPartialUpdates(PartialUpdate update1, PartialUpdate update2) {
+        update1.add(update2.vector);
+        update1.elbo += update2.elbo;
+        return update1;
+    }
+
+    /**
+     * This class stores the natural parameter updates and the ELBO computed over a set of batches.
+     * The vector is written with {@link VectorSerialization}.
+     */
+    static class PartialUpdate implements Serializable {
+
+        /** Represents the serial version ID for serializing the object. */
+        private static final long serialVersionUID = -6064364578627427155L;
+
+        /** Represents the sum of the natural parameter updates, or null if no batch was processed. */
+        transient CompoundVector vector;
+
+        /** Represents the sum of the ELBOs. */
+        double elbo = 0;
+
+        void add(CompoundVector update) {
+            if (update == null)
+                return;
+            if (this.vector == null)
+                this.vector = update;
+            else
+                this.vector.sum(update);
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            VectorSerialization.writeVector(out, this.vector);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            this.vector = VectorSerialization.readVector(in);
+        }
+    }
+}
@@ -3,23 +3,34 @@ package eu.amidst.sparklink.core.util;
 import com.google.common.collect.Lists;
 import eu.amidst.core.datastream.Attributes;
 import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
 import eu.amidst.core.datastream.DataStream;
 import eu.amidst.core.models.BayesianNetwork;
 import eu.amidst.core.variables.Variable;
 import eu.amidst.sparklink.core.data.DataSpark;
 
+import eu.amidst.sparklink.core.data.DataOnMemoryBlock;
 import eu.amidst.sparklink.core.data.DataSparkFromRDD;
+import org.apache.spark.Accumulable;
+import org.apache.spark.AccumulableParam;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.Function2;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
 
 
 /**
  * Created by jarias on 22/06/16.
+ *
+ * <p> The method {@link #sampleToBatches(JavaSparkContext, long, int)} samples each row with its own random
+ * generator, keyed by the global index of the row, so the sampled data set is the same for any parallelism. </p>
  */
 public class BayesianNetworkSampler implements Serializable {
 
@@ -31,6 +42,8 @@ public class BayesianNetworkSampler implements Serializable {
 
         private int seed;
         int batchSize = 1000;
+        Map<Integer, Double> rowsPerSecond = new TreeMap<>();
+        transient Accumulable<Map<Integer, Double>, Map<Integer, Double>> pendingRates;
 
         /**
          * Creates a new BayesianNetworkSampler given an input {@link BayesianNetwork} object.
@@ -94,4 +107,122 @@ public class BayesianNetworkSampler implements Serializable {
 
         }
 
-    }
\ No newline at end of file
+        /**
+         * Samples a data set of a given size as an RDD of {@link DataOnMemoryBlock} batches of the batch size. The
+         * batch {@code k} contains the rows from {@code k*batchSize} to {@code (k+1)*batchSize - 1} (the last one
+         * may be smaller), and the partition {@code p} samples a contiguous range of batches, so the result does
+         * not depend on the parallelism. The sampling speed of each partition is available through
+         * {@link #getRowsPerSecond()} once the RDD has been computed by an action.
+         * @param sc the {@link JavaSparkContext} object.
+         * @param nSamples a {@code long} that represents the number of samples.
+         * @param parallelism the number of partitions.
+         * @return a {@link JavaRDD} of {@link DataOnMemory} objects.
+         */
+        public JavaRDD<DataOnMemory<DataInstance>> sampleToBatches(JavaSparkContext sc, long nSamples, int parallelism) {
+
+            final long nBatches = (nSamples + batchSize - 1) / batchSize;
+            final int localBatchSize = this.batchSize;
+            final Attributes attributes = this.localSampler.getAttributes();
+            final eu.amidst.core.utils.BayesianNetworkSampler sampler = this.localSampler;
+            sampler.setSeed(seed);
+
+            this.rowsPerSecond.clear();
+            final Accumulable<Map<Integer, Double>, Map<Integer, Double>> rates =
+                    sc.accumulable(new HashMap<>(), new RatesParam());
+
+            JavaRDD<Integer> partitions = sc.parallelize(Arrays.asList(new Integer[parallelism]), parallelism);
+
+            Function2<Integer, Iterator<Integer>, Iterator<DataOnMemory<DataInstance>>> getPartitionBatches =
+                    (ind, iterator) -> new Iterator<DataOnMemory<DataInstance>>() {
+                        long batch = ind * nBatches / parallelism;
+                        final long lastBatch = (ind + 1) * nBatches / parallelism;
+                        long rows = 0;
+                        long nanos = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            if (batch < lastBatch)
+                                return true;
+                            if (nanos > 0) {
+                                Map<Integer, Double> rate = new HashMap<>();
+                                rate.put(ind, rows / (nanos / 1e9));
+                                rates.add(rate);
+                                nanos = 0;
+                            }
+                            return false;
+                        }
+
+                        @Override
+                        public DataOnMemory<DataInstance> next() {
+                            if (!this.hasNext())
+                                throw new NoSuchElementException();
+                            long start = System.nanoTime();
+                            long first = batch * localBatchSize;
+                            int size = (int) (Math.min(nSamples, first + localBatchSize) - first);
+                            int nAttributes = attributes.getNumberOfAttributes();
+                            double[] values = new double[size * nAttributes];
+                            for (int i = 0; i < size; i++) {
+                                System.arraycopy(sampler.sampleRow(first + i), 0, values, i * nAttributes, nAttributes);
+                            }
+                            batch++;
+                            rows += size;
+                            nanos += System.nanoTime() - start;
+                            return new DataOnMemoryBlock(attributes, values, size);
+                        }
+                    };
+
+            this.pendingRates = rates;
+
+            return partitions.mapPartitionsWithIndex(getPartitionBatches, false);
+        }
+
+        /**
+         * Samples a data set of a given size and saves its batches as an object file (serialized
+         * {@link DataOnMemoryBlock} objects, which store their values in a single {@code array} of {@code double}).
+         * The file can be loaded back with {@code sc.objectFile(path)}.
+         * @param sc the {@link JavaSparkContext} object.
+         * @param nSamples a {@code long} that represents the number of samples.
+         * @param parallelism the number of partitions.
+         * @param path a {@code String} with the path of the output folder.
+         */
+        public void sampleToObjectFile(JavaSparkContext sc, long nSamples, int parallelism, String path) {
+            this.sampleToBatches(sc, nSamples, parallelism).saveAsObjectFile(path);
+        }
+
+        /**
+         * Returns the number of rows sampled per second by each partition in the last computation of
+         * {@link #sampleToBatches(JavaSparkContext, long, int)}, indexed by the partition index.
+         * @return a {@code Map} from the index of the partition to its rows per second.
+         */
+        public Map<Integer, Double> getRowsPerSecond() {
+            if (this.pendingRates != null)
+                this.rowsPerSecond.putAll(this.pendingRates.value());
+            return rowsPerSecond;
+        }
+
+        /**
+         * This class merges the sampling speeds reported by the partitions.
+         */
+        static class RatesParam implements AccumulableParam<Map<Integer, Double>, Map<Integer, Double>> {
+
+            /** Represents the serial version ID for serializing the object. */
+            private static final long serialVersionUID = -6127893432591024538L;
+
+            @Override
+            public Map<Integer, Double> addAccumulator(Map<Integer, Double> rates, Map<Integer, Double> rate) {
+                return this.addInPlace(rates, rate);
+            }
+
+            @Override
+            public Map<Integer, Double> addInPlace(Map<Integer, Double> rates1, Map<Integer, Double> rates2) {
+                rates1.putAll(rates2);
+                return rates1;
+            }
+
+            @Override
+            public Map<Integer, Double> zero(Map<Integer, Double> initialValue) {
+                return new HashMap<>();
+            }
+        }
+
+    }
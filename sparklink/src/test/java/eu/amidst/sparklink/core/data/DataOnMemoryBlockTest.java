@@ -0,0 +1,144 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.sparklink.core.data;
+
+import eu.amidst.core.datastream.Attribute;
+import eu.amidst.core.datastream.Attributes;
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.datastream.DataOnMemory;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.utils.Serialization;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import eu.amidst.sparklink.core.util.BayesianNetworkSampler;
+import junit.framework.TestCase;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.SQLContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class DataOnMemoryBlockTest extends TestCase {
+
+    private static BayesianNetwork network() {
+        Variables variables = new Variables();
+        Variable a = variables.newMultinomialVariable("A", 3);
+        Variable b = variables.newMultinomialVariable("B", 2);
+        Variable c = variables.newGaussianVariable("C");
+        DAG dag = new DAG(variables);
+        dag.getParentSet(b).addParent(a);
+        dag.getParentSet(c).addParent(a);
+        dag.getParentSet(c).addParent(b);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.randomInitialization(new Random(0));
+        return bn;
+    }
+
+    private static void assertSameInstances(List<DataInstance> expected, List<DataInstance> instances, Attributes attributes) {
+        assertEquals(expected.size(), instances.size());
+        for (int i = 0; i < expected.size(); i++) {
+            for (Attribute att : attributes) {
+                assertEquals(expected.get(i).getValue(att), instances.get(i).getValue(att), 0.0);
+            }
+        }
+    }
+
+    public void testBlockView() throws Exception {
+        BayesianNetwork bn = network();
+        eu.amidst.core.utils.BayesianNetworkSampler sampler = new eu.amidst.core.utils.BayesianNetworkSampler(bn);
+        sampler.setSeed(0);
+        sampler.setMARVar(bn.getVariables().getVariableByName("C"), 0.2);
+        DataOnMemory<DataInstance> list = sampler.sampleToDataStream(100).toDataOnMemory();
+        Attributes attributes = list.getAttributes();
+        int nAttributes = attributes.getNumberOfAttributes();
+
+        //The block is larger than needed, as the last batch of a partition.
+        double[] values = new double[200 * nAttributes];
+        for (int i = 0; i < list.getNumberOfDataInstances(); i++) {
+            System.arraycopy(list.getDataInstance(i).toArray(), 0, values, i * nAttributes, nAttributes);
+        }
+        DataOnMemoryBlock block = new DataOnMemoryBlock(attributes, values, list.getNumberOfDataInstances());
+
+        assertEquals(list.getNumberOfDataInstances(), block.getNumberOfDataInstances());
+        assertEquals(list.getNumberOfDataInstances() * nAttributes, block.getValues().length);
+        assertSameInstances(list.getList(), block.getList(), attributes);
+        assertSameInstances(list.getList(), block.stream().collect(Collectors.toList()), attributes);
+        for (int i = 0; i < list.getNumberOfDataInstances(); i++) {
+            assertEquals(list.getDataInstance(i).outputString(), block.getDataInstance(i).outputString());
+        }
+
+        //The views are rebuilt after serializing the block, and a single view is serialized on its own.
+        DataOnMemoryBlock copy = Serialization.deepCopy(block);
+        assertSameInstances(list.getList(), copy.getList(), attributes);
+        DataInstance instance = Serialization.deepCopy(block.getDataInstance(7));
+        assertSameInstances(list.getList().subList(7, 8), Collections.singletonList(instance), attributes);
+
+        //The views write through to the block.
+        Attribute att = attributes.getAttributeByName("C");
+        block.getDataInstance(3).setValue(att, 42);
+        assertEquals(42, block.getValues()[3 * nAttributes + att.getIndex()], 0.0);
+
+        try {
+            block.getDataInstance(block.getNumberOfDataInstances());
+            fail();
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+
+    public void testBatchedDataSet() throws Exception {
+        SparkConf conf = new SparkConf().setAppName("DataOnMemoryBlockTest").setMaster("local[2]");
+        JavaSparkContext sc = new JavaSparkContext(conf);
+        try {
+            SQLContext sqlContext = new SQLContext(sc);
+
+            BayesianNetworkSampler sampler = new BayesianNetworkSampler(network());
+            sampler.setSeed(0);
+            DataSpark sampled = sampler.sampleToDataSpark(sc, 1000, 2);
+            DataSpark dataFrame = new DataSparkFromDataFrame(sampled.getDataFrame(sqlContext));
+            Attributes attributes = dataFrame.getAttributes();
+
+            List<DataInstance> expected = dataFrame.collectDataStream().stream().collect(Collectors.toList());
+            assertEquals(1000, expected.size());
+
+            //The batches built from the rows of the DataFrame and from its data instances hold the same values.
+            for (int batchSize : new int[]{1, 64, 1000, 5000}) {
+                List<DataOnMemory<DataInstance>> fromRows = dataFrame.getBatchedDataSet(batchSize).collect();
+                List<DataOnMemory<DataInstance>> fromInstances =
+                        DataFrameOps.toBatchedRDD(dataFrame.getDataSet(), attributes, batchSize).collect();
+
+                assertEquals(fromInstances.size(), fromRows.size());
+                for (DataOnMemory<DataInstance> batch : fromRows) {
+                    assertTrue(batch instanceof DataOnMemoryBlock);
+                    assertTrue(batch.getNumberOfDataInstances() <= batchSize);
+                }
+
+                List<DataInstance> rows = fromRows.stream().flatMap(DataOnMemory::stream).collect(Collectors.toList());
+                assertSameInstances(expected, rows, attributes);
+                assertSameInstances(expected, fromInstances.stream().flatMap(DataOnMemory::stream)
+                        .collect(Collectors.toList()), attributes);
+            }
+        } finally {
+            sc.stop();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *
+ *
+ *    Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements.
+ *    See the NOTICE file distributed with this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0 (the "License"); you may not use
+ *    this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *            http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under the License is
+ *    distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and limitations under the License.
+ *
+ *
+ */
+
+package eu.amidst.sparklink.core.learning;
+
+import eu.amidst.core.datastream.DataInstance;
+import eu.amidst.core.distribution.Multinomial;
+import eu.amidst.core.distribution.Normal_MultinomialParents;
+import eu.amidst.core.learning.parametric.bayesian.SVB;
+import eu.amidst.core.learning.parametric.bayesian.utils.PlateuIIDReplication;
+import eu.amidst.core.models.BayesianNetwork;
+import eu.amidst.core.models.DAG;
+import eu.amidst.core.variables.Variable;
+import eu.amidst.core.variables.Variables;
+import eu.amidst.sparklink.core.data.DataSpark;
+import eu.amidst.sparklink.core.util.BayesianNetworkSampler;
+import junit.framework.TestCase;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+
+import java.util.Arrays;
+
+public class dVMPTest extends TestCase {
+
+    /**
+     * Returns a mixture of two well separated Gaussians over G1 and G2, whose component is the hidden variable H.
+     */
+    private static BayesianNetwork mixture() {
+        Variables variables = new Variables();
+        Variable hidden = variables.newMultinomialVariable("H", 2);
+        Variable g1 = variables.newGaussianVariable("G1");
+        Variable g2 = variables.newGaussianVariable("G2");
+        DAG dag = new DAG(variables);
+        dag.getParentSet(g1).addParent(hidden);
+        dag.getParentSet(g2).addParent(hidden);
+
+        BayesianNetwork bn = new BayesianNetwork(dag);
+        bn.<Multinomial>getConditionalDistribution(hidden).setProbabilities(new double[]{0.3, 0.7});
+        for (Variable var : Arrays.asList(g1, g2)) {
+            Normal_MultinomialParents dist = bn.getConditionalDistribution(var);
+            dist.getNormal(0).setMean(-3);
+            dist.getNormal(0).setVariance(1);
+            dist.getNormal(1).setMean(3);
+            dist.getNormal(1).setVariance(1);
+        }
+        return bn;
+    }
+
+    /**
+     * Returns the weights and the means of G1 of a learnt mixture, sorted by the mean.
+     */
+    private static double[][] components(BayesianNetwork bn) {
+        double[] weights = bn.<Multinomial>getConditionalDistribution(bn.getVariables().getVariableByName("H")).getProbabilities();
+        Normal_MultinomialParents dist = bn.getConditionalDistribution(bn.getVariables().getVariableByName("G1"));
+        double[][] components = {{dist.getNormal(0).getMean(), weights[0]}, {dist.getNormal(1).getMean(), weights[1]}};
+        Arrays.sort(components, (a, b) -> Double.compare(a[0], b[0]));
+        return components;
+    }
+
+    public void testHiddenCompareSVB() throws Exception {
+        SparkConf conf = new SparkConf().setAppName("dVMPTest").setMaster("local[2]");
+        JavaSparkContext sc = new JavaSparkContext(conf);
+        try {
+            BayesianNetwork bn = mixture();
+            BayesianNetworkSampler sampler = new BayesianNetworkSampler(bn);
+            sampler.setSeed(0);
+            sampler.setHiddenVar(bn.getVariables().getVariableByName("H"));
+            DataSpark data = sampler.sampleToDataSpark(sc, 2000, 2);
+            bn.getVariables().setAttributes(data.getAttributes());
+
+            dVMP parallelVB = new dVMP();
+            parallelVB.setSeed(5);
+            parallelVB.setBatchSize(250);
+            parallelVB.setLocalThreshold(0.0001);
+            parallelVB.setGlobalThreshold(0.0001);
+            parallelVB.setMaximumLocalIterations(100);
+            parallelVB.setMaximumGlobalIterations(100);
+            parallelVB.setDAG(bn.getDAG());
+            parallelVB.initLearning();
+            parallelVB.updateModel(data);
+
+            //The core SVB on the whole data in a single batch approximates the same posterior.
+            SVB svb = new SVB();
+            svb.setWindowsSize(2000);
+            svb.setSeed(5);
+            svb.getPlateuStructure().getVMP().setMaxIter(100);
+            svb.getPlateuStructure().getVMP().setThreshold(0.0001);
+            svb.setDAG(bn.getDAG());
+            svb.setDataStream(data.collectDataStream());
+            svb.runLearning();
+
+            double[][] expected = components(svb.getLearntBayesianNetwork());
+            double[][] learnt = components(parallelVB.getLearntBayesianNetwork());
+            for (int k = 0; k < 2; k++) {
+                assertEquals(expected[k][0], learnt[k][0], 1e-3);
+                assertEquals(expected[k][1], learnt[k][1], 1e-3);
+            }
+            assertEquals(-3, learnt[0][0], 0.2);
+            assertEquals(0.3, learnt[0][1], 0.05);
+
+            assertEquals(svb.getLogMarginalProbability(), parallelVB.getLogMarginalProbability(),
+                    1e-6 * Math.abs(svb.getLogMarginalProbability()));
+        } finally {
+            sc.stop();
+        }
+    }
+
+    /**
+     * A plateau structure which switches between global and local updates.
+     */
+    public static class GlobalvsLocalPlateu extends PlateuIIDReplication {
+
+        private boolean globalUpdate = false;
+
+        public boolean isGlobalUpdate() {
+            return globalUpdate;
+        }
+
+        public void setGlobalUpdate(boolean globalUpdate) {
+            this.globalUpdate = globalUpdate;
+        }
+    }
+
+    public void testGlobalvsLocalUpdateNotSupported() {
+        dVMP parallelVB = new dVMP();
+        try {
+            parallelVB.setPlateuStructure(new GlobalvsLocalPlateu());
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+
+        parallelVB.getSVB().setPlateuStructure(new GlobalvsLocalPlateu());
+        parallelVB.setDAG(mixture().getDAG());
+        try {
+            parallelVB.initLearning();
+            fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+    }
+}